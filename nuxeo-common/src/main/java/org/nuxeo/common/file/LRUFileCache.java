@@ -25,13 +25,16 @@ import java.io.InputStream;
 import java.nio.file.DirectoryStream;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 import org.apache.commons.io.IOUtils;
@@ -44,6 +47,10 @@ import org.apache.commons.logging.LogFactory;
  * Cache entries that are old enough and whose size makes the cache bigger than its maximum size are deleted.
  * <p>
  * The cache keys are restricted to a subset of ASCII: letters, digits and dashes. Usually a MD5 or SHA1 hash is used.
+ * <p>
+ * The entries are tracked in an in-memory index ordered by access time, built from the directory content when the
+ * cache is constructed, so that eviction and size computations don't need to scan the directory. The access time is
+ * also recorded as the file modification time, so that the order is preserved across restarts.
  */
 public class LRUFileCache implements FileCache {
 
@@ -56,7 +63,10 @@ public class LRUFileCache implements FileCache {
 
     private static final String TMP_SUFFIX = ".tmp";
 
-    // not final for tests
+    /**
+     * @deprecated since 9.2, old entries are now cleared incrementally each time a file is added
+     */
+    @Deprecated
     public static long CLEAR_OLD_ENTRIES_INTERVAL_MILLIS = 5000; // 5 s
 
     protected static class PathInfo implements Comparable<PathInfo> {
@@ -79,6 +89,23 @@ public class LRUFileCache implements FileCache {
         }
     }
 
+    /**
+     * An entry of the in-memory index.
+     *
+     * @since 9.2
+     */
+    protected static class Entry {
+
+        protected final long size;
+
+        protected long time;
+
+        protected Entry(long size, long time) {
+            this.size = size;
+            this.time = time;
+        }
+    }
+
     protected final Path dir;
 
     protected final long maxSize;
@@ -87,9 +114,25 @@ public class LRUFileCache implements FileCache {
 
     protected final long minAgeMillis;
 
-    protected Lock clearOldEntriesLock = new ReentrantLock();
+    /**
+     * The cache entries, least recently accessed first. Access is synchronized on the map itself.
+     *
+     * @since 9.2
+     */
+    protected final LinkedHashMap<String, Entry> index = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Total size of the indexed entries, guarded by the index lock. */
+    protected long size;
+
+    // statistics
+
+    protected final AtomicLong hits = new AtomicLong();
+
+    protected final AtomicLong misses = new AtomicLong();
+
+    protected final AtomicLong evictions = new AtomicLong();
 
-    protected long clearOldEntriesLast;
+    protected final AtomicLong evictedBytes = new AtomicLong();
 
     /**
      * Constructs a cache in the given directory with the given maximum size (in bytes).
@@ -104,6 +147,7 @@ public class LRUFileCache implements FileCache {
         this.maxSize = maxSize;
         this.maxCount = maxCount;
         this.minAgeMillis = minAge * 1000;
+        buildIndex();
     }
 
     /**
@@ -126,34 +170,92 @@ public class LRUFileCache implements FileCache {
         }
     }
 
-    @Override
-    public long getSize() {
-        long size = 0;
+    /**
+     * Builds the in-memory index from the files present in the directory, using their modification time as access
+     * time.
+     *
+     * @since 9.2
+     */
+    protected void buildIndex() {
+        List<PathInfo> files = new ArrayList<>();
         try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, RegularFileFilter.INSTANCE)) {
             for (Path path : ds) {
-                size += Files.size(path);
+                try {
+                    files.add(new PathInfo(path));
+                } catch (IOException e) {
+                    log.error(e, e);
+                }
             }
         } catch (IOException e) {
             log.error(e, e);
         }
-        return size;
+        Collections.sort(files, Collections.reverseOrder()); // sort by oldest first
+        synchronized (index) {
+            index.clear();
+            size = 0;
+            for (PathInfo pi : files) {
+                index.put(pi.path.getFileName().toString(), new Entry(pi.size, pi.time));
+                size += pi.size;
+            }
+        }
+    }
+
+    @Override
+    public long getSize() {
+        synchronized (index) {
+            return size;
+        }
     }
 
     @Override
     public int getNumberOfItems() {
-        int count = 0;
-        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, RegularFileFilter.INSTANCE)) {
-            for (Path path : ds) {
-                count++;
-            }
-        } catch (IOException e) {
-            log.error(e, e);
+        synchronized (index) {
+            return index.size();
         }
-        return count;
+    }
+
+    /**
+     * Gets the number of cache hits.
+     *
+     * @since 9.2
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of cache misses.
+     *
+     * @since 9.2
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of files evicted from the cache.
+     *
+     * @since 9.2
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Gets the total size of the files evicted from the cache.
+     *
+     * @since 9.2
+     */
+    public long getEvictedBytes() {
+        return evictedBytes.get();
     }
 
     @Override
     public void clear() {
+        synchronized (index) {
+            index.clear();
+            size = 0;
+        }
         try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, RegularFileFilter.INSTANCE)) {
             for (Path path : ds) {
                 try {
@@ -169,59 +271,49 @@ public class LRUFileCache implements FileCache {
 
     /**
      * Clears cache entries if they are old enough and their size makes the cache bigger than its maximum size.
+     * <p>
+     * Only the least recently accessed entries are visited, so the cost is proportional to the number of evicted
+     * entries.
      */
     protected void clearOldEntries() {
-        if (clearOldEntriesLock.tryLock()) {
-            try {
-                if (System.currentTimeMillis() > clearOldEntriesLast + CLEAR_OLD_ENTRIES_INTERVAL_MILLIS) {
-                    doClearOldEntries();
-                    clearOldEntriesLast = System.currentTimeMillis();
-                    return;
+        List<String> evicted = new ArrayList<>();
+        long threshold = System.currentTimeMillis() - minAgeMillis;
+        synchronized (index) {
+            for (Iterator<Map.Entry<String, Entry>> it = index.entrySet().iterator(); it.hasNext();) {
+                if (size <= maxSize && index.size() <= maxCount) {
+                    break;
                 }
-            } finally {
-                clearOldEntriesLock.unlock();
-            }
-        }
-        // else don't do anything, another thread is already clearing old entries
-    }
-
-    protected void doClearOldEntries() {
-        List<PathInfo> files = new ArrayList<>();
-        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, RegularFileFilter.INSTANCE)) {
-            for (Path path : ds) {
-                try {
-                    files.add(new PathInfo(path));
-                } catch (IOException e) {
-                    log.error(e, e);
+                Map.Entry<String, Entry> es = it.next();
+                Entry entry = es.getValue();
+                if (entry.time >= threshold) {
+                    // all the following entries have been accessed more recently
+                    break;
                 }
+                it.remove();
+                size -= entry.size;
+                evicted.add(es.getKey());
+                evictedBytes.addAndGet(entry.size);
             }
-        } catch (IOException e) {
-            log.error(e, e);
         }
-        Collections.sort(files); // sort by most recent first
-
-        long size = 0;
-        long count = 0;
-        long threshold = System.currentTimeMillis() - minAgeMillis;
-        for (PathInfo pi : files) {
-            size += pi.size;
-            count++;
-            if (pi.time < threshold) {
-                // old enough to be candidate
-                if (size > maxSize || count > maxCount) {
-                    // delete file
-                    try {
-                        Files.delete(pi.path);
-                        size -= pi.size;
-                        count--;
-                    } catch (IOException e) {
-                        log.error(e, e);
-                    }
-                }
+        // delete files outside of the lock
+        for (String key : evicted) {
+            try {
+                Files.deleteIfExists(dir.resolve(key));
+                evictions.incrementAndGet();
+            } catch (IOException e) {
+                log.error(e, e);
             }
         }
     }
 
+    /**
+     * @deprecated since 9.2, use {@link #clearOldEntries} instead
+     */
+    @Deprecated
+    protected void doClearOldEntries() {
+        clearOldEntries();
+    }
+
     @Override
     public File getTempFile() throws IOException {
         return Files.createTempFile(dir, TMP_PREFIX, TMP_SUFFIX).toFile();
@@ -247,6 +339,7 @@ public class LRUFileCache implements FileCache {
             Path path = dir.resolve(key);
             if (Files.exists(path)) {
                 recordAccess(path);
+                touch(key, path);
                 return path.toFile();
             }
 
@@ -274,12 +367,18 @@ public class LRUFileCache implements FileCache {
         checkKey(key);
         Path path = dir.resolve(key);
         try {
+            long fileSize = Files.size(source);
             Files.move(source, path);
             recordAccess(path);
+            synchronized (index) {
+                Entry old = index.put(key, new Entry(fileSize, System.currentTimeMillis()));
+                size += fileSize - (old == null ? 0 : old.size);
+            }
             clearOldEntries();
         } catch (FileAlreadyExistsException faee) {
             // already something there
             recordAccess(path);
+            touch(key, path);
             // remove unused tmp file
             try {
                 Files.delete(source);
@@ -295,12 +394,54 @@ public class LRUFileCache implements FileCache {
         checkKey(key);
         Path path = dir.resolve(key);
         if (!Files.exists(path)) {
+            synchronized (index) {
+                Entry entry = index.remove(key);
+                if (entry != null) {
+                    // removed from outside the cache
+                    size -= entry.size;
+                }
+            }
+            misses.incrementAndGet();
             return null;
         }
+        hits.incrementAndGet();
         recordAccess(path);
+        touch(key, path);
         return path.toFile();
     }
 
+    /**
+     * Marks an entry as the most recently accessed, adding it to the index if it was not there.
+     *
+     * @since 9.2
+     */
+    protected void touch(String key, Path path) {
+        long now = System.currentTimeMillis();
+        synchronized (index) {
+            Entry entry = index.get(key);
+            if (entry != null) {
+                entry.time = now;
+                return;
+            }
+        }
+        // added to the directory from outside the cache
+        long fileSize;
+        try {
+            fileSize = Files.size(path);
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            log.error(e, e);
+            return;
+        }
+        synchronized (index) {
+            if (!index.containsKey(key)) {
+                index.put(key, new Entry(fileSize, now));
+                size += fileSize;
+            }
+        }
+    }
+
     /** Records access to a file by changing its modification time. */
     protected void recordAccess(Path path) {
         try {
@@ -154,4 +154,37 @@ public class TestLRUFileCache {
         assertEquals(0, cache.getNumberOfItems());
     }
 
+    @Test
+    public void testLRUFileCacheIndex() throws Exception {
+        byte[] buf = new byte[30];
+        FileUtils.writeByteArrayToFile(new File(dir, "old"), buf);
+        new File(dir, "old").setLastModified(System.currentTimeMillis() - 10000);
+        FileUtils.writeByteArrayToFile(new File(dir, "new"), buf);
+
+        // existing files are indexed at startup
+        LRUFileCache cache = new LRUFileCache(dir, 100, 2, 1); // 2 files max
+        assertEquals(2, cache.getNumberOfItems());
+        assertEquals(60, cache.getSize());
+
+        assertNotNull(cache.getFile("new"));
+        assertNull(cache.getFile("missing"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        // the least recently accessed file is evicted
+        cache.putFile("3", new ByteArrayInputStream(buf));
+        assertEquals(2, cache.getNumberOfItems());
+        assertEquals(60, cache.getSize());
+        assertFalse(new File(dir, "old").exists());
+        assertTrue(new File(dir, "new").exists());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(30, cache.getEvictedBytes());
+
+        // file removed from outside the cache
+        new File(dir, "new").delete();
+        assertNull(cache.getFile("new"));
+        assertEquals(1, cache.getNumberOfItems());
+        assertEquals(30, cache.getSize());
+    }
+
 }
@@ -33,6 +33,21 @@ public class BinaryManagerStatus {
 
     public long sizeBinariesGC;
 
+    /**
+     * @since 9.2
+     */
+    public long numMarked;
+
+    /**
+     * @since 9.2
+     */
+    public long sweepDone;
+
+    /**
+     * @since 9.2
+     */
+    public long sweepTotal;
+
     /**
      * The GC duration, in milliseconds
      */
@@ -68,6 +83,33 @@ public class BinaryManagerStatus {
         return sizeBinariesGC;
     }
 
+    /**
+     * The number of binaries marked as in use, if the GC records them.
+     *
+     * @since 9.2
+     */
+    public long getNumMarked() {
+        return numMarked;
+    }
+
+    /**
+     * The number of directories swept so far, while the GC sweeps.
+     *
+     * @since 9.2
+     */
+    public long getSweepDone() {
+        return sweepDone;
+    }
+
+    /**
+     * The number of directories to sweep.
+     *
+     * @since 9.2
+     */
+    public long getSweepTotal() {
+        return sweepTotal;
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
@@ -75,7 +117,10 @@ public class BinaryManagerStatus {
         .append(", numBinaries=").append(numBinaries) //
         .append(", sizeBinaries=").append(sizeBinaries) //
         .append(", numBinariesGC=").append(numBinariesGC) //
-        .append(", sizeBinariesGC=").append(sizeBinariesGC).append("]");
+        .append(", sizeBinariesGC=").append(sizeBinariesGC) //
+        .append(", numMarked=").append(numMarked) //
+        .append(", sweepDone=").append(sweepDone) //
+        .append(", sweepTotal=").append(sweepTotal).append("]");
         return builder.toString();
     }
 
@@ -34,8 +34,13 @@ import org.nuxeo.common.file.LRUFileCache;
 import org.nuxeo.common.utils.SizeUtils;
 import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
 import org.nuxeo.runtime.trackers.files.FileEventTracker;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
 /**
  * Abstract class for a {@link BinaryManager} that uses a cache for its files because fetching them is expensive.
  * <p>
@@ -53,6 +58,8 @@ public abstract class CachingBinaryManager extends AbstractBinaryManager {
 
     protected FileStorage fileStorage;
 
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
     @Override
     public void initialize(String blobProviderId, Map<String, String> properties) throws IOException {
         super.initialize(blobProviderId, properties);
@@ -74,6 +81,45 @@ public abstract class CachingBinaryManager extends AbstractBinaryManager {
     protected void initializeCache(File dir, long maxSize, long maxCount, long minAge, FileStorage fileStorage) {
         fileCache = new LRUFileCache(dir, maxSize, maxCount, minAge);
         this.fileStorage = fileStorage;
+        registerCacheMetrics();
+    }
+
+    /**
+     * Gets the prefix of the metrics of the file cache.
+     *
+     * @since 9.2
+     */
+    protected String getCacheMetricsPrefix() {
+        return MetricRegistry.name("nuxeo", "binaries", "cache", String.valueOf(blobProviderId));
+    }
+
+    /**
+     * Registers the metrics of the file cache.
+     *
+     * @since 9.2
+     */
+    protected void registerCacheMetrics() {
+        unregisterCacheMetrics();
+        String prefix = getCacheMetricsPrefix();
+        registry.register(MetricRegistry.name(prefix, "size"), (Gauge<Long>) fileCache::getSize);
+        registry.register(MetricRegistry.name(prefix, "count"), (Gauge<Integer>) fileCache::getNumberOfItems);
+        if (fileCache instanceof LRUFileCache) {
+            LRUFileCache lru = (LRUFileCache) fileCache;
+            registry.register(MetricRegistry.name(prefix, "hits"), (Gauge<Long>) lru::getHits);
+            registry.register(MetricRegistry.name(prefix, "misses"), (Gauge<Long>) lru::getMisses);
+            registry.register(MetricRegistry.name(prefix, "evictions"), (Gauge<Long>) lru::getEvictions);
+            registry.register(MetricRegistry.name(prefix, "evicted-bytes"), (Gauge<Long>) lru::getEvictedBytes);
+        }
+    }
+
+    /**
+     * Unregisters the metrics of the file cache.
+     *
+     * @since 9.2
+     */
+    protected void unregisterCacheMetrics() {
+        String prefix = getCacheMetricsPrefix() + ".";
+        registry.removeMatching((name, metric) -> name.startsWith(prefix));
     }
 
     /**
@@ -118,6 +164,7 @@ public abstract class CachingBinaryManager extends AbstractBinaryManager {
 
     @Override
     public void close() {
+        unregisterCacheMetrics();
         fileCache.clear();
         if (cachedir != null) {
             try {
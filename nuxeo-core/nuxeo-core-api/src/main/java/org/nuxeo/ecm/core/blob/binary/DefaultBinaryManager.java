@@ -59,11 +59,16 @@ public class DefaultBinaryManager extends LocalBinaryManager {
 
     /**
      * Stores and digests a temporary FileBlob.
+     * <p>
+     * Since 9.2, the file is not read again if the blob already has a digest computed with the digest algorithm of
+     * this binary manager.
      */
     protected String storeAndDigest(FileBlob blob) throws IOException {
-        String digest;
-        try (InputStream in = blob.getStream()) {
-            digest = storeAndDigest(in, NullOutputStream.NULL_OUTPUT_STREAM);
+        String digest = blob.getDigest();
+        if (digest == null || !getDigestAlgorithm().equals(blob.getDigestAlgorithm())) {
+            try (InputStream in = blob.getStream()) {
+                digest = storeAndDigest(in, NullOutputStream.NULL_OUTPUT_STREAM);
+            }
         }
         File digestFile = getFileForDigest(digest, true);
         if (digestFile.exists()) {
@@ -0,0 +1,349 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.blob.binary;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A compact set of hexadecimal digests, used to record the binaries marked by a GC.
+ * <p>
+ * Digests are stored in binary form in open-addressing hash tables, split in segments that can be updated
+ * concurrently. The tables are allocated on the heap up to a given size, after which they are memory-mapped from
+ * temporary files, so that a very large number of digests doesn't exhaust the heap.
+ * <p>
+ * Digests that are not hexadecimal, or whose length differs from the first digest added, are kept in a regular set.
+ *
+ * @since 9.2
+ */
+public class DigestMarkSet implements Closeable {
+
+    private static final Log log = LogFactory.getLog(DigestMarkSet.class);
+
+    protected static final int SEGMENT_BITS = 6;
+
+    protected static final int SEGMENTS = 1 << SEGMENT_BITS;
+
+    protected static final int INITIAL_CAPACITY = 1024;
+
+    protected static final float LOAD_FACTOR = 0.7f;
+
+    protected final File spillDir;
+
+    protected final long maxHeapBytes;
+
+    protected final AtomicLong heapBytes = new AtomicLong();
+
+    protected final Segment[] segments = new Segment[SEGMENTS];
+
+    /** Digests that can't be stored in the tables. */
+    protected final Set<String> others = ConcurrentHashMap.newKeySet();
+
+    /** The length in bytes of the stored digests, or 0 if not yet known. */
+    protected volatile int width;
+
+    /**
+     * Creates a mark set.
+     *
+     * @param spillDir the directory for the memory-mapped files
+     * @param maxHeapBytes the maximum size of the tables allocated on the heap
+     */
+    public DigestMarkSet(File spillDir, long maxHeapBytes) {
+        this.spillDir = spillDir;
+        this.maxHeapBytes = maxHeapBytes;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Adds a digest.
+     *
+     * @return {@code true} if the digest was not already present
+     */
+    public boolean add(String digest) {
+        byte[] key = toBytes(digest);
+        if (key == null) {
+            return others.add(digest);
+        }
+        return segmentFor(key).add(key);
+    }
+
+    public boolean contains(String digest) {
+        byte[] key = toBytes(digest);
+        if (key == null) {
+            return others.contains(digest);
+        }
+        return segmentFor(key).contains(key);
+    }
+
+    public long size() {
+        long size = others.size();
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Releases the tables and deletes the memory-mapped files.
+     */
+    @Override
+    public void close() {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        others.clear();
+    }
+
+    /**
+     * Converts a digest to its binary form, or returns {@code null} if it can't be stored in the tables.
+     */
+    protected byte[] toBytes(String digest) {
+        int len = digest.length();
+        if (len == 0 || len % 2 != 0) {
+            return null;
+        }
+        int w = width;
+        if (w == 0) {
+            synchronized (this) {
+                if (width == 0) {
+                    width = len / 2;
+                }
+                w = width;
+            }
+        }
+        if (len != 2 * w) {
+            return null;
+        }
+        byte[] bytes = new byte[w];
+        for (int i = 0; i < w; i++) {
+            int hi = Character.digit(digest.charAt(2 * i), 16);
+            int lo = Character.digit(digest.charAt(2 * i + 1), 16);
+            if (hi < 0 || lo < 0) {
+                return null;
+            }
+            bytes[i] = (byte) ((hi << 4) | lo);
+        }
+        return bytes;
+    }
+
+    protected static int hash(byte[] key) {
+        int h = 0;
+        for (byte b : key) {
+            h = 31 * h + b;
+        }
+        // murmur3 finalizer, spreads the bits
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    protected Segment segmentFor(byte[] key) {
+        return segments[hash(key) >>> (32 - SEGMENT_BITS)];
+    }
+
+    protected ByteBuffer allocate(int bytes, Segment segment) {
+        if (heapBytes.addAndGet(bytes) <= maxHeapBytes) {
+            return ByteBuffer.allocate(bytes);
+        }
+        heapBytes.addAndGet(-bytes);
+        try {
+            File file = File.createTempFile("gcmarks-", ".tmp", spillDir);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); //
+                    FileChannel channel = raf.getChannel()) {
+                raf.setLength(bytes);
+                // the mapping stays valid after the channel is closed
+                ByteBuffer buffer = channel.map(MapMode.READ_WRITE, 0, bytes);
+                segment.file = file;
+                return buffer;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create GC mark file in " + spillDir, e);
+        }
+    }
+
+    protected void release(ByteBuffer buffer, Segment segment) {
+        if (buffer == null) {
+            return;
+        }
+        if (segment.file == null) {
+            heapBytes.addAndGet(-buffer.capacity());
+        } else {
+            // the mapping itself is released when the buffer is garbage collected
+            if (!segment.file.delete()) {
+                log.debug("Cannot delete GC mark file: " + segment.file);
+                segment.file.deleteOnExit();
+            }
+            segment.file = null;
+        }
+    }
+
+    /**
+     * An open-addressing hash table of fixed-width keys, an all-zero slot being empty.
+     */
+    protected class Segment {
+
+        protected ByteBuffer table;
+
+        protected int capacity;
+
+        protected int size;
+
+        /** Whether the all-zero key, which can't be stored in the table, is present. */
+        protected boolean zero;
+
+        protected File file;
+
+        protected synchronized int size() {
+            return size + (zero ? 1 : 0);
+        }
+
+        protected synchronized boolean add(byte[] key) {
+            if (isZero(key)) {
+                boolean added = !zero;
+                zero = true;
+                return added;
+            }
+            if (table == null) {
+                capacity = INITIAL_CAPACITY;
+                table = allocate(capacity * key.length, this);
+            } else if (size + 1 > capacity * LOAD_FACTOR) {
+                resize();
+            }
+            return insert(table, capacity, key);
+        }
+
+        protected synchronized boolean contains(byte[] key) {
+            if (isZero(key)) {
+                return zero;
+            }
+            if (table == null) {
+                return false;
+            }
+            int w = key.length;
+            int mask = capacity - 1;
+            for (int slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+                int pos = slot * w;
+                if (isEmpty(table, pos, w)) {
+                    return false;
+                }
+                if (equals(table, pos, key)) {
+                    return true;
+                }
+            }
+        }
+
+        protected boolean insert(ByteBuffer t, int cap, byte[] key) {
+            int w = key.length;
+            int mask = cap - 1;
+            for (int slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+                int pos = slot * w;
+                if (isEmpty(t, pos, w)) {
+                    for (int i = 0; i < w; i++) {
+                        t.put(pos + i, key[i]);
+                    }
+                    size++;
+                    return true;
+                }
+                if (equals(t, pos, key)) {
+                    return false;
+                }
+            }
+        }
+
+        protected void resize() {
+            int w = width;
+            ByteBuffer oldTable = table;
+            int oldCapacity = capacity;
+            File oldFile = file;
+            file = null;
+            int newCapacity = oldCapacity * 2;
+            if ((long) newCapacity * w > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Too many GC marks");
+            }
+            ByteBuffer newTable = allocate(newCapacity * w, this);
+            File newFile = file;
+            size = 0;
+            byte[] key = new byte[w];
+            for (int slot = 0; slot < oldCapacity; slot++) {
+                int pos = slot * w;
+                if (!isEmpty(oldTable, pos, w)) {
+                    for (int i = 0; i < w; i++) {
+                        key[i] = oldTable.get(pos + i);
+                    }
+                    insert(newTable, newCapacity, key);
+                }
+            }
+            file = oldFile;
+            release(oldTable, this);
+            table = newTable;
+            capacity = newCapacity;
+            file = newFile;
+        }
+
+        protected synchronized void close() {
+            release(table, this);
+            table = null;
+            capacity = 0;
+            size = 0;
+            zero = false;
+        }
+
+        protected boolean isZero(byte[] key) {
+            for (byte b : key) {
+                if (b != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        protected boolean isEmpty(ByteBuffer t, int pos, int w) {
+            for (int i = 0; i < w; i++) {
+                if (t.get(pos + i) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        protected boolean equals(ByteBuffer t, int pos, byte[] key) {
+            for (int i = 0; i < key.length; i++) {
+                if (t.get(pos + i) != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+}
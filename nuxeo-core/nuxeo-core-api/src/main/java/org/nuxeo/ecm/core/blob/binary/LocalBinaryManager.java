@@ -26,7 +26,22 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 import org.apache.commons.io.FileUtils;
@@ -35,10 +50,13 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.common.Environment;
+import org.nuxeo.common.utils.SizeUtils;
 import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.trackers.files.FileEventTracker;
 
+import com.google.common.util.concurrent.RateLimiter;
+
 /**
  * A simple filesystem-based binary manager. It stores the binaries according to their digest (hash), which means that
  * no transactional behavior needs to be implemented.
@@ -69,10 +87,55 @@ public class LocalBinaryManager extends AbstractBinaryManager {
 
     public static final String CONFIG_FILE = "config.xml";
 
+    /**
+     * How the GC marks the binaries in use: {@code memory} (the default) records them in memory, {@code touch} updates
+     * the last modification time of their file.
+     *
+     * @since 9.2
+     */
+    public static final String PROP_GC_MARK = "gcMark";
+
+    /**
+     * Size of the heap used to record the GC marks, after which they're stored in memory-mapped files.
+     *
+     * @since 9.2
+     */
+    public static final String PROP_GC_MARK_HEAP_SIZE = "gcMarkHeapSize";
+
+    /**
+     * Number of threads used for the GC sweep.
+     *
+     * @since 9.2
+     */
+    public static final String PROP_GC_SWEEP_THREADS = "gcSweepThreads";
+
+    /**
+     * Maximum number of files examined per second by the GC sweep, 0 for no limit.
+     *
+     * @since 9.2
+     */
+    public static final String PROP_GC_SWEEP_RATE = "gcSweepRate";
+
+    public static final String GC_MARK_TOUCH = "touch";
+
+    public static final String GC_MARK_MEMORY = "memory";
+
+    public static final String DEFAULT_GC_MARK_HEAP_SIZE = "64MB";
+
+    public static final int DEFAULT_GC_SWEEP_THREADS = 4;
+
     protected File storageDir;
 
     protected File tmpDir;
 
+    protected boolean gcMarkInMemory;
+
+    protected long gcMarkHeapSize;
+
+    protected int gcSweepThreads;
+
+    protected int gcSweepRate;
+
     @Override
     public void initialize(String blobProviderId, Map<String, String> properties) throws IOException {
         super.initialize(blobProviderId, properties);
@@ -108,6 +171,7 @@ public class LocalBinaryManager extends AbstractBinaryManager {
         storageDir.mkdirs();
         tmpDir.mkdirs();
         descriptor = getDescriptor(new File(base, CONFIG_FILE));
+        initializeGarbageCollectorProperties(properties);
         createGarbageCollector();
 
         // be sure FileTracker won't steal our files !
@@ -246,6 +310,24 @@ public class LocalBinaryManager extends AbstractBinaryManager {
         }
     }
 
+    protected void initializeGarbageCollectorProperties(Map<String, String> properties) {
+        String mark = StringUtils.defaultIfBlank(properties.get(PROP_GC_MARK), GC_MARK_MEMORY).trim();
+        if (!GC_MARK_MEMORY.equals(mark) && !GC_MARK_TOUCH.equals(mark)) {
+            throw new NuxeoException("Invalid " + PROP_GC_MARK + ": " + mark);
+        }
+        gcMarkInMemory = GC_MARK_MEMORY.equals(mark);
+        String heapSize = StringUtils.defaultIfBlank(properties.get(PROP_GC_MARK_HEAP_SIZE),
+                DEFAULT_GC_MARK_HEAP_SIZE);
+        try {
+            gcMarkHeapSize = SizeUtils.parseSizeInBytes(heapSize.trim());
+            gcSweepThreads = Integer.parseInt(StringUtils.defaultIfBlank(properties.get(PROP_GC_SWEEP_THREADS),
+                    String.valueOf(DEFAULT_GC_SWEEP_THREADS)).trim());
+            gcSweepRate = Integer.parseInt(StringUtils.defaultIfBlank(properties.get(PROP_GC_SWEEP_RATE), "0").trim());
+        } catch (NumberFormatException e) {
+            throw new NuxeoException("Invalid GC configuration for binary manager: " + blobProviderId, e);
+        }
+    }
+
     protected void createGarbageCollector() {
         garbageCollector = new DefaultBinaryGarbageCollector(this);
     }
@@ -263,6 +345,14 @@ public class LocalBinaryManager extends AbstractBinaryManager {
 
         protected BinaryManagerStatus status;
 
+        /** The marked digests, or {@code null} if marking touches the files. */
+        protected DigestMarkSet marks;
+
+        /** The top-level directories already swept, kept if the sweep is interrupted so that it can be resumed. */
+        protected Set<String> sweptDirs;
+
+        protected RateLimiter rateLimiter;
+
         public DefaultBinaryGarbageCollector(LocalBinaryManager binaryManager) {
             this.binaryManager = binaryManager;
         }
@@ -272,6 +362,9 @@ public class LocalBinaryManager extends AbstractBinaryManager {
             return binaryManager.getStorageDir().toURI().toString();
         }
 
+        /**
+         * Gets the status. During the sweep, this gives its progress.
+         */
         @Override
         public BinaryManagerStatus getStatus() {
             return status;
@@ -290,10 +383,19 @@ public class LocalBinaryManager extends AbstractBinaryManager {
             }
             startTime = System.currentTimeMillis();
             status = new BinaryManagerStatus();
+            sweptDirs = ConcurrentHashMap.newKeySet();
+            if (binaryManager.gcMarkInMemory) {
+                marks = new DigestMarkSet(binaryManager.tmpDir, binaryManager.gcMarkHeapSize);
+            }
         }
 
         @Override
         public void mark(String digest) {
+            if (marks != null) {
+                // no filesystem access, unknown digests are just not found by the sweep
+                marks.add(digest);
+                return;
+            }
             File file = binaryManager.getFileForDigest(digest, false);
             if (!file.exists()) {
                 log.error("Unknown file digest: " + digest);
@@ -302,41 +404,177 @@ public class LocalBinaryManager extends AbstractBinaryManager {
             touch(file);
         }
 
+        /**
+         * {@inheritDoc}
+         * <p>
+         * If the sweep is interrupted, the GC stays in progress and calling this method again resumes the sweep from
+         * the first directory that wasn't completely swept.
+         */
         @Override
         public void stop(boolean delete) {
             if (startTime == 0) {
                 throw new RuntimeException("Not started");
             }
-            deleteOld(binaryManager.getStorageDir(), startTime - TIME_RESOLUTION, 0, delete);
+            if (marks != null) {
+                status.numMarked = marks.size();
+            }
+            int rate = binaryManager.gcSweepRate;
+            rateLimiter = rate > 0 ? RateLimiter.create(rate) : null;
+            sweep(binaryManager.getStorageDir().toPath(), startTime - TIME_RESOLUTION, delete);
             status.gcDuration = System.currentTimeMillis() - startTime;
+            if (marks != null) {
+                marks.close();
+                marks = null;
+            }
+            sweptDirs = null;
             startTime = 0;
         }
 
-        protected void deleteOld(File file, long minTime, int depth, boolean delete) {
-            if (file.isDirectory()) {
-                for (File f : file.listFiles()) {
-                    deleteOld(f, minTime, depth + 1, delete);
+        /**
+         * Sweeps the top-level directories in parallel.
+         */
+        protected void sweep(Path root, long minTime, boolean delete) {
+            List<Path> dirs = new ArrayList<>();
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(root)) {
+                for (Path dir : ds) {
+                    if (Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+                        dirs.add(dir);
+                    }
                 }
-                if (depth > 0 && file.list().length == 0) {
-                    // empty directory
-                    file.delete();
+            } catch (IOException e) {
+                throw new NuxeoException("Cannot list binaries in: " + root, e);
+            }
+            status.sweepTotal = dirs.size();
+            status.sweepDone = sweptDirs.size();
+            int nThreads = Math.max(1, Math.min(binaryManager.gcSweepThreads, dirs.size()));
+            ExecutorService executor = Executors.newFixedThreadPool(nThreads,
+                    new NamedThreadFactory("Nuxeo-BinaryGC-" + binaryManager.blobProviderId + "-"));
+            try {
+                List<Future<?>> futures = new ArrayList<>(dirs.size());
+                for (Path dir : dirs) {
+                    String name = dir.getFileName().toString();
+                    if (sweptDirs.contains(name)) {
+                        continue;
+                    }
+                    futures.add(executor.submit(() -> {
+                        sweepDir(dir, minTime, delete);
+                        sweptDirs.add(name);
+                        synchronized (status) {
+                            status.sweepDone++;
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
                 }
-            } else if (file.isFile() && file.canWrite()) {
-                long lastModified = file.lastModified();
-                long length = file.length();
-                if (lastModified == 0) {
-                    log.error("Cannot read last modified for file: " + file);
-                } else if (lastModified < minTime) {
-                    status.sizeBinariesGC += length;
-                    status.numBinariesGC++;
-                    if (delete && !file.delete()) {
-                        log.warn("Cannot gc file: " + file);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new NuxeoException("GC sweep interrupted, call stop again to resume", e);
+            } catch (ExecutionException e) {
+                throw new NuxeoException("GC sweep failed, call stop again to resume", e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        protected void sweepDir(Path dir, long minTime, boolean delete)
+                throws IOException, InterruptedException {
+            long num = 0;
+            long size = 0;
+            long numGC = 0;
+            long sizeGC = 0;
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+                for (Path path : ds) {
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                    BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS);
+                    if (attrs.isDirectory()) {
+                        sweepDir(path, minTime, delete);
+                        continue;
+                    }
+                    if (!attrs.isRegularFile() || !Files.isWritable(path)) {
+                        continue;
+                    }
+                    if (rateLimiter != null) {
+                        rateLimiter.acquire();
+                    }
+                    long lastModified = attrs.lastModifiedTime().toMillis();
+                    long length = attrs.size();
+                    if (isKept(path.getFileName().toString(), lastModified, minTime)) {
+                        num++;
+                        size += length;
+                    } else {
+                        numGC++;
+                        sizeGC += length;
+                        if (delete) {
+                            try {
+                                Files.deleteIfExists(path);
+                            } catch (IOException e) {
+                                log.warn("Cannot gc file: " + path, e);
+                            }
+                        }
                     }
-                } else {
-                    status.sizeBinaries += length;
-                    status.numBinaries++;
                 }
             }
+            synchronized (status) {
+                status.numBinaries += num;
+                status.sizeBinaries += size;
+                status.numBinariesGC += numGC;
+                status.sizeBinariesGC += sizeGC;
+            }
+            deleteIfEmpty(dir);
+        }
+
+        protected boolean isKept(String digest, long lastModified, long minTime) {
+            if (marks != null && marks.contains(digest)) {
+                return true;
+            }
+            if (lastModified == 0) {
+                log.error("Cannot read last modified for file: " + digest);
+                return true;
+            }
+            // recently created or re-uploaded files are kept
+            return lastModified >= minTime;
+        }
+
+        protected void deleteIfEmpty(Path dir) {
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+                if (ds.iterator().hasNext()) {
+                    return;
+                }
+            } catch (IOException e) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(dir);
+            } catch (IOException e) {
+                // a binary was just added, or the directory is in use
+                log.debug("Cannot delete directory: " + dir, e);
+            }
+        }
+    }
+
+    /**
+     * Creates daemon threads for the GC sweep.
+     */
+    protected static class NamedThreadFactory implements ThreadFactory {
+
+        protected final AtomicInteger threadNumber = new AtomicInteger();
+
+        protected final String prefix;
+
+        public NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
         }
     }
 
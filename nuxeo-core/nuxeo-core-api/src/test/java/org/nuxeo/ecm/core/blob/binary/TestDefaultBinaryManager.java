@@ -118,6 +118,8 @@ public class TestDefaultBinaryManager extends NXRuntimeTestCase {
         assertEquals(bytes.length + 4, status.sizeBinaries);
         assertEquals(1, status.numBinariesGC);
         assertEquals(3, status.sizeBinariesGC);
+        assertEquals(1, status.numMarked);
+        assertEquals(status.sweepTotal, status.sweepDone);
         // one file gone
         assertEquals(2, countFiles(binaryManager.getStorageDir()));
 
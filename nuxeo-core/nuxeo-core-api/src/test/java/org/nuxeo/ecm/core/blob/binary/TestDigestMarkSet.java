@@ -0,0 +1,65 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.blob.binary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+public class TestDigestMarkSet {
+
+    protected static String md5(String s) {
+        return DigestUtils.md5Hex(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testMarks() throws Exception {
+        File dir = Files.createTempDirectory("gcmarks").toFile();
+        // small heap size to use memory-mapped files
+        DigestMarkSet marks = new DigestMarkSet(dir, 10_000);
+        try {
+            int n = 20_000;
+            for (int i = 0; i < n; i++) {
+                assertTrue(marks.add(md5("a" + i)));
+            }
+            assertFalse(marks.add(md5("a0")));
+            // not stored in the tables
+            assertTrue(marks.add("not-a-digest"));
+            assertTrue(marks.add("00000000000000000000000000000000"));
+            assertEquals(n + 2, marks.size());
+            for (int i = 0; i < n; i++) {
+                assertTrue(marks.contains(md5("a" + i)));
+                assertFalse(marks.contains(md5("b" + i)));
+            }
+            assertTrue(marks.contains("not-a-digest"));
+            assertTrue(marks.contains("00000000000000000000000000000000"));
+            assertTrue(dir.list().length > 0);
+        } finally {
+            marks.close();
+        }
+        assertEquals(0, dir.list().length);
+        FileUtils.deleteQuietly(dir);
+    }
+
+}
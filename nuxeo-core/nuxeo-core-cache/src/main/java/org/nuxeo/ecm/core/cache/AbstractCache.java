@@ -19,6 +19,14 @@
  */
 package org.nuxeo.ecm.core.cache;
 
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 /**
  * Abstract class to be extended to provide new cache implementation
@@ -31,6 +39,13 @@ public abstract class AbstractCache implements Cache {
 
     protected final int ttl;
 
+    /**
+     * The loads in progress by {@link #get(String, Function)}.
+     *
+     * @since 9.2
+     */
+    protected final ConcurrentHashMap<String, CompletableFuture<Serializable>> loading = new ConcurrentHashMap<>();
+
     protected AbstractCache(CacheDescriptor desc) {
         name = desc.name;
         ttl = desc.ttl;
@@ -47,4 +62,81 @@ public abstract class AbstractCache implements Cache {
         return get(key) != null;
     }
 
+    // generic implementations, to be overridden by implementations having bulk operations
+
+    @Override
+    public Map<String, Serializable> getAll(Collection<String> keys) {
+        Map<String, Serializable> map = new HashMap<>();
+        for (String key : keys) {
+            Serializable value = key == null ? null : get(key);
+            if (value != null) {
+                map.put(key, value);
+            }
+        }
+        return map;
+    }
+
+    @Override
+    public void putAll(Map<String, ? extends Serializable> entries) {
+        entries.forEach(this::put);
+    }
+
+    @Override
+    public void invalidateAll(Collection<String> keys) {
+        keys.forEach(this::invalidate);
+    }
+
+    @Override
+    public Serializable get(String key, Function<String, ? extends Serializable> loader) {
+        if (key == null) {
+            return null;
+        }
+        Serializable value = get(key);
+        if (value != null) {
+            return value;
+        }
+        CompletableFuture<Serializable> future = new CompletableFuture<>();
+        CompletableFuture<Serializable> other = loading.putIfAbsent(key, future);
+        if (other != null) {
+            // another thread is loading the same key
+            return join(other);
+        }
+        try {
+            // check again, a load may have completed since our first get
+            value = get(key);
+            if (value == null) {
+                value = loader.apply(key);
+                if (value != null) {
+                    put(key, value);
+                }
+            }
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    /**
+     * Waits for a load done by another thread, and rethrows its exception if it failed.
+     *
+     * @since 9.2
+     */
+    protected static Serializable join(CompletableFuture<Serializable> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
 }
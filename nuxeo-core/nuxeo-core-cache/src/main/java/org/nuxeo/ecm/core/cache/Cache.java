@@ -20,7 +20,10 @@
 package org.nuxeo.ecm.core.cache;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
 /**
  * The nuxeo cache interface that define generic methods to use cache technologies
@@ -94,4 +97,43 @@ public interface Cache {
      */
     public long getSize();
 
+    /**
+     * Gets the values of several keys at once. Null keys are ignored.
+     *
+     * @param keys the keys
+     * @return a map of the keys for which a value exists to their value
+     * @since 9.2
+     */
+    public Map<String, Serializable> getAll(Collection<String> keys);
+
+    /**
+     * Stores several values at once.
+     *
+     * @param entries the keys and values to store, the keys must not be null
+     * @since 9.2
+     */
+    public void putAll(Map<String, ? extends Serializable> entries);
+
+    /**
+     * Invalidates several keys at once.
+     *
+     * @param keys the keys to remove from the cache, must not be null
+     * @since 9.2
+     */
+    public void invalidateAll(Collection<String> keys);
+
+    /**
+     * Gets the value of a key, computing and storing it using the loader if it's not in the cache.
+     * <p>
+     * Concurrent calls for the same missing key from this Nuxeo instance call the loader only once, the other callers
+     * wait for its result.
+     *
+     * @param key the key
+     * @param loader the function computing the value of a missing key, may return null in which case nothing is
+     *            stored
+     * @return the value, or null if the key is null or if the loader returned null
+     * @since 9.2
+     */
+    public Serializable get(String key, Function<String, ? extends Serializable> loader);
+
 }
@@ -20,7 +20,12 @@
 package org.nuxeo.ecm.core.cache;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Class to implement mandatory check attributes before calling implementation of cache This enable to have the same
@@ -80,4 +85,36 @@ public class CacheAttributesChecker extends CacheWrapper {
     public long getSize() {
         return cache.getSize();
     }
+
+    @Override
+    public Map<String, Serializable> getAll(Collection<String> keys) {
+        if (keys.stream().anyMatch(Objects::isNull)) {
+            keys = keys.stream().filter(Objects::nonNull).collect(Collectors.toList());
+        }
+        return cache.getAll(keys);
+    }
+
+    @Override
+    public void putAll(Map<String, ? extends Serializable> entries) {
+        if (entries.keySet().stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException(String.format("Can't put a null key for the cache '%s'!", cache.getName()));
+        }
+        cache.putAll(entries);
+    }
+
+    @Override
+    public void invalidateAll(Collection<String> keys) {
+        if (keys.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException(String.format("Can't invalidate a null key for the cache '%s'!", cache.getName()));
+        }
+        cache.invalidateAll(keys);
+    }
+
+    @Override
+    public Serializable get(String key, Function<String, ? extends Serializable> loader) {
+        if (key == null) {
+            return null;
+        }
+        return cache.get(key, loader);
+    }
 }
@@ -35,6 +35,13 @@ import org.nuxeo.ecm.core.api.NuxeoException;
 @XObject("cache")
 public class CacheDescriptor {
 
+    /**
+     * Default time to live in seconds of the entries of the local cache of a {@link NearCache}.
+     *
+     * @since 9.2
+     */
+    public static final int DEFAULT_L1_TTL = 60;
+
     @XNode("@name")
     public String name;
 
@@ -47,6 +54,22 @@ public class CacheDescriptor {
     @XNode("ttl")
     public int ttl = 1;
 
+    /**
+     * The maximum number of entries of the local cache, when the cache is a two-level {@link NearCache}.
+     *
+     * @since 9.2
+     */
+    @XNode("l1@maxSize")
+    public Integer l1MaxSize;
+
+    /**
+     * The time to live in seconds of the entries of the local cache, when the cache is a two-level {@link NearCache}.
+     *
+     * @since 9.2
+     */
+    @XNode("l1@ttl")
+    public Integer l1Ttl;
+
     @XNodeMap(value = "option", key = "@name", type = HashMap.class, componentType = String.class)
     public Map<String, String> options = new HashMap<String, String>();
 
@@ -68,11 +91,39 @@ public class CacheDescriptor {
         implClass = other.implClass;
         ttl = other.ttl;
         options = new HashMap<String, String>(other.options);
+        l1MaxSize = other.l1MaxSize;
+        l1Ttl = other.l1Ttl;
     }
 
     @Override
     public CacheDescriptor clone() {
-        return new CacheDescriptor(name, implClass, ttl, options);
+        CacheDescriptor clone = new CacheDescriptor(name, implClass, ttl, options);
+        clone.l1MaxSize = l1MaxSize;
+        clone.l1Ttl = l1Ttl;
+        return clone;
+    }
+
+    /**
+     * Whether a local cache is put in front of the configured cache.
+     *
+     * @since 9.2
+     */
+    public boolean isNearCache() {
+        return l1MaxSize != null && l1MaxSize.intValue() > 0;
+    }
+
+    /**
+     * @since 9.2
+     */
+    public int getL1MaxSize() {
+        return l1MaxSize == null ? 0 : l1MaxSize.intValue();
+    }
+
+    /**
+     * @since 9.2
+     */
+    public int getL1Ttl() {
+        return l1Ttl == null ? DEFAULT_L1_TTL : l1Ttl.intValue();
     }
 
     public Class<?> getImplClass() {
@@ -85,7 +136,8 @@ public class CacheDescriptor {
 
     @Override
     public String toString() {
-        return name + ": " + implClass + ": " + ttl + ": " + options;
+        return name + ": " + implClass + ": " + ttl + ": " + options
+                + (isNearCache() ? ": l1=" + l1MaxSize + "/" + getL1Ttl() + "s" : "");
     }
 
     protected void invalidateAll() {
@@ -95,6 +147,9 @@ public class CacheDescriptor {
     protected void start() {
         try {
             cache = implClass.getConstructor(CacheDescriptor.class).newInstance(this);
+            if (isNearCache()) {
+                cache = new NearCache(this, cache);
+            }
             cache = new CacheAttributesChecker(this, cache);
             cache = new CacheMetrics(cache);
         } catch (ReflectiveOperationException e) {
@@ -0,0 +1,141 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.cache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.nuxeo.ecm.core.pubsub.SerializableInvalidations;
+
+/**
+ * Invalidations of the keys of a cache, sent to other nodes by {@link NearCache}.
+ *
+ * @since 9.2
+ */
+public class CacheInvalidations implements SerializableInvalidations {
+
+    private static final long serialVersionUID = 1L;
+
+    protected static final int ALL_KEYS = 'A';
+
+    protected static final int SOME_KEYS = 'K';
+
+    /** Longest key that always fits in {@link DataOutputStream#writeUTF}. */
+    protected static final int MAX_KEY_LENGTH = 65535 / 3;
+
+    protected boolean all;
+
+    protected Set<String> keys;
+
+    public boolean isAll() {
+        return all;
+    }
+
+    public Set<String> getKeys() {
+        return keys;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return !all && (keys == null || keys.isEmpty());
+    }
+
+    public void setAll() {
+        all = true;
+        keys = null;
+    }
+
+    public void add(String key) {
+        if (all) {
+            return;
+        }
+        if (keys == null) {
+            keys = new HashSet<>();
+        }
+        keys.add(key);
+    }
+
+    @Override
+    public void add(SerializableInvalidations o) {
+        CacheInvalidations other = (CacheInvalidations) o;
+        if (all) {
+            return;
+        }
+        if (other.all) {
+            setAll();
+        } else if (other.keys != null) {
+            other.keys.forEach(this::add);
+        }
+    }
+
+    @Override
+    public void serialize(OutputStream out) throws IOException {
+        DataOutputStream dout = new DataOutputStream(out);
+        if (all || (keys != null && keys.stream().anyMatch(key -> key.length() > MAX_KEY_LENGTH))) {
+            // too long keys are not sent, invalidate everything instead
+            dout.writeByte(ALL_KEYS);
+        } else if (keys != null) {
+            dout.writeByte(SOME_KEYS);
+            dout.writeInt(keys.size());
+            for (String key : keys) {
+                dout.writeUTF(key);
+            }
+        }
+        dout.flush();
+    }
+
+    public static CacheInvalidations deserialize(InputStream in) throws IOException {
+        DataInputStream din = new DataInputStream(in);
+        int first = din.read();
+        if (first == -1) {
+            // empty message
+            return null;
+        }
+        CacheInvalidations invalidations = new CacheInvalidations();
+        if (first == ALL_KEYS) {
+            invalidations.setAll();
+        } else if (first == SOME_KEYS) {
+            int n = din.readInt();
+            for (int i = 0; i < n; i++) {
+                invalidations.add(din.readUTF());
+            }
+        } else {
+            // invalid message
+            return null;
+        }
+        return invalidations;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(getClass().getSimpleName());
+        sb.append('(');
+        if (all) {
+            sb.append("all=true");
+        } else {
+            sb.append("keys=");
+            sb.append(keys);
+        }
+        sb.append(')');
+        return sb.toString();
+    }
+
+}
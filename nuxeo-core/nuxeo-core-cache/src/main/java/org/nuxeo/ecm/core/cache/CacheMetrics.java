@@ -17,6 +17,9 @@
 package org.nuxeo.ecm.core.cache;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
 
 import org.nuxeo.runtime.metrics.MetricsService;
 
@@ -58,6 +61,27 @@ public class CacheMetrics extends CacheWrapper {
 
     protected final String SIZE_NAME = nameOf("size");
 
+    protected final String L1_READ_HIT_NAME = nameOf("l1-read-hit-counter");
+
+    protected final String L1_READ_MISS_NAME = nameOf("l1-read-miss-counter");
+
+    protected final String L1_READ_HIT_RATIO_NAME = nameOf("l1-read-hit-ratio");
+
+    protected final String L2_READ_HIT_NAME = nameOf("l2-read-hit-counter");
+
+    protected final String L2_READ_MISS_NAME = nameOf("l2-read-miss-counter");
+
+    protected final String L2_READ_HIT_RATIO_NAME = nameOf("l2-read-hit-ratio");
+
+    protected final String L1_SIZE_NAME = nameOf("l1-size");
+
+    /**
+     * The two-level cache wrapped by this one, if any.
+     *
+     * @since 9.2
+     */
+    protected final NearCache nearCache;
+
     public CacheMetrics(Cache cache) {
         super(cache);
         registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
@@ -82,6 +106,56 @@ public class CacheMetrics extends CacheWrapper {
             }
 
         });
+        nearCache = findNearCache(cache);
+        if (nearCache != null) {
+            registerNearCacheMetrics();
+        }
+    }
+
+    protected static NearCache findNearCache(Cache cache) {
+        while (cache instanceof CacheWrapper) {
+            if (cache instanceof NearCache) {
+                return (NearCache) cache;
+            }
+            cache = ((CacheWrapper) cache).cache;
+        }
+        return null;
+    }
+
+    /**
+     * Registers the hits and misses of each level of a {@link NearCache}.
+     *
+     * @since 9.2
+     */
+    protected void registerNearCacheMetrics() {
+        registry.register(L1_READ_HIT_NAME, nearCache.l1Hits);
+        registry.register(L1_READ_MISS_NAME, nearCache.l1Misses);
+        registry.register(L1_READ_HIT_RATIO_NAME, new RatioGauge() {
+
+            @Override
+            protected Ratio getRatio() {
+                long hits = nearCache.l1Hits.getCount();
+                return Ratio.of(hits, hits + nearCache.l1Misses.getCount());
+            }
+        });
+        registry.register(L2_READ_HIT_NAME, nearCache.l2Hits);
+        registry.register(L2_READ_MISS_NAME, nearCache.l2Misses);
+        registry.register(L2_READ_HIT_RATIO_NAME, new RatioGauge() {
+
+            @Override
+            protected Ratio getRatio() {
+                long hits = nearCache.l2Hits.getCount();
+                return Ratio.of(hits, hits + nearCache.l2Misses.getCount());
+            }
+        });
+        registry.register(L1_SIZE_NAME, new Gauge<Long>() {
+
+            @Override
+            public Long getValue() {
+                return Long.valueOf(nearCache.getL1Size());
+            }
+
+        });
     }
 
     protected String nameOf(String name) {
@@ -97,6 +171,15 @@ public class CacheMetrics extends CacheWrapper {
         registry.remove(WRITE_NAME);
         registry.remove(INVALIDATE_ALL_NAME);
         registry.remove(SIZE_NAME);
+        if (nearCache != null) {
+            registry.remove(L1_READ_HIT_NAME);
+            registry.remove(L1_READ_MISS_NAME);
+            registry.remove(L1_READ_HIT_RATIO_NAME);
+            registry.remove(L2_READ_HIT_NAME);
+            registry.remove(L2_READ_MISS_NAME);
+            registry.remove(L2_READ_HIT_RATIO_NAME);
+            registry.remove(L1_SIZE_NAME);
+        }
     }
 
     @Override
@@ -139,4 +222,41 @@ public class CacheMetrics extends CacheWrapper {
         return cache.getSize();
     }
 
+    @Override
+    public Map<String, Serializable> getAll(Collection<String> keys) {
+        Map<String, Serializable> values = cache.getAll(keys);
+        read.inc(keys.size());
+        read_hit.inc(values.size());
+        read_miss.inc(keys.size() - values.size());
+        return values;
+    }
+
+    @Override
+    public void putAll(Map<String, ? extends Serializable> entries) {
+        try {
+            super.putAll(entries);
+        } finally {
+            write.inc(entries.size());
+        }
+    }
+
+    @Override
+    public Serializable get(String key, Function<String, ? extends Serializable> loader) {
+        boolean[] loaded = new boolean[1];
+        Serializable value = cache.get(key, k -> {
+            loaded[0] = true;
+            return loader.apply(k);
+        });
+        read.inc();
+        if (loaded[0]) {
+            read_miss.inc();
+            if (value != null) {
+                write.inc();
+            }
+        } else {
+            read_hit.inc();
+        }
+        return value;
+    }
+
 }
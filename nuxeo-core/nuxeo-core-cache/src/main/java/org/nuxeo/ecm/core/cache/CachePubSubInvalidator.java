@@ -0,0 +1,59 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+import org.nuxeo.ecm.core.pubsub.AbstractPubSubInvalidator;
+
+/**
+ * PubSub invalidator for the keys of a cache.
+ * <p>
+ * Unlike other invalidators, the invalidations received from other nodes are not buffered but passed immediately to
+ * a listener, as invalidating local cache entries is cheap.
+ *
+ * @since 9.2
+ */
+public class CachePubSubInvalidator extends AbstractPubSubInvalidator<CacheInvalidations> {
+
+    protected final Consumer<CacheInvalidations> listener;
+
+    public CachePubSubInvalidator(Consumer<CacheInvalidations> listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public CacheInvalidations newInvalidations() {
+        return new CacheInvalidations();
+    }
+
+    @Override
+    public CacheInvalidations deserialize(InputStream in) throws IOException {
+        return CacheInvalidations.deserialize(in);
+    }
+
+    @Override
+    protected void subscriber(String topic, byte[] message) {
+        super.subscriber(topic, message);
+        CacheInvalidations invalidations = receiveInvalidations();
+        if (!invalidations.isEmpty()) {
+            listener.accept(invalidations);
+        }
+    }
+
+}
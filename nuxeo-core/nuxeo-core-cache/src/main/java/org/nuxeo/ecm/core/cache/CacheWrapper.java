@@ -17,7 +17,10 @@
 package org.nuxeo.ecm.core.cache;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
 /**
  * @since 9.1
@@ -75,4 +78,24 @@ public abstract class CacheWrapper implements Cache {
         return cache.hasEntry(key);
     }
 
+    @Override
+    public Map<String, Serializable> getAll(Collection<String> keys) {
+        return cache.getAll(keys);
+    }
+
+    @Override
+    public void putAll(Map<String, ? extends Serializable> entries) {
+        cache.putAll(entries);
+    }
+
+    @Override
+    public void invalidateAll(Collection<String> keys) {
+        cache.invalidateAll(keys);
+    }
+
+    @Override
+    public Serializable get(String key, Function<String, ? extends Serializable> loader) {
+        return cache.get(key, loader);
+    }
+
 }
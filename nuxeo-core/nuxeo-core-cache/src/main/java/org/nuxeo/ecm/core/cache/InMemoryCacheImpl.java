@@ -20,14 +20,21 @@
 package org.nuxeo.ecm.core.cache;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 /**
  * Default in memory implementation for cache management based on guava
@@ -110,4 +117,44 @@ public class InMemoryCacheImpl extends AbstractCache {
         return cache.size();
     }
 
+    @Override
+    public Map<String, Serializable> getAll(Collection<String> keys) {
+        return cache.getAllPresent(keys);
+    }
+
+    @Override
+    public void putAll(Map<String, ? extends Serializable> entries) {
+        cache.putAll(entries);
+    }
+
+    @Override
+    public void invalidateAll(Collection<String> keys) {
+        cache.invalidateAll(keys);
+    }
+
+    @Override
+    public Serializable get(String key, Function<String, ? extends Serializable> loader) {
+        if (key == null) {
+            return null;
+        }
+        try {
+            // Guava makes concurrent loads of the same key wait for the first one
+            return cache.get(key, () -> loader.apply(key));
+        } catch (InvalidCacheLoadException e) {
+            // the loader returned null
+            return null;
+        } catch (UncheckedExecutionException | ExecutionError e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            // cannot happen, the loader doesn't throw checked exceptions
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
 }
@@ -0,0 +1,269 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.cache;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.core.pubsub.PubSubService;
+import org.nuxeo.runtime.api.Framework;
+
+import com.codahale.metrics.Counter;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * A two-level cache: a bounded local in-memory cache (L1) in front of another cache (L2), usually a distributed one.
+ * <p>
+ * Writes and invalidations go to both levels, and are sent to the other nodes through the {@link PubSubService} so
+ * that they invalidate their own L1 entries. The L1 entries also expire after a short time, to bound the staleness
+ * when an invalidation is lost.
+ * <p>
+ * The L1 returns the same value instances to all callers, which must not modify them.
+ *
+ * @since 9.2
+ */
+public class NearCache extends CacheWrapper {
+
+    private static final Log log = LogFactory.getLog(NearCache.class);
+
+    public static final String TOPIC_PREFIX = "cache:";
+
+    protected final com.google.common.cache.Cache<String, Serializable> l1;
+
+    /** Incremented at each invalidation, to avoid putting in L1 a value read from L2 before an invalidation. */
+    protected final AtomicLong generation = new AtomicLong();
+
+    protected CachePubSubInvalidator invalidator;
+
+    // metrics, registered by CacheMetrics
+
+    protected final Counter l1Hits = new Counter();
+
+    protected final Counter l1Misses = new Counter();
+
+    protected final Counter l2Hits = new Counter();
+
+    protected final Counter l2Misses = new Counter();
+
+    public NearCache(CacheDescriptor desc, Cache l2) {
+        super(l2);
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+        builder = builder.maximumSize(desc.getL1MaxSize());
+        builder = builder.expireAfterWrite(desc.getL1Ttl(), TimeUnit.SECONDS);
+        l1 = builder.build();
+        PubSubService pubSubService = Framework.getService(PubSubService.class);
+        if (pubSubService == null) {
+            log.warn("No PubSubService, the local entries of cache " + desc.name
+                    + " will not be invalidated by other nodes");
+        } else {
+            invalidator = new CachePubSubInvalidator(this::invalidateLocal);
+            // a random discriminator, only this instance must ignore its own invalidations
+            invalidator.initialize(TOPIC_PREFIX + desc.name, UUID.randomUUID().toString());
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        if (invalidator != null) {
+            invalidator.close();
+            invalidator = null;
+        }
+        l1.invalidateAll();
+    }
+
+    @Override
+    public Serializable get(String key) {
+        Serializable value = l1.getIfPresent(key);
+        if (value != null) {
+            l1Hits.inc();
+            return value;
+        }
+        l1Misses.inc();
+        long gen = generation.get();
+        value = cache.get(key);
+        if (value == null) {
+            l2Misses.inc();
+            return null;
+        }
+        l2Hits.inc();
+        // don't cache a value that may have been invalidated while we were reading it
+        if (generation.get() == gen) {
+            l1.put(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public boolean hasEntry(String key) {
+        return l1.asMap().containsKey(key) || cache.hasEntry(key);
+    }
+
+    @Override
+    public void put(String key, Serializable value) {
+        generation.incrementAndGet();
+        cache.put(key, value);
+        if (value == null) {
+            l1.invalidate(key);
+        } else {
+            l1.put(key, value);
+        }
+        sendInvalidation(key);
+    }
+
+    @Override
+    public void invalidate(String key) {
+        generation.incrementAndGet();
+        l1.invalidate(key);
+        cache.invalidate(key);
+        sendInvalidation(key);
+    }
+
+    @Override
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        l1.invalidateAll();
+        cache.invalidateAll();
+        if (invalidator != null) {
+            CacheInvalidations invalidations = new CacheInvalidations();
+            invalidations.setAll();
+            invalidator.sendInvalidations(invalidations);
+        }
+    }
+
+    @Override
+    public long getSize() {
+        return cache.getSize();
+    }
+
+    @Override
+    public Map<String, Serializable> getAll(Collection<String> keys) {
+        Map<String, Serializable> values = new HashMap<>(l1.getAllPresent(keys));
+        l1Hits.inc(values.size());
+        if (values.size() == keys.size()) {
+            return values;
+        }
+        List<String> missing = new ArrayList<>(keys.size() - values.size());
+        for (String key : keys) {
+            if (!values.containsKey(key)) {
+                missing.add(key);
+            }
+        }
+        l1Misses.inc(missing.size());
+        long gen = generation.get();
+        Map<String, Serializable> l2Values = cache.getAll(missing);
+        l2Hits.inc(l2Values.size());
+        l2Misses.inc(missing.size() - l2Values.size());
+        if (generation.get() == gen) {
+            l1.putAll(l2Values);
+        }
+        values.putAll(l2Values);
+        return values;
+    }
+
+    @Override
+    public void putAll(Map<String, ? extends Serializable> entries) {
+        generation.incrementAndGet();
+        cache.putAll(entries);
+        entries.forEach((key, value) -> {
+            if (value == null) {
+                l1.invalidate(key);
+            } else {
+                l1.put(key, value);
+            }
+        });
+        sendInvalidations(entries.keySet());
+    }
+
+    @Override
+    public void invalidateAll(Collection<String> keys) {
+        generation.incrementAndGet();
+        l1.invalidateAll(keys);
+        cache.invalidateAll(keys);
+        sendInvalidations(keys);
+    }
+
+    @Override
+    public Serializable get(String key, Function<String, ? extends Serializable> loader) {
+        Serializable value = l1.getIfPresent(key);
+        if (value != null) {
+            l1Hits.inc();
+            return value;
+        }
+        l1Misses.inc();
+        long gen = generation.get();
+        boolean[] loaded = new boolean[1];
+        // the L2 makes concurrent loads of the same key wait for the first one
+        value = cache.get(key, k -> {
+            loaded[0] = true;
+            return loader.apply(k);
+        });
+        if (loaded[0]) {
+            l2Misses.inc();
+        } else {
+            l2Hits.inc();
+        }
+        if (value != null && generation.get() == gen) {
+            l1.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Gets the number of entries in the local cache.
+     */
+    public long getL1Size() {
+        return l1.size();
+    }
+
+    protected void sendInvalidation(String key) {
+        if (invalidator != null) {
+            CacheInvalidations invalidations = new CacheInvalidations();
+            invalidations.add(key);
+            invalidator.sendInvalidations(invalidations);
+        }
+    }
+
+    protected void sendInvalidations(Collection<String> keys) {
+        if (invalidator != null && !keys.isEmpty()) {
+            CacheInvalidations invalidations = new CacheInvalidations();
+            keys.forEach(invalidations::add);
+            invalidator.sendInvalidations(invalidations);
+        }
+    }
+
+    /**
+     * Invalidates local entries following invalidations from another node.
+     */
+    protected void invalidateLocal(CacheInvalidations invalidations) {
+        generation.incrementAndGet();
+        if (invalidations.isAll()) {
+            l1.invalidateAll();
+        } else {
+            l1.invalidateAll(invalidations.getKeys());
+        }
+    }
+
+}
@@ -139,6 +139,28 @@ public abstract class AbstractTransientStore implements TransientStore {
 
     protected abstract void removeAllEntries();
 
+    /**
+     * Increments the size of the entry with the given {@code key} and the total storage size.
+     *
+     * @since 9.2
+     */
+    protected abstract void incrementEntrySize(String key, long size);
+
+    /**
+     * Accounts for a file written directly in the caching directory of the entry with the given {@code key}, adding
+     * its size to the size of the entry, so that it's released when the entry is removed.
+     *
+     * @throws MaximumTransientSpaceExceeded if the storage would then exceed its absolute maximum size
+     * @since 9.2
+     */
+    public void putCachedFileSize(String key, long size) {
+        if (config.getAbsoluteMaxSizeMB() >= 0
+                && getStorageSize() + size > config.getAbsoluteMaxSizeMB() * (1024L * 1024)) {
+            throw new MaximumTransientSpaceExceeded();
+        }
+        incrementEntrySize(key, size);
+    }
+
     @Override
     public void putBlobs(String key, List<Blob> blobs) {
         if (config.getAbsoluteMaxSizeMB() < 0 || getStorageSize() < config.getAbsoluteMaxSizeMB() * (1024 * 1024)) {
@@ -324,6 +324,19 @@ public class SimpleTransientStore extends AbstractTransientStore {
         return decremented;
     }
 
+    @Override
+    protected void incrementEntrySize(String key, long size) {
+        synchronized (this) {
+            StorageEntry entry = getStorageEntry(key);
+            if (entry == null) {
+                entry = new StorageEntry();
+            }
+            entry.setSize(entry.getSize() + size);
+            incrementStorageSize(size);
+            putStorageEntry(key, entry);
+        }
+    }
+
     @Override
     protected void removeAllEntries() {
         log.debug("Invalidating all entries from L1 and L2 caches");
@@ -23,8 +23,19 @@ package org.nuxeo.ecm.core.cache;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -111,6 +122,67 @@ public class CacheComplianceFixture {
         Assert.assertNull(defaultCache.get("key2"));
     }
 
+    @Test
+    public void bulkOperations() {
+        Map<String, Serializable> entries = new HashMap<>();
+        entries.put("key2", "val2");
+        entries.put("key3", "val3");
+        defaultCache.putAll(entries);
+        Map<String, Serializable> values = defaultCache.getAll(Arrays.asList(CacheFeature.KEY, "key2", "key-not-exist"));
+        Map<String, Serializable> expected = new HashMap<>();
+        expected.put(CacheFeature.KEY, CacheFeature.VAL);
+        expected.put("key2", "val2");
+        Assert.assertEquals(expected, values);
+        Assert.assertEquals(Collections.emptyMap(), defaultCache.getAll(Collections.emptyList()));
+
+        defaultCache.invalidateAll(Arrays.asList(CacheFeature.KEY, "key2"));
+        Assert.assertNull(defaultCache.get(CacheFeature.KEY));
+        Assert.assertNull(defaultCache.get("key2"));
+        Assert.assertEquals("val3", defaultCache.get("key3"));
+    }
+
+    @Test
+    public void getWithLoader() {
+        Assert.assertEquals(CacheFeature.VAL, defaultCache.get(CacheFeature.KEY, key -> {
+            throw new AssertionError("should not load");
+        }));
+        Assert.assertEquals("loaded-key2", defaultCache.get("key2", key -> "loaded-" + key));
+        Assert.assertEquals("loaded-key2", defaultCache.get("key2"));
+        // nothing stored for a null load
+        Assert.assertNull(defaultCache.get("key3", key -> null));
+        Assert.assertFalse(defaultCache.hasEntry("key3"));
+    }
+
+    @Test
+    public void getWithLoaderIsSingleFlight() throws Exception {
+        int nthreads = 5;
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(nthreads);
+        try {
+            List<Future<Serializable>> futures = new ArrayList<>();
+            for (int i = 0; i < nthreads; i++) {
+                futures.add(executor.submit(() -> {
+                    return defaultCache.get("key2", key -> {
+                        loads.incrementAndGet();
+                        try {
+                            // let the other threads ask for the same key
+                            Thread.sleep(500);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return "loaded";
+                    });
+                }));
+            }
+            for (Future<Serializable> future : futures) {
+                Assert.assertEquals("loaded", future.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(1, loads.get());
+    }
+
     @Test
     public void hasMetrics() {
         SharedMetricRegistries.getOrCreate(MetricsService.class.getName()).getNames()
@@ -0,0 +1,101 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import javax.inject.Inject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.runtime.test.runner.Deploy;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+
+@RunWith(FeaturesRunner.class)
+@Features(InMemoryCacheFeature.class)
+@Deploy("org.nuxeo.ecm.core.event")
+public class TestNearCache {
+
+    protected static final String NEAR_TEST_CACHE_NAME = "near-test-cache";
+
+    @Inject
+    protected CacheService cacheService;
+
+    protected Cache cache;
+
+    protected NearCache nearCache;
+
+    /** Invalidator of another node. */
+    protected CachePubSubInvalidator otherNode;
+
+    @Before
+    public void setUp() {
+        cache = cacheService.getCache(NEAR_TEST_CACHE_NAME);
+        nearCache = CacheMetrics.findNearCache(cache);
+        assertNotNull(nearCache);
+        otherNode = new CachePubSubInvalidator(invalidations -> {
+        });
+        otherNode.initialize(NearCache.TOPIC_PREFIX + NEAR_TEST_CACHE_NAME, "othernode");
+    }
+
+    @After
+    public void tearDown() {
+        otherNode.close();
+        cache.invalidateAll();
+    }
+
+    @Test
+    public void testLevels() {
+        cache.put("key", "val");
+        assertEquals(1, nearCache.getL1Size());
+        long l1Hits = nearCache.l1Hits.getCount();
+        assertEquals("val", cache.get("key"));
+        assertEquals(l1Hits + 1, nearCache.l1Hits.getCount());
+
+        // only in L2
+        nearCache.l1.invalidateAll();
+        long l2Hits = nearCache.l2Hits.getCount();
+        assertEquals("val", cache.get("key"));
+        assertEquals(l2Hits + 1, nearCache.l2Hits.getCount());
+        // now back in L1
+        assertEquals(1, nearCache.getL1Size());
+    }
+
+    @Test
+    public void testInvalidationFromOtherNode() {
+        cache.put("key1", "val1");
+        cache.put("key2", "val2");
+        assertEquals(2, nearCache.getL1Size());
+
+        CacheInvalidations invalidations = new CacheInvalidations();
+        invalidations.add("key1");
+        otherNode.sendInvalidations(invalidations);
+        assertEquals(1, nearCache.getL1Size());
+        assertEquals("val2", nearCache.l1.getIfPresent("key2"));
+
+        invalidations = new CacheInvalidations();
+        invalidations.setAll();
+        otherNode.sendInvalidations(invalidations);
+        assertEquals(0, nearCache.getL1Size());
+        // L2 is still there
+        assertEquals("val1", cache.get("key1"));
+    }
+
+}
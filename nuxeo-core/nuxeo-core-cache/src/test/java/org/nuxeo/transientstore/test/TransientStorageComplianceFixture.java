@@ -24,6 +24,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.Serializable;
@@ -207,6 +208,30 @@ public class TransientStorageComplianceFixture {
         putEntry(ts, "A");
     }
 
+    @Test
+    public void verifyCachedFileSize() throws Exception {
+        TransientStoreService tss = Framework.getService(TransientStoreService.class);
+        AbstractTransientStore ts = (AbstractTransientStore) tss.getStore("miniStore");
+        long size = ts.getStorageSize();
+        ts.putParameter("F", "A", "a");
+        ts.putCachedFileSize("F", 1000);
+        assertEquals(1000, ts.getSize("F"));
+        assertEquals(size + 1000, ts.getStorageSize());
+
+        // above the absolute max size
+        try {
+            ts.putCachedFileSize("F", 1024 * 1024);
+            fail("should have exceeded the absolute max size");
+        } catch (MaximumTransientSpaceExceeded e) {
+            // ok
+        }
+        assertEquals(size + 1000, ts.getStorageSize());
+
+        // released with the entry
+        ts.remove("F");
+        assertEquals(size, ts.getStorageSize());
+    }
+
     @Test
     public void verifyDeleteAfterUse() throws Exception {
 
@@ -21,6 +21,7 @@ package org.nuxeo.ecm.core.convert.cache;
 
 import java.io.Serializable;
 import java.util.Map;
+import java.util.TreeSet;
 
 import org.nuxeo.ecm.core.api.blobholder.BlobHolder;
 
@@ -41,7 +42,8 @@ public class CacheKeyGenerator {
         sb.append(":");
         sb.append(blobHolder.getHash());
         if (parameters != null) {
-            for (String key : parameters.keySet()) {
+            // sorted so that the key doesn't depend on the map implementation, as it may be shared between nodes
+            for (String key : new TreeSet<>(parameters.keySet())) {
                 sb.append(":").append(key);
                 sb.append(":").append(String.valueOf(parameters.get(key)));
             }
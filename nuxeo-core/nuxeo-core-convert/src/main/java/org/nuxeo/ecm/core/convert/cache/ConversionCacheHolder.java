@@ -22,12 +22,13 @@ package org.nuxeo.ecm.core.convert.cache;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.commons.codec.binary.Base64;
@@ -40,14 +41,26 @@ import org.nuxeo.ecm.core.convert.service.ConversionServiceImpl;
 
 /**
  * Manager for the cache system of the {@link ConversionService}.
+ * <p>
+ * Entries are protected by striped locks, so that operations on different keys don't wait for each other.
  *
  * @author tiry
  */
 public class ConversionCacheHolder {
 
-    protected static final Map<String, ConversionCacheEntry> cache = new HashMap<>();
+    protected static final Map<String, ConversionCacheEntry> cache = new ConcurrentHashMap<>();
 
-    protected static final ReentrantReadWriteLock cacheLock = new ReentrantReadWriteLock();
+    /** @since 9.2 */
+    protected static final int LOCK_STRIPES = 64;
+
+    /** @since 9.2 */
+    protected static final ReentrantReadWriteLock[] cacheLocks = new ReentrantReadWriteLock[LOCK_STRIPES];
+
+    static {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            cacheLocks[i] = new ReentrantReadWriteLock();
+        }
+    }
 
     private static final Log log = LogFactory.getLog(ConversionCacheHolder.class);
 
@@ -55,18 +68,34 @@ public class ConversionCacheHolder {
 
     public static int subPathPartSize = 2;
 
+    /**
+     * @deprecated since 9.2, use {@link #getCacheHits} instead, this value may miss concurrent hits
+     */
+    @Deprecated
     public static long cacheHits = 0;
 
+    /** @since 9.2 */
+    protected static final AtomicLong cacheHitCount = new AtomicLong();
+
     // Utility class.
     private ConversionCacheHolder() {
     }
 
     public static long getCacheHits() {
-        return cacheHits;
+        return cacheHitCount.get();
     }
 
     public static int getNbCacheEntries() {
-        return cache.keySet().size();
+        return cache.size();
+    }
+
+    /**
+     * Gets the lock protecting the entry for the given key.
+     *
+     * @since 9.2
+     */
+    protected static ReentrantReadWriteLock getLock(String key) {
+        return cacheLocks[(key.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES];
     }
 
     protected static List<String> getSubPathFromKey(String key) {
@@ -107,11 +136,12 @@ public class ConversionCacheHolder {
 
     public static void addToCache(String key, BlobHolder result) {
         Objects.requireNonNull(key);
-        cacheLock.writeLock().lock();
+        ReentrantReadWriteLock lock = getLock(key);
+        lock.writeLock().lock();
         try {
             doAddToCache(key, result);
         } finally {
-            cacheLock.writeLock().unlock();
+            lock.writeLock().unlock();
         }
     }
 
@@ -131,29 +161,30 @@ public class ConversionCacheHolder {
     }
 
     public static void removeFromCache(String key) {
-        cacheLock.writeLock().lock();
+        ReentrantReadWriteLock lock = getLock(key);
+        lock.writeLock().lock();
         try {
             doRemoveFromCache(key);
         } finally {
-            cacheLock.writeLock().unlock();
+            lock.writeLock().unlock();
         }
 
     }
 
     protected static void doRemoveFromCache(String key) {
-        if (cache.containsKey(key)) {
-            ConversionCacheEntry cce = cache.get(key);
+        ConversionCacheEntry cce = cache.remove(key);
+        if (cce != null) {
             cce.remove();
-            cache.remove(key);
         }
     }
 
     public static ConversionCacheEntry getCacheEntry(String key) {
-        cacheLock.readLock().lock();
+        ReentrantReadWriteLock lock = getLock(key);
+        lock.readLock().lock();
         try {
             return doGetCacheEntry(key);
         } finally {
-            cacheLock.readLock().unlock();
+            lock.readLock().unlock();
         }
     }
 
@@ -162,46 +193,42 @@ public class ConversionCacheHolder {
     }
 
     public static BlobHolder getFromCache(String key) {
-        cacheLock.readLock().lock();
+        ReentrantReadWriteLock lock = getLock(key);
+        lock.readLock().lock();
         try {
             return doGetFromCache(key);
         } finally {
-            cacheLock.readLock().unlock();
+            lock.readLock().unlock();
         }
     }
 
     protected static BlobHolder doGetFromCache(String key) {
         ConversionCacheEntry cacheEntry = cache.get(key);
         if (cacheEntry != null) {
-            if (cacheHits == Long.MAX_VALUE) {
-                cacheHits = 0;
-            } else {
-                cacheHits += 1;
-            }
+            cacheHits = cacheHitCount.incrementAndGet();
             return cacheEntry.restore();
         }
         return null;
     }
 
     public static Set<String> getCacheKeys() {
-        cacheLock.readLock().lock();
-        try {
-            return new HashSet<>(cache.keySet());
-        } finally {
-            cacheLock.readLock().unlock();
-        }
+        return new HashSet<>(cache.keySet());
     }
 
     /**
      * @since 6.0
      */
     public static void deleteCache() {
-        cacheLock.writeLock().lock();
+        for (ReentrantReadWriteLock lock : cacheLocks) {
+            lock.writeLock().lock();
+        }
         try {
             cache.clear();
             new File(ConversionServiceImpl.getCacheBasePath()).delete();
         } finally {
-            cacheLock.writeLock().unlock();
+            for (ReentrantReadWriteLock lock : cacheLocks) {
+                lock.writeLock().unlock();
+            }
         }
     }
 }
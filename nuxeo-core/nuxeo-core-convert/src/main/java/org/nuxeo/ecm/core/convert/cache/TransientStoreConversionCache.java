@@ -0,0 +1,124 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.convert.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.core.api.Blob;
+import org.nuxeo.ecm.core.api.blobholder.BlobHolder;
+import org.nuxeo.ecm.core.transientstore.api.TransientStore;
+import org.nuxeo.ecm.core.transientstore.api.TransientStoreService;
+import org.nuxeo.runtime.api.Framework;
+
+/**
+ * Conversion cache storing the conversion results in a {@link TransientStore}.
+ * <p>
+ * Depending on the transient store implementation, the results can be shared between the nodes of a cluster and
+ * survive restarts. Their expiration is governed by the transient store configuration.
+ *
+ * @since 9.2
+ */
+public class TransientStoreConversionCache {
+
+    private static final Log log = LogFactory.getLog(TransientStoreConversionCache.class);
+
+    protected static final String KEY_PREFIX = "convert-";
+
+    protected final String storeName;
+
+    protected final AtomicLong hits = new AtomicLong();
+
+    public TransientStoreConversionCache(String storeName) {
+        this.storeName = storeName;
+    }
+
+    protected TransientStore getStore() {
+        return Framework.getService(TransientStoreService.class).getStore(storeName);
+    }
+
+    /**
+     * Computes the transient store key for a cache key, which may be long and contain any character.
+     */
+    protected String getStoreKey(String key) {
+        return KEY_PREFIX + DigestUtils.sha256Hex(key);
+    }
+
+    public long getCacheHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets a conversion result from the cache.
+     *
+     * @param key the cache key, as computed by {@link CacheKeyGenerator}
+     * @return the conversion result, or {@code null} if not in the cache
+     */
+    public BlobHolder get(String key) {
+        String storeKey = getStoreKey(key);
+        List<Blob> blobs;
+        try {
+            TransientStore store = getStore();
+            if (!store.isCompleted(storeKey)) {
+                return null;
+            }
+            blobs = store.getBlobs(storeKey);
+        } catch (RuntimeException e) {
+            log.error("Cannot read conversion cache entry: " + key, e);
+            return null;
+        }
+        if (blobs == null || blobs.isEmpty()) {
+            return null;
+        }
+        hits.incrementAndGet();
+        return new SimpleCachableBlobHolder(new ArrayList<>(blobs));
+    }
+
+    /**
+     * Puts a conversion result in the cache.
+     * <p>
+     * Like for the local cache, only {@link CachableBlobHolder} results are stored.
+     *
+     * @param key the cache key, as computed by {@link CacheKeyGenerator}
+     * @param result the conversion result
+     */
+    public void put(String key, BlobHolder result) {
+        if (!(result instanceof CachableBlobHolder)) {
+            return;
+        }
+        List<Blob> blobs = result.getBlobs();
+        if (blobs == null || blobs.isEmpty()) {
+            return;
+        }
+        String storeKey = getStoreKey(key);
+        try {
+            TransientStore store = getStore();
+            store.putBlobs(storeKey, blobs);
+            store.setCompleted(storeKey, true);
+        } catch (RuntimeException e) {
+            log.error("Cannot write conversion cache entry: " + key, e);
+        }
+    }
+
+    public void remove(String key) {
+        getStore().remove(getStoreKey(key));
+    }
+
+}
@@ -100,6 +100,23 @@ public class GlobalConfigDescriptor implements Serializable {
         return diskCacheSize == null ? DEFAULT_DISK_CACHE_IN_KB : diskCacheSize.intValue();
     }
 
+    /**
+     * The transient store where conversion results are also cached, to share them between nodes.
+     *
+     * @since 9.2
+     */
+    @XNode("transientStore")
+    protected String transientStore;
+
+    /**
+     * Gets the name of the transient store where conversion results are also cached, or {@code null} for none.
+     *
+     * @since 9.2
+     */
+    public String getTransientStore() {
+        return transientStore;
+    }
+
     public void update(GlobalConfigDescriptor other) {
         if (other.enableCache != null) {
             enableCache = other.enableCache;
@@ -113,6 +130,9 @@ public class GlobalConfigDescriptor implements Serializable {
         if (other.cachingDirectory != null) {
             cachingDirectory = other.cachingDirectory;
         }
+        if (other.transientStore != null) {
+            transientStore = other.transientStore;
+        }
     }
 
 }
@@ -30,6 +30,9 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -54,6 +57,7 @@ import org.nuxeo.ecm.core.convert.api.ConverterNotRegistered;
 import org.nuxeo.ecm.core.convert.cache.CacheKeyGenerator;
 import org.nuxeo.ecm.core.convert.cache.ConversionCacheHolder;
 import org.nuxeo.ecm.core.convert.cache.GCTask;
+import org.nuxeo.ecm.core.convert.cache.TransientStoreConversionCache;
 import org.nuxeo.ecm.core.convert.extension.ChainedConverter;
 import org.nuxeo.ecm.core.convert.extension.Converter;
 import org.nuxeo.ecm.core.convert.extension.ConverterDescriptor;
@@ -93,6 +97,16 @@ public class ConversionServiceImpl extends DefaultComponent implements Conversio
 
     protected GCTask gcTask;
 
+    /**
+     * The conversions in progress, so that identical concurrent conversions are only done once.
+     *
+     * @since 9.2
+     */
+    protected final Map<String, CompletableFuture<Void>> conversionsInProgress = new ConcurrentHashMap<>();
+
+    /** @since 9.2 */
+    protected TransientStoreConversionCache sharedCache;
+
     @Override
     public void activate(ComponentContext context) {
         converterDescriptors.clear();
@@ -124,6 +138,8 @@ public class ConversionServiceImpl extends DefaultComponent implements Conversio
             GlobalConfigDescriptor desc = (GlobalConfigDescriptor) contribution;
             config.update(desc);
             config.clearCachingDirectory();
+            String transientStore = config.getTransientStore();
+            sharedCache = transientStore == null ? null : new TransientStoreConversionCache(transientStore);
         } else {
             log.error("Unable to handle unknown extensionPoint " + extensionPoint);
         }
@@ -316,15 +332,10 @@ public class ConversionServiceImpl extends DefaultComponent implements Conversio
 
         String cacheKey = CacheKeyGenerator.computeKey(converterName, blobHolder, parameters);
 
-        BlobHolder result = ConversionCacheHolder.getFromCache(cacheKey);
+        BlobHolder result = getFromCache(cacheKey);
 
         if (result == null) {
-            Converter converter = desc.getConverterInstance();
-            result = converter.convert(blobHolder, parameters);
-
-            if (config.isCacheEnabled()) {
-                ConversionCacheHolder.addToCache(cacheKey, result);
-            }
+            result = convertOnce(cacheKey, desc, blobHolder, parameters);
         }
 
         if (result != null) {
@@ -335,6 +346,67 @@ public class ConversionServiceImpl extends DefaultComponent implements Conversio
         return result;
     }
 
+    protected BlobHolder getFromCache(String cacheKey) {
+        BlobHolder result = ConversionCacheHolder.getFromCache(cacheKey);
+        if (result == null && sharedCache != null && config.isCacheEnabled()) {
+            result = sharedCache.get(cacheKey);
+        }
+        return result;
+    }
+
+    protected void addToCache(String cacheKey, BlobHolder result) {
+        ConversionCacheHolder.addToCache(cacheKey, result);
+        if (sharedCache != null) {
+            sharedCache.put(cacheKey, result);
+        }
+    }
+
+    /**
+     * Does a conversion and caches its result.
+     * <p>
+     * If an identical conversion is already in progress, waits for it to finish and gets its result from the cache
+     * instead of doing the conversion again.
+     *
+     * @since 9.2
+     */
+    protected BlobHolder convertOnce(String cacheKey, ConverterDescriptor desc, BlobHolder blobHolder,
+            Map<String, Serializable> parameters) throws ConversionException {
+        Converter converter = desc.getConverterInstance();
+        if (!config.isCacheEnabled()) {
+            return converter.convert(blobHolder, parameters);
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        CompletableFuture<Void> inProgress = conversionsInProgress.putIfAbsent(cacheKey, future);
+        if (inProgress != null) {
+            try {
+                inProgress.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ConversionException("Interrupted while waiting for conversion: " + cacheKey, e);
+            } catch (ExecutionException e) {
+                throw new ConversionException("Error during conversion: " + cacheKey, e.getCause());
+            }
+            // each caller gets its own instance from the cache, as the result is modified by the caller
+            BlobHolder result = getFromCache(cacheKey);
+            if (result != null) {
+                return result;
+            }
+            // not cachable
+            return converter.convert(blobHolder, parameters);
+        }
+        try {
+            BlobHolder result = converter.convert(blobHolder, parameters);
+            addToCache(cacheKey, result);
+            future.complete(null);
+            return result;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            conversionsInProgress.remove(cacheKey, future);
+        }
+    }
+
     protected void updateResultBlobMimeType(BlobHolder resultBh, ConverterDescriptor desc) {
         Blob mainBlob = resultBh.getBlob();
         if (mainBlob == null) {
@@ -25,6 +25,11 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -94,4 +99,28 @@ public class TestCache {
         assertEquals(0, cacheSize1 - cacheSize3);
     }
 
+    @Test
+    public void testConcurrentIdenticalConversions() throws Exception {
+        ConversionService cs = Framework.getLocalService(ConversionService.class);
+        File file = FileUtils.getResourceFileFromContext("test-data/hello.doc");
+        Blob blob = Blobs.createBlob(file, "application/msword", null, "hello.doc");
+        BlobHolder bh = new SimpleBlobHolder(blob);
+
+        int count = CountingConverter.COUNT.get();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<BlobHolder>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> cs.convert("counting", bh, null)));
+            }
+            for (Future<BlobHolder> future : futures) {
+                assertNotNull(future.get().getBlob());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        // a single conversion was done
+        assertEquals(1, CountingConverter.COUNT.get() - count);
+    }
+
 }
@@ -0,0 +1,69 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.convert.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+
+import javax.inject.Inject;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.common.utils.FileUtils;
+import org.nuxeo.ecm.core.api.Blob;
+import org.nuxeo.ecm.core.api.Blobs;
+import org.nuxeo.ecm.core.api.blobholder.BlobHolder;
+import org.nuxeo.ecm.core.api.blobholder.SimpleBlobHolder;
+import org.nuxeo.ecm.core.convert.api.ConversionService;
+import org.nuxeo.ecm.core.convert.cache.ConversionCacheHolder;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.test.runner.LocalDeploy;
+import org.nuxeo.transientstore.test.TransientStoreFeature;
+
+@RunWith(FeaturesRunner.class)
+@Features({ ConvertFeature.class, TransientStoreFeature.class })
+@LocalDeploy({ "org.nuxeo.ecm.core.convert:OSGI-INF/convert-service-config-shared.xml",
+        "org.nuxeo.ecm.core.convert:OSGI-INF/converters-test-contrib3.xml" })
+public class TestSharedCache {
+
+    @Inject
+    protected ConversionService conversionService;
+
+    @Test
+    public void testSharedCache() throws Exception {
+        File file = FileUtils.getResourceFileFromContext("test-data/hello.doc");
+        Blob blob = Blobs.createBlob(file, "application/msword", null, "hello.doc");
+        BlobHolder bh = new SimpleBlobHolder(blob);
+
+        int count = CountingConverter.COUNT.get();
+        BlobHolder result = conversionService.convert("counting", bh, null);
+        assertNotNull(result);
+        assertEquals(1, CountingConverter.COUNT.get() - count);
+
+        // as if on another node or after a restart
+        ConversionCacheHolder.deleteCache();
+
+        result = conversionService.convert("counting", bh, null);
+        assertNotNull(result.getBlob());
+        assertEquals(blob.getLength(), result.getBlob().getLength());
+        // no new conversion
+        assertEquals(1, CountingConverter.COUNT.get() - count);
+    }
+
+}
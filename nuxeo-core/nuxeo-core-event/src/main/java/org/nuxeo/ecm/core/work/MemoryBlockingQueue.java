@@ -28,6 +28,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
@@ -40,6 +41,9 @@ import org.nuxeo.ecm.core.work.api.WorkQueueMetrics;
  * <p>
  * In addition, this implementation also keeps a set of {@link Work} ids in the queue when the queue elements are
  * {@link WorkHolder}s.
+ * <p>
+ * A queue is FIFO, unless it is unbounded and created as prioritized: it is then ordered by
+ * {@link Work#getPriority priority}.
  */
 public class MemoryBlockingQueue extends NuxeoBlockingQueue {
 
@@ -130,8 +134,24 @@ public class MemoryBlockingQueue extends NuxeoBlockingQueue {
      * @param capacity the capacity, or -1 for unbounded
      */
     public MemoryBlockingQueue(String id, MemoryWorkQueuing queuing, int capacity) {
+        this(id, queuing, capacity, false);
+    }
+
+    /**
+     * Creates a {@link BlockingQueue} with a maximum capacity, ordered by work priority if unbounded and prioritized.
+     *
+     * @param capacity the capacity, or -1 for unbounded
+     * @param prioritized whether an unbounded queue is ordered by work priority
+     * @since 9.2
+     */
+    public MemoryBlockingQueue(String id, MemoryWorkQueuing queuing, int capacity, boolean prioritized) {
         super(id, queuing);
-        queue = new ReentrantLinkedBlockingQueue<>(capacity);
+        if (capacity < 0 && prioritized) {
+            // unbounded, ordered by work priority
+            queue = new PriorityBlockingQueue<>(11, WorkHolder.PRIORITY_ORDER);
+        } else {
+            queue = new ReentrantLinkedBlockingQueue<>(capacity);
+        }
     }
 
     @Override
@@ -155,12 +175,34 @@ public class MemoryBlockingQueue extends NuxeoBlockingQueue {
         return r;
     }
 
+    @Override
+    public Runnable pollWork() {
+        Runnable r = poll();
+        if (r != null && isRunning(WorkHolder.getWork(r).getId())) {
+            // reschedule the work so it does not run concurrently, other queues are looked at meanwhile
+            offer(new WorkHolder(WorkHolder.getWork(r)));
+            return null;
+        }
+        return r;
+    }
+
+    synchronized boolean isRunning(String workId) {
+        return runningWorks.contains(workId);
+    }
+
+    @Override
+    public int getNextPriority() {
+        Runnable r = queue.peek();
+        return r == null ? Work.DEFAULT_PRIORITY : WorkHolder.getWork(r).getPriority();
+    }
+
     @Override
     public Runnable take() throws InterruptedException {
         Runnable r = queue.take();
         if (anotherWorkIsAlreadyRunning(r)) {
-            // reschedule the work so it does not run concurrently
-            offer(r);
+            // reschedule the work so it does not run concurrently, with a new holder so that it goes after the works
+            // of the same priority instead of staying at the head of a prioritized queue
+            offer(new WorkHolder(WorkHolder.getWork(r)));
             // take a break we don't want to take too much CPU looping on the same message.
             Thread.sleep(100);
             return null;
@@ -40,17 +40,33 @@ public class MemoryWorkQueuing implements WorkQueuing {
 
     protected Listener listener;
 
+    /**
+     * Whether the unbounded queues are ordered by work priority, only done when the shared pool is used.
+     *
+     * @since 9.2
+     */
+    protected boolean prioritized;
+
     public MemoryWorkQueuing(Listener listener) {
         this.listener = listener;
     }
 
+    /**
+     * Orders the unbounded queues initialized afterwards by work priority.
+     *
+     * @since 9.2
+     */
+    public void setPrioritized(boolean prioritized) {
+        this.prioritized = prioritized;
+    }
+
     @Override
     public MemoryBlockingQueue init(WorkQueueDescriptor config) {
         int capacity = config.getCapacity();
         if (capacity <= 0) {
             capacity = -1; // unbounded
         }
-        MemoryBlockingQueue queue = new MemoryBlockingQueue(config.id, this, capacity);
+        MemoryBlockingQueue queue = new MemoryBlockingQueue(config.id, this, capacity, prioritized);
         allQueued.put(queue.queueId, queue);
         return queue;
     }
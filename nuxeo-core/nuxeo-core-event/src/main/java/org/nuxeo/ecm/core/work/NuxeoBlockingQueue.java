@@ -26,6 +26,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
+import org.nuxeo.ecm.core.work.api.Work;
 import org.nuxeo.ecm.core.work.api.WorkQueueMetrics;
 
 /**
@@ -209,6 +210,26 @@ public abstract class NuxeoBlockingQueue extends AbstractQueue<Runnable> impleme
         return maxElements;
     }
 
+    /**
+     * Retrieves and removes the next work to run, or returns null if there is none, without waiting. Used by the
+     * threads shared between queues.
+     *
+     * @since 9.2
+     */
+    public Runnable pollWork() {
+        return poll();
+    }
+
+    /**
+     * Gets the priority of the work that would be taken next from the queue, if known.
+     *
+     * @return the priority, or {@link Work#DEFAULT_PRIORITY} if the queue is empty or the priority is unknown
+     * @since 9.2
+     */
+    public int getNextPriority() {
+        return Work.DEFAULT_PRIORITY;
+    }
+
     /**
      * Gets the size of the queue.
      */
@@ -18,7 +18,9 @@
  */
 package org.nuxeo.ecm.core.work;
 
+import java.util.Comparator;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.nuxeo.ecm.core.work.api.Work;
 import org.nuxeo.runtime.trackers.concurrent.ThreadEvent;
@@ -37,10 +39,23 @@ import org.nuxeo.runtime.trackers.concurrent.ThreadEvent;
  */
 public class WorkHolder implements Runnable {
 
+    /**
+     * Orders holders by decreasing {@link Work#getPriority priority}, then in the order they were created.
+     *
+     * @since 9.2
+     */
+    public static final Comparator<Runnable> PRIORITY_ORDER = Comparator.comparingInt(
+            (Runnable r) -> -getWork(r).getPriority()).thenComparingLong(r -> ((WorkHolder) r).sequence);
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
     private final Work work;
 
+    private final long sequence;
+
     public WorkHolder(Work work) {
         this.work = work;
+        sequence = SEQUENCE.incrementAndGet();
     }
 
     public static Work getWork(Runnable r) {
@@ -19,6 +19,7 @@
  */
 package org.nuxeo.ecm.core.work;
 
+import java.lang.Thread.UncaughtExceptionHandler;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
@@ -29,6 +30,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -66,6 +68,7 @@ import org.nuxeo.runtime.model.DefaultComponent;
 import org.nuxeo.runtime.transaction.TransactionHelper;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SharedMetricRegistries;
 import com.codahale.metrics.Timer;
@@ -92,6 +95,24 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
 
     protected static final String THREAD_PREFIX = "Nuxeo-Work-";
 
+    /**
+     * Framework property setting the number of threads shared between all queues. When not set, each queue has its
+     * own {@link WorkQueueDescriptor#getMaxThreads max threads}.
+     *
+     * @since 9.2
+     */
+    public static final String SHARED_POOL_MAX_THREADS_PROP = "nuxeo.work.sharedPool.maxThreads";
+
+    /**
+     * Stack size of the worker threads of lightweight queues when the JVM doesn't provide virtual threads.
+     *
+     * @since 9.2
+     */
+    public static final long LIGHTWEIGHT_STACK_SIZE = 256 * 1024;
+
+    protected static final UncaughtExceptionHandler UNCAUGHT_EXCEPTION_HANDLER = (t, e) -> LogFactory.getLog(
+            WorkManagerImpl.class).error("Uncaught error on thread " + t.getName(), e);
+
     protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
 
     // @GuardedBy("itself")
@@ -104,6 +125,13 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
 
     protected WorkQueuing queuing;
 
+    /**
+     * The threads shared between queues, or {@code null} if each queue has its own threads.
+     *
+     * @since 9.2
+     */
+    protected WorkSharedPool sharedPool;
+
     /**
      * Simple synchronizer to wake up when an in-JVM work is completed. Does not wake up on work completion from another
      * node in cluster mode.
@@ -206,10 +234,31 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
             throw new IllegalStateException("work queue " + config.id + " already have an executor");
         }
         NuxeoBlockingQueue queue = queuing.init(config);
-        ThreadFactory threadFactory = new NamedThreadFactory(THREAD_PREFIX + config.id + "-");
-        int maxPoolSize = config.getMaxThreads();
+        String prefix = THREAD_PREFIX + config.id + "-";
+        ThreadFactory threadFactory;
+        int maxPoolSize;
+        if (config.isLightweight()) {
+            // cheap threads, not counted in the shared pool
+            threadFactory = newLightweightThreadFactory(prefix);
+            maxPoolSize = config.getMaxThreads();
+        } else if (sharedPool == null) {
+            threadFactory = new NamedThreadFactory(prefix, 0);
+            maxPoolSize = config.getMaxThreads();
+        } else {
+            // the work is run by the shared threads, the executor has no thread of its own
+            WorkThreadPoolExecutor executor = new WorkThreadPoolExecutor(0, 1, 0, TimeUnit.SECONDS, queue,
+                    new NamedThreadFactory(prefix, 0), 1, false);
+            executors.put(config.id, executor);
+            // the queue may use all the shared threads when other queues are idle
+            int maxRunning = config.maxConcurrency == null ? sharedPool.getMaxThreads() : config.getMaxConcurrency();
+            sharedPool.addQueue(config.id, config.getWeight(), maxRunning, queue, executor::runShared);
+            log.info("Initialized work queue " + config.id + " " + config.toEffectiveString());
+            return;
+        }
+        // only limit the concurrency below the number of threads if explicitly configured
+        int maxConcurrency = config.maxConcurrency == null ? maxPoolSize : config.getMaxConcurrency();
         WorkThreadPoolExecutor executor = new WorkThreadPoolExecutor(maxPoolSize, maxPoolSize, 0, TimeUnit.SECONDS,
-                queue, threadFactory);
+                queue, threadFactory, maxConcurrency, config.isLightweight());
         // prestart all core threads so that direct additions to the queue
         // (from another Nuxeo instance) can be seen
         executor.prestartAllCoreThreads();
@@ -354,11 +403,19 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
             }
             queuing = newWorkQueuing(workQueuingConfig.klass);
             completionSynchronizer = new WorkCompletionSynchronizer();
+            sharedPool = newSharedPool();
+            if (sharedPool != null && queuing instanceof MemoryWorkQueuing) {
+                // priorities are only used with the shared pool
+                ((MemoryWorkQueuing) queuing).setPrioritized(true);
+            }
             started = true;
             workQueueConfig.index();
             for (String id : workQueueConfig.getQueueIds()) {
                 initializeQueue(workQueueConfig.get(id));
             }
+            if (sharedPool != null) {
+                sharedPool.start(new NamedThreadFactory(THREAD_PREFIX + "shared-", 0));
+            }
             Framework.addListener(new RuntimeServiceListener() {
 
                 @Override
@@ -379,6 +436,46 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
         }
     }
 
+    protected WorkSharedPool newSharedPool() {
+        String value = Framework.getProperty(SHARED_POOL_MAX_THREADS_PROP);
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        int maxThreads;
+        try {
+            maxThreads = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            log.error("Invalid " + SHARED_POOL_MAX_THREADS_PROP + ": " + value + ", using per-queue threads");
+            return null;
+        }
+        if (maxThreads <= 0) {
+            return null;
+        }
+        log.info("Using " + maxThreads + " worker threads shared between all queues");
+        return new WorkSharedPool(maxThreads);
+    }
+
+    /**
+     * Creates a thread factory for a lightweight queue: virtual threads when the JVM provides them, otherwise platform
+     * threads with a small stack.
+     *
+     * @since 9.2
+     */
+    protected ThreadFactory newLightweightThreadFactory(String prefix) {
+        try {
+            // Java 21 API, called by reflection as we're compiled for Java 8
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, Long.valueOf(1));
+            builder = builderClass.getMethod("uncaughtExceptionHandler", UncaughtExceptionHandler.class)
+                                  .invoke(builder, UNCAUGHT_EXCEPTION_HANDLER);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("No virtual threads, using platform threads for " + prefix, e);
+            return new NamedThreadFactory(prefix, LIGHTWEIGHT_STACK_SIZE);
+        }
+    }
+
     protected WorkThreadPoolExecutor getExecutor(String queueId) {
         if (!started) {
             if (Framework.isTestModeSet() && !Framework.getRuntime().isShuttingDown()) {
@@ -439,7 +536,13 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
     public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
         shutdownInProgress = true;
         try {
-            return shutdownExecutors(new ArrayList<>(executors.values()), timeout, unit);
+            long t0 = System.currentTimeMillis();
+            boolean terminated = shutdownExecutors(new ArrayList<>(executors.values()), timeout, unit);
+            if (sharedPool != null) {
+                long remaining = remainingMillis(t0, TimeUnit.MILLISECONDS.convert(timeout, unit));
+                terminated = sharedPool.shutdown(remaining, TimeUnit.MILLISECONDS) && terminated;
+            }
+            return terminated;
         } finally {
             shutdownInProgress = false;
             started = false;
@@ -479,7 +582,7 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
     }
 
     /**
-     * Creates non-daemon threads at normal priority.
+     * Creates non-daemon threads at normal priority, with the given stack size (0 for the JVM default).
      */
     private static class NamedThreadFactory implements ThreadFactory {
 
@@ -489,20 +592,22 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
 
         private final String prefix;
 
-        public NamedThreadFactory(String prefix) {
+        private final long stackSize;
+
+        public NamedThreadFactory(String prefix, long stackSize) {
             SecurityManager sm = System.getSecurityManager();
             group = sm == null ? Thread.currentThread().getThreadGroup() : sm.getThreadGroup();
             this.prefix = prefix;
+            this.stackSize = stackSize;
         }
 
         @Override
         public Thread newThread(Runnable r) {
             String name = prefix + threadNumber.incrementAndGet();
-            Thread thread = new Thread(group, r, name);
+            Thread thread = new Thread(group, r, name, stackSize);
             // do not set daemon
             thread.setPriority(Thread.NORM_PRIORITY);
-            thread.setUncaughtExceptionHandler((t, e) -> LogFactory.getLog(WorkManagerImpl.class)
-                    .error("Uncaught error on thread " + t.getName(), e));
+            thread.setUncaughtExceptionHandler(UNCAUGHT_EXCEPTION_HANDLER);
             return thread;
         }
     }
@@ -539,16 +644,49 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
 
         protected final Timer workTimer;
 
+        // Time between scheduling and start of the work instances
+        protected final Timer waitTimer;
+
+        // Rate of completion of the work instances
+        protected final Meter completedMeter;
+
+        /**
+         * Limits the number of work instances running at the same time, when lower than the number of threads.
+         *
+         * @since 9.2
+         */
+        protected final Semaphore concurrencyLimiter;
+
+        /**
+         * Whether the threads are lightweight ones, which don't use slots of the shared pool.
+         *
+         * @since 9.2
+         */
+        protected final boolean lightweight;
+
         protected WorkThreadPoolExecutor(int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit,
                 NuxeoBlockingQueue queue, ThreadFactory threadFactory) {
+            this(corePoolSize, maximumPoolSize, keepAliveTime, unit, queue, threadFactory, maximumPoolSize, false);
+        }
+
+        /**
+         * @since 9.2
+         */
+        protected WorkThreadPoolExecutor(int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit,
+                NuxeoBlockingQueue queue, ThreadFactory threadFactory, int maxConcurrency, boolean lightweight) {
             super(corePoolSize, maximumPoolSize, keepAliveTime, unit, queue, threadFactory);
             queueId = queue.queueId;
             running = new ConcurrentLinkedQueue<>();
+            concurrencyLimiter = maxConcurrency > 0 && maxConcurrency < maximumPoolSize
+                    ? new Semaphore(maxConcurrency, true) : null;
+            this.lightweight = lightweight;
             // init metrics
             scheduledCount = registry.counter(MetricRegistry.name("nuxeo", "works", queueId, "scheduled", "count"));
             runningCount = registry.counter(MetricRegistry.name("nuxeo", "works", queueId, "running"));
             completedCount = registry.counter(MetricRegistry.name("nuxeo", "works", queueId, "completed"));
             workTimer = registry.timer(MetricRegistry.name("nuxeo", "works", queueId, "total"));
+            waitTimer = registry.timer(MetricRegistry.name("nuxeo", "works", queueId, "wait"));
+            completedMeter = registry.meter(MetricRegistry.name("nuxeo", "works", queueId, "throughput"));
         }
 
         public int getScheduledOrRunningSize() {
@@ -592,6 +730,26 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
                 queuing.workReschedule(queueId, work);
                 throw new RejectedExecutionException(queueId + " was shutdown, rescheduled " + work);
             }
+            // the work stays scheduled while waiting for a slot
+            boolean limited = false;
+            try {
+                if (concurrencyLimiter != null) {
+                    concurrencyLimiter.acquire();
+                    limited = true;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (limited) {
+                    concurrencyLimiter.release();
+                }
+                work.setWorkInstanceState(State.SCHEDULED);
+                queuing.workReschedule(queueId, work);
+                throw new RejectedExecutionException(queueId + " was interrupted, rescheduled " + work);
+            }
+            long schedulingTime = work.getSchedulingTime();
+            if (schedulingTime > 0) {
+                waitTimer.update(System.currentTimeMillis() - schedulingTime, TimeUnit.MILLISECONDS);
+            }
             work.setWorkInstanceState(State.RUNNING);
             queuing.workRunning(queueId, work);
             running.add(work);
@@ -615,14 +773,57 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
                 work.setWorkInstanceState(State.UNKNOWN);
                 queuing.workCompleted(queueId, work);
             } finally {
+                if (concurrencyLimiter != null) {
+                    concurrencyLimiter.release();
+                }
                 running.remove(work);
                 runningCount.dec();
                 completedCount.inc();
+                completedMeter.mark();
                 workTimer.update(work.getCompletionTime() - work.getStartTime(), TimeUnit.MILLISECONDS);
                 completionSynchronizer.signalCompletedWork();
             }
         }
 
+        protected boolean usesSharedPool() {
+            return sharedPool != null && !lightweight;
+        }
+
+        /**
+         * Runs a work taken from the queue by a thread shared between queues, with the same hooks as the threads of
+         * this executor.
+         *
+         * @since 9.2
+         */
+        protected void runShared(Runnable r) {
+            beforeExecute(Thread.currentThread(), r);
+            Throwable thrown = null;
+            try {
+                r.run();
+            } catch (RuntimeException | Error e) {
+                thrown = e;
+                throw e;
+            } finally {
+                afterExecute(r, thrown);
+            }
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            if (!super.awaitTermination(timeout, unit)) {
+                return false;
+            }
+            // work run by the shared threads
+            while (!running.isEmpty()) {
+                if (System.nanoTime() >= deadline) {
+                    return false;
+                }
+                Thread.sleep(10);
+            }
+            return true;
+        }
+
         /**
          * Initiates a shutdown of this executor and asks for work instances to suspend themselves.
          *
@@ -641,6 +842,9 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
                 }
                 shutdownNow();
             } finally {
+                if (usesSharedPool()) {
+                    sharedPool.removeQueue(queueId);
+                }
                 executors.remove(queueId);
             }
         }
@@ -700,6 +904,9 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
 
         }
         queuing.workSchedule(queueId, work);
+        if (sharedPool != null) {
+            sharedPool.signalWork();
+        }
     }
 
     /**
@@ -790,7 +997,13 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
 
     @Override
     public WorkQueueMetrics getMetrics(String queueId) {
-        return queuing.metrics(queueId);
+        WorkQueueMetrics metrics = queuing.metrics(queueId);
+        WorkThreadPoolExecutor executor = executors.get(queueId);
+        if (executor == null) {
+            return metrics;
+        }
+        double waitTime = executor.waitTimer.getSnapshot().getMean() / TimeUnit.MILLISECONDS.toNanos(1);
+        return metrics.withRates(executor.completedMeter.getOneMinuteRate(), waitTime);
     }
 
     @Override
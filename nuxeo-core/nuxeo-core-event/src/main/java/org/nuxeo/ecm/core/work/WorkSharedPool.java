@@ -0,0 +1,319 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.work;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A fixed number of worker threads shared between all the work queues.
+ * <p>
+ * Each thread takes the next work instance from the queues itself, so that work stays in its queue until a thread is
+ * free to run it. Threads are not reserved: a queue with no work doesn't use any, so a busy queue can use the threads
+ * left by idle queues.
+ * <p>
+ * The queue from which the next work is taken is chosen in this order:
+ * <ol>
+ * <li>a queue that uses less than its fair share, which is the total number of threads divided between the queues
+ * according to their weight,</li>
+ * <li>the queue whose next work has the highest {@link org.nuxeo.ecm.core.work.api.Work#getPriority priority},</li>
+ * <li>the queue using the smallest part of its fair share,</li>
+ * <li>the queue that was served the longest ago.</li>
+ * </ol>
+ *
+ * @since 9.2
+ */
+public class WorkSharedPool {
+
+    private static final Log log = LogFactory.getLog(WorkSharedPool.class);
+
+    /** Delay after which idle threads look again at the queues, for work added by other nodes. */
+    protected static final long IDLE_POLL_MILLIS = 1000;
+
+    protected static class SharedQueue {
+
+        protected final String queueId;
+
+        protected final int weight;
+
+        protected final int maxRunning;
+
+        protected final NuxeoBlockingQueue queue;
+
+        protected final Consumer<Runnable> runner;
+
+        protected int running;
+
+        protected long lastServed;
+
+        protected SharedQueue(String queueId, int weight, int maxRunning, NuxeoBlockingQueue queue,
+                Consumer<Runnable> runner) {
+            this.queueId = queueId;
+            this.weight = Math.max(weight, 1);
+            this.maxRunning = maxRunning;
+            this.queue = queue;
+            this.runner = runner;
+        }
+    }
+
+    /** A work taken from a queue, to be run by a shared thread. */
+    protected static class Task {
+
+        protected final SharedQueue queue;
+
+        protected final Runnable runnable;
+
+        protected Task(SharedQueue queue, Runnable runnable) {
+            this.queue = queue;
+            this.runnable = runnable;
+        }
+    }
+
+    protected final int maxThreads;
+
+    protected final ReentrantLock lock = new ReentrantLock();
+
+    protected final Condition workAvailable = lock.newCondition();
+
+    // @GuardedBy("lock")
+    protected final Map<String, SharedQueue> queues = new LinkedHashMap<>();
+
+    // @GuardedBy("lock")
+    protected int totalWeight;
+
+    // @GuardedBy("lock")
+    protected long served;
+
+    protected final List<Thread> threads = new ArrayList<>();
+
+    protected volatile boolean stopped;
+
+    public WorkSharedPool(int maxThreads) {
+        if (maxThreads < 1) {
+            throw new IllegalArgumentException("Invalid max threads: " + maxThreads);
+        }
+        this.maxThreads = maxThreads;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    /**
+     * Registers a queue whose work is run by the shared threads.
+     *
+     * @param queueId the queue id
+     * @param weight the weight of the queue
+     * @param maxRunning the maximum number of work instances of this queue running at the same time
+     * @param queue the queue from which work is taken
+     * @param runner runs a work taken from the queue
+     */
+    public void addQueue(String queueId, int weight, int maxRunning, NuxeoBlockingQueue queue,
+            Consumer<Runnable> runner) {
+        lock.lock();
+        try {
+            SharedQueue sq = new SharedQueue(queueId, weight, maxRunning, queue, runner);
+            SharedQueue old = queues.put(queueId, sq);
+            totalWeight += sq.weight - (old == null ? 0 : old.weight);
+            workAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Unregisters a queue, its work is not taken anymore.
+     */
+    public void removeQueue(String queueId) {
+        lock.lock();
+        try {
+            SharedQueue old = queues.remove(queueId);
+            if (old != null) {
+                totalWeight -= old.weight;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of work instances currently running for a queue.
+     */
+    public int getRunning(String queueId) {
+        lock.lock();
+        try {
+            SharedQueue sq = queues.get(queueId);
+            return sq == null ? 0 : sq.running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts the shared threads.
+     */
+    public synchronized void start(ThreadFactory threadFactory) {
+        for (int i = 0; i < maxThreads; i++) {
+            Thread thread = threadFactory.newThread(this::runWorker);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the shared threads, interrupting the ones still running a work after the timeout.
+     *
+     * @return {@code true} if all the threads stopped
+     */
+    public synchronized boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        stopped = true;
+        lock.lock();
+        try {
+            workAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        boolean terminated = true;
+        for (Thread thread : threads) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (millis > 0) {
+                thread.join(millis);
+            }
+            if (thread.isAlive()) {
+                thread.interrupt();
+                terminated = false;
+            }
+        }
+        threads.clear();
+        return terminated;
+    }
+
+    /**
+     * Notifies the idle threads that work was added to a queue.
+     */
+    public void signalWork() {
+        lock.lock();
+        try {
+            workAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    protected void runWorker() {
+        while (!stopped) {
+            Task task;
+            lock.lock();
+            try {
+                task = next();
+                if (task == null) {
+                    workAvailable.await(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                task.queue.runner.accept(task.runnable);
+            } catch (RuntimeException e) {
+                // the work was rescheduled if its queue is shutting down
+                log.debug("Work not run: " + task.runnable, e);
+            } finally {
+                release(task.queue);
+            }
+        }
+    }
+
+    /**
+     * Takes the next work to run from the queues, following the order of the queues described in the class
+     * documentation.
+     *
+     * @return the next work, or {@code null} if there is no work to run
+     */
+    // @GuardedBy("lock")
+    protected Task next() {
+        List<SharedQueue> candidates = new ArrayList<>(queues.size());
+        for (SharedQueue sq : queues.values()) {
+            if (sq.running < sq.maxRunning) {
+                candidates.add(sq);
+            }
+        }
+        candidates.sort(this::compare);
+        for (SharedQueue sq : candidates) {
+            Runnable r = sq.queue.pollWork();
+            if (r != null) {
+                sq.running++;
+                sq.lastServed = ++served;
+                return new Task(sq, r);
+            }
+        }
+        return null;
+    }
+
+    protected void release(SharedQueue sq) {
+        lock.lock();
+        try {
+            sq.running--;
+            // a slot for the queue is free, which may have work left
+            workAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    protected boolean isBelowFairShare(SharedQueue sq) {
+        // running < maxThreads * weight / totalWeight
+        return (long) sq.running * Math.max(totalWeight, 1) < (long) maxThreads * sq.weight;
+    }
+
+    /**
+     * Compares two queues, the one from which work must be taken first being the smallest.
+     */
+    protected int compare(SharedQueue a, SharedQueue b) {
+        boolean aBelow = isBelowFairShare(a);
+        boolean bBelow = isBelowFairShare(b);
+        if (aBelow != bBelow) {
+            return aBelow ? -1 : 1;
+        }
+        int aPriority = a.queue.getNextPriority();
+        int bPriority = b.queue.getNextPriority();
+        if (aPriority != bPriority) {
+            return aPriority > bPriority ? -1 : 1;
+        }
+        // running / weight, compared without division
+        long aUsage = (long) a.running * b.weight;
+        long bUsage = (long) b.running * a.weight;
+        if (aUsage != bUsage) {
+            return aUsage < bUsage ? -1 : 1;
+        }
+        return Long.compare(a.lastServed, b.lastServed);
+    }
+
+}
@@ -375,4 +375,24 @@ public interface Work extends Serializable {
      */
     void setSchedulePath(WorkSchedulePath path);
 
+    /**
+     * The default priority of a {@link Work} instance.
+     *
+     * @since 9.2
+     */
+    int DEFAULT_PRIORITY = 0;
+
+    /**
+     * Gets the priority of this work instance.
+     * <p>
+     * When the shared worker pool is enabled, work instances with a higher priority are taken first from an unbounded
+     * in-memory queue, and are given a thread first when the pool is saturated. Otherwise the priority is ignored.
+     *
+     * @return the priority, {@link #DEFAULT_PRIORITY} by default
+     * @since 9.2
+     */
+    default int getPriority() {
+        return DEFAULT_PRIORITY;
+    }
+
 }
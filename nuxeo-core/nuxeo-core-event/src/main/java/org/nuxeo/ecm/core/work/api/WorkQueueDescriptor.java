@@ -42,6 +42,21 @@ public class WorkQueueDescriptor {
 
     public static final int DEFAULT_CAPACITY = -1;
 
+    /**
+     * Execution mode where each worker is a platform thread.
+     *
+     * @since 9.2
+     */
+    public static final String EXECUTION_MODE_THREADS = "threads";
+
+    /**
+     * Execution mode where workers are virtual threads, or platform threads with a small stack when the JVM doesn't
+     * provide virtual threads. Meant for work instances mostly blocked on I/O.
+     *
+     * @since 9.2
+     */
+    public static final String EXECUTION_MODE_LIGHTWEIGHT = "lightweight";
+
     @XNode("@id")
     public String id;
 
@@ -75,6 +90,48 @@ public class WorkQueueDescriptor {
         return maxThreads == null ? DEFAULT_MAX_THREADS : maxThreads.intValue();
     }
 
+    /**
+     * The weight of this queue when the worker threads are shared between queues. Defaults to the max threads.
+     *
+     * @since 9.2
+     */
+    @XNode("weight")
+    public Integer weight;
+
+    public int getWeight() {
+        return weight == null ? getMaxThreads() : weight.intValue();
+    }
+
+    /**
+     * The execution mode of the worker threads, {@value #EXECUTION_MODE_THREADS} (the default) or
+     * {@value #EXECUTION_MODE_LIGHTWEIGHT}.
+     *
+     * @since 9.2
+     */
+    @XNode("executionMode")
+    public String executionMode;
+
+    public String getExecutionMode() {
+        return executionMode == null ? EXECUTION_MODE_THREADS : executionMode.trim();
+    }
+
+    public boolean isLightweight() {
+        return EXECUTION_MODE_LIGHTWEIGHT.equals(getExecutionMode());
+    }
+
+    /**
+     * The maximum number of work instances of this queue running at the same time, independently of the number of
+     * worker threads. When not specified, the concurrency is only limited by the number of threads.
+     *
+     * @since 9.2
+     */
+    @XNode("maxConcurrency")
+    public Integer maxConcurrency;
+
+    public int getMaxConcurrency() {
+        return maxConcurrency == null ? getMaxThreads() : maxConcurrency.intValue();
+    }
+
     @XNodeList(value = "category", type = HashSet.class, componentType = String.class)
     public Set<String> categories = Collections.emptySet();
 
@@ -99,6 +156,9 @@ public class WorkQueueDescriptor {
         o.processing = processing;
         o.name = name;
         o.maxThreads = maxThreads;
+        o.weight = weight;
+        o.executionMode = executionMode;
+        o.maxConcurrency = maxConcurrency;
         o.capacity = capacity;
         o.categories = new HashSet<String>(categories);
         return o;
@@ -117,6 +177,15 @@ public class WorkQueueDescriptor {
         if (other.maxThreads != null) {
             maxThreads = other.maxThreads;
         }
+        if (other.weight != null) {
+            weight = other.weight;
+        }
+        if (other.executionMode != null) {
+            executionMode = other.executionMode;
+        }
+        if (other.maxConcurrency != null) {
+            maxConcurrency = other.maxConcurrency;
+        }
         if (other.capacity != null) {
             capacity = other.capacity;
         }
@@ -142,6 +211,18 @@ public class WorkQueueDescriptor {
             buf.append(" maxThreads=");
             buf.append(maxThreads);
         }
+        if (weight != null) {
+            buf.append(" weight=");
+            buf.append(weight);
+        }
+        if (executionMode != null) {
+            buf.append(" executionMode=");
+            buf.append(executionMode);
+        }
+        if (maxConcurrency != null) {
+            buf.append(" maxConcurrency=");
+            buf.append(maxConcurrency);
+        }
         if (capacity != null) {
             buf.append(" capacity=");
             buf.append(capacity);
@@ -162,6 +243,12 @@ public class WorkQueueDescriptor {
         buf.append(isProcessingEnabled());
         buf.append(" maxThreads=");
         buf.append(getMaxThreads());
+        buf.append(" weight=");
+        buf.append(getWeight());
+        buf.append(" executionMode=");
+        buf.append(getExecutionMode());
+        buf.append(" maxConcurrency=");
+        buf.append(getMaxConcurrency());
         buf.append(" capacity=");
         buf.append(getCapacity());
         buf.append(" clearCompletedAfterSeconds=");
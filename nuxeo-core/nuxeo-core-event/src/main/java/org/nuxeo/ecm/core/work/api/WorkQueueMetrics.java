@@ -37,12 +37,45 @@ public class WorkQueueMetrics implements Serializable {
 
     public final Number canceled;
 
+    /**
+     * Completed work instances per second on this instance, averaged over the last minute.
+     *
+     * @since 9.2
+     */
+    public final Number throughput;
+
+    /**
+     * Mean time in milliseconds between the scheduling and the start of work instances on this instance.
+     *
+     * @since 9.2
+     */
+    public final Number waitTime;
+
     public WorkQueueMetrics(String queueId, Number scheduled, Number running, Number completed, Number canceled) {
+        this(queueId, scheduled, running, completed, canceled, 0, 0);
+    }
+
+    /**
+     * @since 9.2
+     */
+    public WorkQueueMetrics(String queueId, Number scheduled, Number running, Number completed, Number canceled,
+            Number throughput, Number waitTime) {
         this.queueId = queueId;
         this.scheduled = scheduled;
         this.running = running;
         this.completed = completed;
         this.canceled = canceled;
+        this.throughput = throughput;
+        this.waitTime = waitTime;
+    }
+
+    /**
+     * Returns a copy of these metrics with the given throughput and wait time.
+     *
+     * @since 9.2
+     */
+    public WorkQueueMetrics withRates(Number throughput, Number waitTime) {
+        return new WorkQueueMetrics(queueId, scheduled, running, completed, canceled, throughput, waitTime);
     }
 
     @Override
@@ -84,6 +117,7 @@ public class WorkQueueMetrics implements Serializable {
         if (canceled.longValue() != other.canceled.longValue()) {
             return false;
         }
+        // throughput and wait time are local statistics, not compared
         return true;
     }
 
@@ -123,4 +157,18 @@ public class WorkQueueMetrics implements Serializable {
     public Number getCanceled() {
         return canceled;
     }
+
+    /**
+     * @since 9.2
+     */
+    public Number getThroughput() {
+        return throughput;
+    }
+
+    /**
+     * @since 9.2
+     */
+    public Number getWaitTime() {
+        return waitTime;
+    }
 }
\ No newline at end of file
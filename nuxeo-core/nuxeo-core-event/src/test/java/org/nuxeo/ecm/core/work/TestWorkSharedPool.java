@@ -0,0 +1,178 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.work;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.work.WorkSharedPool.Task;
+
+public class TestWorkSharedPool {
+
+    protected static class PriorityWork extends AbstractWork {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final int priority;
+
+        protected PriorityWork(String id, int priority) {
+            super(id);
+            this.priority = priority;
+        }
+
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+
+        @Override
+        public String getTitle() {
+            return getId();
+        }
+
+        @Override
+        public void work() {
+        }
+    }
+
+    protected static MemoryBlockingQueue newQueue(String queueId) {
+        MemoryBlockingQueue queue = new MemoryBlockingQueue(queueId, null, -1, true);
+        queue.setActive(true);
+        return queue;
+    }
+
+    protected static void schedule(MemoryBlockingQueue queue, String id, int priority) {
+        queue.offer(new WorkHolder(new PriorityWork(id, priority)));
+    }
+
+    /**
+     * Takes the next work as a shared thread would, without running it.
+     */
+    protected static Task next(WorkSharedPool pool) {
+        pool.lock.lock();
+        try {
+            return pool.next();
+        } finally {
+            pool.lock.unlock();
+        }
+    }
+
+    protected static String nextId(WorkSharedPool pool) {
+        Task task = next(pool);
+        return task == null ? null : WorkHolder.getWork(task.runnable).getId();
+    }
+
+    @Test
+    public void testIdleQueueThreadsAreUsed() {
+        WorkSharedPool pool = new WorkSharedPool(4);
+        MemoryBlockingQueue a = newQueue("a");
+        pool.addQueue("a", 1, 4, a, Runnable::run);
+        pool.addQueue("b", 3, 4, newQueue("b"), Runnable::run);
+        for (int i = 0; i < 5; i++) {
+            schedule(a, "a" + i, 0);
+        }
+        // queue b is idle, queue a can use all the threads
+        for (int i = 0; i < 4; i++) {
+            assertEquals("a" + i, nextId(pool));
+        }
+        assertEquals(4, pool.getRunning("a"));
+        // but no more than its max running
+        assertNull(next(pool));
+        assertEquals(1, a.getQueueSize());
+    }
+
+    @Test
+    public void testFairShareBeforePriority() {
+        WorkSharedPool pool = new WorkSharedPool(2);
+        MemoryBlockingQueue a = newQueue("a");
+        MemoryBlockingQueue b = newQueue("b");
+        pool.addQueue("a", 1, 2, a, Runnable::run);
+        pool.addQueue("b", 1, 2, b, Runnable::run);
+        schedule(a, "a1", 0);
+        schedule(a, "a2", 0);
+        Task task = next(pool);
+        assertEquals("a1", WorkHolder.getWork(task.runnable).getId());
+        schedule(a, "a3", 10);
+        schedule(b, "b1", 0);
+        // b is below its fair share, it goes first even with a lower priority
+        assertEquals("b1", nextId(pool));
+        pool.release(task.queue);
+        assertEquals("a3", nextId(pool));
+        assertEquals(1, pool.getRunning("a"));
+        assertEquals(1, pool.getRunning("b"));
+    }
+
+    @Test
+    public void testPriority() {
+        WorkSharedPool pool = new WorkSharedPool(1);
+        MemoryBlockingQueue a = newQueue("a");
+        MemoryBlockingQueue b = newQueue("b");
+        pool.addQueue("a", 1, 1, a, Runnable::run);
+        pool.addQueue("b", 1, 1, b, Runnable::run);
+        schedule(a, "a1", 0);
+        schedule(a, "a2", 0);
+        Task task = next(pool);
+        assertEquals("a1", WorkHolder.getWork(task.runnable).getId());
+        // the only thread is busy, b1 waits in its queue
+        schedule(b, "b1", 5);
+        assertNull(next(pool));
+        pool.release(task.queue);
+        task = next(pool);
+        assertEquals("b1", WorkHolder.getWork(task.runnable).getId());
+        pool.release(task.queue);
+        assertEquals("a2", nextId(pool));
+    }
+
+    @Test
+    public void testSharedThreadsRunWork() throws Exception {
+        WorkSharedPool pool = new WorkSharedPool(2);
+        MemoryBlockingQueue a = newQueue("a");
+        MemoryBlockingQueue b = newQueue("b");
+        List<String> ran = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(4);
+        pool.addQueue("a", 1, 2, a, r -> {
+            ran.add(WorkHolder.getWork(r).getId());
+            done.countDown();
+        });
+        pool.addQueue("b", 1, 2, b, r -> {
+            ran.add(WorkHolder.getWork(r).getId());
+            done.countDown();
+        });
+        pool.start(Executors.defaultThreadFactory());
+        try {
+            schedule(a, "a1", 0);
+            schedule(a, "a2", 0);
+            schedule(b, "b1", 0);
+            schedule(b, "b2", 0);
+            pool.signalWork();
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        } finally {
+            assertTrue(pool.shutdown(10, TimeUnit.SECONDS));
+        }
+        assertEquals(4, ran.size());
+        assertEquals(0, pool.getRunning("a"));
+        assertEquals(0, pool.getRunning("b"));
+    }
+
+}
@@ -223,6 +223,27 @@ public class WorkManagerTest extends NXRuntimeTestCase {
         assertEquals(Collections.emptyList(), service.listWorkIds(QUEUE, null));
     }
 
+    @Test
+    public void testLightweightQueueConcurrency() throws Exception {
+        deployAndStart();
+        String queueId = "LightweightSleepWork";
+        WorkQueueDescriptor qd = service.getWorkQueueDescriptor(queueId);
+        assertTrue(qd.isLightweight());
+        assertEquals(8, qd.getMaxThreads());
+        assertEquals(2, qd.getMaxConcurrency());
+
+        int duration = 3000; // ms
+        for (int i = 0; i < 3; i++) {
+            service.schedule(new SleepWork(duration, queueId, false, "lw" + i));
+        }
+        Thread.sleep(duration / 2);
+        // the limiter keeps the third work scheduled even if threads are available
+        assertEquals(new WorkQueueMetrics(queueId, 1, 2, 0, 0), service.getMetrics(queueId));
+
+        assertTrue(service.awaitCompletion(duration * 3, TimeUnit.MILLISECONDS));
+        assertEquals(new WorkQueueMetrics(queueId, 0, 0, 3, 0), service.getMetrics(queueId));
+    }
+
     public void testDuplicatedWorks() throws Exception {
         deployAndStart();
         int duration = 2000; // 2s
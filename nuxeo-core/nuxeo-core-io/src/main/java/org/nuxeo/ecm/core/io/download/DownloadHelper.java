@@ -19,6 +19,8 @@
 package org.nuxeo.ecm.core.io.download;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -38,6 +40,13 @@ public class DownloadHelper {
 
     public static final String INLINE = "inline";
 
+    /**
+     * Maximum number of ranges accepted in a multiple byte ranges request.
+     *
+     * @since 9.2
+     */
+    public static final int MAX_RANGES = 32;
+
     // tomcat catalina
     private static final String CLIENT_ABORT_EXCEPTION = "ClientAbortException";
 
@@ -54,33 +63,66 @@ public class DownloadHelper {
      * @param range the byte range as a string
      * @param length the file length
      * @return the byte range, or {@code null} if it couldn't be parsed.
+     * @see #parseRanges
      */
     public static ByteRange parseRange(String range, long length) {
-        try {
-            // TODO does no support multiple ranges
-            if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+        if (range.indexOf(',') >= 0) {
+            // multiple ranges
+            return null;
+        }
+        List<ByteRange> byteRanges = parseRanges(range, length);
+        return byteRanges == null ? null : byteRanges.get(0);
+    }
+
+    /**
+     * Parses a list of byte ranges.
+     *
+     * @param range the byte ranges as a string
+     * @param length the file length
+     * @return the byte ranges, or {@code null} if they couldn't be parsed.
+     * @since 9.2
+     */
+    public static List<ByteRange> parseRanges(String range, long length) {
+        if (!range.startsWith("bytes=")) {
+            return null;
+        }
+        String[] specs = range.substring(6).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<ByteRange> byteRanges = new ArrayList<>(specs.length);
+        for (String spec : specs) {
+            ByteRange byteRange = parseRangeSpec(spec.trim(), length);
+            if (byteRange == null) {
                 return null;
             }
-            int i = range.indexOf('-', 6);
+            byteRanges.add(byteRange);
+        }
+        return byteRanges;
+    }
+
+    protected static ByteRange parseRangeSpec(String spec, long length) {
+        try {
+            int i = spec.indexOf('-');
             if (i < 0) {
                 return null;
             }
-            String start = range.substring(6, i).trim();
-            String end = range.substring(i + 1).trim();
+            String start = spec.substring(0, i).trim();
+            String end = spec.substring(i + 1).trim();
             long rangeStart = 0;
             long rangeEnd = length - 1;
             if (start.isEmpty()) {
                 if (end.isEmpty()) {
                     return null;
                 }
-                rangeStart = length - Integer.parseInt(end);
+                rangeStart = length - Long.parseLong(end);
                 if (rangeStart < 0) {
                     rangeStart = 0;
                 }
             } else {
-                rangeStart = Integer.parseInt(start);
+                rangeStart = Long.parseLong(start);
                 if (!end.isEmpty()) {
-                    rangeEnd = Integer.parseInt(end);
+                    rangeEnd = Math.min(Long.parseLong(end), length - 1);
                 }
             }
             if (rangeStart > rangeEnd) {
@@ -19,6 +19,7 @@
  */
 package org.nuxeo.ecm.core.io.download;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -26,6 +27,12 @@ import java.io.Serializable;
 import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -66,7 +73,15 @@ import org.nuxeo.ecm.core.api.blobholder.BlobHolder;
 import org.nuxeo.ecm.core.api.event.CoreEventConstants;
 import org.nuxeo.ecm.core.api.local.ClientLoginModule;
 import org.nuxeo.ecm.core.api.model.PropertyNotFoundException;
+import org.nuxeo.ecm.core.blob.BlobManager;
 import org.nuxeo.ecm.core.blob.BlobManager.UsageHint;
+import org.nuxeo.ecm.core.blob.BlobProvider;
+import org.nuxeo.ecm.core.blob.ManagedBlob;
+import org.nuxeo.ecm.core.blob.binary.AESBinaryManager;
+import org.nuxeo.ecm.core.blob.binary.BinaryBlobProvider;
+import org.nuxeo.ecm.core.blob.binary.BinaryManager;
+import org.nuxeo.ecm.core.blob.binary.CachingBinaryManager;
+import org.nuxeo.ecm.core.blob.binary.LocalBinaryManager;
 import org.nuxeo.ecm.core.event.Event;
 import org.nuxeo.ecm.core.event.EventContext;
 import org.nuxeo.ecm.core.event.EventService;
@@ -97,6 +112,30 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
 
     private static final String FORCE_NO_CACHE_ON_MSIE = "org.nuxeo.download.force.nocache.msie";
 
+    /**
+     * Framework property to disable the delegation of file transfers to the servlet container.
+     *
+     * @since 9.2
+     */
+    public static final String SENDFILE_PROP = "org.nuxeo.download.sendfile";
+
+    /**
+     * Files smaller than this are copied by the application, as the container does for its own static files.
+     *
+     * @since 9.2
+     */
+    protected static final long SENDFILE_MIN_SIZE = 48 * 1024; // 48 KB
+
+    // tomcat request attributes used to delegate the transfer of a file to the connector
+
+    protected static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+
+    protected static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+
+    protected static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+
+    protected static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
     private static final String XP = "permissions";
 
     private static final String REDIRECT_RESOLVER = "redirectResolver";
@@ -425,7 +464,7 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
         }
         final Blob fblob = blob;
         downloadBlob(request, response, doc, xpath, blob, filename, reason, extendedInfos, inline,
-                byteRange -> transferBlobWithByteRange(fblob, byteRange, response));
+                byteRange -> transferBlobWithByteRange(fblob, byteRange, request, response));
     }
 
     @Override
@@ -497,31 +536,36 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
             }
             String contentDisposition = DownloadHelper.getRFC2231ContentDisposition(request, filename, inline);
             response.setHeader("Content-Disposition", contentDisposition);
-            response.setContentType(blob.getMimeType());
-            if (blob.getEncoding() != null) {
-                response.setCharacterEncoding(blob.getEncoding());
-            }
 
             long length = blob.getLength();
             response.setHeader("Accept-Ranges", "bytes");
             String range = request.getHeader("Range");
-            ByteRange byteRange;
+            List<ByteRange> byteRanges;
             if (StringUtils.isBlank(range)) {
-                byteRange = null;
+                byteRanges = null;
             } else {
-                byteRange = DownloadHelper.parseRange(range, length);
-                if (byteRange == null) {
+                byteRanges = DownloadHelper.parseRanges(range, length);
+                if (byteRanges == null) {
                     log.error("Invalid byte range received: " + range);
-                } else {
-                    response.setHeader("Content-Range", "bytes " + byteRange.getStart() + "-" + byteRange.getEnd()
-                            + "/" + length);
-                    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
                 }
             }
-            long contentLength = byteRange == null ? length : byteRange.getLength();
-            if (contentLength < Integer.MAX_VALUE) {
-                response.setContentLength((int) contentLength);
+            if (byteRanges != null && byteRanges.size() > 1) {
+                logDownload(doc, xpath, filename, reason, extendedInfos);
+                transferMultipleByteRanges(response, blob.getMimeType(), length, byteRanges, blobTransferer);
+                return;
+            }
+
+            response.setContentType(blob.getMimeType());
+            if (blob.getEncoding() != null) {
+                response.setCharacterEncoding(blob.getEncoding());
+            }
+            ByteRange byteRange = byteRanges == null ? null : byteRanges.get(0);
+            if (byteRange != null) {
+                response.setHeader("Content-Range",
+                        "bytes " + byteRange.getStart() + "-" + byteRange.getEnd() + "/" + length);
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
             }
+            setContentLength(response, byteRange == null ? length : byteRange.getLength());
 
             logDownload(doc, xpath, filename, reason, extendedInfos);
 
@@ -534,6 +578,130 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
         }
     }
 
+    protected void setContentLength(HttpServletResponse response, long contentLength) {
+        if (contentLength < Integer.MAX_VALUE) {
+            response.setContentLength((int) contentLength);
+        } else {
+            response.setHeader("Content-Length", Long.toString(contentLength));
+        }
+    }
+
+    /**
+     * Sends several byte ranges of a blob as a {@code multipart/byteranges} response.
+     *
+     * @since 9.2
+     */
+    protected void transferMultipleByteRanges(HttpServletResponse response, String mimeType, long length,
+            List<ByteRange> byteRanges, Consumer<ByteRange> blobTransferer) throws IOException {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> partHeaders = new ArrayList<>(byteRanges.size());
+        long contentLength = 0;
+        for (ByteRange byteRange : byteRanges) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("\r\n--").append(boundary).append("\r\n");
+            if (mimeType != null) {
+                sb.append("Content-Type: ").append(mimeType).append("\r\n");
+            }
+            sb.append("Content-Range: bytes ").append(byteRange.getStart()).append('-').append(byteRange.getEnd());
+            sb.append('/').append(length).append("\r\n\r\n");
+            byte[] partHeader = sb.toString().getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + byteRange.getLength();
+        }
+        byte[] end = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += end.length;
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        setContentLength(response, contentLength);
+        @SuppressWarnings("resource")
+        OutputStream out = response.getOutputStream(); // not ours to close
+        BufferingServletOutputStream.stopBuffering(out);
+        for (int i = 0; i < byteRanges.size(); i++) {
+            out.write(partHeaders.get(i));
+            // the response is now committed, so the container won't be asked to send the file itself
+            out.flush();
+            blobTransferer.accept(byteRanges.get(i));
+        }
+        out.write(end);
+        out.flush();
+    }
+
+    /**
+     * Transfers a blob to the response, delegating the transfer to the servlet container if possible.
+     *
+     * @since 9.2
+     */
+    protected void transferBlobWithByteRange(Blob blob, ByteRange byteRange, HttpServletRequest request,
+            HttpServletResponse response) throws UncheckedIOException {
+        if (!sendfile(blob, byteRange, request, response)) {
+            transferBlobWithByteRange(blob, byteRange, response);
+        }
+    }
+
+    /**
+     * Asks the servlet container to send the file of a blob itself, which allows it to use the operating system's
+     * {@code sendfile} without copying the data through the JVM.
+     * <p>
+     * This is only done when nothing has been sent yet, for blobs whose file is stored by a local binary manager, see
+     * {@link #getStoredFile}.
+     *
+     * @return {@code true} if the container will send the file
+     * @since 9.2
+     */
+    protected boolean sendfile(Blob blob, ByteRange byteRange, HttpServletRequest request,
+            HttpServletResponse response) {
+        if (!Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))
+                || Framework.isBooleanPropertyFalse(SENDFILE_PROP)
+                || !(blob instanceof ManagedBlob) || response.isCommitted()) {
+            return false;
+        }
+        long length = byteRange == null ? blob.getLength() : byteRange.getLength();
+        if (length < SENDFILE_MIN_SIZE) {
+            return false;
+        }
+        File file = getStoredFile((ManagedBlob) blob);
+        if (file == null) {
+            return false;
+        }
+        long start = byteRange == null ? 0 : byteRange.getStart();
+        request.setAttribute(SENDFILE_FILENAME_ATTR, file.getAbsolutePath());
+        request.setAttribute(SENDFILE_START_ATTR, Long.valueOf(start));
+        request.setAttribute(SENDFILE_END_ATTR, Long.valueOf(start + length));
+        return true;
+    }
+
+    /**
+     * Gets the file of a managed blob if it's the file stored by a {@link LocalBinaryManager}, which still exists once
+     * the request is finished.
+     * <p>
+     * Other binary managers may return temporary files, like the decrypted file of an {@link AESBinaryManager} or a
+     * file of the cache of a {@link CachingBinaryManager}, which can be deleted before the container sends it.
+     *
+     * @return the stored file, or {@code null} if the blob is not stored as a file by a local binary manager
+     * @since 9.2
+     */
+    protected File getStoredFile(ManagedBlob blob) {
+        BlobProvider blobProvider = Framework.getService(BlobManager.class).getBlobProvider(blob.getProviderId());
+        if (!(blobProvider instanceof BinaryBlobProvider)) {
+            return null;
+        }
+        BinaryManager binaryManager = ((BinaryBlobProvider) blobProvider).getBinaryManager();
+        if (!(binaryManager instanceof LocalBinaryManager)) {
+            return null;
+        }
+        File file = blob.getFile();
+        if (file == null) {
+            return null;
+        }
+        // an AESBinaryManager stores encrypted files, and returns a decrypted temporary file
+        Path storageDir = ((LocalBinaryManager) binaryManager).getStorageDir().toPath().toAbsolutePath().normalize();
+        if (!file.toPath().toAbsolutePath().normalize().startsWith(storageDir)) {
+            return null;
+        }
+        return file;
+    }
+
     protected void transferBlobWithByteRange(Blob blob, ByteRange byteRange, HttpServletResponse response)
             throws UncheckedIOException {
         transferBlobWithByteRange(blob, byteRange, () -> {
@@ -553,14 +721,21 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
     @Override
     public void transferBlobWithByteRange(Blob blob, ByteRange byteRange, Supplier<OutputStream> outputStreamSupplier)
             throws UncheckedIOException {
-        try (InputStream in = blob.getStream()) {
+        try {
             @SuppressWarnings("resource")
             OutputStream out = outputStreamSupplier.get(); // not ours to close
             BufferingServletOutputStream.stopBuffering(out);
-            if (byteRange == null) {
-                IOUtils.copy(in, out);
+            File file = blob.getFile();
+            if (file != null) {
+                transferFile(file, byteRange, out);
             } else {
-                IOUtils.copyLarge(in, out, byteRange.getStart(), byteRange.getLength());
+                try (InputStream in = blob.getStream()) {
+                    if (byteRange == null) {
+                        IOUtils.copy(in, out);
+                    } else {
+                        IOUtils.copyLarge(in, out, byteRange.getStart(), byteRange.getLength());
+                    }
+                }
             }
             out.flush();
         } catch (IOException e) {
@@ -568,6 +743,31 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
         }
     }
 
+    /**
+     * Copies a file, or a byte range of it, using {@link FileChannel#transferTo}.
+     * <p>
+     * The output stream is wrapped in a channel, which still copies the data through a small heap buffer allocated for
+     * each transfer.
+     *
+     * @since 9.2
+     */
+    protected void transferFile(File file, ByteRange byteRange, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long position = byteRange == null ? 0 : byteRange.getStart();
+            long count = byteRange == null ? channel.size() : byteRange.getLength();
+            WritableByteChannel target = Channels.newChannel(out);
+            while (count > 0) {
+                long n = channel.transferTo(position, count, target);
+                if (n <= 0) {
+                    // end of file
+                    break;
+                }
+                position += n;
+                count -= n;
+            }
+        }
+    }
+
     protected String fixXPath(String xpath) {
         // Hack for Flash Url wich doesn't support ':' char
         return xpath == null ? null : xpath.replace(';', ':');
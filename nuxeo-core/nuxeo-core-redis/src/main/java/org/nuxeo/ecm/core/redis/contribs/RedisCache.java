@@ -26,6 +26,12 @@ import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -40,6 +46,7 @@ import org.nuxeo.ecm.core.redis.RedisExecutor;
 import org.nuxeo.runtime.api.Framework;
 
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
 
 /**
  * Cache implementation on top of Redis
@@ -173,6 +180,81 @@ public class RedisCache extends AbstractCache {
         }).booleanValue();
     }
 
+    @Override
+    public Map<String, Serializable> getAll(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return new HashMap<>();
+        }
+        List<String> keyList = new ArrayList<>(keys);
+        byte[][] bkeys = new byte[keyList.size()][];
+        for (int i = 0; i < bkeys.length; i++) {
+            bkeys[i] = bytes(formatKey(keyList.get(i)));
+        }
+        // a single round trip
+        List<byte[]> bvalues = executor.execute(new RedisCallable<List<byte[]>>() {
+            @Override
+            public List<byte[]> call(Jedis jedis) {
+                return jedis.mget(bkeys);
+            }
+        });
+        Map<String, Serializable> values = new HashMap<>();
+        for (int i = 0; i < bkeys.length; i++) {
+            try {
+                Serializable value = deserializeValue(bvalues.get(i));
+                if (value != null) {
+                    values.put(keyList.get(i), value);
+                }
+            } catch (IOException e) {
+                log.error(e);
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void putAll(Map<String, ? extends Serializable> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        // serialize before getting a connection
+        Map<byte[], byte[]> bentries = new HashMap<>();
+        for (Entry<String, ? extends Serializable> en : entries.entrySet()) {
+            try {
+                bentries.put(bytes(formatKey(en.getKey())), serializeValue(en.getValue()));
+            } catch (IOException e) {
+                throw new NuxeoException(e);
+            }
+        }
+        executor.execute(new RedisCallable<Void>() {
+            @Override
+            public Void call(Jedis jedis) {
+                // Redis set in second ttl but descriptor set as mn
+                int ttlKey = ttl * 60;
+                Pipeline pipeline = jedis.pipelined();
+                for (Entry<byte[], byte[]> en : bentries.entrySet()) {
+                    pipeline.setex(en.getKey(), ttlKey, en.getValue());
+                }
+                pipeline.sync();
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void invalidateAll(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        String[] rkeys = keys.stream().map(this::formatKey).toArray(String[]::new);
+        executor.execute(new RedisCallable<Void>() {
+            @Override
+            public Void call(Jedis jedis) {
+                jedis.del(rkeys);
+                return null;
+            }
+        });
+    }
+
     /**
      * Too expensive to evaluate the # keys redis side, should monitor redis itself
      * @return -1L
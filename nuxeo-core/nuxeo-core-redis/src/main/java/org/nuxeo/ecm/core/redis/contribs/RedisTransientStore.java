@@ -346,7 +346,7 @@ public class RedisTransientStore extends AbstractTransientStore {
             // Decrement storage size
             String size = summary.get(SIZE_KEY);
             if (size != null) {
-                long entrySize = Integer.parseInt(size);
+                long entrySize = Long.parseLong(size);
                 if (entrySize > 0) {
                     decrementStorageSize(entrySize);
                 }
@@ -482,6 +482,20 @@ public class RedisTransientStore extends AbstractTransientStore {
         });
     }
 
+    @Override
+    protected void incrementEntrySize(String key, long size) {
+        redisExecutor.execute((RedisCallable<Void>) jedis -> {
+            Long incremented = jedis.hincrBy(namespace + key, SIZE_KEY, size);
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Incremented field \"%s\" of Redis hash stored at key %s to %d", SIZE_KEY,
+                        namespace + key, incremented));
+            }
+            jedis.expire(namespace + key, firstLevelTTL);
+            return null;
+        });
+        incrementStorageSize(size);
+    }
+
     @Override
     protected long decrementStorageSize(final long size) {
         return redisExecutor.execute((RedisCallable<Long>) jedis -> {
@@ -32,6 +32,7 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
@@ -48,6 +49,7 @@ import org.nuxeo.ecm.core.storage.FulltextConfiguration;
 import org.nuxeo.ecm.core.storage.State;
 import org.nuxeo.ecm.core.storage.State.StateDiff;
 import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.ChangeTokenUpdater;
+import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.StateUpdate;
 import org.nuxeo.runtime.metrics.MetricsService;
 
 import com.codahale.metrics.MetricRegistry;
@@ -219,6 +221,16 @@ public class DBSCachingRepository implements DBSRepository {
         invalidate(id);
     }
 
+    @Override
+    public void updateStates(List<StateUpdate> updates) {
+        try {
+            repository.updateStates(updates);
+        } finally {
+            // some updates may have been applied even on conflict
+            invalidateAll(updates.stream().map(update -> update.id).collect(Collectors.toList()));
+        }
+    }
+
     @Override
     public void deleteStates(Set<String> ids) {
         repository.deleteStates(ids);
@@ -23,6 +23,7 @@ import static java.lang.Boolean.TRUE;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ACL;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ACL_NAME;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ACP;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ANCESTOR_IDS;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ID;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_MIXIN_TYPES;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_NAME;
@@ -40,7 +41,9 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.math.NumberUtils;
@@ -51,11 +54,13 @@ import org.nuxeo.ecm.core.query.sql.NXQL;
 import org.nuxeo.ecm.core.query.sql.model.Expression;
 import org.nuxeo.ecm.core.query.sql.model.MultiExpression;
 import org.nuxeo.ecm.core.query.sql.model.Operand;
+import org.nuxeo.ecm.core.query.sql.model.Operator;
 import org.nuxeo.ecm.core.query.sql.model.OrderByClause;
 import org.nuxeo.ecm.core.query.sql.model.OrderByExpr;
 import org.nuxeo.ecm.core.query.sql.model.Reference;
 import org.nuxeo.ecm.core.query.sql.model.SelectClause;
 import org.nuxeo.ecm.core.query.sql.model.SelectList;
+import org.nuxeo.ecm.core.query.sql.model.StringLiteral;
 import org.nuxeo.ecm.core.schema.DocumentType;
 import org.nuxeo.ecm.core.schema.SchemaManager;
 import org.nuxeo.ecm.core.schema.types.ComplexType;
@@ -249,6 +254,26 @@ public class DBSExpressionEvaluator extends ExpressionEvaluator {
         }
     }
 
+    /**
+     * Path resolver remembering resolved paths, so that a path is resolved only once per query, during parsing.
+     *
+     * @since 9.2
+     */
+    protected static class CachingPathResolver implements PathResolver {
+        protected final PathResolver pathResolver;
+
+        protected final Map<String, Optional<String>> cache = new ConcurrentHashMap<>();
+
+        public CachingPathResolver(PathResolver pathResolver) {
+            this.pathResolver = pathResolver;
+        }
+
+        @Override
+        public String getIdForPath(String path) {
+            return cache.computeIfAbsent(path, p -> Optional.ofNullable(pathResolver.getIdForPath(p))).orElse(null);
+        }
+    }
+
     /** For each encountered reference in traversal order, the corresponding value info. */
     protected List<ValueInfo> referenceValueInfos;
 
@@ -278,12 +303,42 @@ public class DBSExpressionEvaluator extends ExpressionEvaluator {
 
     public DBSExpressionEvaluator(DBSSession session, SelectClause selectClause, Expression expression,
             OrderByClause orderByClause, String[] principals, boolean fulltextSearchDisabled) {
-        super(new DBSPathResolver(session), principals, fulltextSearchDisabled);
+        super(new CachingPathResolver(new DBSPathResolver(session)), principals, fulltextSearchDisabled);
         this.selectClause = selectClause;
         this.expression = expression;
         this.orderByClause = orderByClause;
     }
 
+    /**
+     * Copy constructor, see {@link #copy}.
+     *
+     * @since 9.2
+     */
+    protected DBSExpressionEvaluator(DBSExpressionEvaluator other) {
+        super(other.pathResolver,
+                other.principals == null ? null : other.principals.toArray(new String[other.principals.size()]),
+                other.fulltextSearchDisabled);
+        selectClause = other.selectClause;
+        expression = other.expression;
+        orderByClause = other.orderByClause;
+    }
+
+    /**
+     * Creates a new parsed evaluator for the same query.
+     * <p>
+     * An evaluator keeps per-document state while matching and cannot be used concurrently, but several copies can
+     * evaluate documents in different threads. This evaluator must already have been parsed, so that the paths used by
+     * the query have been resolved and are shared by the copies without having to access the session again.
+     *
+     * @return the new evaluator
+     * @since 9.2
+     */
+    public DBSExpressionEvaluator copy() {
+        DBSExpressionEvaluator copy = new DBSExpressionEvaluator(this);
+        copy.parse();
+        return copy;
+    }
+
     public SelectClause getSelectClause() {
         return selectClause;
     }
@@ -342,6 +397,84 @@ public class DBSExpressionEvaluator extends ExpressionEvaluator {
         Collections.reverse(allIterInfos);
     }
 
+    /**
+     * Gets the equality conditions on the given keys that any document matching the expression must satisfy.
+     * <p>
+     * Only the direct terms of the toplevel AND are considered: {@code key = 'value'}, {@code ecm:ancestorId = 'id'}
+     * and {@code ecm:path STARTSWITH '/path'} (the last two as conditions on {@code ecm:ancestorIds}). A repository can
+     * use them to restrict the candidate documents through an index, the full expression still has to be evaluated on
+     * each candidate.
+     *
+     * @param keys the internal keys for which conditions are wanted
+     * @return a map of internal key to required value, a {@code null} value meaning that no document can match
+     * @since 9.2
+     */
+    public Map<String, Object> getEqualityConditions(Set<String> keys) {
+        Map<String, Object> conditions = new HashMap<>();
+        collectEqualityConditions(expression, keys, conditions);
+        return conditions;
+    }
+
+    protected void collectEqualityConditions(Operand operand, Set<String> keys, Map<String, Object> conditions) {
+        if (!(operand instanceof Expression)) {
+            return;
+        }
+        Expression expr = (Expression) operand;
+        if (expr.operator == Operator.AND) {
+            if (expr instanceof MultiExpression) {
+                for (Operand op : ((MultiExpression) expr).values) {
+                    collectEqualityConditions(op, keys, conditions);
+                }
+            } else {
+                collectEqualityConditions(expr.lvalue, keys, conditions);
+                collectEqualityConditions(expr.rvalue, keys, conditions);
+            }
+            return;
+        }
+        if (!(expr.lvalue instanceof Reference) || !(expr.rvalue instanceof StringLiteral)) {
+            return;
+        }
+        Reference ref = (Reference) expr.lvalue;
+        String name = ref.name;
+        String value = ((StringLiteral) expr.rvalue).value;
+        if (ref.cast != null || name.contains("/")) {
+            return;
+        }
+        String key;
+        Object keyValue;
+        if (expr.operator == Operator.STARTSWITH) {
+            if (!NXQL.ECM_PATH.equals(name)) {
+                return;
+            }
+            if (value.length() > 1 && value.endsWith("/")) {
+                value = value.substring(0, value.length() - 1);
+            }
+            key = KEY_ANCESTOR_IDS;
+            keyValue = pathResolver.getIdForPath(value);
+        } else if (expr.operator == Operator.EQ) {
+            if (name.startsWith(NXQL.ECM_PREFIX)) {
+                if (NXQL.ECM_PATH.equals(name) || NXQL.ECM_MIXINTYPE.equals(name)
+                        || name.startsWith(NXQL.ECM_FULLTEXT)) {
+                    // not a direct comparison with a stored value
+                    return;
+                }
+                try {
+                    key = DBSSession.convToInternal(name);
+                } catch (QueryParseException | UnsupportedOperationException e) {
+                    return;
+                }
+            } else {
+                key = name;
+            }
+            keyValue = value;
+        } else {
+            return;
+        }
+        if (keys.contains(key) && !conditions.containsKey(key)) {
+            conditions.put(key, keyValue);
+        }
+    }
+
     /**
      * Returns the projection matches for a given state.
      */
@@ -19,10 +19,12 @@
 package org.nuxeo.ecm.core.storage.dbs;
 
 import java.io.Serializable;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.nuxeo.ecm.core.api.ConcurrentUpdateException;
 import org.nuxeo.ecm.core.api.PartialList;
 import org.nuxeo.ecm.core.api.ScrollResult;
 import org.nuxeo.ecm.core.blob.BlobManager;
@@ -33,6 +35,7 @@ import org.nuxeo.ecm.core.storage.FulltextConfiguration;
 import org.nuxeo.ecm.core.storage.State;
 import org.nuxeo.ecm.core.storage.State.StateDiff;
 import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.ChangeTokenUpdater;
+import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.StateUpdate;
 
 /**
  * Interface for a {@link Repository} for Document-Based Storage.
@@ -129,6 +132,31 @@ public interface DBSRepository extends Repository, LockManager {
      */
     void updateState(String id, StateDiff diff, ChangeTokenUpdater changeTokenUpdater);
 
+    /**
+     * Updates several documents.
+     * <p>
+     * All the updates are attempted even if some of them fail because of a concurrent update (change token mismatch
+     * or missing document). In that case a single {@link ConcurrentUpdateException} is thrown at the end, whose
+     * message is the comma-separated list of the ids of the documents that could not be updated.
+     *
+     * @param updates the updates to apply
+     * @throws ConcurrentUpdateException if some documents could not be updated
+     * @since 9.2
+     */
+    default void updateStates(List<StateUpdate> updates) {
+        Set<String> conflicts = new LinkedHashSet<>();
+        for (StateUpdate update : updates) {
+            try {
+                updateState(update.id, update.diff, update.changeTokenUpdater);
+            } catch (ConcurrentUpdateException e) {
+                conflicts.add(update.id);
+            }
+        }
+        if (!conflicts.isEmpty()) {
+            throw new ConcurrentUpdateException(String.join(", ", conflicts));
+        }
+    }
+
     /**
      * Deletes a set of document.
      *
@@ -584,6 +584,8 @@ public class DBSTransactionState {
         if (!statesToCreate.isEmpty()) {
             repository.createStates(statesToCreate);
         }
+        List<StateUpdate> statesToUpdate = new ArrayList<>();
+        List<DBSDocumentState> updatedDocStates = new ArrayList<>();
         for (DBSDocumentState docState : transientStates.values()) {
             String id = docState.getId();
             if (transientCreated.contains(id)) {
@@ -603,10 +605,17 @@ public class DBSTransactionState {
                 } else {
                     changeTokenUpdater = null;
                 }
-                repository.updateState(id, diff, changeTokenUpdater);
+                statesToUpdate.add(new StateUpdate(id, diff, changeTokenUpdater));
+                // marked not dirty only after the update, as the change token updater writes into the state
+                updatedDocStates.add(docState);
+            } else {
+                docState.setNotDirty();
             }
-            docState.setNotDirty();
         }
+        if (!statesToUpdate.isEmpty()) {
+            repository.updateStates(statesToUpdate);
+        }
+        updatedDocStates.forEach(DBSDocumentState::setNotDirty);
         transientCreated.clear();
         scheduleWork(works);
     }
@@ -660,6 +669,32 @@ public class DBSTransactionState {
         }
     }
 
+    /**
+     * An update to apply to a document, as passed to {@link DBSRepository#updateStates}.
+     *
+     * @since 9.2
+     */
+    public static class StateUpdate {
+
+        public final String id;
+
+        public final StateDiff diff;
+
+        /** How to get and update the change token (may be {@code null}). */
+        public final ChangeTokenUpdater changeTokenUpdater;
+
+        public StateUpdate(String id, StateDiff diff, ChangeTokenUpdater changeTokenUpdater) {
+            this.id = id;
+            this.diff = diff;
+            this.changeTokenUpdater = changeTokenUpdater;
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + '(' + id + ',' + diff + ')';
+        }
+    }
+
     protected void applyUndoLog() {
         Set<String> deletes = new HashSet<>();
         for (Entry<String, State> es : undoLog.entrySet()) {
@@ -26,6 +26,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -172,4 +173,20 @@ public class TestDBSExpressionEvaluator extends NXRuntimeTestCase {
                 projections);
     }
 
+    @Test
+    public void testEqualityConditions() throws Exception {
+        SQLQuery query = SQLQueryParser.parse("SELECT ecm:uuid FROM D WHERE " //
+                + "ecm:parentId = 'p1' AND (ecm:name = 'n1' OR ecm:name = 'n2') AND ecm:ancestorId = 'a1'"
+                + " AND dc:title = 'foo' AND ecm:proxyTargetId <> 't1'");
+        DBSExpressionEvaluator evaluator = new DBSExpressionEvaluator(null, query.getSelectClause(),
+                query.getWhereClause().predicate, null, null, false);
+        Map<String, Object> conditions = evaluator.getEqualityConditions(new HashSet<>(
+                Arrays.asList("ecm:parentId", "ecm:name", "ecm:ancestorIds", "ecm:proxyTargetId", "dc:title")));
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("ecm:parentId", "p1");
+        expected.put("ecm:ancestorIds", "a1");
+        expected.put("dc:title", "foo");
+        assertEquals(expected, conditions);
+    }
+
 }
@@ -0,0 +1,130 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.storage.mem;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.nuxeo.ecm.core.storage.State;
+
+/**
+ * Hash index of the states of a {@link MemRepository} on one key, or on a tuple of keys.
+ * <p>
+ * For an index on a single key whose value is an array or a list, each element of the value is indexed. For an index on
+ * several keys, the indexed value is the list of the values of the keys, and states where one of the values is
+ * {@code null} are not indexed.
+ *
+ * @since 9.2
+ */
+public class MemIndex {
+
+    protected final List<String> keys;
+
+    /** Indexed value -> ids of the states having this value. */
+    protected final Map<Object, Set<String>> index = new ConcurrentHashMap<>();
+
+    public MemIndex(String... keys) {
+        this.keys = Arrays.asList(keys);
+    }
+
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    /**
+     * Checks if this index depends on one of the given keys.
+     */
+    public boolean isIndexing(Collection<String> stateKeys) {
+        for (String key : keys) {
+            if (stateKeys.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the ids of the states having the given indexed value.
+     * <p>
+     * For an index on several keys, the value is the list of the values of the keys.
+     */
+    public Set<String> get(Object value) {
+        Set<String> ids = index.get(value);
+        return ids == null ? Collections.emptySet() : ids;
+    }
+
+    public void add(String id, State state) {
+        for (Object value : getIndexedValues(state)) {
+            index.compute(value, (k, ids) -> {
+                if (ids == null) {
+                    ids = ConcurrentHashMap.newKeySet();
+                }
+                ids.add(id);
+                return ids;
+            });
+        }
+    }
+
+    public void remove(String id, State state) {
+        for (Object value : getIndexedValues(state)) {
+            index.computeIfPresent(value, (k, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    public void clear() {
+        index.clear();
+    }
+
+    protected Collection<Object> getIndexedValues(State state) {
+        if (keys.size() == 1) {
+            Serializable value = state.get(keys.get(0));
+            if (value == null) {
+                return Collections.emptyList();
+            } else if (value instanceof Object[]) {
+                return Arrays.asList((Object[]) value);
+            } else if (value instanceof List) {
+                return new ArrayList<>((List<?>) value);
+            } else {
+                return Collections.singletonList(value);
+            }
+        }
+        List<Object> values = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            Serializable value = state.get(key);
+            if (value == null) {
+                return Collections.emptyList();
+            }
+            values.add(value);
+        }
+        return Collections.singletonList(values);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + keys;
+    }
+
+}
@@ -21,6 +21,7 @@ package org.nuxeo.ecm.core.storage.mem;
 import static java.lang.Boolean.TRUE;
 import static org.nuxeo.ecm.core.query.sql.NXQL.ECM_UUID;
 import static org.nuxeo.ecm.core.storage.State.NOP;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ANCESTOR_IDS;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_BLOB_DATA;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ID;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_IS_PROXY;
@@ -36,16 +37,24 @@ import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 import javax.resource.spi.ConnectionManager;
 
@@ -90,6 +99,9 @@ public class MemRepository extends DBSRepositoryBase {
 
     protected static final String NOSCROLL_ID = "noscroll";
 
+    /** Number of states under which a query is evaluated in a single thread. */
+    protected static final int PARALLEL_THRESHOLD = 10000;
+
     // for debug
     private final AtomicLong temporaryIdCounter = new AtomicLong(0);
 
@@ -98,11 +110,45 @@ public class MemRepository extends DBSRepositoryBase {
      */
     protected Map<String, State> states;
 
+    /**
+     * Index on parent id and name, for child lookups.
+     *
+     * @since 9.2
+     */
+    protected MemIndex childIndex;
+
+    /**
+     * Indexes on single keys, key -> index.
+     *
+     * @since 9.2
+     */
+    protected Map<String, MemIndex> keyIndexes;
+
+    /**
+     * All the indexes.
+     *
+     * @since 9.2
+     */
+    protected List<MemIndex> indexes;
+
     public MemRepository(ConnectionManager cm, MemRepositoryDescriptor descriptor) {
         super(cm, descriptor.name, descriptor);
+        initIndexes(descriptor);
         initRepository();
     }
 
+    protected void initIndexes(MemRepositoryDescriptor descriptor) {
+        childIndex = new MemIndex(KEY_PARENT_ID, KEY_NAME);
+        keyIndexes = new HashMap<>();
+        Set<String> keys = new LinkedHashSet<>(Arrays.asList(KEY_PARENT_ID, KEY_ANCESTOR_IDS, KEY_PROXY_TARGET_ID));
+        keys.addAll(descriptor.indexedKeys);
+        for (String key : keys) {
+            keyIndexes.put(key, new MemIndex(key));
+        }
+        indexes = new ArrayList<>(keyIndexes.values());
+        indexes.add(childIndex);
+    }
+
     @Override
     public List<IdType> getAllowedIdTypes() {
         return Collections.singletonList(IdType.varchar);
@@ -112,6 +158,7 @@ public class MemRepository extends DBSRepositoryBase {
     public void shutdown() {
         super.shutdown();
         states = null;
+        indexes.forEach(MemIndex::clear);
     }
 
     protected void initRepository() {
@@ -160,6 +207,9 @@ public class MemRepository extends DBSRepositoryBase {
         state = StateHelper.deepCopy(state, true); // thread-safe
         StateHelper.resetDeltas(state);
         states.put(id, state);
+        for (MemIndex index : indexes) {
+            index.add(id, state);
+        }
     }
 
     @Override
@@ -183,8 +233,94 @@ public class MemRepository extends DBSRepositoryBase {
                     applyDiff(state, en.getKey(), en.getValue());
                 }
             }
+            List<MemIndex> changedIndexes = getIndexes(diff.keySet());
+            for (MemIndex index : changedIndexes) {
+                index.remove(id, state);
+            }
             applyDiff(state, diff);
+            for (MemIndex index : changedIndexes) {
+                index.add(id, state);
+            }
+        }
+    }
+
+    /**
+     * Gets the indexes depending on some of the given keys.
+     */
+    protected List<MemIndex> getIndexes(Collection<String> keys) {
+        List<MemIndex> list = new ArrayList<>(1);
+        for (MemIndex index : indexes) {
+            if (index.isIndexing(keys)) {
+                list.add(index);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Gets the states whose ids are in the given set, skipping ignored ones.
+     */
+    protected List<State> getStates(Set<String> ids, Set<String> ignored) {
+        List<State> list = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            if (ignored.contains(id)) {
+                continue;
+            }
+            State state = states.get(id);
+            if (state != null) {
+                list.add(state);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Gets the candidate states having the given value for a key, using an index if there is one on the key. The
+     * caller must still check the value.
+     *
+     * @since 9.2
+     */
+    protected Collection<State> getStates(String key, Object value, Set<String> ignored) {
+        MemIndex index = keyIndexes.get(key);
+        if (index != null) {
+            return getStates(index.get(value), ignored);
+        }
+        List<State> list = new ArrayList<>();
+        for (State state : states.values()) {
+            if (!ignored.contains(state.get(KEY_ID))) {
+                list.add(state);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Gets the candidate states for a query: if the query has an equality condition on an indexed key, only the
+     * states found in the smallest such index are returned, otherwise all states are returned.
+     *
+     * @since 9.2
+     */
+    protected Collection<State> getCandidateStates(DBSExpressionEvaluator evaluator) {
+        Map<String, Object> conditions = evaluator.getEqualityConditions(keyIndexes.keySet());
+        if (conditions.isEmpty()) {
+            return states.values();
+        }
+        Set<String> best = null;
+        for (Entry<String, Object> en : conditions.entrySet()) {
+            Object value = en.getValue();
+            if (value == null) {
+                // nothing can match
+                return Collections.emptyList();
+            }
+            Set<String> ids = keyIndexes.get(en.getKey()).get(value);
+            if (best == null || ids.size() < best.size()) {
+                best = ids;
+            }
+        }
+        if (log.isTraceEnabled()) {
+            log.trace("Mem:    -> using index, " + best.size() + " candidates");
         }
+        return getStates(best, Collections.emptySet());
     }
 
     @Override
@@ -193,26 +329,27 @@ public class MemRepository extends DBSRepositoryBase {
             log.trace("Mem: REMOVE " + ids);
         }
         for (String id : ids) {
-            if (states.remove(id) == null) {
+            State state = states.remove(id);
+            if (state == null) {
                 log.debug("Missing on remove: " + id);
+                continue;
+            }
+            synchronized (state) {
+                for (MemIndex index : indexes) {
+                    index.remove(id, state);
+                }
             }
         }
     }
 
     @Override
     public State readChildState(String parentId, String name, Set<String> ignored) {
-        // TODO optimize by maintaining a parent/child index
-        for (State state : states.values()) {
-            if (ignored.contains(state.get(KEY_ID))) {
-                continue;
+        Set<String> ids = childIndex.get(Arrays.asList(parentId, name));
+        for (State state : getStates(ids, ignored)) {
+            // recheck in case of concurrent update
+            if (parentId.equals(state.get(KEY_PARENT_ID)) && name.equals(state.get(KEY_NAME))) {
+                return state;
             }
-            if (!parentId.equals(state.get(KEY_PARENT_ID))) {
-                continue;
-            }
-            if (!name.equals(state.get(KEY_NAME))) {
-                continue;
-            }
-            return state;
         }
         return null;
     }
@@ -228,11 +365,7 @@ public class MemRepository extends DBSRepositoryBase {
             log.trace("Mem: QUERY " + key + " = " + value);
         }
         List<State> list = new ArrayList<>();
-        for (State state : states.values()) {
-            String id = (String) state.get(KEY_ID);
-            if (ignored.contains(id)) {
-                continue;
-            }
+        for (State state : getStates(key, value, ignored)) {
             if (!value.equals(state.get(key))) {
                 continue;
             }
@@ -250,11 +383,13 @@ public class MemRepository extends DBSRepositoryBase {
             log.trace("Mem: QUERY " + key1 + " = " + value1 + " AND " + key2 + " = " + value2);
         }
         List<State> list = new ArrayList<>();
-        for (State state : states.values()) {
-            String id = (String) state.get(KEY_ID);
-            if (ignored.contains(id)) {
-                continue;
-            }
+        Collection<State> candidates;
+        if (keyIndexes.containsKey(key1) || !keyIndexes.containsKey(key2)) {
+            candidates = getStates(key1, value1, ignored);
+        } else {
+            candidates = getStates(key2, value2, ignored);
+        }
+        for (State state : candidates) {
             if (!(value1.equals(state.get(key1)) && value2.equals(state.get(key2)))) {
                 continue;
             }
@@ -272,7 +407,7 @@ public class MemRepository extends DBSRepositoryBase {
         if (log.isTraceEnabled()) {
             log.trace("Mem: QUERY " + key + " = " + value);
         }
-        STATE: for (State state : states.values()) {
+        STATE: for (State state : getStates(key, value, Collections.emptySet())) {
             Object[] array = (Object[]) state.get(key);
             String id = (String) state.get(KEY_ID);
             if (array != null) {
@@ -304,11 +439,7 @@ public class MemRepository extends DBSRepositoryBase {
         if (log.isTraceEnabled()) {
             log.trace("Mem: QUERY " + key + " = " + value);
         }
-        for (State state : states.values()) {
-            String id = (String) state.get(KEY_ID);
-            if (ignored.contains(id)) {
-                continue;
-            }
+        for (State state : getStates(key, value, ignored)) {
             if (value.equals(state.get(key))) {
                 if (log.isTraceEnabled()) {
                     log.trace("Mem:    -> present");
@@ -329,24 +460,25 @@ public class MemRepository extends DBSRepositoryBase {
             log.trace("Mem: QUERY " + evaluator + " OFFSET " + offset + " LIMIT " + limit);
         }
         evaluator.parse();
-        List<Map<String, Serializable>> projections = new ArrayList<>();
-        for (State state : states.values()) {
-            List<Map<String, Serializable>> matches = evaluator.matches(state);
-            if (!matches.isEmpty()) {
-                if (distinctDocuments) {
-                    projections.add(matches.get(0));
-                } else {
-                    projections.addAll(matches);
-                }
-            }
-        }
         // ORDER BY
         // orderByClause may be null and different from evaluator.getOrderByClause() in case we want to post-filter
-        if (orderByClause != null) {
-            Collections.sort(projections, new OrderByComparator(orderByClause));
+        Comparator<Map<String, Serializable>> comparator = orderByClause == null ? null
+                : new OrderByComparator(orderByClause);
+        // only keep the projections needed for the requested page
+        int max = limit == 0 ? -1 : (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+        List<State> candidates = new ArrayList<>(getCandidateStates(evaluator));
+        ProjectionCollector collector;
+        if (candidates.size() < PARALLEL_THRESHOLD || (comparator == null && max != -1 && countUpTo != -1)) {
+            // small enough, or unordered query that can stop early
+            collector = new ProjectionCollector(distinctDocuments, comparator, max, countUpTo);
+            collector.addAll(evaluator, candidates, 0, candidates.size());
+        } else {
+            collector = ForkJoinPool.commonPool().invoke(new ProjectionTask(evaluator, candidates, 0, candidates.size(),
+                    () -> new ProjectionCollector(distinctDocuments, comparator, max, countUpTo)));
         }
+        List<Map<String, Serializable>> projections = collector.getProjections();
         // LIMIT / OFFSET
-        int totalSize = projections.size();
+        long totalSize = collector.count;
         if (countUpTo == -1) {
             // count full size
         } else if (countUpTo == 0) {
@@ -374,6 +506,159 @@ public class MemRepository extends DBSRepositoryBase {
         return new PartialList<>(projections, totalSize);
     }
 
+    /**
+     * Collects the projections matching a query, keeping only the first ones (according to the ORDER BY if there is
+     * one) when there is a limit.
+     *
+     * @since 9.2
+     */
+    protected static class ProjectionCollector {
+
+        protected final boolean distinctDocuments;
+
+        protected final Comparator<Map<String, Serializable>> comparator;
+
+        /** Maximum number of projections to keep, or -1 for all. */
+        protected final int max;
+
+        protected final int countUpTo;
+
+        /** The kept projections when there is no ORDER BY or no limit. */
+        protected final List<Map<String, Serializable>> list;
+
+        /** The kept projections when there is an ORDER BY and a limit, the worst one at the head. */
+        protected final PriorityQueue<Map<String, Serializable>> heap;
+
+        /** Total number of matching projections seen. */
+        protected long count;
+
+        public ProjectionCollector(boolean distinctDocuments, Comparator<Map<String, Serializable>> comparator,
+                int max, int countUpTo) {
+            this.distinctDocuments = distinctDocuments;
+            this.comparator = comparator;
+            this.max = max;
+            this.countUpTo = countUpTo;
+            if (comparator != null && max != -1) {
+                heap = new PriorityQueue<>(Math.max(1, Math.min(max, 1000)), comparator.reversed());
+                list = null;
+            } else {
+                heap = null;
+                list = new ArrayList<>();
+            }
+        }
+
+        /**
+         * Evaluates the states between {@code from} (included) and {@code to} (excluded), and collects the matches.
+         */
+        public void addAll(DBSExpressionEvaluator evaluator, List<State> states, int from, int to) {
+            for (int i = from; i < to; i++) {
+                List<Map<String, Serializable>> matches = evaluator.matches(states.get(i));
+                if (matches.isEmpty()) {
+                    continue;
+                }
+                if (distinctDocuments) {
+                    add(matches.get(0));
+                } else {
+                    matches.forEach(this::add);
+                }
+                if (isDone()) {
+                    break;
+                }
+            }
+        }
+
+        public void add(Map<String, Serializable> projection) {
+            count++;
+            if (heap != null) {
+                if (heap.size() < max) {
+                    heap.add(projection);
+                } else if (max > 0 && comparator.compare(projection, heap.peek()) < 0) {
+                    heap.poll();
+                    heap.add(projection);
+                }
+            } else if (max == -1 || list.size() < max) {
+                list.add(projection);
+            }
+        }
+
+        public void addAll(ProjectionCollector other) {
+            count += other.count - (other.heap == null ? other.list.size() : other.heap.size());
+            if (other.heap != null) {
+                other.heap.forEach(this::add);
+            } else {
+                other.list.forEach(this::add);
+            }
+        }
+
+        /**
+         * Checks if no more matches are needed: unordered query whose page is full, and count not needed or already
+         * over countUpTo.
+         */
+        public boolean isDone() {
+            if (comparator != null || max == -1 || list.size() < max) {
+                return false;
+            }
+            return countUpTo == 0 || (countUpTo > 0 && count > countUpTo);
+        }
+
+        /**
+         * Gets the kept projections, in order.
+         */
+        public List<Map<String, Serializable>> getProjections() {
+            List<Map<String, Serializable>> projections = heap == null ? list : new ArrayList<>(heap);
+            if (comparator != null) {
+                Collections.sort(projections, comparator);
+            }
+            return projections;
+        }
+    }
+
+    /**
+     * Task evaluating a query over a range of states, splitting the range in parallel sub-tasks. Each leaf task uses
+     * its own copy of the evaluator.
+     *
+     * @since 9.2
+     */
+    protected static class ProjectionTask extends RecursiveTask<ProjectionCollector> {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final DBSExpressionEvaluator evaluator;
+
+        protected final List<State> states;
+
+        protected final int from;
+
+        protected final int to;
+
+        protected final Supplier<ProjectionCollector> collectorSupplier;
+
+        public ProjectionTask(DBSExpressionEvaluator evaluator, List<State> states, int from, int to,
+                Supplier<ProjectionCollector> collectorSupplier) {
+            this.evaluator = evaluator;
+            this.states = states;
+            this.from = from;
+            this.to = to;
+            this.collectorSupplier = collectorSupplier;
+        }
+
+        @Override
+        protected ProjectionCollector compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                ProjectionCollector collector = collectorSupplier.get();
+                collector.addAll(evaluator.copy(), states, from, to);
+                return collector;
+            }
+            int mid = (from + to) >>> 1;
+            ProjectionTask left = new ProjectionTask(evaluator, states, from, mid, collectorSupplier);
+            ProjectionTask right = new ProjectionTask(evaluator, states, mid, to, collectorSupplier);
+            left.fork();
+            ProjectionCollector collector = right.compute();
+            collector.addAll(left.join());
+            return collector;
+        }
+    }
+
     @Override
     public ScrollResult scroll(DBSExpressionEvaluator evaluator, int batchSize, int keepAliveSeconds) {
         if (log.isTraceEnabled()) {
@@ -381,7 +666,7 @@ public class MemRepository extends DBSRepositoryBase {
         }
         evaluator.parse();
         List<String> ids = new ArrayList<>();
-        for (State state : states.values()) {
+        for (State state : getCandidateStates(evaluator)) {
             List<Map<String, Serializable>> matches = evaluator.matches(state);
             if (!matches.isEmpty()) {
                 String id = matches.get(0).get(ECM_UUID).toString();
@@ -18,6 +18,10 @@
  */
 package org.nuxeo.ecm.core.storage.mem;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.nuxeo.common.xmap.annotation.XNodeList;
 import org.nuxeo.common.xmap.annotation.XObject;
 import org.nuxeo.ecm.core.storage.dbs.DBSRepositoryDescriptor;
 
@@ -32,6 +36,14 @@ public class MemRepositoryDescriptor extends DBSRepositoryDescriptor {
     public MemRepositoryDescriptor() {
     }
 
+    /**
+     * Additional keys on which an in-memory index is maintained.
+     *
+     * @since 9.2
+     */
+    @XNodeList(value = "indexes/index", type = ArrayList.class, componentType = String.class)
+    public List<String> indexedKeys = new ArrayList<>();
+
     @Override
     public MemRepositoryDescriptor clone() {
         return (MemRepositoryDescriptor) super.clone();
@@ -39,6 +51,12 @@ public class MemRepositoryDescriptor extends DBSRepositoryDescriptor {
 
     public void merge(MemRepositoryDescriptor other) {
         super.merge(other);
+        indexedKeys = new ArrayList<>(indexedKeys);
+        for (String key : other.indexedKeys) {
+            if (!indexedKeys.contains(key)) {
+                indexedKeys.add(key);
+            }
+        }
     }
 
 }
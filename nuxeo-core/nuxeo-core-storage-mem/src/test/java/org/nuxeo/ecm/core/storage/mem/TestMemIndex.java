@@ -0,0 +1,75 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.storage.mem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.storage.State;
+
+public class TestMemIndex {
+
+    @Test
+    public void testSingleKey() {
+        MemIndex index = new MemIndex("ecm:parentId");
+        State state1 = new State();
+        state1.put("ecm:parentId", "p1");
+        State state2 = new State();
+        state2.put("ecm:parentId", "p1");
+        State state3 = new State();
+        index.add("id1", state1);
+        index.add("id2", state2);
+        index.add("id3", state3);
+        assertEquals(new HashSet<>(Arrays.asList("id1", "id2")), index.get("p1"));
+        index.remove("id1", state1);
+        assertEquals(Collections.singleton("id2"), index.get("p1"));
+        index.remove("id2", state2);
+        assertTrue(index.get("p1").isEmpty());
+    }
+
+    @Test
+    public void testArrayKey() {
+        MemIndex index = new MemIndex("ecm:ancestorIds");
+        State state = new State();
+        state.put("ecm:ancestorIds", new Object[] { "a1", "a2" });
+        index.add("id1", state);
+        assertEquals(Collections.singleton("id1"), index.get("a1"));
+        assertEquals(Collections.singleton("id1"), index.get("a2"));
+        assertTrue(index.get("a3").isEmpty());
+    }
+
+    @Test
+    public void testCompositeKey() {
+        MemIndex index = new MemIndex("ecm:parentId", "ecm:name");
+        State state = new State();
+        state.put("ecm:parentId", "p1");
+        state.put("ecm:name", "doc");
+        index.add("id1", state);
+        State noName = new State();
+        noName.put("ecm:parentId", "p1");
+        index.add("id2", noName);
+        assertEquals(Collections.singleton("id1"), index.get(Arrays.asList("p1", "doc")));
+        assertTrue(index.get(Arrays.asList("p1", "other")).isEmpty());
+        assertTrue(index.isIndexing(Collections.singleton("ecm:name")));
+        assertTrue(!index.isIndexing(Collections.singleton("dc:title")));
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.storage.mem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.storage.mem.MemRepository.ProjectionCollector;
+
+public class TestProjectionCollector {
+
+    protected static final Comparator<Map<String, Serializable>> COMPARATOR = Comparator.comparing(
+            map -> (Long) map.get("n"));
+
+    protected static Map<String, Serializable> projection(long n) {
+        return Collections.singletonMap("n", Long.valueOf(n));
+    }
+
+    protected static List<Long> values(List<Map<String, Serializable>> projections) {
+        List<Long> values = new ArrayList<>();
+        projections.forEach(p -> values.add((Long) p.get("n")));
+        return values;
+    }
+
+    @Test
+    public void testTopK() {
+        ProjectionCollector collector = new ProjectionCollector(true, COMPARATOR, 3, -1);
+        for (long n : new long[] { 5, 9, 1, 7, 3, 8, 2 }) {
+            collector.add(projection(n));
+        }
+        assertEquals(7, collector.count);
+        assertEquals(list(1, 2, 3), values(collector.getProjections()));
+    }
+
+    @Test
+    public void testTopKMerge() {
+        ProjectionCollector collector1 = new ProjectionCollector(true, COMPARATOR, 2, -1);
+        ProjectionCollector collector2 = new ProjectionCollector(true, COMPARATOR, 2, -1);
+        for (long n : new long[] { 5, 9, 4 }) {
+            collector1.add(projection(n));
+        }
+        for (long n : new long[] { 6, 1 }) {
+            collector2.add(projection(n));
+        }
+        collector1.addAll(collector2);
+        assertEquals(5, collector1.count);
+        assertEquals(list(1, 4), values(collector1.getProjections()));
+    }
+
+    @Test
+    public void testUnorderedEarlyTermination() {
+        ProjectionCollector collector = new ProjectionCollector(true, null, 2, 3);
+        collector.add(projection(1));
+        collector.add(projection(2));
+        collector.add(projection(3));
+        assertFalse(collector.isDone());
+        collector.add(projection(4));
+        assertTrue(collector.isDone());
+        assertEquals(list(1, 2), values(collector.getProjections()));
+    }
+
+    protected static List<Long> list(long... values) {
+        List<Long> list = new ArrayList<>();
+        for (long v : values) {
+            list.add(Long.valueOf(v));
+        }
+        return list;
+    }
+
+}
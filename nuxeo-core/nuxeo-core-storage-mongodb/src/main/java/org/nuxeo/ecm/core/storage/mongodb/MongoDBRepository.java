@@ -25,6 +25,7 @@ import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ACL;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ACP;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ANCESTOR_IDS;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_BLOB_DATA;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_CHANGE_TOKEN;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_FULLTEXT_BINARY;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_FULLTEXT_JOBID;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_FULLTEXT_SIMPLE;
@@ -44,12 +45,20 @@ import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_VERSION_SERIES_ID;
 
 import java.io.Serializable;
 import java.net.UnknownHostException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -78,9 +87,12 @@ import org.nuxeo.ecm.core.storage.dbs.DBSExpressionEvaluator;
 import org.nuxeo.ecm.core.storage.dbs.DBSRepositoryBase;
 import org.nuxeo.ecm.core.storage.dbs.DBSStateFlattener;
 import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.ChangeTokenUpdater;
+import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.StateUpdate;
 import org.nuxeo.runtime.api.Framework;
 
 import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.BulkWriteResult;
 import com.mongodb.DB;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
@@ -164,6 +176,9 @@ public class MongoDBRepository extends DBSRepositoryBase {
     /** Sequence allocation block size. */
     protected long sequenceBlockSize;
 
+    /** Lock-free sequence allocator, or {@code null} if ids are allocated in order. */
+    protected StripedSequenceAllocator sequenceAllocator;
+
     protected final MongoDBConverter converter;
 
     protected final CursorService<DBCursor, DBObject> cursorService = new CursorService<>();
@@ -190,6 +205,12 @@ public class MongoDBRepository extends DBSRepositoryBase {
         }
         converter = new MongoDBConverter(idKey);
         initRepository();
+        if ((idType == IdType.sequence || DEBUG_UUIDS) && !descriptor.isSequenceOrdered()) {
+            Integer stripes = descriptor.sequenceStripes;
+            int stripeCount = stripes == null ? Runtime.getRuntime().availableProcessors() : stripes.intValue();
+            sequenceAllocator = new StripedSequenceAllocator(this::allocateSequenceBlock, sequenceBlockSize,
+                    stripeCount);
+        }
     }
 
     @Override
@@ -200,6 +221,9 @@ public class MongoDBRepository extends DBSRepositoryBase {
     @Override
     public void shutdown() {
         super.shutdown();
+        if (sequenceAllocator != null) {
+            sequenceAllocator.shutdown();
+        }
         cursorService.clear();
         mongoClient.close();
     }
@@ -300,23 +324,37 @@ public class MongoDBRepository extends DBSRepositoryBase {
         initRoot();
     }
 
-    protected synchronized Long getNextSequenceId() {
-        if (sequenceLeft == 0) {
-            // allocate a new sequence block
-            // the database contains the last value from the last block
-            DBObject query = new BasicDBObject(MONGODB_ID, COUNTER_NAME_UUID);
-            DBObject update = new BasicDBObject(MONGODB_INC,
-                    new BasicDBObject(COUNTER_FIELD, Long.valueOf(sequenceBlockSize)));
-            DBObject idCounter = countersColl.findAndModify(query, null, null, false, update, true, false);
-            if (idCounter == null) {
-                throw new NuxeoException("Repository id counter not initialized");
+    protected Long getNextSequenceId() {
+        if (sequenceAllocator != null) {
+            return Long.valueOf(sequenceAllocator.next());
+        }
+        synchronized (this) {
+            if (sequenceLeft == 0) {
+                // allocate a new sequence block
+                sequenceLeft = sequenceBlockSize;
+                sequenceLastValue = allocateSequenceBlock() - 1;
             }
-            sequenceLeft = sequenceBlockSize;
-            sequenceLastValue = ((Long) idCounter.get(COUNTER_FIELD)).longValue() - sequenceBlockSize;
+            sequenceLeft--;
+            sequenceLastValue++;
+            return Long.valueOf(sequenceLastValue);
         }
-        sequenceLeft--;
-        sequenceLastValue++;
-        return Long.valueOf(sequenceLastValue);
+    }
+
+    /**
+     * Allocates a new sequence block in the database.
+     *
+     * @return the first value of the new block
+     */
+    protected long allocateSequenceBlock() {
+        // the database contains the last value from the last block
+        DBObject query = new BasicDBObject(MONGODB_ID, COUNTER_NAME_UUID);
+        DBObject update = new BasicDBObject(MONGODB_INC,
+                new BasicDBObject(COUNTER_FIELD, Long.valueOf(sequenceBlockSize)));
+        DBObject idCounter = countersColl.findAndModify(query, null, null, false, update, true, false);
+        if (idCounter == null) {
+            throw new NuxeoException("Repository id counter not initialized");
+        }
+        return ((Long) idCounter.get(COUNTER_FIELD)).longValue() - sequenceBlockSize + 1;
     }
 
     @Override
@@ -370,28 +408,7 @@ public class MongoDBRepository extends DBSRepositoryBase {
     public void updateState(String id, StateDiff diff, ChangeTokenUpdater changeTokenUpdater) {
         List<DBObject> updates = converter.diffToBson(diff);
         for (DBObject update : updates) {
-            DBObject query = new BasicDBObject(idKey, id);
-            if (changeTokenUpdater == null) {
-                if (log.isTraceEnabled()) {
-                    log.trace("MongoDB: UPDATE " + id + ": " + update);
-                }
-            } else {
-                // assume bson is identical to dbs internals
-                // condition works even if value is null
-                Map<String, Serializable> conditions = changeTokenUpdater.getConditions();
-                Map<String, Serializable> tokenUpdates = changeTokenUpdater.getUpdates();
-                if (update.containsField(MONGODB_SET)) {
-                    ((DBObject) update.get(MONGODB_SET)).putAll(tokenUpdates);
-                } else {
-                    DBObject set = new BasicDBObject();
-                    set.putAll(tokenUpdates);
-                    update.put(MONGODB_SET, set);
-                }
-                if (log.isTraceEnabled()) {
-                    log.trace("MongoDB: UPDATE " + id + ": IF " + conditions + " THEN " + update);
-                }
-                query.putAll(conditions);
-            }
+            DBObject query = getUpdateQuery(id, update, changeTokenUpdater);
             WriteResult w = coll.update(query, update);
             if (w.getN() != 1) {
                 log.trace("MongoDB:    -> CONCURRENT UPDATE: " + id);
@@ -402,6 +419,204 @@ public class MongoDBRepository extends DBSRepositoryBase {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The updates are sent using unordered bulk writes. As a single document diff may need several database updates,
+     * these are sent in successive rounds, each round containing at most one update per document, so that the updates
+     * for a given document are still applied in order.
+     */
+    @Override
+    public void updateStates(List<StateUpdate> stateUpdates) {
+        Map<String, Deque<DBObject>> pending = new LinkedHashMap<>();
+        Map<String, ChangeTokenUpdater> changeTokenUpdaters = new HashMap<>();
+        for (StateUpdate stateUpdate : stateUpdates) {
+            List<DBObject> updates = converter.diffToBson(stateUpdate.diff);
+            if (updates.isEmpty()) {
+                continue;
+            }
+            pending.put(stateUpdate.id, new ArrayDeque<>(updates));
+            if (stateUpdate.changeTokenUpdater != null) {
+                changeTokenUpdaters.put(stateUpdate.id, stateUpdate.changeTokenUpdater);
+            }
+        }
+        Set<String> conflicts = new LinkedHashSet<>();
+        while (!pending.isEmpty()) {
+            BulkWriteOperation bulk = coll.initializeUnorderedBulkOperation();
+            List<String> ids = new ArrayList<>(pending.size());
+            // change token values written by this round
+            Map<String, Map<String, Serializable>> tokenUpdates = new HashMap<>();
+            for (Iterator<Entry<String, Deque<DBObject>>> it = pending.entrySet().iterator(); it.hasNext();) {
+                Entry<String, Deque<DBObject>> en = it.next();
+                String id = en.getKey();
+                DBObject update = en.getValue().poll();
+                DBObject query = getUpdateQuery(id, update, changeTokenUpdaters.get(id), tokenUpdates);
+                bulk.find(query).updateOne(update);
+                ids.add(id);
+                if (en.getValue().isEmpty()) {
+                    it.remove();
+                }
+            }
+            BulkWriteResult result = bulk.execute();
+            int unmatchedCount = ids.size() - result.getMatchedCount();
+            if (unmatchedCount != 0) {
+                Set<String> unmatched = findUnmatchedUpdates(ids, tokenUpdates);
+                if (log.isTraceEnabled()) {
+                    log.trace("MongoDB:    -> CONCURRENT UPDATE: " + unmatched);
+                }
+                if (unmatched.size() < unmatchedCount) {
+                    // some documents were updated concurrently to the change token value we wrote, we can't tell
+                    // which, they keep getting the remaining updates as their change token condition is still checked
+                    log.warn(unmatchedCount - unmatched.size()
+                            + " concurrent updates writing the same change token, among documents: "
+                            + getAmbiguousUpdates(ids, tokenUpdates, unmatched));
+                }
+                conflicts.addAll(unmatched);
+                // don't attempt further updates on these documents
+                pending.keySet().removeAll(unmatched);
+            }
+        }
+        if (!conflicts.isEmpty()) {
+            throw new ConcurrentUpdateException(String.join(", ", conflicts));
+        }
+    }
+
+    /**
+     * Gets the query matching the document to update, adding the change token conditions and updates if needed.
+     *
+     * @param id the document id
+     * @param update the update, which may be modified to also update the change token
+     * @param changeTokenUpdater the change token updater, or {@code null}
+     * @return the query
+     */
+    protected DBObject getUpdateQuery(String id, DBObject update, ChangeTokenUpdater changeTokenUpdater) {
+        return getUpdateQuery(id, update, changeTokenUpdater, null);
+    }
+
+    /**
+     * Gets the query matching the document to update, adding the change token conditions and updates if needed.
+     *
+     * @param id the document id
+     * @param update the update, which may be modified to also update the change token
+     * @param changeTokenUpdater the change token updater, or {@code null}
+     * @param tokenUpdates if not {@code null}, the map in which to record the change token values written for this id
+     * @return the query
+     * @since 9.2
+     */
+    protected DBObject getUpdateQuery(String id, DBObject update, ChangeTokenUpdater changeTokenUpdater,
+            Map<String, Map<String, Serializable>> tokenUpdates) {
+        DBObject query = new BasicDBObject(idKey, id);
+        if (changeTokenUpdater == null) {
+            if (log.isTraceEnabled()) {
+                log.trace("MongoDB: UPDATE " + id + ": " + update);
+            }
+        } else {
+            // assume bson is identical to dbs internals
+            // condition works even if value is null
+            Map<String, Serializable> conditions = changeTokenUpdater.getConditions();
+            Map<String, Serializable> updates = changeTokenUpdater.getUpdates();
+            if (update.containsField(MONGODB_SET)) {
+                ((DBObject) update.get(MONGODB_SET)).putAll(updates);
+            } else {
+                DBObject set = new BasicDBObject();
+                set.putAll(updates);
+                update.put(MONGODB_SET, set);
+            }
+            if (tokenUpdates != null) {
+                tokenUpdates.put(id, updates);
+            }
+            if (log.isTraceEnabled()) {
+                log.trace("MongoDB: UPDATE " + id + ": IF " + conditions + " THEN " + update);
+            }
+            query.putAll(conditions);
+        }
+        return query;
+    }
+
+    /**
+     * Finds which of the documents of a bulk update were not matched, because they are missing or because their change
+     * token doesn't have the value written by the update.
+     *
+     * @param ids the ids of the documents updated
+     * @param tokenUpdates the change token values written by the update, by id
+     */
+    protected Set<String> findUnmatchedUpdates(List<String> ids, Map<String, Map<String, Serializable>> tokenUpdates) {
+        DBObject query = new BasicDBObject(idKey, new BasicDBObject(QueryOperators.IN, ids));
+        DBObject fields = new BasicDBObject(MONGODB_ID, ZERO);
+        fields.put(idKey, ONE);
+        fields.put(KEY_CHANGE_TOKEN, ONE);
+        Map<String, DBObject> found = new HashMap<>();
+        try (DBCursor cursor = coll.find(query, fields)) {
+            for (DBObject ob : cursor) {
+                found.put((String) ob.get(idKey), ob);
+            }
+        }
+        return getUnmatchedUpdates(ids, tokenUpdates, found);
+    }
+
+    /**
+     * Computes which of the documents of a bulk update were not matched, given the documents read back after it.
+     * <p>
+     * A document is not matched if it's missing or if its change token doesn't have the value written by the update.
+     * <p>
+     * A concurrent update may also have written the same change token value as ours (both starting from the same
+     * value), so a document having the expected change token may still not have been matched. As we cannot tell which
+     * of these documents were really updated, they are not returned: most of them did get the update, and they must
+     * get the remaining updates of their diff.
+     *
+     * @param ids the ids of the documents updated
+     * @param tokenUpdates the change token values written by the update, by id
+     * @param found the documents read back after the update, by id
+     * @since 9.2
+     */
+    protected static Set<String> getUnmatchedUpdates(List<String> ids,
+            Map<String, Map<String, Serializable>> tokenUpdates, Map<String, DBObject> found) {
+        Set<String> unmatched = new LinkedHashSet<>();
+        for (String id : ids) {
+            DBObject ob = found.get(id);
+            if (ob == null) {
+                unmatched.add(id);
+                continue;
+            }
+            Map<String, Serializable> updates = tokenUpdates.get(id);
+            if (updates == null) {
+                // no condition besides the id
+                continue;
+            }
+            boolean expected = true;
+            for (Entry<String, Serializable> en : updates.entrySet()) {
+                if (!Objects.equals(ob.get(en.getKey()), en.getValue())) {
+                    expected = false;
+                    break;
+                }
+            }
+            if (!expected) {
+                unmatched.add(id);
+            }
+        }
+        return unmatched;
+    }
+
+    /**
+     * Gets the documents of a bulk update that have the change token value written by the update, but may have been
+     * updated concurrently instead.
+     *
+     * @param ids the ids of the documents updated
+     * @param tokenUpdates the change token values written by the update, by id
+     * @param unmatched the documents known to be unmatched
+     * @since 9.2
+     */
+    protected static Set<String> getAmbiguousUpdates(List<String> ids,
+            Map<String, Map<String, Serializable>> tokenUpdates, Set<String> unmatched) {
+        Set<String> ambiguous = new LinkedHashSet<>();
+        for (String id : ids) {
+            if (tokenUpdates.containsKey(id) && !unmatched.contains(id)) {
+                ambiguous.add(id);
+            }
+        }
+        return ambiguous;
+    }
+
     @Override
     public void deleteStates(Set<String> ids) {
         DBObject query = new BasicDBObject(idKey, new BasicDBObject(QueryOperators.IN, ids));
@@ -43,6 +43,28 @@ public class MongoDBRepositoryDescriptor extends DBSRepositoryDescriptor {
     @XNode("sequenceBlockSize")
     public Integer sequenceBlockSize;
 
+    /**
+     * Whether sequence ids are allocated in increasing order and densely (the default), or through a lock-free striped
+     * allocator prefetching blocks in the background.
+     *
+     * @since 9.2
+     */
+    @XNode("sequenceOrdered")
+    public Boolean sequenceOrdered;
+
+    /**
+     * Number of stripes of the lock-free sequence allocator, by default the number of processors.
+     *
+     * @since 9.2
+     */
+    @XNode("sequenceStripes")
+    public Integer sequenceStripes;
+
+    /** @since 9.2 */
+    public boolean isSequenceOrdered() {
+        return sequenceOrdered == null || sequenceOrdered.booleanValue();
+    }
+
     @Override
     public MongoDBRepositoryDescriptor clone() {
         return (MongoDBRepositoryDescriptor) super.clone();
@@ -62,6 +84,12 @@ public class MongoDBRepositoryDescriptor extends DBSRepositoryDescriptor {
         if (other.sequenceBlockSize != null) {
             sequenceBlockSize = other.sequenceBlockSize;
         }
+        if (other.sequenceOrdered != null) {
+            sequenceOrdered = other.sequenceOrdered;
+        }
+        if (other.sequenceStripes != null) {
+            sequenceStripes = other.sequenceStripes;
+        }
     }
 
 }
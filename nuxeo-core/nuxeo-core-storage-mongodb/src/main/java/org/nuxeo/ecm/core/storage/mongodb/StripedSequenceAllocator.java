@@ -0,0 +1,148 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.storage.mongodb;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+import org.nuxeo.ecm.core.api.NuxeoException;
+
+/**
+ * Sequence id allocator handing out ids without a global lock.
+ * <p>
+ * Ids are taken from several stripes, each stripe owning a block of ids allocated from the database. A thread uses the
+ * stripe corresponding to its id, and takes the next id of the stripe's block with a simple atomic increment.
+ * <p>
+ * When a stripe's block is exhausted, a new block is taken from a prefetched one, and the allocation of the following
+ * block is immediately started in the background, so that threads don't usually have to wait for the database.
+ * <p>
+ * Contrary to the default allocation, ids are not handed out in increasing order and blocks are not used densely: ids
+ * left in the stripes' blocks on shutdown are lost.
+ *
+ * @since 9.2
+ */
+public class StripedSequenceAllocator {
+
+    /** A range of ids, from {@code next} (included) to {@code end} (excluded). */
+    protected static class Range {
+
+        protected final AtomicLong next;
+
+        protected final long end;
+
+        protected Range(long start, long end) {
+            next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+
+    protected static final Range EMPTY_RANGE = new Range(0, 0);
+
+    /** Allocates a new block in the database, returning the first value of the block. */
+    protected final LongSupplier blockAllocator;
+
+    protected final long blockSize;
+
+    protected final AtomicReference<Range>[] stripes;
+
+    /** The next block, being prefetched in the background. */
+    protected final AtomicReference<CompletableFuture<Long>> nextBlock = new AtomicReference<>();
+
+    protected final ExecutorService prefetchExecutor;
+
+    /**
+     * Constructs an allocator.
+     *
+     * @param blockAllocator the database block allocator, returning the first value of a new block
+     * @param blockSize the size of the blocks allocated by the database block allocator
+     * @param stripeCount the number of stripes
+     */
+    @SuppressWarnings("unchecked")
+    public StripedSequenceAllocator(LongSupplier blockAllocator, long blockSize, int stripeCount) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+        }
+        if (stripeCount < 1) {
+            throw new IllegalArgumentException("Invalid stripe count: " + stripeCount);
+        }
+        this.blockAllocator = blockAllocator;
+        this.blockSize = blockSize;
+        stripes = new AtomicReference[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new AtomicReference<>(EMPTY_RANGE);
+        }
+        prefetchExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Nuxeo-MongoDB-Sequence-Prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        nextBlock.set(prefetch());
+    }
+
+    /**
+     * Gets the next id.
+     */
+    public long next() {
+        AtomicReference<Range> stripe = stripes[(int) (Thread.currentThread().getId() % stripes.length)];
+        for (;;) {
+            Range range = stripe.get();
+            long id = range.next.getAndIncrement();
+            if (id < range.end) {
+                return id;
+            }
+            // range exhausted, only one thread per stripe installs a new block
+            synchronized (stripe) {
+                if (stripe.get() == range) {
+                    long start = takeBlock();
+                    stripe.set(new Range(start, start + blockSize));
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes the prefetched block and starts prefetching the next one.
+     */
+    protected long takeBlock() {
+        CompletableFuture<Long> block = nextBlock.getAndSet(prefetch());
+        try {
+            return block.join().longValue();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new NuxeoException(cause);
+        }
+    }
+
+    protected CompletableFuture<Long> prefetch() {
+        return CompletableFuture.supplyAsync(() -> Long.valueOf(blockAllocator.getAsLong()), prefetchExecutor);
+    }
+
+    /**
+     * Stops the background prefetching.
+     */
+    public void shutdown() {
+        prefetchExecutor.shutdownNow();
+    }
+
+}
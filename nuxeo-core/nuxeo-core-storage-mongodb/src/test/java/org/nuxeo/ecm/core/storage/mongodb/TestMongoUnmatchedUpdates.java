@@ -0,0 +1,188 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.storage.mongodb;
+
+import static org.junit.Assert.assertEquals;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_CHANGE_TOKEN;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ID;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.storage.State;
+import org.nuxeo.ecm.core.storage.dbs.DBSDocumentState;
+import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.ChangeTokenUpdater;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+
+/**
+ * Checks the detection of the unmatched updates of a bulk write done by {@link MongoDBRepository#updateStates}.
+ */
+public class TestMongoUnmatchedUpdates {
+
+    /** Simulated database: id to change token. */
+    protected final Map<String, String> db = new HashMap<>();
+
+    protected ChangeTokenUpdater newChangeTokenUpdater(String id, String token) {
+        db.put(id, token);
+        State state = new State();
+        state.put(KEY_ID, id);
+        state.put(KEY_CHANGE_TOKEN, token);
+        return new ChangeTokenUpdater(new DBSDocumentState(state));
+    }
+
+    /**
+     * Simulates a bulk update round, returns the number of unmatched updates.
+     */
+    protected int update(Map<String, ChangeTokenUpdater> updaters, Map<String, Map<String, Serializable>> tokenUpdates) {
+        int unmatchedCount = 0;
+        for (Map.Entry<String, ChangeTokenUpdater> en : updaters.entrySet()) {
+            String id = en.getKey();
+            ChangeTokenUpdater updater = en.getValue();
+            Serializable condition = updater.getConditions().get(KEY_CHANGE_TOKEN);
+            Map<String, Serializable> updates = updater.getUpdates();
+            tokenUpdates.put(id, updates);
+            if (db.containsKey(id) && db.get(id).equals(condition)) {
+                db.put(id, (String) updates.get(KEY_CHANGE_TOKEN));
+            } else {
+                unmatchedCount++;
+            }
+        }
+        return unmatchedCount;
+    }
+
+    protected Set<String> getUnmatchedUpdates(List<String> ids, Map<String, Map<String, Serializable>> tokenUpdates) {
+        Map<String, DBObject> found = new HashMap<>();
+        for (String id : ids) {
+            if (db.containsKey(id)) {
+                DBObject ob = new BasicDBObject(KEY_ID, id);
+                ob.put(KEY_CHANGE_TOKEN, db.get(id));
+                found.put(id, ob);
+            }
+        }
+        return MongoDBRepository.getUnmatchedUpdates(ids, tokenUpdates, found);
+    }
+
+    @Test
+    public void testConcurrentBumpBetweenRounds() {
+        Map<String, ChangeTokenUpdater> updaters = new HashMap<>();
+        updaters.put("A", newChangeTokenUpdater("A", "1"));
+        updaters.put("B", newChangeTokenUpdater("B", "1"));
+        List<String> ids = Arrays.asList("A", "B");
+
+        // first round, both match
+        Map<String, Map<String, Serializable>> tokenUpdates = new HashMap<>();
+        assertEquals(0, update(updaters, tokenUpdates));
+        assertEquals("2", db.get("A"));
+
+        // concurrent update of A between the two rounds, from the same token
+        db.put("A", "3");
+
+        // second round, A doesn't match but its change token has the value we would have written
+        tokenUpdates = new HashMap<>();
+        int unmatchedCount = update(updaters, tokenUpdates);
+        assertEquals(1, unmatchedCount);
+        assertEquals("3", db.get("A"));
+        assertEquals("3", db.get("B"));
+
+        // we cannot tell which one was not updated, so none is reported
+        Set<String> unmatched = getUnmatchedUpdates(ids, tokenUpdates);
+        assertEquals(Collections.emptySet(), unmatched);
+        assertEquals(new LinkedHashSet<>(ids), MongoDBRepository.getAmbiguousUpdates(ids, tokenUpdates, unmatched));
+    }
+
+    @Test
+    public void testAmbiguousUpdateGetsRemainingRounds() {
+        Map<String, ChangeTokenUpdater> updaters = new HashMap<>();
+        updaters.put("A", newChangeTokenUpdater("A", "1"));
+        updaters.put("B", newChangeTokenUpdater("B", "1"));
+        List<String> ids = Arrays.asList("A", "B");
+
+        Map<String, Map<String, Serializable>> tokenUpdates = new HashMap<>();
+        assertEquals(0, update(updaters, tokenUpdates));
+
+        // concurrent update of A between the two rounds, from the same token
+        db.put("A", "3");
+
+        tokenUpdates = new HashMap<>();
+        int unmatchedCount = update(updaters, tokenUpdates);
+        assertEquals(1, unmatchedCount);
+        Set<String> unmatched = getUnmatchedUpdates(ids, tokenUpdates);
+        assertEquals(Collections.emptySet(), unmatched);
+
+        // both documents stay pending, B gets the rest of its diff
+        tokenUpdates = new HashMap<>();
+        assertEquals(0, update(updaters, tokenUpdates));
+        assertEquals("4", db.get("B"));
+
+        // a later concurrent update is still detected through the change token condition
+        db.put("A", "7");
+        tokenUpdates = new HashMap<>();
+        unmatchedCount = update(updaters, tokenUpdates);
+        assertEquals(1, unmatchedCount);
+        assertEquals(Collections.singleton("A"), getUnmatchedUpdates(ids, tokenUpdates));
+        assertEquals("5", db.get("B"));
+    }
+
+    @Test
+    public void testConcurrentBumpDistinctToken() {
+        Map<String, ChangeTokenUpdater> updaters = new HashMap<>();
+        updaters.put("A", newChangeTokenUpdater("A", "1"));
+        updaters.put("B", newChangeTokenUpdater("B", "1"));
+        List<String> ids = Arrays.asList("A", "B");
+
+        Map<String, Map<String, Serializable>> tokenUpdates = new HashMap<>();
+        assertEquals(0, update(updaters, tokenUpdates));
+
+        // concurrent updates of A between the two rounds
+        db.put("A", "4");
+
+        tokenUpdates = new HashMap<>();
+        int unmatchedCount = update(updaters, tokenUpdates);
+        assertEquals(1, unmatchedCount);
+
+        // A is identified, B was updated
+        Set<String> unmatched = getUnmatchedUpdates(ids, tokenUpdates);
+        assertEquals(Collections.singleton("A"), unmatched);
+    }
+
+    @Test
+    public void testMissingDocument() {
+        Map<String, ChangeTokenUpdater> updaters = new HashMap<>();
+        updaters.put("A", newChangeTokenUpdater("A", "1"));
+        updaters.put("B", newChangeTokenUpdater("B", "1"));
+        List<String> ids = Arrays.asList("A", "B");
+
+        // concurrent delete of B
+        db.remove("B");
+
+        Map<String, Map<String, Serializable>> tokenUpdates = new HashMap<>();
+        int unmatchedCount = update(updaters, tokenUpdates);
+        assertEquals(1, unmatchedCount);
+
+        Set<String> unmatched = getUnmatchedUpdates(ids, tokenUpdates);
+        assertEquals(Collections.singleton("B"), unmatched);
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.storage.mongodb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class TestStripedSequenceAllocator {
+
+    protected static final int THREADS = 32;
+
+    protected static final int IDS_PER_THREAD = 10000;
+
+    @Test
+    public void testUniqueIdsWithConcurrentCreators() throws Exception {
+        long blockSize = 100;
+        // simulates the database counter
+        AtomicLong counter = new AtomicLong();
+        StripedSequenceAllocator allocator = new StripedSequenceAllocator(
+                () -> counter.addAndGet(blockSize) - blockSize + 1, blockSize, 8);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int j = 0; j < IDS_PER_THREAD; j++) {
+                        ids.add(Long.valueOf(allocator.next()));
+                    }
+                });
+            }
+            start.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+        } finally {
+            allocator.shutdown();
+        }
+        // all ids distinct
+        assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+        // all ids positive and within the allocated blocks
+        long max = counter.get();
+        for (Long id : ids) {
+            assertTrue(id.longValue() >= 1 && id.longValue() <= max);
+        }
+    }
+
+    @Test
+    public void testSingleThreadUsesBlocksInOrder() throws Exception {
+        AtomicLong counter = new AtomicLong();
+        StripedSequenceAllocator allocator = new StripedSequenceAllocator(() -> counter.addAndGet(10) - 10 + 1, 10,
+                1);
+        try {
+            for (int i = 1; i <= 25; i++) {
+                assertEquals(i, allocator.next());
+            }
+        } finally {
+            allocator.shutdown();
+        }
+    }
+
+}
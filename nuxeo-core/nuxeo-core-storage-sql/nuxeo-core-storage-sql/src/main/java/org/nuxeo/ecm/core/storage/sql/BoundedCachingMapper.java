@@ -0,0 +1,124 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.nuxeo.common.utils.SizeUtils;
+import org.nuxeo.ecm.core.api.NuxeoException;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * A {@link CachingMapper} whose row cache is bounded by an estimated size in bytes instead of relying on soft
+ * references, see {@link BoundedRowCache}.
+ * <p>
+ * It is configured in the repository descriptor with:
+ *
+ * <pre>
+ * &lt;cachingMapper class="org.nuxeo.ecm.core.storage.sql.BoundedCachingMapper"&gt;
+ *   &lt;property name="maxSize"&gt;10MB&lt;/property&gt;
+ *   &lt;property name="quota.acls"&gt;20&lt;/property&gt;
+ * &lt;/cachingMapper&gt;
+ * </pre>
+ *
+ * The {@code maxSize} is the size of the cache of each session. A {@code quota.<table>} property limits the rows of a
+ * table to a percentage of this size.
+ *
+ * @since 9.2
+ */
+public class BoundedCachingMapper extends SoftRefCachingMapper {
+
+    public static final String MAX_SIZE_PROP = "maxSize";
+
+    public static final String DEFAULT_MAX_SIZE = "10MB";
+
+    public static final String QUOTA_PROP_PREFIX = "quota.";
+
+    protected String repositoryName;
+
+    protected final Map<String, Counter> tableHitCounts = new HashMap<>();
+
+    protected final Map<String, Counter> tableMissCounts = new HashMap<>();
+
+    protected final Map<String, Counter> tableEvictionCounts = new HashMap<>();
+
+    @Override
+    public void initialize(String repositoryName, Model model, Mapper mapper, InvalidationsPropagator cachePropagator,
+            Map<String, String> properties) {
+        this.repositoryName = repositoryName;
+        cache = newCache(model, properties);
+        super.initialize(repositoryName, model, mapper, cachePropagator, properties);
+    }
+
+    protected BoundedRowCache newCache(Model model, Map<String, String> properties) {
+        String maxSizeStr = properties.getOrDefault(MAX_SIZE_PROP, DEFAULT_MAX_SIZE);
+        long maxSize;
+        try {
+            maxSize = SizeUtils.parseSizeInBytes(maxSizeStr);
+        } catch (NumberFormatException e) {
+            throw new NuxeoException("Invalid cachingMapper " + MAX_SIZE_PROP + ": " + maxSizeStr, e);
+        }
+        Map<String, Long> quotas = new HashMap<>();
+        for (Entry<String, String> en : properties.entrySet()) {
+            String key = en.getKey();
+            if (key.startsWith(QUOTA_PROP_PREFIX)) {
+                String tableName = key.substring(QUOTA_PROP_PREFIX.length());
+                int percent;
+                try {
+                    percent = Integer.parseInt(en.getValue().trim());
+                } catch (NumberFormatException e) {
+                    throw new NuxeoException("Invalid cachingMapper " + key + ": " + en.getValue(), e);
+                }
+                quotas.put(tableName, Long.valueOf(maxSize * percent / 100));
+            }
+        }
+        return new BoundedRowCache(maxSize, quotas, new RowSizeEstimator(model),
+                rowId -> getTableCounter(tableEvictionCounts, rowId.tableName, "evictions").inc());
+    }
+
+    @Override
+    protected void setMetrics(String repositoryName) {
+        cacheHitCount = registry.counter(MetricRegistry.name("nuxeo", "repositories", repositoryName, "caches",
+                "bounded", "hits"));
+        cacheGetTimer = registry.timer(MetricRegistry.name("nuxeo", "repositories", repositoryName, "caches",
+                "bounded", "get"));
+        sorRows = registry.counter(MetricRegistry.name("nuxeo", "repositories", repositoryName, "caches", "bounded",
+                "sor", "rows"));
+        sorGetTimer = registry.timer(MetricRegistry.name("nuxeo", "repositories", repositoryName, "caches", "bounded",
+                "sor", "get"));
+    }
+
+    protected Counter getTableCounter(Map<String, Counter> counters, String tableName, String name) {
+        return counters.computeIfAbsent(tableName, k -> registry.counter(
+                MetricRegistry.name("nuxeo", "repositories", repositoryName, "caches", "bounded", "tables", k, name)));
+    }
+
+    @Override
+    protected Row cacheGet(RowId rowId) {
+        Row row = super.cacheGet(rowId);
+        if (row == null) {
+            getTableCounter(tableMissCounts, rowId.tableName, "misses").inc();
+        } else {
+            getTableCounter(tableHitCounts, rowId.tableName, "hits").inc();
+        }
+        return row;
+    }
+
+}
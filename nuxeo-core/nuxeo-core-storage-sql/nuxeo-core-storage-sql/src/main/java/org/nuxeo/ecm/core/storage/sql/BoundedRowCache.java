@@ -0,0 +1,361 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * A cache of {@link Row}s bounded by an estimated size in bytes.
+ * <p>
+ * New rows enter a small LRU admission window. Rows evicted from the window compete with the least recently used rows
+ * of the main LRU region, and are only admitted if they have been accessed more frequently, as estimated by a
+ * {@link FrequencySketch} (W-TinyLFU policy). This keeps rows read once, for instance by a big query, from flushing
+ * the rows that are read often.
+ * <p>
+ * Each table can additionally be given a quota, the maximum size its rows can use in the cache.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @since 9.2
+ */
+public class BoundedRowCache extends AbstractMap<RowId, Row> {
+
+    /** Percentage of the size used by the admission window. */
+    protected static final int WINDOW_PERCENT = 1;
+
+    /** Average row size used to dimension the frequency sketch. */
+    protected static final int AVERAGE_ROW_SIZE = 512;
+
+    protected static class Node {
+
+        protected final RowId key;
+
+        protected final Row row;
+
+        protected final long weight;
+
+        protected Node(RowId key, Row row, long weight) {
+            this.key = key;
+            this.row = row;
+            this.weight = weight;
+        }
+    }
+
+    /** Admission window, in access order. */
+    protected final LinkedHashMap<RowId, Node> window = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Main region, in access order. */
+    protected final LinkedHashMap<RowId, Node> main = new LinkedHashMap<>(16, 0.75f, true);
+
+    protected final long maxWindowBytes;
+
+    protected final long maxMainBytes;
+
+    protected long windowBytes;
+
+    protected long mainBytes;
+
+    /** Maximum size per table, for tables having a quota. */
+    protected final Map<String, Long> tableQuotas;
+
+    /** Current size per table. */
+    protected final Map<String, Long> tableBytes = new HashMap<>();
+
+    protected final ToLongFunction<Row> weigher;
+
+    protected final Consumer<RowId> evictionListener;
+
+    protected final FrequencySketch sketch;
+
+    /**
+     * Constructs a cache.
+     *
+     * @param maxBytes the maximum estimated size of the cached rows
+     * @param tableQuotas the maximum estimated size of the cached rows for some tables
+     * @param weigher the estimator of row sizes
+     * @param evictionListener the listener called when a row is evicted, or {@code null}
+     */
+    public BoundedRowCache(long maxBytes, Map<String, Long> tableQuotas, ToLongFunction<Row> weigher,
+            Consumer<RowId> evictionListener) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Invalid max size: " + maxBytes);
+        }
+        maxWindowBytes = Math.max(maxBytes * WINDOW_PERCENT / 100, 1);
+        maxMainBytes = Math.max(maxBytes - maxWindowBytes, 1);
+        this.tableQuotas = tableQuotas == null ? Collections.emptyMap() : new HashMap<>(tableQuotas);
+        this.weigher = weigher;
+        this.evictionListener = evictionListener;
+        sketch = new FrequencySketch((int) Math.min(maxBytes / AVERAGE_ROW_SIZE, 1 << 20));
+    }
+
+    /**
+     * Gets the current estimated size of the cached rows.
+     */
+    public long getBytes() {
+        return windowBytes + mainBytes;
+    }
+
+    /**
+     * Gets the current estimated size of the cached rows of a table.
+     */
+    public long getBytes(String tableName) {
+        Long bytes = tableBytes.get(tableName);
+        return bytes == null ? 0 : bytes.longValue();
+    }
+
+    @Override
+    public int size() {
+        return window.size() + main.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return window.containsKey(key) || main.containsKey(key);
+    }
+
+    @Override
+    public Row get(Object key) {
+        if (!(key instanceof RowId)) {
+            return null;
+        }
+        sketch.increment(key);
+        Node node = window.get(key);
+        if (node == null) {
+            node = main.get(key);
+        }
+        return node == null ? null : node.row;
+    }
+
+    @Override
+    public Row put(RowId key, Row row) {
+        sketch.increment(key);
+        Node old = removeNode(key);
+        long weight = weigher.applyAsLong(row);
+        if (weight <= maxMainBytes) {
+            Node node = new Node(key, row, weight);
+            window.put(key, node);
+            windowBytes += weight;
+            addTableBytes(key.tableName, weight);
+            while (windowBytes > maxWindowBytes) {
+                Iterator<Node> it = window.values().iterator();
+                Node candidate = it.next();
+                it.remove();
+                windowBytes -= candidate.weight;
+                admit(candidate);
+            }
+            checkQuota(key.tableName);
+        }
+        return old == null ? null : old.row;
+    }
+
+    /**
+     * Moves a candidate evicted from the window to the main region, if it's more frequently used than the rows it
+     * would evict.
+     */
+    protected void admit(Node candidate) {
+        int candidateFrequency = sketch.frequency(candidate.key);
+        while (mainBytes + candidate.weight > maxMainBytes) {
+            Iterator<Node> it = main.values().iterator();
+            Node victim = it.next();
+            if (candidateFrequency <= sketch.frequency(victim.key)) {
+                // candidate rejected
+                evicted(candidate);
+                return;
+            }
+            it.remove();
+            mainBytes -= victim.weight;
+            evicted(victim);
+        }
+        main.put(candidate.key, candidate);
+        mainBytes += candidate.weight;
+    }
+
+    /**
+     * Evicts the least recently used rows of a table until it is below its quota.
+     */
+    protected void checkQuota(String tableName) {
+        Long quota = tableQuotas.get(tableName);
+        if (quota == null) {
+            return;
+        }
+        for (LinkedHashMap<RowId, Node> region : Arrays.asList(window, main)) {
+            for (Iterator<Node> it = region.values().iterator(); it.hasNext();) {
+                if (getBytes(tableName) <= quota.longValue()) {
+                    return;
+                }
+                Node node = it.next();
+                if (node.key.tableName.equals(tableName)) {
+                    it.remove();
+                    if (region == window) {
+                        windowBytes -= node.weight;
+                    } else {
+                        mainBytes -= node.weight;
+                    }
+                    evicted(node);
+                }
+            }
+        }
+    }
+
+    protected void evicted(Node node) {
+        addTableBytes(node.key.tableName, -node.weight);
+        if (evictionListener != null) {
+            evictionListener.accept(node.key);
+        }
+    }
+
+    protected void addTableBytes(String tableName, long delta) {
+        tableBytes.merge(tableName, Long.valueOf(delta), (a, b) -> {
+            long bytes = a.longValue() + b.longValue();
+            return bytes == 0 ? null : Long.valueOf(bytes);
+        });
+    }
+
+    @Override
+    public Row remove(Object key) {
+        if (!(key instanceof RowId)) {
+            return null;
+        }
+        Node node = removeNode((RowId) key);
+        return node == null ? null : node.row;
+    }
+
+    protected Node removeNode(RowId key) {
+        Node node = window.remove(key);
+        if (node != null) {
+            windowBytes -= node.weight;
+        } else {
+            node = main.remove(key);
+            if (node == null) {
+                return null;
+            }
+            mainBytes -= node.weight;
+        }
+        addTableBytes(key.tableName, -node.weight);
+        return node;
+    }
+
+    @Override
+    public void clear() {
+        window.clear();
+        main.clear();
+        windowBytes = 0;
+        mainBytes = 0;
+        tableBytes.clear();
+    }
+
+    /**
+     * Returns a snapshot of the cached entries, which cannot be used to modify the cache.
+     */
+    @Override
+    public Set<Entry<RowId, Row>> entrySet() {
+        Set<Entry<RowId, Row>> entries = new HashSet<>(size());
+        for (Node node : window.values()) {
+            entries.add(new SimpleImmutableEntry<>(node.key, node.row));
+        }
+        for (Node node : main.values()) {
+            entries.add(new SimpleImmutableEntry<>(node.key, node.row));
+        }
+        return Collections.unmodifiableSet(entries);
+    }
+
+    /**
+     * Count-Min sketch estimating the access frequency of keys, with periodic aging so that old accesses are
+     * progressively forgotten.
+     * <p>
+     * The counters are capped at 15, so they use 4 bits each, packed 16 per {@code long}.
+     */
+    protected static class FrequencySketch {
+
+        protected static final int DEPTH = 4;
+
+        protected static final int MAX_COUNT = 15;
+
+        protected static final long RESET_MASK = 0x7777777777777777L;
+
+        protected static final int[] SEEDS = { 0x97cb3127, 0x5bd1e995, 0x85ebca6b, 0xc2b2ae35 };
+
+        /** The {@link #DEPTH} rows of {@code width} counters, one after the other. */
+        protected final long[] table;
+
+        protected final int width;
+
+        protected final int mask;
+
+        protected final int sampleSize;
+
+        protected int additions;
+
+        protected FrequencySketch(int expectedSize) {
+            width = Integer.highestOneBit(Math.max(expectedSize, 16) - 1) << 1;
+            table = new long[DEPTH * width / 16];
+            mask = width - 1;
+            sampleSize = 10 * width;
+        }
+
+        /** Gets the position of the counter of a key in a row. */
+        protected int counter(Object key, int i) {
+            int h = key.hashCode() * SEEDS[i];
+            h ^= h >>> 16;
+            return i * width + (h & mask);
+        }
+
+        protected int count(int counter) {
+            return (int) (table[counter >>> 4] >>> ((counter & 15) << 2)) & MAX_COUNT;
+        }
+
+        protected int frequency(Object key) {
+            int min = MAX_COUNT;
+            for (int i = 0; i < DEPTH; i++) {
+                min = Math.min(min, count(counter(key, i)));
+            }
+            return min;
+        }
+
+        protected void increment(Object key) {
+            boolean added = false;
+            for (int i = 0; i < DEPTH; i++) {
+                int counter = counter(key, i);
+                if (count(counter) < MAX_COUNT) {
+                    table[counter >>> 4] += 1L << ((counter & 15) << 2);
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        /** Halves all the counts. */
+        protected void reset() {
+            for (int j = 0; j < table.length; j++) {
+                table[j] = (table[j] >>> 1) & RESET_MASK;
+            }
+            additions /= 2;
+        }
+    }
+
+}
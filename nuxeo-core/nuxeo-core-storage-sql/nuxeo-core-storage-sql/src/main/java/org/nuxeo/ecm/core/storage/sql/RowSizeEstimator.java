@@ -0,0 +1,134 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import java.io.Serializable;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Estimates the heap size of a {@link Row}, using the {@link Model} column types for fixed-size values and the actual
+ * values for strings and arrays.
+ * <p>
+ * The estimate is approximate (64-bit JVM with compressed references) and only meant to bound caches.
+ *
+ * @since 9.2
+ */
+public class RowSizeEstimator implements ToLongFunction<Row> {
+
+    /** Row object, its {@link RowId} part, and its keys and values arrays. */
+    protected static final long ROW_OVERHEAD = 96;
+
+    protected static final long REFERENCE = 4;
+
+    protected static final long ARRAY_OVERHEAD = 16;
+
+    protected static final long STRING_OVERHEAD = 40;
+
+    protected static final long BOXED = 16;
+
+    /** A {@link java.util.GregorianCalendar} with its time zone reference and fields arrays. */
+    protected static final long CALENDAR = 448;
+
+    protected static final long ACL_ROW_OVERHEAD = 64;
+
+    protected final Model model;
+
+    public RowSizeEstimator(Model model) {
+        this.model = model;
+    }
+
+    @Override
+    public long applyAsLong(Row row) {
+        long size = ROW_OVERHEAD + sizeOf(row.id);
+        if (row.values == null) {
+            return size;
+        }
+        size += REFERENCE * row.values.length;
+        if (row.isCollection()) {
+            for (Serializable value : row.values) {
+                size += sizeOf(value);
+            }
+        } else {
+            // keys are interned and not counted
+            size += REFERENCE * row.keys.length;
+            Map<String, ColumnType> types = getKeysType(row.tableName);
+            for (int i = 0; i < row.size; i++) {
+                size += sizeOf(types.get(row.keys[i]), row.values[i]);
+            }
+        }
+        return size;
+    }
+
+    protected Map<String, ColumnType> getKeysType(String tableName) {
+        Map<String, ColumnType> types = model == null ? null : model.getFragmentKeysType(tableName);
+        return types == null ? Collections.emptyMap() : types;
+    }
+
+    protected long sizeOf(ColumnType type, Serializable value) {
+        if (value == null) {
+            return 0;
+        }
+        if (type != null && !type.isArray()) {
+            switch (type.spec) {
+            case BOOLEAN:
+                // shared Boolean instances
+                return 0;
+            case LONG:
+            case INTEGER:
+            case TINYINT:
+            case DOUBLE:
+            case AUTOINC:
+                return BOXED + 8;
+            case TIMESTAMP:
+                return CALENDAR;
+            default:
+                break;
+            }
+        }
+        return sizeOf(value);
+    }
+
+    protected long sizeOf(Object value) {
+        if (value == null || value == Row.OPAQUE || value instanceof Boolean) {
+            return 0;
+        } else if (value instanceof String) {
+            return STRING_OVERHEAD + 2L * ((String) value).length();
+        } else if (value instanceof Number) {
+            return BOXED + 8;
+        } else if (value instanceof Calendar) {
+            return CALENDAR;
+        } else if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            long size = ARRAY_OVERHEAD + REFERENCE * array.length;
+            for (Object v : array) {
+                size += sizeOf(v);
+            }
+            return size;
+        } else if (value instanceof ACLRow) {
+            ACLRow acl = (ACLRow) value;
+            return ACL_ROW_OVERHEAD + sizeOf(acl.name) + sizeOf(acl.permission) + sizeOf(acl.user)
+                    + sizeOf(acl.group) + sizeOf(acl.begin) + sizeOf(acl.end) + sizeOf(acl.creator)
+                    + sizeOf(acl.status);
+        } else {
+            // unknown, count a small object
+            return BOXED + 8;
+        }
+    }
+
+}
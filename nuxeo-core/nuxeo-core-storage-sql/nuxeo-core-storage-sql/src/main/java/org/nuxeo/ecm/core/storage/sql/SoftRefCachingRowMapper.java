@@ -57,11 +57,11 @@ public class SoftRefCachingRowMapper implements RowMapper {
      * to denote a fragment known to be absent from the database.
      * <p>
      * This cache is memory-sensitive (all values are soft-referenced), a fragment can always be refetched if the GC
-     * collects it.
+     * collects it. Subclasses may replace it with another cache implementation.
      */
     // we use a new Row instance for the absent case to avoid keeping other
     // references to it which would prevent its GCing
-    private final Map<RowId, Row> cache;
+    protected Map<RowId, Row> cache;
 
     private Model model;
 
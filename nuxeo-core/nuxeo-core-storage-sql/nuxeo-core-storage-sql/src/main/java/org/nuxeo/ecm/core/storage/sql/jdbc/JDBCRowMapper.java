@@ -941,6 +941,13 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
     @Override
     public CopyResult copy(IdWithTypes source, Serializable destParentId, String destName, Row overwriteRow) {
         // assert !model.separateMainTable; // other case not implemented
+        if (overwriteRow == null && dialect.supportsCopyIdMapTable()) {
+            try {
+                return copySetBased(source, destParentId, destName);
+            } catch (SQLException e) {
+                throw new NuxeoException("Could not copy: " + source.id.toString(), e);
+            }
+        }
         Invalidations invalidations = new Invalidations();
         try {
             Map<Serializable, Serializable> idMap = new LinkedHashMap<Serializable, Serializable>();
@@ -1001,6 +1008,159 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
         }
     }
 
+    /**
+     * Copies a tree using set-based statements.
+     * <p>
+     * The descendants are collected level by level, then the correspondence between original and copied ids is
+     * written to a temporary table, and each fragment table is copied with a single {@code INSERT ... SELECT} joining
+     * on it. The hierarchy table is copied one depth at a time so that parents always exist before their children.
+     *
+     * @since 9.2
+     */
+    protected CopyResult copySetBased(IdWithTypes source, Serializable destParentId, String destName)
+            throws SQLException {
+        Invalidations invalidations = new Invalidations();
+        Map<Serializable, Serializable> idMap = new LinkedHashMap<Serializable, Serializable>();
+        Map<Serializable, IdWithTypes> idToTypes = new HashMap<Serializable, IdWithTypes>();
+        // copy the root explicitly, it gets a new parent and maybe a new name
+        boolean resetVersion = destParentId != null;
+        idToTypes.put(source.id, source);
+        Serializable newRootId = copyHier(source.id, destParentId, destName, resetVersion, idMap);
+        if (destParentId != null) { // null for a new version
+            invalidations.addModified(new RowId(Invalidations.PARENT, destParentId));
+        }
+        // collect the descendants and allocate their new ids
+        Map<Serializable, Serializable> parentIds = new HashMap<Serializable, Serializable>();
+        List<List<Serializable>> levels = new ArrayList<List<Serializable>>();
+        List<Serializable> parents = Collections.singletonList(source.id);
+        boolean onlyComplex = destParentId == null;
+        while (!parents.isEmpty()) {
+            List<Serializable> children = new ArrayList<Serializable>();
+            int size = parents.size();
+            int chunkSize = sqlInfo.getMaximumArgsForIn();
+            for (int start = 0; start < size; start += chunkSize) {
+                int end = Math.min(start + chunkSize, size);
+                for (Serializable[] child : getChildrenIdsWithTypes(parents.subList(start, end), onlyComplex,
+                        idToTypes)) {
+                    parentIds.put(child[0], child[1]);
+                    children.add(child[0]);
+                }
+            }
+            for (Serializable childId : children) {
+                idMap.put(childId, generateNewId());
+            }
+            if (!children.isEmpty()) {
+                levels.add(children);
+            }
+            parents = children;
+            onlyComplex = false;
+        }
+        // fill the temporary id map table
+        try (Statement st = connection.createStatement()) {
+            String sql = sqlInfo.getCreateCopyIdMapTableSql();
+            if (logger.isLogEnabled()) {
+                logger.log(sql);
+            }
+            st.execute(sql);
+            countExecute();
+            sql = sqlInfo.getDeleteCopyIdMapSql();
+            if (logger.isLogEnabled()) {
+                logger.log(sql);
+            }
+            st.executeUpdate(sql);
+            countExecute();
+        }
+        insertCopyIdMap(source.id, newRootId, destParentId, levels, idMap, parentIds);
+        // copy the hierarchy one depth at a time
+        String hierSql = sqlInfo.getCopyHierWithIdMapSql(resetVersion);
+        try (PreparedStatement ps = connection.prepareStatement(hierSql)) {
+            for (int depth = 1; depth <= levels.size(); depth++) {
+                if (logger.isLogEnabled()) {
+                    logger.logSQL(hierSql, Collections.singletonList(Long.valueOf(depth)));
+                }
+                ps.setInt(1, depth);
+                ps.executeUpdate();
+                countExecute();
+            }
+        }
+        // copy all collected fragments
+        Set<Serializable> proxyIds = new HashSet<Serializable>();
+        try (Statement st = connection.createStatement()) {
+            for (Entry<String, Set<Serializable>> entry : model.getPerFragmentIds(idToTypes).entrySet()) {
+                String tableName = entry.getKey();
+                if (tableName.equals(Model.HIER_TABLE_NAME)) {
+                    // already done
+                    continue;
+                }
+                if (tableName.equals(Model.VERSION_TABLE_NAME)) {
+                    // versions not fileable
+                    continue;
+                }
+                if (tableName.equals(Model.PROXY_TABLE_NAME)) {
+                    for (Serializable id : entry.getValue()) {
+                        proxyIds.add(idMap.get(id)); // copied ids
+                    }
+                }
+                String sql = sqlInfo.getCopyWithIdMapSql(tableName);
+                if (logger.isLogEnabled()) {
+                    logger.log(sql);
+                }
+                st.executeUpdate(sql);
+                countExecute();
+            }
+            String sql = sqlInfo.getDeleteCopyIdMapSql();
+            if (logger.isLogEnabled()) {
+                logger.log(sql);
+            }
+            st.executeUpdate(sql);
+            countExecute();
+        }
+        return new CopyResult(newRootId, invalidations, proxyIds);
+    }
+
+    /**
+     * Inserts the correspondence between original and copied ids into the temporary id map table, with the depth of
+     * each node (0 for the root).
+     */
+    protected void insertCopyIdMap(Serializable rootId, Serializable newRootId, Serializable destParentId,
+            List<List<Serializable>> levels, Map<Serializable, Serializable> idMap,
+            Map<Serializable, Serializable> parentIds) throws SQLException {
+        String sql = sqlInfo.getInsertCopyIdMapSql();
+        boolean batched = supportsBatchUpdates && idMap.size() > 1;
+        String loggedSql = batched ? sql + " -- BATCHED" : sql;
+        Column idColumn = sqlInfo.getCopyIdColumn(Model.HIER_TABLE_NAME);
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            int batch = 0;
+            int remaining = idMap.size();
+            for (int depth = 0; depth <= levels.size(); depth++) {
+                List<Serializable> ids = depth == 0 ? Collections.singletonList(rootId) : levels.get(depth - 1);
+                for (Serializable id : ids) {
+                    Serializable newId = depth == 0 ? newRootId : idMap.get(id);
+                    Serializable newParentId = depth == 0 ? destParentId : idMap.get(parentIds.get(id));
+                    if (logger.isLogEnabled()) {
+                        logger.logSQL(loggedSql, Arrays.asList(id, newId, newParentId, Long.valueOf(depth)));
+                    }
+                    idColumn.setToPreparedStatement(ps, 1, id);
+                    idColumn.setToPreparedStatement(ps, 2, newId);
+                    idColumn.setToPreparedStatement(ps, 3, newParentId);
+                    ps.setInt(4, depth);
+                    remaining--;
+                    if (batched) {
+                        ps.addBatch();
+                        batch++;
+                        if (batch % UPDATE_BATCH_SIZE == 0 || remaining == 0) {
+                            ps.executeBatch();
+                            countExecute();
+                        }
+                    } else {
+                        ps.executeUpdate();
+                        countExecute();
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Updates a row in the database with given explicit values.
      */
@@ -1176,6 +1336,56 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
         }
     }
 
+    /**
+     * Gets the children ids of several nodes, and records their types in {@code idToTypes}.
+     *
+     * @return a list of pairs of child id and parent id
+     * @since 9.2
+     */
+    protected List<Serializable[]> getChildrenIdsWithTypes(List<Serializable> ids, boolean onlyComplex,
+            Map<Serializable, IdWithTypes> idToTypes) throws SQLException {
+        List<Serializable[]> children = new ArrayList<Serializable[]>();
+        SQLInfoSelect select = sqlInfo.getSelectChildrenIdsAndTypes(ids.size(), onlyComplex);
+        if (logger.isLogEnabled()) {
+            logger.logSQL(select.sql, ids);
+        }
+        try (PreparedStatement ps = connection.prepareStatement(select.sql)) {
+            int i = 1;
+            for (Serializable id : ids) {
+                dialect.setId(ps, i++, id); // parent id
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                countExecute();
+                while (rs.next()) {
+                    Serializable childId = null;
+                    Serializable parentId = null;
+                    String childPrimaryType = null;
+                    String[] childMixinTypes = null;
+                    i = 1;
+                    for (Column column : select.whatColumns) {
+                        String key = column.getKey();
+                        Serializable value = column.getFromResultSet(rs, i++);
+                        if (key.equals(Model.MAIN_KEY)) {
+                            childId = value;
+                        } else if (key.equals(Model.HIER_PARENT_KEY)) {
+                            parentId = value;
+                        } else if (key.equals(Model.MAIN_PRIMARY_TYPE_KEY)) {
+                            childPrimaryType = (String) value;
+                        } else if (key.equals(Model.MAIN_MIXIN_TYPES_KEY)) {
+                            childMixinTypes = (String[]) value;
+                        }
+                    }
+                    idToTypes.put(childId, new IdWithTypes(childId, childPrimaryType, childMixinTypes));
+                    children.add(new Serializable[] { childId, parentId });
+                }
+            }
+            if (logger.isLogEnabled()) {
+                logger.logCount(children.size());
+            }
+            return children;
+        }
+    }
+
     /**
      * Copy the rows from tableName with given ids into new ones with new ids given by idMap.
      * <p>
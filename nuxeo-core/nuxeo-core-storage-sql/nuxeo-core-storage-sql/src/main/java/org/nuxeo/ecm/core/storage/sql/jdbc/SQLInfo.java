@@ -73,6 +73,17 @@ public class SQLInfo {
 
     private static final String ORDER_ASC = "ASC";
 
+    /** Temporary table mapping original ids to copied ids during a set-based copy. */
+    protected static final String COPY_IDMAP_TABLE_NAME = "nxt_copy_idmap";
+
+    protected static final String COPY_IDMAP_OLD_ID = "oldid";
+
+    protected static final String COPY_IDMAP_NEW_ID = "newid";
+
+    protected static final String COPY_IDMAP_NEW_PARENT_ID = "newparentid";
+
+    protected static final String COPY_IDMAP_DEPTH = "copydepth";
+
     public final Database database;
 
     public final Dialect dialect;
@@ -635,6 +646,160 @@ public class SQLInfo {
         return copyIdColumnMap.get(tableName);
     }
 
+    /**
+     * Selects the ids and types of the children of several parent ids, for a copy.
+     * <p>
+     * The selected columns are the id, the parent id, the primary type and the mixin types.
+     *
+     * @param nids the number of parent ids
+     * @param onlyComplex whether to only select complex properties
+     * @since 9.2
+     */
+    public SQLInfoSelect getSelectChildrenIdsAndTypes(int nids, boolean onlyComplex) {
+        Table table = database.getTable(Model.HIER_TABLE_NAME);
+        List<Column> whatColumns = new ArrayList<>(4);
+        whatColumns.add(table.getColumn(Model.MAIN_KEY));
+        whatColumns.add(table.getColumn(Model.HIER_PARENT_KEY));
+        whatColumns.add(table.getColumn(Model.MAIN_PRIMARY_TYPE_KEY));
+        whatColumns.add(table.getColumn(Model.MAIN_MIXIN_TYPES_KEY));
+        Select select = new Select(table);
+        select.setWhat(whatColumns.stream().map(Column::getQuotedName).collect(Collectors.joining(", ")));
+        select.setFrom(table.getQuotedName());
+        Column whereColumn = table.getColumn(Model.HIER_PARENT_KEY);
+        StringBuilder wherebuf = new StringBuilder(whereColumn.getQuotedName());
+        if (nids == 1) {
+            wherebuf.append(" = ?");
+        } else {
+            wherebuf.append(" IN (");
+            for (int i = 0; i < nids; i++) {
+                if (i != 0) {
+                    wherebuf.append(", ");
+                }
+                wherebuf.append('?');
+            }
+            wherebuf.append(')');
+        }
+        wherebuf.append(getSoftDeleteClause(Model.HIER_TABLE_NAME));
+        if (onlyComplex) {
+            wherebuf.append(" AND ");
+            wherebuf.append(table.getColumn(Model.HIER_CHILD_ISPROPERTY_KEY).getQuotedName());
+            wherebuf.append(" = ").append(dialect.toBooleanValueString(true));
+        }
+        select.setWhere(wherebuf.toString());
+        return new SQLInfoSelect(select.getStatement(), whatColumns, Collections.singletonList(whereColumn), null);
+    }
+
+    /**
+     * Returns the SQL to create, if needed, the temporary table mapping original ids to copied ids.
+     *
+     * @since 9.2
+     */
+    public String getCreateCopyIdMapTableSql() {
+        String idType = database.getTable(Model.HIER_TABLE_NAME).getColumn(Model.MAIN_KEY).getSqlTypeString();
+        String columns = String.join(", ", //
+                COPY_IDMAP_OLD_ID + " " + idType, //
+                COPY_IDMAP_NEW_ID + " " + idType, //
+                COPY_IDMAP_NEW_PARENT_ID + " " + idType, //
+                COPY_IDMAP_DEPTH + " INTEGER");
+        return dialect.getCreateCopyIdMapTableSql(COPY_IDMAP_TABLE_NAME, columns);
+    }
+
+    /**
+     * Returns the SQL to insert a row in the temporary id map table. The old id, new id, new parent id and depth are
+     * free parameters.
+     *
+     * @since 9.2
+     */
+    public String getInsertCopyIdMapSql() {
+        return "INSERT INTO " + COPY_IDMAP_TABLE_NAME + " (" + COPY_IDMAP_OLD_ID + ", " + COPY_IDMAP_NEW_ID + ", "
+                + COPY_IDMAP_NEW_PARENT_ID + ", " + COPY_IDMAP_DEPTH + ") VALUES (?, ?, ?, ?)";
+    }
+
+    /**
+     * Returns the SQL to empty the temporary id map table.
+     *
+     * @since 9.2
+     */
+    public String getDeleteCopyIdMapSql() {
+        return "DELETE FROM " + COPY_IDMAP_TABLE_NAME;
+    }
+
+    /**
+     * Returns the SQL to copy the hierarchy rows of one depth of a tree, using the temporary id map table. The depth is
+     * a free parameter.
+     * <p>
+     * INSERT INTO hierarchy (id, parentid, x, y) SELECT M.newid, M.newparentid, x, y FROM hierarchy JOIN map M ON id =
+     * M.oldid WHERE M.depth = ?
+     *
+     * @since 9.2
+     */
+    public String getCopyHierWithIdMapSql(boolean resetVersion) {
+        Table table = database.getTable(Model.HIER_TABLE_NAME);
+        Insert insert = new Insert(table);
+        List<String> selectWhats = new ArrayList<>();
+        for (Column column : table.getColumns()) {
+            if (column.isIdentity()) {
+                // identity column is never copied
+                continue;
+            }
+            insert.addColumn(column);
+            String key = column.getKey();
+            if (key.equals(Model.MAIN_KEY)) {
+                selectWhats.add("M." + COPY_IDMAP_NEW_ID);
+            } else if (key.equals(Model.HIER_PARENT_KEY)) {
+                selectWhats.add("M." + COPY_IDMAP_NEW_PARENT_ID);
+            } else if (key.equals(Model.MAIN_BASE_VERSION_KEY) //
+                    || key.equals(Model.MAIN_CHECKED_IN_KEY) //
+                    || (key.equals(Model.MAIN_MINOR_VERSION_KEY) && resetVersion) //
+                    || (key.equals(Model.MAIN_MAJOR_VERSION_KEY) && resetVersion)) {
+                selectWhats.add("NULL");
+            } else {
+                selectWhats.add(column.getFullQuotedName());
+            }
+        }
+        Select select = new Select(null);
+        select.setWhat(String.join(", ", selectWhats));
+        select.setFrom(getCopyIdMapJoin(table));
+        select.setWhere("M." + COPY_IDMAP_DEPTH + " = ?");
+        insert.setValues(select.getStatement());
+        return insert.getStatement();
+    }
+
+    /**
+     * Returns the SQL to copy all the rows of a fragment table for the ids of the temporary id map table.
+     * <p>
+     * INSERT INTO foo (id, x, y) SELECT M.newid, x, y FROM foo JOIN map M ON id = M.oldid
+     *
+     * @since 9.2
+     */
+    public String getCopyWithIdMapSql(String tableName) {
+        Table table = database.getTable(tableName);
+        Insert insert = new Insert(table);
+        List<String> selectWhats = new ArrayList<>();
+        for (Column column : table.getColumns()) {
+            if (column.isIdentity()) {
+                // identity column is never copied
+                continue;
+            }
+            insert.addColumn(column);
+            if (column.getKey().equals(Model.MAIN_KEY)) {
+                selectWhats.add("M." + COPY_IDMAP_NEW_ID);
+            } else {
+                selectWhats.add(column.getFullQuotedName());
+            }
+        }
+        Select select = new Select(null);
+        select.setWhat(String.join(", ", selectWhats));
+        select.setFrom(getCopyIdMapJoin(table));
+        insert.setValues(select.getStatement());
+        return insert.getStatement();
+    }
+
+    protected String getCopyIdMapJoin(Table table) {
+        return table.getQuotedName() + " JOIN " + COPY_IDMAP_TABLE_NAME + " M ON "
+                + table.getColumn(Model.MAIN_KEY).getFullQuotedName() + " = M." + COPY_IDMAP_OLD_ID;
+    }
+
     // ----- prepare everything -----
 
     /**
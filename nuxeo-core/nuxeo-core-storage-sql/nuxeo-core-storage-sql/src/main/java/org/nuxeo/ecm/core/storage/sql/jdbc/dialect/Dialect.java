@@ -868,6 +868,31 @@ public abstract class Dialect {
         return false;
     }
 
+    /**
+     * Checks if the dialect supports copying a tree with set-based statements, using a temporary table mapping the
+     * original ids to the copied ids.
+     *
+     * @since 9.2
+     */
+    public boolean supportsCopyIdMapTable() {
+        return false;
+    }
+
+    /**
+     * Gets the SQL to create, if it doesn't exist yet, the temporary table mapping original ids to copied ids.
+     * <p>
+     * The table must only be visible to the current connection, and its creation must not commit the current
+     * transaction.
+     *
+     * @param tableName the table name
+     * @param columns the columns definition, for instance {@code "oldid VARCHAR(36), newid VARCHAR(36)"}
+     * @return the SQL statement
+     * @since 9.2
+     */
+    public String getCreateCopyIdMapTableSql(String tableName, String columns) {
+        throw new UnsupportedOperationException();
+    }
+
     /**
      * Gets the expression to use to check tree membership.
      *
@@ -282,6 +282,17 @@ public class DialectH2 extends Dialect {
         return String.format("NX_IN_TREE(%s, ?)", idColumnName);
     }
 
+    @Override
+    public boolean supportsCopyIdMapTable() {
+        return true;
+    }
+
+    @Override
+    public String getCreateCopyIdMapTableSql(String tableName, String columns) {
+        // TRANSACTIONAL so that the current transaction is not committed
+        return String.format("CREATE LOCAL TEMPORARY TABLE IF NOT EXISTS %s (%s) TRANSACTIONAL", tableName, columns);
+    }
+
     @Override
     public boolean supportsArrays() {
         return false;
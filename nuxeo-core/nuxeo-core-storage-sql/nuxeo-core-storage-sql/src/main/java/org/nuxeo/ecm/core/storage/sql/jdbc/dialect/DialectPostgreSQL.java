@@ -792,6 +792,16 @@ public class DialectPostgreSQL extends Dialect {
         return pathOptimizationsEnabled;
     }
 
+    @Override
+    public boolean supportsCopyIdMapTable() {
+        return true;
+    }
+
+    @Override
+    public String getCreateCopyIdMapTableSql(String tableName, String columns) {
+        return String.format("CREATE TEMPORARY TABLE IF NOT EXISTS %s (%s)", tableName, columns);
+    }
+
     @Override
     public String getInTreeSql(String idColumnName, String id) {
         String cast;
@@ -0,0 +1,112 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TestBoundedRowCache {
+
+    protected static final long ROW_SIZE = 1000;
+
+    protected static Row row(String tableName, String id) {
+        return new Row(tableName, id);
+    }
+
+    protected static BoundedRowCache newCache(long maxBytes) {
+        return new BoundedRowCache(maxBytes, null, row -> ROW_SIZE, null);
+    }
+
+    @Test
+    public void testSizeBound() {
+        AtomicInteger evictions = new AtomicInteger();
+        BoundedRowCache cache = new BoundedRowCache(100_000, null, row -> ROW_SIZE,
+                rowId -> evictions.incrementAndGet());
+        for (int i = 0; i < 500; i++) {
+            Row row = row("hierarchy", "id" + i);
+            cache.put(new RowId(row), row);
+        }
+        assertTrue(cache.getBytes() <= 100_000);
+        assertEquals(cache.size() * ROW_SIZE, cache.getBytes());
+        assertEquals(500, cache.size() + evictions.get());
+    }
+
+    @Test
+    public void testFrequentRowsSurviveScan() {
+        BoundedRowCache cache = newCache(1_000_000);
+        for (int i = 0; i < 50; i++) {
+            Row row = row("hierarchy", "hot" + i);
+            cache.put(new RowId(row), row);
+        }
+        for (int n = 0; n < 10; n++) {
+            for (int i = 0; i < 50; i++) {
+                assertNotNull(cache.get(new RowId("hierarchy", "hot" + i)));
+            }
+        }
+        // a big scan of rows read only once
+        for (int i = 0; i < 2000; i++) {
+            Row row = row("hierarchy", "cold" + i);
+            cache.put(new RowId(row), row);
+        }
+        for (int i = 0; i < 50; i++) {
+            assertNotNull("hot" + i, cache.get(new RowId("hierarchy", "hot" + i)));
+        }
+        assertTrue(cache.getBytes() <= 1_000_000);
+    }
+
+    @Test
+    public void testTableQuota() {
+        BoundedRowCache cache = new BoundedRowCache(1_000_000, Collections.singletonMap("acls", Long.valueOf(10_000)),
+                row -> ROW_SIZE, null);
+        for (int i = 0; i < 50; i++) {
+            Row row = row("acls", "id" + i);
+            cache.put(new RowId(row), row);
+            row = row("hierarchy", "id" + i);
+            cache.put(new RowId(row), row);
+        }
+        assertEquals(10_000, cache.getBytes("acls"));
+        assertEquals(50 * ROW_SIZE, cache.getBytes("hierarchy"));
+        // most recent rows kept
+        assertNotNull(cache.get(new RowId("acls", "id49")));
+        assertNull(cache.get(new RowId("acls", "id0")));
+    }
+
+    @Test
+    public void testRemoveAndClear() {
+        BoundedRowCache cache = newCache(1_000_000);
+        Row row1 = row("hierarchy", "id1");
+        Row row2 = row("hierarchy", "id2");
+        cache.put(new RowId(row1), row1);
+        cache.put(new RowId(row2), row2);
+        // replacing doesn't count twice
+        cache.put(new RowId(row1), row1);
+        assertEquals(2 * ROW_SIZE, cache.getBytes());
+        assertEquals(row1, cache.remove(new RowId("hierarchy", "id1")));
+        assertEquals(ROW_SIZE, cache.getBytes("hierarchy"));
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getBytes());
+        assertEquals(0, cache.getBytes("hierarchy"));
+    }
+
+}
@@ -4389,6 +4389,37 @@ public class TestSQLRepositoryAPI {
         assertNotEquals(token2, token2b);
     }
 
+    @Test
+    public void testChangeTokenManyDocumentsInOneSave() {
+        int n = 50;
+        List<DocumentModel> docs = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            DocumentModel doc = session.createDocumentModel("/", "doc" + i, "File");
+            maybeCreateChangeToken(doc);
+            docs.add(session.createDocument(doc));
+        }
+        session.save();
+
+        // update all the docs twice in a row, each save updates all of them at once
+        for (int round = 0; round < 2; round++) {
+            List<String> tokens = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                DocumentModel doc = docs.get(i);
+                tokens.add(doc.getChangeToken());
+                doc.setPropertyValue("dc:title", "Doc " + i + " round " + round);
+                doc.setPropertyValue("dc:subjects", new String[] { "s" + round });
+                maybeUpdateChangeToken(doc);
+                docs.set(i, session.saveDocument(doc));
+            }
+            session.save();
+            for (int i = 0; i < n; i++) {
+                DocumentModel doc = session.getDocument(docs.get(i).getRef());
+                assertEquals("Doc " + i + " round " + round, doc.getTitle());
+                assertNotEquals(tokens.get(i), doc.getChangeToken());
+            }
+        }
+    }
+
     // query providers create "search" doc types to collect results
     @Test
     public void testChangeTokenOnFakeDocument() {
@@ -21,6 +21,8 @@ package org.nuxeo.ecm.core.io.download;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
+import java.util.List;
+
 import org.junit.Test;
 import org.nuxeo.ecm.core.io.download.DownloadService.ByteRange;
 
@@ -80,4 +82,33 @@ public class TestDownloadHelper {
         assertNull(DownloadHelper.parseRange("bytes=foo-bar", 12345));
     }
 
+    @Test
+    public void testParseMultipleByteRanges() throws Exception {
+        List<ByteRange> byteRanges = DownloadHelper.parseRanges("bytes=0-123, 200-, -45", 12345);
+        assertEquals(3, byteRanges.size());
+        assertEquals(0, byteRanges.get(0).getStart());
+        assertEquals(123, byteRanges.get(0).getEnd());
+        assertEquals(200, byteRanges.get(1).getStart());
+        assertEquals(12344, byteRanges.get(1).getEnd());
+        assertEquals(12300, byteRanges.get(2).getStart());
+        assertEquals(12344, byteRanges.get(2).getEnd());
+    }
+
+    @Test
+    public void testParseInvalidMultipleByteRanges() throws Exception {
+        assertNull(DownloadHelper.parseRanges("bytes=0-123,foo", 12345));
+        assertNull(DownloadHelper.parseRanges("bytes=0-123,", 12345));
+    }
+
+    @Test
+    public void testParseLargeByteRange() throws Exception {
+        long length = 10_000_000_000L;
+        ByteRange byteRange = DownloadHelper.parseRange("bytes=5000000000-", length);
+        assertEquals(5_000_000_000L, byteRange.getStart());
+        assertEquals(length - 1, byteRange.getEnd());
+        // end is capped to the length
+        byteRange = DownloadHelper.parseRange("bytes=0-20000000000", length);
+        assertEquals(length, byteRange.getLength());
+    }
+
 }
@@ -23,6 +23,7 @@ import static java.lang.Boolean.FALSE;
 import static java.lang.Boolean.TRUE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.atLeastOnce;
@@ -32,9 +33,13 @@ import static org.mockito.Mockito.when;
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -48,7 +53,12 @@ import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.nuxeo.ecm.core.api.Blob;
@@ -64,6 +74,7 @@ import org.nuxeo.ecm.core.api.local.LoginStack;
 import org.nuxeo.ecm.core.io.download.DownloadServiceImpl.Action;
 import org.nuxeo.ecm.core.test.CoreFeature;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.test.runner.ConditionalIgnoreRule;
 import org.nuxeo.runtime.test.runner.Deploy;
 import org.nuxeo.runtime.test.runner.Features;
 import org.nuxeo.runtime.test.runner.FeaturesRunner;
@@ -74,6 +85,8 @@ import org.nuxeo.runtime.test.runner.LocalDeploy;
 @Deploy({ "org.nuxeo.ecm.core.io", "org.nuxeo.ecm.core.cache" })
 public class TestDownloadService {
 
+    private static final Log log = LogFactory.getLog(TestDownloadService.class);
+
     @Inject
     protected DownloadService downloadService;
 
@@ -341,4 +354,80 @@ public class TestDownloadService {
         session.close();
     }
 
+    @Test
+    public void testMultipleByteRanges() throws Exception {
+        File file = Framework.createTempFile("nxtest", ".txt");
+        FileUtils.writeStringToFile(file, "0123456789");
+        Blob blob = new FileBlob(file, "text/plain");
+        blob.setDigest("12345");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getHeader("Range")).thenReturn("bytes=0-1,-3");
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        ServletOutputStream sos = new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+            }
+        };
+        when(response.getOutputStream()).thenReturn(sos);
+
+        downloadService.downloadBlob(request, response, null, null, blob, null, null);
+
+        verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        String body = out.toString();
+        assertTrue(body, body.contains("Content-Range: bytes 0-1/10\r\n\r\n01\r\n--"));
+        assertTrue(body, body.contains("Content-Range: bytes 7-9/10\r\n\r\n789\r\n--"));
+        verify(response).setContentLength(body.length());
+        file.delete();
+    }
+
+    @Test
+    public void testFileByteRange() throws Exception {
+        File file = Framework.createTempFile("nxtest", ".txt");
+        FileUtils.writeStringToFile(file, "0123456789");
+        Blob blob = new FileBlob(file, "text/plain");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        downloadService.transferBlobWithByteRange(blob, new DownloadService.ByteRange(2, 5), () -> out);
+        assertEquals("2345", out.toString());
+        file.delete();
+    }
+
+    /**
+     * Compares the throughput and allocations of a stream copy and of the file transfer used for file-backed blobs.
+     */
+    @Test
+    @ConditionalIgnoreRule.Ignore(condition = ConditionalIgnoreRule.IgnoreLongRunning.class)
+    public void benchmarkFileTransfer() throws Exception {
+        File file = Framework.createTempFile("nxbench", ".bin");
+        byte[] chunk = new byte[1024 * 1024];
+        try (OutputStream fout = FileUtils.openOutputStream(file)) {
+            for (int i = 0; i < 256; i++) { // 256 MB
+                fout.write(chunk);
+            }
+        }
+        Blob blob = new FileBlob(file);
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        for (int round = 0; round < 5; round++) {
+            long bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+            long t0 = System.nanoTime();
+            try (InputStream in = blob.getStream()) {
+                IOUtils.copyLarge(in, new NullOutputStream());
+            }
+            long t1 = System.nanoTime();
+            long streamBytes = threadMXBean.getThreadAllocatedBytes(threadId) - bytes;
+            bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+            downloadService.transferBlobWithByteRange(blob, null, () -> new NullOutputStream());
+            long t2 = System.nanoTime();
+            long transferBytes = threadMXBean.getThreadAllocatedBytes(threadId) - bytes;
+            log.info(String.format("stream: %d MB/s, %d KB allocated; transferTo: %d MB/s, %d KB allocated",
+                    file.length() * 1000 / (t1 - t0), streamBytes / 1024, //
+                    file.length() * 1000 / (t2 - t1), transferBytes / 1024));
+        }
+        file.delete();
+    }
+
 }
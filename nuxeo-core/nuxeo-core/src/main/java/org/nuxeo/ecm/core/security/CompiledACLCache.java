@@ -0,0 +1,244 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.security;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.nuxeo.ecm.core.api.security.ACE;
+import org.nuxeo.ecm.core.api.security.ACL;
+import org.nuxeo.ecm.core.api.security.ACP;
+import org.nuxeo.ecm.core.api.security.Access;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.codahale.metrics.SharedMetricRegistries;
+
+/**
+ * Cache of the permissions granted by merged ACPs, compiled for the principals they are checked for.
+ * <p>
+ * A merged ACP is identified by its effective ACEs, in order. The documents inheriting the same ACLs share the same
+ * entry, and an ACP whose ACLs changed is a different entry, so entries never hold stale permissions and don't need
+ * to be invalidated when ACLs change: unused entries are evicted when the cache is full.
+ * <p>
+ * For each set of principals, an entry holds the permissions already checked and the ones granted, as bitsets indexed
+ * by permission.
+ *
+ * @since 9.2
+ */
+public class CompiledACLCache {
+
+    protected static final String HITS_NAME = MetricRegistry.name("nuxeo", "security", "acl-cache", "read-hit-counter");
+
+    protected static final String MISSES_NAME = MetricRegistry.name("nuxeo", "security", "acl-cache",
+            "read-miss-counter");
+
+    protected static final String HIT_RATIO_NAME = MetricRegistry.name("nuxeo", "security", "acl-cache",
+            "read-hit-ratio");
+
+    protected static final String SIZE_NAME = MetricRegistry.name("nuxeo", "security", "acl-cache", "size");
+
+    /** Maximum number of principal sets compiled for an ACP, after which they are cleared. */
+    protected static final int MAX_PRINCIPALS = 1000;
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    protected final Counter hits;
+
+    protected final Counter misses;
+
+    protected final int maxSize;
+
+    protected final ConcurrentMap<ACLKey, CompiledACL> acls = new ConcurrentHashMap<>();
+
+    protected final ConcurrentMap<String, Integer> permissionIndexes = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxSize the maximum number of ACPs, after which the cache is cleared
+     */
+    public CompiledACLCache(int maxSize) {
+        this.maxSize = maxSize;
+        hits = registry.counter(HITS_NAME);
+        misses = registry.counter(MISSES_NAME);
+        registry.remove(HIT_RATIO_NAME);
+        registry.register(HIT_RATIO_NAME, new RatioGauge() {
+
+            @Override
+            protected Ratio getRatio() {
+                long hitCount = hits.getCount();
+                return Ratio.of(hitCount, hitCount + misses.getCount());
+            }
+        });
+        registry.remove(SIZE_NAME);
+        registry.register(SIZE_NAME, (Gauge<Integer>) acls::size);
+    }
+
+    /**
+     * Unregisters the metrics of this cache.
+     */
+    public void close() {
+        registry.remove(HIT_RATIO_NAME);
+        registry.remove(SIZE_NAME);
+        acls.clear();
+    }
+
+    /**
+     * Clears the cache.
+     */
+    public void clear() {
+        acls.clear();
+    }
+
+    /**
+     * Checks if a permission is granted by an ACP.
+     *
+     * @param acp the merged ACP
+     * @param principals the principals to check, see {@link SecurityService#getPrincipalsToCheck}
+     * @param permission the permission
+     * @param resolvedPermissions the permission and the groups containing it, see
+     *            {@link SecurityService#getPermissionsToCheck}
+     * @return {@code true} if the permission is granted
+     */
+    public boolean isGranted(ACP acp, String[] principals, String permission, String[] resolvedPermissions) {
+        ACLKey key = new ACLKey(acp);
+        CompiledACL compiled = acls.get(key);
+        if (compiled == null) {
+            if (acls.size() >= maxSize) {
+                acls.clear();
+            }
+            compiled = acls.computeIfAbsent(key, k -> new CompiledACL());
+        }
+        Grants grants = compiled.getGrants(principals);
+        int index = getPermissionIndex(permission);
+        Boolean granted = grants.get(index);
+        if (granted != null) {
+            hits.inc();
+            return granted.booleanValue();
+        }
+        misses.inc();
+        Access access = acp.getAccess(principals, resolvedPermissions);
+        boolean result = access.toBoolean();
+        grants.set(index, result);
+        return result;
+    }
+
+    protected int getPermissionIndex(String permission) {
+        Integer index = permissionIndexes.get(permission);
+        if (index == null) {
+            synchronized (permissionIndexes) {
+                index = permissionIndexes.computeIfAbsent(permission, p -> Integer.valueOf(permissionIndexes.size()));
+            }
+        }
+        return index.intValue();
+    }
+
+    /**
+     * The identity of an ACP: its effective ACEs, in order, reduced to what determines the access.
+     */
+    protected static class ACLKey {
+
+        protected final String[] entries;
+
+        protected final int hash;
+
+        protected ACLKey(ACP acp) {
+            List<String> list = new ArrayList<>();
+            for (ACL acl : acp.getACLs()) {
+                for (ACE ace : acl) {
+                    // an ACE without dates is always effective, avoid computing the current date
+                    if ((ace.getBegin() == null && ace.getEnd() == null) || ace.isEffective()) {
+                        list.add(ace.isGranted() ? "+" : "-");
+                        list.add(ace.getUsername());
+                        list.add(ace.getPermission());
+                    }
+                }
+            }
+            entries = list.toArray(new String[list.size()]);
+            hash = Arrays.hashCode(entries);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ACLKey)) {
+                return false;
+            }
+            ACLKey other = (ACLKey) obj;
+            return hash == other.hash && Arrays.equals(entries, other.entries);
+        }
+    }
+
+    /**
+     * The permissions computed for an ACP, by set of principals.
+     */
+    protected static class CompiledACL {
+
+        protected final Map<List<String>, Grants> grants = new ConcurrentHashMap<>();
+
+        protected Grants getGrants(String[] principals) {
+            List<String> key = Arrays.asList(principals);
+            Grants g = grants.get(key);
+            if (g == null) {
+                if (grants.size() >= MAX_PRINCIPALS) {
+                    grants.clear();
+                }
+                // copy the key, the array belongs to the caller
+                g = grants.computeIfAbsent(Arrays.asList(principals.clone()), k -> new Grants());
+            }
+            return g;
+        }
+    }
+
+    /**
+     * The permissions checked and granted for an ACP and a set of principals.
+     */
+    protected static class Grants {
+
+        protected final BitSet checked = new BitSet();
+
+        protected final BitSet granted = new BitSet();
+
+        /**
+         * Gets whether the permission is granted, or {@code null} if it wasn't checked yet.
+         */
+        protected synchronized Boolean get(int index) {
+            return checked.get(index) ? Boolean.valueOf(granted.get(index)) : null;
+        }
+
+        protected synchronized void set(int index, boolean value) {
+            granted.set(index, value);
+            checked.set(index);
+        }
+    }
+
+}
@@ -25,6 +25,8 @@ import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -36,6 +38,7 @@ import org.nuxeo.ecm.core.api.security.PermissionProvider;
 import org.nuxeo.ecm.core.api.security.SecurityConstants;
 import org.nuxeo.ecm.core.model.Document;
 import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
+import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.model.ComponentContext;
 import org.nuxeo.runtime.model.ComponentInstance;
 import org.nuxeo.runtime.model.ComponentName;
@@ -59,12 +62,27 @@ public class SecurityService extends DefaultComponent {
 
     private static final String POLICIES_EXTENSION_POINT = "policies";
 
+    /**
+     * Maximum number of merged ACPs in the cache of compiled ACLs, 0 to disable it.
+     *
+     * @since 9.2
+     */
+    public static final String ACL_CACHE_SIZE_PROP = "org.nuxeo.ecm.core.security.acl.cache.size";
+
+    public static final String DEFAULT_ACL_CACHE_SIZE = "1000";
+
     private static final Log log = LogFactory.getLog(SecurityService.class);
 
     private PermissionProviderLocal permissionProvider;
 
     private SecurityPolicyService securityPolicyService;
 
+    /** The compiled ACLs, {@code null} if disabled. */
+    private CompiledACLCache aclCache;
+
+    /** The permissions to check for a permission, resolved once through the permission provider. */
+    private final Map<String, String[]> permissionsToCheck = new ConcurrentHashMap<>();
+
     // private SecurityManager securityManager;
 
     @Override
@@ -72,6 +90,10 @@ public class SecurityService extends DefaultComponent {
         super.activate(context);
         permissionProvider = new DefaultPermissionProvider();
         securityPolicyService = new SecurityPolicyServiceImpl();
+        int aclCacheSize = Integer.parseInt(Framework.getProperty(ACL_CACHE_SIZE_PROP, DEFAULT_ACL_CACHE_SIZE));
+        if (aclCacheSize > 0) {
+            aclCache = new CompiledACLCache(aclCacheSize);
+        }
     }
 
     @Override
@@ -79,12 +101,18 @@ public class SecurityService extends DefaultComponent {
         super.deactivate(context);
         permissionProvider = null;
         securityPolicyService = null;
+        if (aclCache != null) {
+            aclCache.close();
+            aclCache = null;
+        }
+        permissionsToCheck.clear();
     }
 
     @Override
     public void registerContribution(Object contribution, String extensionPoint, ComponentInstance contributor) {
         if (PERMISSIONS_EXTENSION_POINT.equals(extensionPoint) && contribution instanceof PermissionDescriptor) {
             permissionProvider.registerDescriptor((PermissionDescriptor) contribution);
+            permissionsChanged();
         } else if (PERMISSIONS_VISIBILITY_EXTENSION_POINT.equals(extensionPoint)
                 && contribution instanceof PermissionVisibilityDescriptor) {
             permissionProvider.registerDescriptor((PermissionVisibilityDescriptor) contribution);
@@ -97,6 +125,7 @@ public class SecurityService extends DefaultComponent {
     public void unregisterContribution(Object contribution, String extensionPoint, ComponentInstance contributor) {
         if (PERMISSIONS_EXTENSION_POINT.equals(extensionPoint) && contribution instanceof PermissionDescriptor) {
             permissionProvider.unregisterDescriptor((PermissionDescriptor) contribution);
+            permissionsChanged();
         } else if (PERMISSIONS_VISIBILITY_EXTENSION_POINT.equals(extensionPoint)
                 && contribution instanceof PermissionVisibilityDescriptor) {
             permissionProvider.unregisterDescriptor((PermissionVisibilityDescriptor) contribution);
@@ -105,6 +134,16 @@ public class SecurityService extends DefaultComponent {
         }
     }
 
+    /**
+     * Forgets the permission groups resolved so far, and the permissions compiled with them.
+     */
+    protected void permissionsChanged() {
+        permissionsToCheck.clear();
+        if (aclCache != null) {
+            aclCache.clear();
+        }
+    }
+
     public PermissionProvider getPermissionProvider() {
         return permissionProvider;
     }
@@ -135,7 +174,7 @@ public class SecurityService extends DefaultComponent {
         }
 
         // fully check each ACE in turn
-        String[] resolvedPermissions = getPermissionsToCheck(permission);
+        String[] resolvedPermissions = getResolvedPermissions(permission);
         String[] additionalPrincipals = getPrincipalsToCheck(principal);
 
         // get the ordered list of ACE
@@ -151,9 +190,17 @@ public class SecurityService extends DefaultComponent {
         if (acp == null) {
             return false; // no ACP on that doc - by default deny
         }
-        access = acp.getAccess(additionalPrincipals, resolvedPermissions);
+        return isGranted(acp, additionalPrincipals, permission, resolvedPermissions);
+    }
 
-        return access.toBoolean();
+    /**
+     * Checks a permission against an ACP, through the cache of compiled ACLs if enabled.
+     */
+    protected boolean isGranted(ACP acp, String[] principals, String permission, String[] resolvedPermissions) {
+        if (aclCache == null) {
+            return acp.getAccess(principals, resolvedPermissions).toBoolean();
+        }
+        return aclCache.isGranted(acp, principals, permission, resolvedPermissions);
     }
 
     /**
@@ -177,13 +224,16 @@ public class SecurityService extends DefaultComponent {
 
         List<String> result = new ArrayList<>();
         for(String permission : permissions) {
-            String[] resolvedPermissions = getPermissionsToCheck(permission);
+            String[] resolvedPermissions = getResolvedPermissions(permission);
             Access access = securityPolicyService.checkPermission(doc, acp, principal, permission, resolvedPermissions,
                 additionalPrincipals);
+            boolean granted;
             if (access == null || Access.UNKNOWN.equals(access)) {
-                access = acp == null ? null : acp.getAccess(additionalPrincipals, resolvedPermissions);
+                granted = acp != null && isGranted(acp, additionalPrincipals, permission, resolvedPermissions);
+            } else {
+                granted = access.toBoolean();
             }
-            if (access != null && access.toBoolean()) {
+            if (granted) {
                 result.add(permission);
             }
         }
@@ -211,6 +261,18 @@ public class SecurityService extends DefaultComponent {
         }
     }
 
+    /**
+     * Same as {@link #getPermissionsToCheck} but the returned array is shared and must not be modified.
+     */
+    protected String[] getResolvedPermissions(String permission) {
+        String[] perms = permissionsToCheck.get(permission);
+        if (perms == null) {
+            perms = getPermissionsToCheck(permission);
+            permissionsToCheck.put(permission, perms);
+        }
+        return perms;
+    }
+
     public static String[] getPrincipalsToCheck(Principal principal) {
         List<String> userGroups = null;
         if (principal instanceof NuxeoPrincipal) {
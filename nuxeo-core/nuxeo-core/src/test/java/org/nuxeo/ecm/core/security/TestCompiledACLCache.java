@@ -0,0 +1,119 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.core.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.GregorianCalendar;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nuxeo.ecm.core.api.security.ACE;
+import org.nuxeo.ecm.core.api.security.ACL;
+import org.nuxeo.ecm.core.api.security.ACP;
+import org.nuxeo.ecm.core.api.security.SecurityConstants;
+import org.nuxeo.ecm.core.api.security.impl.ACLImpl;
+import org.nuxeo.ecm.core.api.security.impl.ACPImpl;
+
+public class TestCompiledACLCache {
+
+    protected static final String[] READ = { "Read", "ReadWrite", SecurityConstants.EVERYTHING };
+
+    protected static final String[] WRITE = { "Write", "ReadWrite", SecurityConstants.EVERYTHING };
+
+    protected static final String[] BOB = { "members", "bob", SecurityConstants.EVERYONE };
+
+    protected static final String[] JOE = { "joe", SecurityConstants.EVERYONE };
+
+    protected CompiledACLCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new CompiledACLCache(10);
+    }
+
+    @After
+    public void tearDown() {
+        cache.close();
+    }
+
+    protected static ACP acp(ACE... aces) {
+        ACP acp = new ACPImpl();
+        ACL acl = new ACLImpl(ACL.LOCAL_ACL);
+        for (ACE ace : aces) {
+            acl.add(ace);
+        }
+        acp.addACL(acl);
+        return acp;
+    }
+
+    @Test
+    public void testSameAccessAsACP() {
+        ACP acp = acp(new ACE("joe", "Write", false), new ACE("members", "ReadWrite", true));
+        assertTrue(cache.isGranted(acp, BOB, "Read", READ));
+        assertTrue(cache.isGranted(acp, BOB, "Write", WRITE));
+        assertTrue(cache.isGranted(acp, JOE, "Read", READ) == acp.getAccess(JOE, READ).toBoolean());
+        assertFalse(cache.isGranted(acp, JOE, "Write", WRITE));
+        // from the cache
+        long misses = cache.misses.getCount();
+        assertTrue(cache.isGranted(acp, BOB, "Read", READ));
+        assertFalse(cache.isGranted(acp, JOE, "Write", WRITE));
+        assertEquals(misses, cache.misses.getCount());
+    }
+
+    @Test
+    public void testSharedByEqualACPs() {
+        ACP acp1 = acp(new ACE("members", "Read", true));
+        ACP acp2 = acp(new ACE("members", "Read", true));
+        assertTrue(cache.isGranted(acp1, BOB, "Read", READ));
+        long hits = cache.hits.getCount();
+        assertTrue(cache.isGranted(acp2, BOB, "Read", READ));
+        assertEquals(hits + 1, cache.hits.getCount());
+        assertEquals(1, cache.acls.size());
+    }
+
+    @Test
+    public void testChangedACPIsDifferentEntry() {
+        ACP acp = acp(new ACE("members", "Read", true));
+        assertTrue(cache.isGranted(acp, BOB, "Read", READ));
+        acp.getACL(ACL.LOCAL_ACL).add(0, new ACE("bob", "Read", false));
+        assertFalse(cache.isGranted(acp, BOB, "Read", READ));
+    }
+
+    @Test
+    public void testOnlyEffectiveACEs() {
+        GregorianCalendar past = new GregorianCalendar(2000, 0, 1);
+        ACE archived = ACE.builder("bob", "Read").isGranted(false).end(past).build();
+        ACP acp = acp(archived, new ACE("members", "Read", true));
+        assertTrue(cache.isGranted(acp, BOB, "Read", READ));
+        // same identity as without the archived ACE
+        assertTrue(cache.isGranted(acp(new ACE("members", "Read", true)), BOB, "Read", READ));
+        assertEquals(1, cache.acls.size());
+    }
+
+    @Test
+    public void testEviction() {
+        for (int i = 0; i < 25; i++) {
+            assertTrue(cache.isGranted(acp(new ACE("user" + i, "Read", true)), new String[] { "user" + i }, "Read",
+                    READ));
+        }
+        assertTrue(cache.acls.size() <= 10);
+    }
+
+}
@@ -21,6 +21,7 @@
 package org.nuxeo.ecm.platform.commandline.executor.api;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Interface for the service that manages commandline execution.
@@ -33,6 +34,25 @@ public interface CommandLineExecutorService {
 
     ExecResult execCommand(String commandName, CmdParameters params) throws CommandNotAvailable;
 
+    /**
+     * Executes a command, passing its output lines to the given consumer as they are produced instead of keeping them
+     * all in memory.
+     * <p>
+     * The returned result only contains the last output lines, for error reporting. The default implementation passes
+     * the output lines to the consumer once the command is finished.
+     *
+     * @param outputConsumer the consumer of the output lines
+     * @since 9.2
+     */
+    default ExecResult execCommand(String commandName, CmdParameters params, Consumer<String> outputConsumer)
+            throws CommandNotAvailable {
+        ExecResult result = execCommand(commandName, params);
+        if (outputConsumer != null && result.getOutput() != null) {
+            result.getOutput().forEach(outputConsumer);
+        }
+        return result;
+    }
+
     List<String> getRegistredCommands();
 
     List<String> getAvailableCommands();
@@ -21,6 +21,7 @@
 package org.nuxeo.ecm.platform.commandline.executor.service;
 
 import java.io.Serializable;
+import java.util.concurrent.Semaphore;
 
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
@@ -80,6 +81,49 @@ public class CommandLineDescriptor implements Serializable {
     @XNode("installationDirective")
     protected String installationDirective;
 
+    /**
+     * The maximum number of concurrent executions of this command, 0 for no limit.
+     *
+     * @since 9.2
+     */
+    @XNode("maxConcurrency")
+    protected int maxConcurrency;
+
+    /**
+     * The maximum time to wait for an execution slot when {@link #maxConcurrency} is reached, in seconds, 0 to wait
+     * indefinitely.
+     *
+     * @since 9.2
+     */
+    @XNode("queueTimeout")
+    protected long queueTimeout;
+
+    /**
+     * The maximum execution time, in seconds, after which the processes are killed, 0 for no timeout.
+     *
+     * @since 9.2
+     */
+    @XNode("timeout")
+    protected long timeout;
+
+    /**
+     * The maximum number of output lines kept in the result, the last ones being kept, 0 for no limit.
+     *
+     * @since 9.2
+     */
+    @XNode("maxOutputLines")
+    protected int maxOutputLines;
+
+    /**
+     * The long-lived worker processes executing this command, if any.
+     *
+     * @since 9.2
+     */
+    @XNode("worker")
+    protected WorkerDescriptor worker;
+
+    protected transient Semaphore concurrencyLimiter;
+
     protected String installErrorMessage;
 
     public String getInstallErrorMessage() {
@@ -145,7 +189,60 @@ public class CommandLineDescriptor implements Serializable {
         return testParameterString;
     }
 
+    /**
+     * @since 9.2
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * @since 9.2
+     */
+    public long getQueueTimeout() {
+        return queueTimeout;
+    }
+
+    /**
+     * @since 9.2
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * @since 9.2
+     */
+    public int getMaxOutputLines() {
+        return maxOutputLines;
+    }
+
+    /**
+     * Gets the semaphore limiting the concurrent executions of this command, or {@code null} if there is no limit.
+     *
+     * @since 9.2
+     */
+    public synchronized Semaphore getConcurrencyLimiter() {
+        if (maxConcurrency <= 0) {
+            return null;
+        }
+        if (concurrencyLimiter == null) {
+            concurrencyLimiter = new Semaphore(maxConcurrency, true);
+        }
+        return concurrencyLimiter;
+    }
+
+    /**
+     * @since 9.2
+     */
+    public WorkerDescriptor getWorker() {
+        return worker;
+    }
+
     public String getExecutor() {
+        if (worker != null && worker.isEnabled()) {
+            return CommandLineExecutorComponent.WORKER_EXECUTOR;
+        }
         return CommandLineExecutorComponent.DEFAULT_EXECUTOR;
     }
 
@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -38,6 +39,7 @@ import org.nuxeo.ecm.platform.commandline.executor.service.cmdtesters.CommandTes
 import org.nuxeo.ecm.platform.commandline.executor.service.cmdtesters.CommandTester;
 import org.nuxeo.ecm.platform.commandline.executor.service.executors.Executor;
 import org.nuxeo.ecm.platform.commandline.executor.service.executors.ShellExecutor;
+import org.nuxeo.ecm.platform.commandline.executor.service.executors.WorkerPoolExecutor;
 import org.nuxeo.runtime.model.ComponentContext;
 import org.nuxeo.runtime.model.ComponentInstance;
 import org.nuxeo.runtime.model.DefaultComponent;
@@ -59,6 +61,9 @@ public class CommandLineExecutorComponent extends DefaultComponent implements Co
 
     public static final String DEFAULT_EXECUTOR = "ShellExecutor";
 
+    /** @since 9.2 */
+    public static final String WORKER_EXECUTOR = "WorkerPoolExecutor";
+
     protected static Map<String, CommandLineDescriptor> commandDescriptors = new HashMap<>();
 
     protected static EnvironmentDescriptor env = new EnvironmentDescriptor();
@@ -78,10 +83,12 @@ public class CommandLineExecutorComponent extends DefaultComponent implements Co
         testers = new HashMap<>();
         executors = new HashMap<>();
         executors.put(DEFAULT_EXECUTOR, new ShellExecutor());
+        executors.put(WORKER_EXECUTOR, new WorkerPoolExecutor());
     }
 
     @Override
     public void deactivate(ComponentContext context) {
+        ((WorkerPoolExecutor) executors.get(WORKER_EXECUTOR)).close();
         commandDescriptors = null;
         env = null;
         testers = null;
@@ -161,6 +168,12 @@ public class CommandLineExecutorComponent extends DefaultComponent implements Co
      */
     @Override
     public ExecResult execCommand(String commandName, CmdParameters params) throws CommandNotAvailable {
+        return execCommand(commandName, params, null);
+    }
+
+    @Override
+    public ExecResult execCommand(String commandName, CmdParameters params, Consumer<String> outputConsumer)
+            throws CommandNotAvailable {
         CommandAvailability availability = getCommandAvailability(commandName);
         if (!availability.isAvailable()) {
             throw new CommandNotAvailable(availability);
@@ -170,7 +183,7 @@ public class CommandLineExecutorComponent extends DefaultComponent implements Co
         Executor executor = executors.get(cmdDesc.getExecutor());
         EnvironmentDescriptor environment = new EnvironmentDescriptor().merge(env).merge(
                 envDescriptors.getOrDefault(commandName, envDescriptors.get(cmdDesc.getCommand())));
-        return executor.exec(cmdDesc, params, environment);
+        return executor.exec(cmdDesc, params, environment, outputConsumer);
     }
 
     @Override
@@ -0,0 +1,107 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.platform.commandline.executor.service;
+
+import java.io.Serializable;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
+import org.apache.commons.lang3.SystemUtils;
+import org.nuxeo.common.xmap.annotation.XNode;
+import org.nuxeo.common.xmap.annotation.XObject;
+
+/**
+ * XMap descriptor for the long-lived worker processes of a command.
+ * <p>
+ * The worker processes are started with the command line and the worker parameters, which can only use the default
+ * parameters, then each execution writes the expanded command parameters, separated by tabs, as one line on the
+ * standard input of an idle worker. The worker writes its output lines on its standard output followed by a line made
+ * of the end marker, a space and the exit code.
+ *
+ * @since 9.2
+ */
+@XObject("worker")
+public class WorkerDescriptor implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String DEFAULT_END_MARKER = "#END#";
+
+    @XNode("@enabled")
+    protected boolean enabled = true;
+
+    @XNode("parameterString")
+    protected String parameterString = "";
+
+    @XNode("winParameterString")
+    protected String winParameterString;
+
+    /** The maximum number of worker processes. */
+    @XNode("poolSize")
+    protected int poolSize = 1;
+
+    /** The number of executions after which a worker process is recycled, 0 for no limit. */
+    @XNode("maxUses")
+    protected int maxUses;
+
+    @XNode("endMarker")
+    protected String endMarker = DEFAULT_END_MARKER;
+
+    /** The request sent to check that an idle worker process still answers, {@code null} for none. */
+    @XNode("healthCheck")
+    protected String healthCheck;
+
+    /** The idle time in seconds after which the health of a worker process is checked before use. */
+    @XNode("healthCheckInterval")
+    protected long healthCheckInterval = 60;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getParametersString() {
+        if (SystemUtils.IS_OS_WINDOWS && winParameterString != null) {
+            return winParameterString;
+        }
+        return parameterString;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getMaxUses() {
+        return maxUses;
+    }
+
+    public String getEndMarker() {
+        return endMarker;
+    }
+
+    public String getHealthCheck() {
+        return healthCheck;
+    }
+
+    public long getHealthCheckInterval() {
+        return healthCheckInterval;
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE);
+    }
+
+}
@@ -20,6 +20,8 @@
 
 package org.nuxeo.ecm.platform.commandline.executor.service.executors;
 
+import java.util.function.Consumer;
+
 import org.nuxeo.ecm.platform.commandline.executor.api.CmdParameters;
 import org.nuxeo.ecm.platform.commandline.executor.api.ExecResult;
 import org.nuxeo.ecm.platform.commandline.executor.service.CommandLineDescriptor;
@@ -56,4 +58,27 @@ public interface Executor {
      */
     ExecResult exec(CommandLineDescriptor cmdDesc, CmdParameters params, EnvironmentDescriptor env);
 
+    /**
+     * No exception is thrown but the returned {@link ExecResult} contains everything about the command execution,
+     * including an optional exception.
+     * <p>
+     * Implementations should pass the output lines to the consumer as they are produced, and only keep the last ones
+     * in the result. The default implementation passes them once the command is finished.
+     *
+     * @param cmdDesc Command to run. Cannot be null.
+     * @param params Parameters passed to the command. Cannot be null.
+     * @param env Environment context (variable and working directory)
+     * @param outputConsumer the consumer of the output lines, or {@code null} to keep them all in the result
+     * @return Result of the execution
+     * @since 9.2
+     */
+    default ExecResult exec(CommandLineDescriptor cmdDesc, CmdParameters params, EnvironmentDescriptor env,
+            Consumer<String> outputConsumer) {
+        ExecResult result = exec(cmdDesc, params, env);
+        if (outputConsumer != null && result.getOutput() != null) {
+            result.getOutput().forEach(outputConsumer);
+        }
+        return result;
+    }
+
 }
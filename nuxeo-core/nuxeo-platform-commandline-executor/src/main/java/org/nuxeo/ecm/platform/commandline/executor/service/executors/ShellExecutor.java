@@ -25,21 +25,34 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.SystemUtils;
@@ -51,9 +64,19 @@ import org.nuxeo.ecm.platform.commandline.executor.api.CmdParameters.ParameterVa
 import org.nuxeo.ecm.platform.commandline.executor.api.ExecResult;
 import org.nuxeo.ecm.platform.commandline.executor.service.CommandLineDescriptor;
 import org.nuxeo.ecm.platform.commandline.executor.service.EnvironmentDescriptor;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
 
 /**
  * Default implementation of the {@link Executor} interface. Use simple shell exec.
+ * <p>
+ * The number of concurrent executions of a command, its execution time and the number of output lines kept in memory
+ * can be limited in the {@link CommandLineDescriptor}. Metrics are recorded for each command under
+ * {@code nuxeo.commandline.<name>}.
  */
 public class ShellExecutor implements Executor {
 
@@ -70,40 +93,104 @@ public class ShellExecutor implements Executor {
     /** Used to split the contributed command, NOT the passed parameter values. */
     protected static final Pattern COMMAND_SPLIT = Pattern.compile("\"([^\"]*)\"|'([^']*)'|[^\\s]+");
 
+    /**
+     * Number of output lines kept in the result when they are passed to a consumer and no limit is configured.
+     *
+     * @since 9.2
+     */
+    protected static final int DEFAULT_OUTPUT_TAIL_LINES = 100;
+
+    /** @since 9.2 */
+    protected static final ScheduledExecutorService TIMEOUT_SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+            r -> {
+                Thread thread = new Thread(r, "Nuxeo-commandline-timeout");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
     @Override
     public ExecResult exec(CommandLineDescriptor cmdDesc, CmdParameters params, EnvironmentDescriptor env) {
+        return exec(cmdDesc, params, env, null);
+    }
+
+    @Override
+    public ExecResult exec(CommandLineDescriptor cmdDesc, CmdParameters params, EnvironmentDescriptor env,
+            Consumer<String> outputConsumer) {
         String commandLine = cmdDesc.getCommand() + " " + String.join(" ", cmdDesc.getParametersString());
+        String metricsPrefix = MetricRegistry.name("nuxeo", "commandline", cmdDesc.getName());
+        Semaphore limiter = cmdDesc.getConcurrencyLimiter();
+        if (limiter != null) {
+            boolean acquired;
+            Timer.Context waitContext = registry.timer(MetricRegistry.name(metricsPrefix, "wait")).time();
+            try {
+                long queueTimeout = cmdDesc.getQueueTimeout();
+                if (queueTimeout > 0) {
+                    acquired = limiter.tryAcquire(queueTimeout, TimeUnit.SECONDS);
+                } else {
+                    limiter.acquire();
+                    acquired = true;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new ExecResult(commandLine, e);
+            } finally {
+                waitContext.stop();
+            }
+            if (!acquired) {
+                registry.counter(MetricRegistry.name(metricsPrefix, "rejected")).inc();
+                return new ExecResult(commandLine, new IOException("No execution slot available after "
+                        + cmdDesc.getQueueTimeout() + "s, maxConcurrency: " + cmdDesc.getMaxConcurrency()));
+            }
+        }
+        Counter running = registry.counter(MetricRegistry.name(metricsPrefix, "running"));
+        running.inc();
         try {
             if (log.isDebugEnabled()) {
                 log.debug("Running system command: " + commandLine);
             }
             long t0 = System.currentTimeMillis();
-            ExecResult res = exec1(cmdDesc, params, env);
+            ExecResult res;
+            Timer.Context execContext = registry.timer(MetricRegistry.name(metricsPrefix, "exec")).time();
+            try {
+                res = exec1(cmdDesc, params, env, outputConsumer);
+            } finally {
+                execContext.stop();
+            }
             long t1 = System.currentTimeMillis();
+            registry.counter(MetricRegistry.name(metricsPrefix, "exit", String.valueOf(res.getReturnCode()))).inc();
             return new ExecResult(commandLine, res.getOutput(), t1 - t0, res.getReturnCode());
+        } catch (InterruptedIOException e) {
+            registry.counter(MetricRegistry.name(metricsPrefix, "timeouts")).inc();
+            return new ExecResult(commandLine, e);
         } catch (IOException e) {
+            registry.counter(MetricRegistry.name(metricsPrefix, "errors")).inc();
             return new ExecResult(commandLine, e);
+        } finally {
+            running.dec();
+            if (limiter != null) {
+                limiter.release();
+            }
         }
     }
 
     protected ExecResult exec1(CommandLineDescriptor cmdDesc, CmdParameters params, EnvironmentDescriptor env)
             throws IOException {
-        // split the configured parameters while keeping quoted parts intact
+        return exec1(cmdDesc, params, env, null);
+    }
+
+    /**
+     * Executes the command.
+     *
+     * @throws InterruptedIOException if the command timed out
+     * @since 9.2
+     */
+    protected ExecResult exec1(CommandLineDescriptor cmdDesc, CmdParameters params, EnvironmentDescriptor env,
+            Consumer<String> outputConsumer) throws IOException {
         List<String> list = new ArrayList<>();
         list.add(cmdDesc.getCommand());
-        Matcher m = COMMAND_SPLIT.matcher(cmdDesc.getParametersString());
-        while (m.find()) {
-            String word;
-            if (m.group(1) != null) {
-                word = m.group(1); // double-quoted
-            } else if (m.group(2) != null) {
-                word = m.group(2); // single-quoted
-            } else {
-                word = m.group(); // word
-            }
-            List<String> words = replaceParams(word, params);
-            list.addAll(words);
-        }
+        list.addAll(splitParameters(cmdDesc.getParametersString(), params));
 
         List<Process> processes = new LinkedList<>();
         List<Thread> pipes = new LinkedList<>();
@@ -146,39 +233,119 @@ public class ShellExecutor implements Executor {
             process = newProcess;
         }
 
-        // get result from last process
-        @SuppressWarnings("null")
-        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-        String line;
-        List<String> output = new ArrayList<>();
-        while ((line = reader.readLine()) != null) {
-            output.add(line);
+        // kill the processes if they take too long
+        long timeout = cmdDesc.getTimeout();
+        AtomicBoolean timedOut = new AtomicBoolean();
+        ScheduledFuture<?> killer = null;
+        if (timeout > 0) {
+            killer = TIMEOUT_SCHEDULER.schedule(() -> {
+                timedOut.set(true);
+                processes.forEach(ShellExecutor::killProcessTree);
+            }, timeout, TimeUnit.SECONDS);
         }
-        reader.close();
 
-        // wait for all processes, get first non-0 exit status
+        int maxLines = getMaxOutputLines(cmdDesc, outputConsumer);
+        Deque<String> output = new ArrayDeque<>();
         int returnCode = 0;
-        for (Process p : processes) {
+        try {
+            // get result from last process
+            @SuppressWarnings("null")
+            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            String line;
             try {
-                int exitCode = p.waitFor();
-                if (returnCode == 0) {
-                    returnCode = exitCode;
+                while ((line = reader.readLine()) != null) {
+                    addOutputLine(line, output, maxLines, outputConsumer);
                 }
-            } catch (InterruptedException e) {
-                ExceptionUtils.checkInterrupt(e);
+            } catch (IOException e) {
+                if (!timedOut.get()) {
+                    throw e;
+                }
+                // stream closed by the kill
+            }
+            reader.close();
+
+            // wait for all processes, get first non-0 exit status
+            for (Process p : processes) {
+                try {
+                    int exitCode = p.waitFor();
+                    if (returnCode == 0) {
+                        returnCode = exitCode;
+                    }
+                } catch (InterruptedException e) {
+                    ExceptionUtils.checkInterrupt(e);
+                }
+            }
+
+            // wait for all pipes
+            for (Thread t : pipes) {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    ExceptionUtils.checkInterrupt(e);
+                }
+            }
+        } finally {
+            if (killer != null) {
+                killer.cancel(false);
             }
         }
+        if (timedOut.get()) {
+            throw new InterruptedIOException("Command killed after timeout of " + timeout + "s");
+        }
 
-        // wait for all pipes
-        for (Thread t : pipes) {
-            try {
-                t.join();
-            } catch (InterruptedException e) {
-                ExceptionUtils.checkInterrupt(e);
+        return new ExecResult(null, new ArrayList<>(output), 0, returnCode);
+    }
+
+    /**
+     * Splits the configured parameters while keeping quoted parts intact, and expands them.
+     *
+     * @since 9.2
+     */
+    protected static List<String> splitParameters(String parametersString, CmdParameters params) {
+        List<String> list = new ArrayList<>();
+        Matcher m = COMMAND_SPLIT.matcher(parametersString);
+        while (m.find()) {
+            String word;
+            if (m.group(1) != null) {
+                word = m.group(1); // double-quoted
+            } else if (m.group(2) != null) {
+                word = m.group(2); // single-quoted
+            } else {
+                word = m.group(); // word
             }
+            List<String> words = replaceParams(word, params);
+            list.addAll(words);
         }
+        return list;
+    }
 
-        return new ExecResult(null, output, 0, returnCode);
+    /**
+     * Gets the maximum number of output lines to keep in the result, 0 for no limit.
+     *
+     * @since 9.2
+     */
+    protected static int getMaxOutputLines(CommandLineDescriptor cmdDesc, Consumer<String> outputConsumer) {
+        int maxLines = cmdDesc.getMaxOutputLines();
+        if (maxLines <= 0 && outputConsumer != null) {
+            maxLines = DEFAULT_OUTPUT_TAIL_LINES;
+        }
+        return maxLines;
+    }
+
+    /**
+     * Passes an output line to the consumer, and keeps it in the output, dropping the oldest line if needed.
+     *
+     * @since 9.2
+     */
+    protected static void addOutputLine(String line, Deque<String> output, int maxLines,
+            Consumer<String> outputConsumer) {
+        if (outputConsumer != null) {
+            outputConsumer.accept(line);
+        }
+        if (maxLines > 0 && output.size() == maxLines) {
+            output.removeFirst();
+        }
+        output.addLast(line);
     }
 
     /**
@@ -209,6 +376,54 @@ public class ShellExecutor implements Executor {
         return thread;
     }
 
+    /**
+     * Kills a process and, as far as the platform allows it, its descendants.
+     *
+     * @since 9.2
+     */
+    protected static void killProcessTree(Process process) {
+        try {
+            // Java 9+ ProcessHandle API, looked up by reflection to still run on Java 8
+            Class<?> processHandleClass = Class.forName("java.lang.ProcessHandle");
+            Object handle = Process.class.getMethod("toHandle").invoke(process);
+            Method destroyForcibly = processHandleClass.getMethod("destroyForcibly");
+            try (Stream<?> descendants = (Stream<?>) processHandleClass.getMethod("descendants").invoke(handle)) {
+                descendants.forEach(h -> {
+                    try {
+                        destroyForcibly.invoke(h);
+                    } catch (ReflectiveOperationException e) {
+                        log.debug("Cannot kill process: " + h, e);
+                    }
+                });
+            }
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            // Java 8, only the direct children can be found, through their parent pid
+            Long pid = getPid(process);
+            if (pid != null && !SystemUtils.IS_OS_WINDOWS) {
+                try {
+                    new ProcessBuilder("pkill", "-KILL", "-P", pid.toString()).start().waitFor(10, TimeUnit.SECONDS);
+                } catch (IOException e2) {
+                    log.debug("Cannot kill children of process: " + pid, e2);
+                } catch (InterruptedException e2) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        } catch (ReflectiveOperationException e) {
+            log.debug("Cannot kill descendants of process: " + process, e);
+        }
+        process.destroyForcibly();
+    }
+
+    protected static Long getPid(Process process) {
+        try {
+            Field field = process.getClass().getDeclaredField("pid");
+            field.setAccessible(true);
+            return Long.valueOf(field.getLong(process));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
     /**
      * Expands parameter strings in a parameter word.
      * <p>
@@ -0,0 +1,360 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.platform.commandline.executor.service.executors;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.lang.ProcessBuilder.Redirect;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.apache.commons.lang3.SystemUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.platform.commandline.executor.api.CmdParameters;
+import org.nuxeo.ecm.platform.commandline.executor.api.CommandLineExecutorService;
+import org.nuxeo.ecm.platform.commandline.executor.api.ExecResult;
+import org.nuxeo.ecm.platform.commandline.executor.service.CommandLineDescriptor;
+import org.nuxeo.ecm.platform.commandline.executor.service.EnvironmentDescriptor;
+import org.nuxeo.ecm.platform.commandline.executor.service.WorkerDescriptor;
+import org.nuxeo.runtime.api.Framework;
+
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Executor sending the executions of a command to a pool of long-lived worker processes, to avoid paying the startup
+ * cost of the external tool for each execution.
+ * <p>
+ * The protocol used to talk to the worker processes is described in {@link WorkerDescriptor}. The worker processes
+ * are started only from the static configuration of the command and its environment, the parameters of an execution
+ * are only sent in its request. The standard error of the worker processes is not read and goes to the standard error
+ * of the server.
+ *
+ * @since 9.2
+ */
+public class WorkerPoolExecutor extends ShellExecutor {
+
+    private static final Log log = LogFactory.getLog(WorkerPoolExecutor.class);
+
+    protected static final char PARAMETER_SEPARATOR = '\t';
+
+    protected final Map<String, WorkerPool> pools = new ConcurrentHashMap<>();
+
+    @Override
+    protected ExecResult exec1(CommandLineDescriptor cmdDesc, CmdParameters params, EnvironmentDescriptor env,
+            Consumer<String> outputConsumer) throws IOException {
+        String request = getRequest(cmdDesc, params);
+        WorkerPool pool = getPool(cmdDesc, env);
+        Worker worker = pool.borrow();
+        boolean reusable = false;
+        try {
+            worker.uses++;
+            ExecResult result = worker.execute(request, cmdDesc.getTimeout(), getMaxOutputLines(cmdDesc,
+                    outputConsumer), outputConsumer);
+            reusable = true;
+            return result;
+        } finally {
+            pool.giveBack(worker, reusable);
+        }
+    }
+
+    /**
+     * Builds the request line from the command parameters.
+     */
+    protected String getRequest(CommandLineDescriptor cmdDesc, CmdParameters params) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (String word : splitParameters(cmdDesc.getParametersString(), params)) {
+            if (word.indexOf(PARAMETER_SEPARATOR) >= 0 || word.indexOf('\n') >= 0 || word.indexOf('\r') >= 0) {
+                throw new IOException("Parameter cannot be sent to a worker process: " + word);
+            }
+            if (sb.length() > 0) {
+                sb.append(PARAMETER_SEPARATOR);
+            }
+            sb.append(word);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Gets the pool for a command and its environment, replacing the pool of a previous registration of the command or
+     * of its environment if needed.
+     */
+    protected WorkerPool getPool(CommandLineDescriptor cmdDesc, EnvironmentDescriptor env) {
+        return pools.compute(cmdDesc.getName(), (name, pool) -> {
+            if (pool != null && pool.cmdDesc == cmdDesc && pool.hasEnvironment(env)) {
+                return pool;
+            }
+            if (pool != null) {
+                pool.close();
+            }
+            return new WorkerPool(cmdDesc, env);
+        });
+    }
+
+    /**
+     * Stops all the worker processes.
+     */
+    public void close() {
+        pools.values().forEach(WorkerPool::close);
+        pools.clear();
+    }
+
+    /**
+     * The worker processes of a command, all started with the same command line and environment.
+     */
+    protected class WorkerPool {
+
+        protected final CommandLineDescriptor cmdDesc;
+
+        protected final WorkerDescriptor desc;
+
+        protected final String workingDirectory;
+
+        protected final Map<String, String> environment;
+
+        protected final Semaphore slots;
+
+        /** Idle workers, the most recently used first. */
+        protected final Deque<Worker> idle = new ArrayDeque<>();
+
+        protected final Set<Worker> all = ConcurrentHashMap.newKeySet();
+
+        protected final String metricsPrefix;
+
+        protected volatile boolean closed;
+
+        protected WorkerPool(CommandLineDescriptor cmdDesc, EnvironmentDescriptor env) {
+            this.cmdDesc = cmdDesc;
+            desc = cmdDesc.getWorker();
+            workingDirectory = env.getWorkingDirectory();
+            environment = new HashMap<>(env.getParameters());
+            slots = new Semaphore(Math.max(1, desc.getPoolSize()), true);
+            metricsPrefix = MetricRegistry.name("nuxeo", "commandline", cmdDesc.getName(), "workers");
+        }
+
+        protected boolean hasEnvironment(EnvironmentDescriptor env) {
+            return workingDirectory.equals(env.getWorkingDirectory()) && environment.equals(env.getParameters());
+        }
+
+        protected Worker borrow() throws IOException {
+            try {
+                slots.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for a worker process", e);
+            }
+            try {
+                Worker worker;
+                for (;;) {
+                    synchronized (idle) {
+                        worker = idle.pollFirst();
+                    }
+                    if (worker == null) {
+                        break;
+                    }
+                    if (isHealthy(worker)) {
+                        return worker;
+                    }
+                    destroy(worker);
+                }
+                worker = new Worker(start(), desc.getEndMarker());
+                all.add(worker);
+                registry.counter(MetricRegistry.name(metricsPrefix, "started")).inc();
+                return worker;
+            } catch (IOException | RuntimeException e) {
+                slots.release();
+                throw e;
+            }
+        }
+
+        protected void giveBack(Worker worker, boolean reusable) {
+            try {
+                if (!reusable || closed || (desc.getMaxUses() > 0 && worker.uses >= desc.getMaxUses())) {
+                    if (reusable) {
+                        registry.counter(MetricRegistry.name(metricsPrefix, "recycled")).inc();
+                    }
+                    destroy(worker);
+                } else {
+                    synchronized (idle) {
+                        idle.addFirst(worker);
+                    }
+                }
+            } finally {
+                slots.release();
+            }
+        }
+
+        protected boolean isHealthy(Worker worker) {
+            if (!worker.process.isAlive()) {
+                return false;
+            }
+            String healthCheck = desc.getHealthCheck();
+            long idleMillis = System.currentTimeMillis() - worker.lastUsed;
+            if (healthCheck == null || idleMillis < TimeUnit.SECONDS.toMillis(desc.getHealthCheckInterval())) {
+                return true;
+            }
+            try {
+                ExecResult result = worker.execute(healthCheck, cmdDesc.getTimeout(), 1, null);
+                if (result.getReturnCode() == 0) {
+                    return true;
+                }
+                log.warn("Health check of worker process for command " + cmdDesc.getName() + " failed with code: "
+                        + result.getReturnCode());
+            } catch (IOException e) {
+                log.warn("Health check of worker process for command " + cmdDesc.getName() + " failed", e);
+            }
+            registry.counter(MetricRegistry.name(metricsPrefix, "unhealthy")).inc();
+            return false;
+        }
+
+        protected Process start() throws IOException {
+            List<String> command = new ArrayList<>();
+            String cmd = cmdDesc.getCommand();
+            command.add(SystemUtils.IS_OS_WINDOWS ? getCommandAbsolutePath(cmd) : cmd);
+            // only the default parameters, a worker process serves all the executions
+            CmdParameters params = Framework.getService(CommandLineExecutorService.class).getDefaultCmdParameters();
+            for (String word : splitParameters(desc.getParametersString(), params)) {
+                if (word.contains("#{")) {
+                    throw new IOException("Worker parameters of command " + cmdDesc.getName()
+                            + " cannot use the parameters of an execution: " + word);
+                }
+                command.add(word);
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Starting worker process: " + String.join(" ", command));
+            }
+            ProcessBuilder processBuilder = new ProcessBuilder(command);
+            processBuilder.directory(new File(workingDirectory));
+            processBuilder.environment().putAll(environment);
+            processBuilder.redirectError(Redirect.INHERIT);
+            return processBuilder.start();
+        }
+
+        protected void destroy(Worker worker) {
+            all.remove(worker);
+            worker.close();
+        }
+
+        protected void close() {
+            closed = true;
+            synchronized (idle) {
+                idle.clear();
+            }
+            // busy workers are killed too, their executions fail
+            all.forEach(this::destroy);
+        }
+    }
+
+    /**
+     * A worker process.
+     */
+    protected static class Worker {
+
+        protected final Process process;
+
+        protected final BufferedReader reader;
+
+        protected final BufferedWriter writer;
+
+        protected final String endMarker;
+
+        /** The number of executions, health checks excluded. */
+        protected int uses;
+
+        protected long lastUsed = System.currentTimeMillis();
+
+        protected Worker(Process process, String endMarker) {
+            this.process = process;
+            this.endMarker = endMarker + ' ';
+            reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
+        }
+
+        /**
+         * Sends a request to the worker process and reads its response.
+         *
+         * @throws InterruptedIOException if the request timed out, in which case the process is killed
+         * @throws IOException if the process died or didn't follow the protocol, in which case it must be discarded
+         */
+        protected ExecResult execute(String request, long timeout, int maxLines, Consumer<String> outputConsumer)
+                throws IOException {
+            AtomicBoolean timedOut = new AtomicBoolean();
+            ScheduledFuture<?> killer = null;
+            if (timeout > 0) {
+                killer = TIMEOUT_SCHEDULER.schedule(() -> {
+                    timedOut.set(true);
+                    killProcessTree(process);
+                }, timeout, TimeUnit.SECONDS);
+            }
+            try {
+                writer.write(request);
+                writer.newLine();
+                writer.flush();
+                Deque<String> output = new ArrayDeque<>();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith(endMarker)) {
+                        int returnCode;
+                        try {
+                            returnCode = Integer.parseInt(line.substring(endMarker.length()).trim());
+                        } catch (NumberFormatException e) {
+                            throw new IOException("Invalid end of response from worker process: " + line);
+                        }
+                        lastUsed = System.currentTimeMillis();
+                        return new ExecResult(null, new ArrayList<>(output), 0, returnCode);
+                    }
+                    addOutputLine(line, output, maxLines, outputConsumer);
+                }
+                throw new IOException("Worker process exited before the end of the response");
+            } catch (IOException e) {
+                if (timedOut.get()) {
+                    throw new InterruptedIOException("Worker process killed after timeout of " + timeout + "s");
+                }
+                throw e;
+            } finally {
+                if (killer != null) {
+                    killer.cancel(false);
+                }
+            }
+        }
+
+        protected void close() {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.debug("Cannot close worker process input", e);
+            }
+            killProcessTree(process);
+        }
+    }
+
+}
@@ -21,14 +21,21 @@
 package org.nuxeo.ecm.platform.commandline.executor.tests;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
 
 import java.io.File;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang3.SystemUtils;
 import org.junit.Before;
@@ -124,4 +131,57 @@ public class TestCommands extends NXRuntimeTestCase {
         assertEquals(expected, line);
     }
 
+    @Test
+    public void testCmdTimeout() throws Exception {
+        assumeFalse(SystemUtils.IS_OS_WINDOWS);
+        CommandLineExecutorService cles = Framework.getLocalService(CommandLineExecutorService.class);
+        deployContrib("org.nuxeo.ecm.platform.commandline.executor", "OSGI-INF/commandline-limits-test-contrib.xml");
+
+        long t0 = System.currentTimeMillis();
+        ExecResult result = cles.execCommand("sleep", cles.getDefaultCmdParameters());
+        long duration = System.currentTimeMillis() - t0;
+        assertFalse(result.isSuccessful());
+        assertTrue(String.valueOf(result.getError()), result.getError().getCause() instanceof InterruptedIOException);
+        assertTrue("Command not killed, duration: " + duration, duration < 20000);
+    }
+
+    @Test
+    public void testCmdOutputStreaming() throws Exception {
+        assumeFalse(SystemUtils.IS_OS_WINDOWS);
+        CommandLineExecutorService cles = Framework.getLocalService(CommandLineExecutorService.class);
+        deployContrib("org.nuxeo.ecm.platform.commandline.executor", "OSGI-INF/commandline-limits-test-contrib.xml");
+
+        List<String> lines = new ArrayList<>();
+        ExecResult result = cles.execCommand("lines", cles.getDefaultCmdParameters(), lines::add);
+        assertTrue(result.isSuccessful());
+        // all lines streamed, only the last ones kept
+        assertEquals(10, lines.size());
+        assertEquals(Arrays.asList("8", "9", "10"), result.getOutput());
+    }
+
+    @Test
+    public void testCmdMaxConcurrency() throws Exception {
+        assumeFalse(SystemUtils.IS_OS_WINDOWS);
+        CommandLineExecutorService cles = Framework.getLocalService(CommandLineExecutorService.class);
+        deployContrib("org.nuxeo.ecm.platform.commandline.executor", "OSGI-INF/commandline-limits-test-contrib.xml");
+
+        // one slot, a 2s command and a 1s queue timeout: only the first of concurrent executions can succeed
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        List<Future<ExecResult>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < 3; i++) {
+                futures.add(executor.submit(() -> cles.execCommand("sleepTwo", cles.getDefaultCmdParameters())));
+            }
+            int successes = 0;
+            for (Future<ExecResult> future : futures) {
+                if (future.get().isSuccessful()) {
+                    successes++;
+                }
+            }
+            assertEquals(1, successes);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
 }
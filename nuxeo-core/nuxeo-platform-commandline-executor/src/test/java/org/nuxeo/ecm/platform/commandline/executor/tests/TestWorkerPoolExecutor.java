@@ -0,0 +1,114 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.platform.commandline.executor.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+
+import org.apache.commons.lang3.SystemUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.nuxeo.ecm.platform.commandline.executor.api.CmdParameters;
+import org.nuxeo.ecm.platform.commandline.executor.api.CommandLineExecutorService;
+import org.nuxeo.ecm.platform.commandline.executor.api.ExecResult;
+import org.nuxeo.ecm.platform.commandline.executor.service.CommandLineExecutorComponent;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.test.NXRuntimeTestCase;
+
+public class TestWorkerPoolExecutor extends NXRuntimeTestCase {
+
+    protected CommandLineExecutorService cles;
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        assumeFalse(SystemUtils.IS_OS_WINDOWS);
+        super.setUp();
+        deployBundle("org.nuxeo.ecm.platform.commandline.executor");
+        deployContrib("org.nuxeo.ecm.platform.commandline.executor", "OSGI-INF/commandline-worker-test-contrib.xml");
+        cles = Framework.getService(CommandLineExecutorService.class);
+    }
+
+    protected ExecResult exec(String action, String name) throws Exception {
+        return exec("worker", action, name);
+    }
+
+    protected ExecResult exec(String command, String action, String name) throws Exception {
+        CmdParameters params = cles.getDefaultCmdParameters();
+        params.addNamedParameter("action", action);
+        params.addNamedParameter("name", name);
+        return cles.execCommand(command, params);
+    }
+
+    /** Gets the pid of the worker process from the output of the stub. */
+    protected String getPid(ExecResult result) {
+        assertEquals(1, result.getOutput().size());
+        return result.getOutput().get(0).split(" ")[0];
+    }
+
+    @Test
+    public void testWorker() throws Exception {
+        assertEquals(CommandLineExecutorComponent.WORKER_EXECUTOR,
+                CommandLineExecutorComponent.getCommandDescriptor("worker").getExecutor());
+
+        ExecResult result = exec("convert", "foo");
+        assertTrue(result.isSuccessful());
+        String pid = getPid(result);
+        assertEquals(pid + " convert\tfoo", result.getOutput().get(0));
+
+        // same worker process reused
+        result = exec("convert", "bar");
+        assertTrue(result.isSuccessful());
+        assertEquals(pid, getPid(result));
+
+        // exit code transmitted, worker process still usable
+        result = exec("fail", "baz");
+        assertFalse(result.isSuccessful());
+        assertEquals(3, result.getReturnCode());
+
+        // worker process recycled after maxUses
+        result = exec("convert", "foo");
+        assertTrue(result.isSuccessful());
+        assertNotEquals(pid, getPid(result));
+    }
+
+    @Test
+    public void testHealthCheckIsNotAUse() throws Exception {
+        ExecResult result = exec("checkedWorker", "convert", "foo");
+        assertTrue(result.isSuccessful());
+        String pid = getPid(result);
+
+        // health checked before each use, still recycled after maxUses executions
+        result = exec("checkedWorker", "convert", "bar");
+        assertEquals(pid, getPid(result));
+        result = exec("checkedWorker", "convert", "baz");
+        assertEquals(pid, getPid(result));
+        result = exec("checkedWorker", "convert", "foo");
+        assertNotEquals(pid, getPid(result));
+    }
+
+    @Test
+    public void testWorkerParametersCannotUseExecutionParameters() throws Exception {
+        ExecResult result = exec("paramWorker", "convert", "foo");
+        assertFalse(result.isSuccessful());
+        String message = result.getError().getCause().getMessage();
+        assertTrue(message, message.contains("#{name}"));
+    }
+
+}
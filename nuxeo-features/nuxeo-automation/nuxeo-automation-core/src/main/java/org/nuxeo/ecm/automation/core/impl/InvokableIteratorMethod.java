@@ -91,10 +91,15 @@ public class InvokableIteratorMethod extends InvokableMethod {
         return 0;
     }
 
+    @Override
+    public void resolveAdapters(Class<?> in, Map<String, ?> args, TypeAdapterCache adapters) {
+        super.resolveAdapters(IterableInputHelper.getIterableType(in), args, adapters);
+    }
+
     @SuppressWarnings({ "rawtypes", "unchecked" })
     @Override
-    protected Object doInvoke(OperationContext ctx, Map<String, Object> args) throws OperationException,
-            ReflectiveOperationException {
+    protected Object doInvoke(OperationContext ctx, Map<String, Object> args, TypeAdapterCache adapters)
+            throws OperationException, ReflectiveOperationException {
         Object input = ctx.getInput();
         if (!(input instanceof Iterable)) {
             throw new IllegalStateException("An iterable method was called in a non iterable context");
@@ -106,7 +111,7 @@ public class InvokableIteratorMethod extends InvokableMethod {
             Object in = it.next();
             // update context to use as input the current entry
             ctx.setInput(in);
-            list.collect(ctx, super.doInvoke(ctx, args));
+            list.collect(ctx, super.doInvoke(ctx, args, adapters));
         }
         return list.getOutput();
     }
@@ -18,6 +18,9 @@
  */
 package org.nuxeo.ecm.automation.core.impl;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Arrays;
@@ -62,6 +65,15 @@ public class InvokableMethod implements Comparable<InvokableMethod> {
 
     protected int priority;
 
+    /**
+     * The method bound to a handle taking the target and the input as objects, or {@code null} if it cannot be bound.
+     *
+     * @since 9.2
+     */
+    protected MethodHandle handle;
+
+    protected int arity;
+
     public InvokableMethod(OperationType op, Method method, OperationMethod anno) {
         produce = method.getReturnType();
         Class<?>[] p = method.getParameterTypes();
@@ -80,6 +92,7 @@ public class InvokableMethod implements Comparable<InvokableMethod> {
             priority += USER_PRIORITY;
         }
         consume = p.length == 0 ? Void.TYPE : p[0];
+        initHandle();
     }
 
     public InvokableMethod(OperationType op, Method method) {
@@ -114,7 +127,26 @@ public class InvokableMethod implements Comparable<InvokableMethod> {
             }
         } else {
             consume = p.length == 0 ? Void.TYPE : p[0];
-        }    }
+        }
+        initHandle();
+    }
+
+    /**
+     * Binds the method once, to avoid the reflective call at each invocation.
+     *
+     * @since 9.2
+     */
+    protected void initHandle() {
+        arity = method.getParameterCount();
+        MethodType type = arity == 0 ? MethodType.methodType(Object.class, Object.class)
+                : MethodType.methodType(Object.class, Object.class, Object.class);
+        try {
+            handle = MethodHandles.lookup().unreflect(method).asType(type);
+        } catch (IllegalAccessException e) {
+            // fall back to reflection
+            handle = null;
+        }
+    }
 
     public boolean isIterable() {
         return false;
@@ -157,23 +189,92 @@ public class InvokableMethod implements Comparable<InvokableMethod> {
 
     protected Object doInvoke(OperationContext ctx, Map<String, Object> args) throws OperationException,
             ReflectiveOperationException {
-        Object target = op.newInstance(ctx, args);
+        return doInvoke(ctx, args, null);
+    }
+
+    /**
+     * @param adapters the type adapters of the compiled chain, or {@code null}
+     * @since 9.2
+     */
+    protected Object doInvoke(OperationContext ctx, Map<String, Object> args, TypeAdapterCache adapters)
+            throws OperationException, ReflectiveOperationException {
+        Object target = adapters != null && op instanceof OperationTypeImpl
+                ? ((OperationTypeImpl) op).newInstance(ctx, args, adapters) : op.newInstance(ctx, args);
         Object input = ctx.getInput();
         if (consume == Void.TYPE) {
             // preserve last output for void methods
-            Object out = method.invoke(target);
+            Object out = invokeMethod(target);
             return produce == Void.TYPE ? input : out;
         }
         if (input == null || !consume.isAssignableFrom(input.getClass())) {
             // try to adapt
-            input = op.getService().getAdaptedValue(ctx, input, consume);
+            input = adapters == null ? op.getService().getAdaptedValue(ctx, input, consume)
+                    : adapters.getAdaptedValue(ctx, input, consume);
+        }
+        return invokeMethod(target, input);
+    }
+
+    /**
+     * Calls the method without input, like {@link Method#invoke}.
+     *
+     * @since 9.2
+     */
+    protected Object invokeMethod(Object target) throws ReflectiveOperationException {
+        if (handle == null || arity != 0) {
+            return method.invoke(target);
+        }
+        try {
+            return (Object) handle.invokeExact(target);
+        } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+    }
+
+    /**
+     * Calls the method with an input, like {@link Method#invoke}.
+     *
+     * @since 9.2
+     */
+    protected Object invokeMethod(Object target, Object input) throws ReflectiveOperationException {
+        if (handle == null || arity != 1) {
+            return method.invoke(target, input);
+        }
+        try {
+            return (Object) handle.invokeExact(target, input);
+        } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+    }
+
+    /**
+     * Resolves the type adapter needed by the input of the method when compiling a chain.
+     *
+     * @param in the type of the input
+     * @since 9.2
+     */
+    public void resolveAdapters(Class<?> in, Map<String, ?> args, TypeAdapterCache adapters) {
+        if (consume != Void.TYPE) {
+            adapters.resolve(in, consume);
+        }
+        if (op instanceof OperationTypeImpl) {
+            ((OperationTypeImpl) op).resolveAdapters(args, adapters);
         }
-        return method.invoke(target, input);
     }
 
     public Object invoke(OperationContext ctx, Map<String, Object> args) throws OperationException {
+        return invoke(ctx, args, null);
+    }
+
+    /**
+     * Invokes the method using the type adapters of a compiled chain.
+     *
+     * @param adapters the type adapters, or {@code null}
+     * @since 9.2
+     */
+    public Object invoke(OperationContext ctx, Map<String, Object> args, TypeAdapterCache adapters)
+            throws OperationException {
         try {
-            return doInvoke(ctx, args);
+            return doInvoke(ctx, args, adapters);
         } catch (OperationException e) {
             throw e;
         } catch (InvocationTargetException e) {
@@ -113,6 +113,9 @@ public class OperationChainCompiler {
 
         protected InvokableMethod method;
 
+        /** The type adapters of this step, resolved when solving the chain and when first needed. */
+        protected final TypeAdapterCache adapters = new TypeAdapterCache(service);
+
         protected OperationMethod prev;
 
         protected OperationMethod next;
@@ -125,7 +128,7 @@ public class OperationChainCompiler {
 
         protected Object invoke(OperationContext context) throws OperationException {
             context.getCallback().onOperationEnter(context, typeof, method, params.map());
-            Object output = method.invoke(context, params.map());
+            Object output = method.invoke(context, params.map(), adapters);
             if (output instanceof Expression) {
                 output = ((Expression) output).eval(context);
             }
@@ -152,6 +155,7 @@ public class OperationChainCompiler {
             }
             if (next == null) {
                 method = methods[0];
+                method.resolveAdapters(in, params.map(), adapters);
                 return;
             }
             for (InvokableMethod m : methods) {
@@ -162,6 +166,7 @@ public class OperationChainCompiler {
                 try {
                     next.solve(nextIn);
                     method = m;
+                    method.resolveAdapters(in, params.map(), adapters);
                     return;
                 } catch (InvalidChainException cause) {
                     ;
@@ -18,6 +18,9 @@
  */
 package org.nuxeo.ecm.automation.core.impl;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.net.URL;
@@ -42,6 +45,7 @@ import org.nuxeo.ecm.automation.core.annotations.Context;
 import org.nuxeo.ecm.automation.core.annotations.Operation;
 import org.nuxeo.ecm.automation.core.annotations.OperationMethod;
 import org.nuxeo.ecm.automation.core.annotations.Param;
+import org.nuxeo.ecm.automation.core.scripting.Expression;
 import org.nuxeo.ecm.automation.core.util.BlobList;
 import org.nuxeo.ecm.core.api.Blob;
 import org.nuxeo.ecm.core.api.DocumentModel;
@@ -93,6 +97,27 @@ public class OperationTypeImpl implements OperationType {
      */
     protected List<Field> injectableFields;
 
+    /**
+     * The injectors of the parameters, bound once to their fields.
+     *
+     * @since 9.2
+     */
+    protected FieldInjector[] paramInjectors;
+
+    /**
+     * The injectors of the fields injected from context.
+     *
+     * @since 9.2
+     */
+    protected FieldInjector[] contextInjectors;
+
+    /**
+     * The no-argument constructor of the operation class, or {@code null} if it cannot be bound.
+     *
+     * @since 9.2
+     */
+    protected MethodHandle constructor;
+
     /**
      * The input type of a chain/operation. If set, the following input types {"document", "documents", "blob", "blobs"}
      * for all 'run method(s)' will handled. Other values will be adapted as java.lang.Object. If not set, Automation
@@ -135,6 +160,7 @@ public class OperationTypeImpl implements OperationType {
         injectableFields = new ArrayList<Field>();
         initMethods();
         initFields();
+        initConstructor();
     }
 
     static class Match implements Comparable<Match> {
@@ -214,17 +240,62 @@ public class OperationTypeImpl implements OperationType {
                 injectableFields.add(field);
             }
         }
+        List<FieldInjector> injectors = new ArrayList<>(params.size());
+        for (Map.Entry<String, Field> entry : params.entrySet()) {
+            injectors.add(new FieldInjector(entry.getKey(), entry.getValue()));
+        }
+        paramInjectors = injectors.toArray(new FieldInjector[injectors.size()]);
+        injectors = new ArrayList<>(injectableFields.size());
+        for (Field field : injectableFields) {
+            injectors.add(new FieldInjector(null, field));
+        }
+        contextInjectors = injectors.toArray(new FieldInjector[injectors.size()]);
+    }
+
+    /**
+     * @since 9.2
+     */
+    protected void initConstructor() {
+        try {
+            constructor = MethodHandles.lookup().findConstructor(type, MethodType.methodType(void.class)).asType(
+                    MethodType.methodType(Object.class));
+        } catch (ReflectiveOperationException e) {
+            // let newInstance report the error
+            constructor = null;
+        }
     }
 
     @Override
     public Object newInstance(OperationContext ctx, Map<String, Object> args) throws OperationException {
+        return newInstance(ctx, args, null);
+    }
+
+    /**
+     * Creates an instance of the operation and injects its fields, using the given type adapters of the compiled
+     * chain.
+     *
+     * @param adapters the type adapters, or {@code null}
+     * @since 9.2
+     */
+    public Object newInstance(OperationContext ctx, Map<String, ?> args, TypeAdapterCache adapters)
+            throws OperationException {
         Object obj;
-        try {
-            obj = type.newInstance();
-        } catch (ReflectiveOperationException e) {
-            throw new OperationException(e);
+        if (constructor == null) {
+            try {
+                obj = type.newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new OperationException(e);
+            }
+        } else {
+            try {
+                obj = (Object) constructor.invokeExact();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new OperationException(t);
+            }
         }
-        inject(ctx, args, obj);
+        inject(ctx, args, obj, adapters);
         return obj;
     }
 
@@ -240,46 +311,118 @@ public class OperationTypeImpl implements OperationType {
     }
 
     public void inject(OperationContext ctx, Map<String, ?> args, Object target) throws OperationException {
-        for (Map.Entry<String, Field> entry : params.entrySet()) {
-            Object obj = resolveObject(ctx, entry.getKey(), args);
+        inject(ctx, args, target, null);
+    }
+
+    /**
+     * Injects the parameters and the context fields, using the given type adapters of the compiled chain.
+     *
+     * @param adapters the type adapters, or {@code null}
+     * @since 9.2
+     */
+    public void inject(OperationContext ctx, Map<String, ?> args, Object target, TypeAdapterCache adapters)
+            throws OperationException {
+        for (FieldInjector injector : paramInjectors) {
+            Object obj = resolveObject(ctx, injector.name, args);
             if (obj == null) {
                 // We did not resolve object according to its param name, let's
                 // check with potential alias
-                String[] aliases = entry.getValue().getAnnotation(Param.class).alias();
-                if (aliases != null) {
-                    for (String alias : entry.getValue().getAnnotation(Param.class).alias()) {
-                        obj = resolveObject(ctx, alias, args);
-                        if (obj != null) {
-                            break;
-                        }
+                for (String alias : injector.aliases) {
+                    obj = resolveObject(ctx, alias, args);
+                    if (obj != null) {
+                        break;
                     }
                 }
             }
             if (obj == null) {
-                if (entry.getValue().getAnnotation(Param.class).required()) {
-                    throw new OperationException("Failed to inject parameter '" + entry.getKey()
+                if (injector.required) {
+                    throw new OperationException("Failed to inject parameter '" + injector.name
                             + "'. Seems it is missing from the context. Operation: " + getId());
                 } // else do nothing
             } else {
-                Field field = entry.getValue();
-                Class<?> cl = obj.getClass();
-                if (!field.getType().isAssignableFrom(cl)) {
+                if (!injector.type.isAssignableFrom(obj.getClass())) {
                     // try to adapt
-                    obj = service.getAdaptedValue(ctx, obj, field.getType());
+                    obj = adapters == null ? service.getAdaptedValue(ctx, obj, injector.type)
+                            : adapters.getAdaptedValue(ctx, obj, injector.type);
                 }
+                injector.set(target, obj);
+            }
+        }
+        for (FieldInjector injector : contextInjectors) {
+            injector.set(target, ctx.getAdapter(injector.type));
+        }
+    }
+
+    /**
+     * Resolves the type adapters needed by the parameter values known when compiling a chain, the values which are
+     * not expressions.
+     *
+     * @since 9.2
+     */
+    public void resolveAdapters(Map<String, ?> args, TypeAdapterCache adapters) {
+        for (FieldInjector injector : paramInjectors) {
+            Object obj = args.get(injector.name);
+            for (int i = 0; obj == null && i < injector.aliases.length; i++) {
+                obj = args.get(injector.aliases[i]);
+            }
+            if (obj != null && !(obj instanceof Expression)) {
+                adapters.resolve(obj.getClass(), injector.type);
+            }
+        }
+    }
+
+    /**
+     * Injects a value in a field of the operation through a method handle bound once, falling back to reflection if
+     * the field cannot be bound.
+     *
+     * @since 9.2
+     */
+    protected static class FieldInjector {
+
+        protected final String name;
+
+        protected final String[] aliases;
+
+        protected final boolean required;
+
+        protected final Class<?> type;
+
+        protected final Field field;
+
+        protected final MethodHandle setter;
+
+        protected FieldInjector(String name, Field field) {
+            this.name = name;
+            this.field = field;
+            type = field.getType();
+            Param param = field.getAnnotation(Param.class);
+            aliases = param == null || param.alias() == null ? new String[0] : param.alias();
+            required = param != null && param.required();
+            MethodHandle mh;
+            try {
+                mh = MethodHandles.lookup().unreflectSetter(field).asType(
+                        MethodType.methodType(void.class, Object.class, Object.class));
+            } catch (IllegalAccessException e) {
+                mh = null;
+            }
+            setter = mh;
+        }
+
+        protected void set(Object target, Object value) throws OperationException {
+            if (setter == null) {
                 try {
-                    field.set(target, obj);
+                    field.set(target, value);
                 } catch (ReflectiveOperationException e) {
                     throw new OperationException(e);
                 }
+                return;
             }
-        }
-        for (Field field : injectableFields) {
-            Object obj = ctx.getAdapter(field.getType());
             try {
-                field.set(target, obj);
-            } catch (ReflectiveOperationException e) {
-                throw new OperationException(e);
+                setter.invokeExact(target, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new OperationException(t);
             }
         }
     }
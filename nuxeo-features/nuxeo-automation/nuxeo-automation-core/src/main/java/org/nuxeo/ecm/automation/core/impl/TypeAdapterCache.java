@@ -0,0 +1,93 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.automation.core.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.nuxeo.ecm.automation.AutomationService;
+import org.nuxeo.ecm.automation.OperationContext;
+import org.nuxeo.ecm.automation.OperationException;
+import org.nuxeo.ecm.automation.TypeAdapter;
+
+/**
+ * The type adapters used by an operation of a compiled chain, resolved once per target type and type of value to
+ * adapt instead of at each invocation.
+ * <p>
+ * The cache belongs to the compiled chain, so it is dropped with it when the compiled chains are flushed. Only the
+ * adapters found in the registry are cached, the other cases are left to
+ * {@link AutomationService#getAdaptedValue(OperationContext, Object, Class)}.
+ *
+ * @since 9.2
+ */
+public class TypeAdapterCache {
+
+    protected final AutomationService service;
+
+    /** Target type to value type to adapter. */
+    protected final ConcurrentMap<Class<?>, ConcurrentMap<Class<?>, TypeAdapter>> adapters = new ConcurrentHashMap<>();
+
+    public TypeAdapterCache(AutomationService service) {
+        this.service = service;
+    }
+
+    /**
+     * Checks if the adapters to the target type can be cached, {@link AutomationService#getAdaptedValue} handles
+     * specially the primitive, array, void and context types.
+     */
+    protected static boolean isCacheable(Class<?> targetType) {
+        return !targetType.isPrimitive() && !targetType.isArray() && !targetType.isAssignableFrom(Void.class)
+                && !OperationContext.class.isAssignableFrom(targetType);
+    }
+
+    /**
+     * Resolves the adapter of values of a given type to a target type, if one is needed.
+     */
+    public void resolve(Class<?> type, Class<?> targetType) {
+        if (type != null && !targetType.isAssignableFrom(type) && isCacheable(targetType)) {
+            getTypeAdapter(type, targetType);
+        }
+    }
+
+    protected TypeAdapter getTypeAdapter(Class<?> type, Class<?> targetType) {
+        ConcurrentMap<Class<?>, TypeAdapter> map = adapters.get(targetType);
+        if (map == null) {
+            map = adapters.computeIfAbsent(targetType, k -> new ConcurrentHashMap<>());
+        }
+        TypeAdapter adapter = map.get(type);
+        if (adapter == null) {
+            adapter = service.getTypeAdapter(type, targetType);
+            if (adapter != null) {
+                map.put(type, adapter);
+            }
+        }
+        return adapter;
+    }
+
+    /**
+     * Adapts a value to a target type, the value not being an instance of it.
+     */
+    public Object getAdaptedValue(OperationContext ctx, Object value, Class<?> targetType) throws OperationException {
+        if (value != null && isCacheable(targetType)) {
+            TypeAdapter adapter = getTypeAdapter(value.getClass(), targetType);
+            if (adapter != null) {
+                return adapter.getAdaptedValue(ctx, value);
+            }
+        }
+        return service.getAdaptedValue(ctx, value, targetType);
+    }
+
+}
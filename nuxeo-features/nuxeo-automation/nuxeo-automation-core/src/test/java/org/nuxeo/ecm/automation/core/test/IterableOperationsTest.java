@@ -151,6 +151,27 @@ public class IterableOperationsTest {
         assertEquals("mydesc", out.get(1).getPropertyValue("dc:description"));
     }
 
+    /**
+     * Same chain run twice on refs, the second run reuses the compiled chain and its resolved type adapters.
+     */
+    @Test
+    public void testChainWithResolvedAdapters() throws Exception {
+        OperationChain chain = new OperationChain("testChain");
+        chain.add(SetDocumentProperty.ID).set("xpath", "dc:description").set("value", "mydesc");
+        for (int i = 0; i < 2; i++) {
+            OperationContext ctx = new OperationContext(session);
+            DocumentRefList docs = new DocumentRefListImpl();
+            docs.add(src.getRef());
+            docs.add(dst.getRef());
+            ctx.setInput(docs);
+
+            DocumentModelList out = (DocumentModelList) service.run(ctx, chain);
+            assertEquals(2, out.size());
+            assertEquals("mydesc", out.get(0).getPropertyValue("dc:description"));
+            assertEquals("mydesc", out.get(1).getPropertyValue("dc:description"));
+        }
+    }
+
     /**
      * lock documents passed as a list of docrefs
      *
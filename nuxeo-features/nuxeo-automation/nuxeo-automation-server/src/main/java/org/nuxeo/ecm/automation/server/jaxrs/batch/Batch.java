@@ -187,8 +187,6 @@ public class Batch {
     public String addChunk(String index, InputStream is, int chunkCount, int chunkIndex, String fileName,
             String mimeType, long fileSize) throws IOException {
         BatchManager bm = Framework.getService(BatchManager.class);
-        Blob blob = Blobs.createBlob(is);
-
         String fileEntryKey = key + "_" + index;
         BatchFileEntry fileEntry = getFileEntry(index);
         if (fileEntry == null) {
@@ -197,7 +195,7 @@ public class Batch {
             ts.putParameters(fileEntryKey, fileEntry.getParams());
             ts.putParameter(key, index, fileEntryKey);
         }
-        fileEntry.addChunk(chunkIndex, blob);
+        fileEntry.addChunk(chunkIndex, is);
 
         return fileEntryKey;
     }
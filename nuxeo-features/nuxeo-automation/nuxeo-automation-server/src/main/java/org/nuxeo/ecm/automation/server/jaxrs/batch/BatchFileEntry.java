@@ -23,16 +23,31 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.math.NumberUtils;
 import org.apache.commons.logging.Log;
@@ -40,6 +55,13 @@ import org.apache.commons.logging.LogFactory;
 import org.nuxeo.ecm.core.api.Blob;
 import org.nuxeo.ecm.core.api.Blobs;
 import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.api.impl.blob.FileBlob;
+import org.nuxeo.ecm.core.blob.BlobManager;
+import org.nuxeo.ecm.core.blob.BlobProvider;
+import org.nuxeo.ecm.core.blob.binary.AbstractBinaryManager;
+import org.nuxeo.ecm.core.blob.binary.BinaryBlobProvider;
+import org.nuxeo.ecm.core.transientstore.AbstractTransientStore;
+import org.nuxeo.ecm.core.transientstore.api.MaximumTransientSpaceExceeded;
 import org.nuxeo.ecm.core.transientstore.api.TransientStore;
 import org.nuxeo.runtime.api.Framework;
 
@@ -47,6 +69,12 @@ import org.nuxeo.runtime.api.Framework;
  * Represents a batch file backed by the {@link TransientStore}.
  * <p>
  * The file can be chunked or not. If it is chunked it references its chunks as {@link TransientStore} entry keys.
+ * <p>
+ * Since 9.2, when the transient store keeps its blobs on the file system, the chunks of a file are written directly
+ * at their position in a single assembled file, and the digest of the file is computed while the chunks are written if
+ * they are received in order. This assumes that all the chunks but the last one have the same size, chunks that don't
+ * fit, or that are received when the transient store has no room for the whole file, are stored as separate entries
+ * and the file is then concatenated as before.
  *
  * @since 7.4
  * @see Batch
@@ -55,6 +83,31 @@ public class BatchFileEntry {
 
     protected static final Log log = LogFactory.getLog(BatchFileEntry.class);
 
+    /** Name of the assembled file in the caching directory of the file entry. */
+    protected static final String ASSEMBLED_FILE_NAME = "assembled";
+
+    /** Prefix of the parameters holding the length of the chunks written to the assembled file. */
+    protected static final String ASSEMBLED_PARAM_PREFIX = "assembled.";
+
+    protected static final String CHUNK_SIZE_PARAM = "chunkSize";
+
+    protected static final String DIGEST_PARAM = "digest";
+
+    protected static final String DIGEST_ALGORITHM_PARAM = "digestAlgorithm";
+
+    protected static final String TMP_CHUNKED_FILE_PATH_PARAM = "tmpChunkedFilePath";
+
+    protected static final int BUFFER_SIZE = AbstractBinaryManager.MAX_BUF_SIZE;
+
+    /** Maximum number of digests of chunked files being uploaded kept in memory. */
+    protected static final int MAX_CHUNK_DIGESTS = 1000;
+
+    /** Digests of the chunked files being uploaded in order on this node, by file entry key. */
+    protected static final Map<String, ChunkDigest> CHUNK_DIGESTS = new ConcurrentHashMap<>();
+
+    /** Lock held while preallocating an assembled file, so that its size is counted once. */
+    protected static final Object PREALLOCATION_LOCK = new Object();
+
     protected String key;
 
     protected Map<String, Serializable> params;
@@ -212,21 +265,30 @@ public class BatchFileEntry {
                             uploadedChunkCount, chunkCount));
                     return null;
                 }
-                chunkedBlob = Blobs.createBlobWithExtension(null);
-                // Temporary file made from concatenated chunks
-                tmpChunkedFile = chunkedBlob.getFile();
                 BatchManager bm = Framework.getService(BatchManager.class);
                 TransientStore ts = bm.getTransientStore();
-                // Sort chunk indexes and concatenate them to build the entire blob
-                List<Integer> sortedChunkIndexes = getOrderedChunkIndexes();
-                for (int index : sortedChunkIndexes) {
-                    Blob chunk = getChunk(ts, chunks.get(index));
-                    if (chunk != null) {
-                        transferTo(chunk, tmpChunkedFile);
+                CHUNK_DIGESTS.remove(key);
+                chunkedBlob = getAssembledBlob(ts, chunks);
+                if (chunkedBlob == null) {
+                    chunkedBlob = Blobs.createBlobWithExtension(null);
+                    // Temporary file made from concatenated chunks
+                    tmpChunkedFile = chunkedBlob.getFile();
+                    // Sort chunk indexes and concatenate them to build the entire blob
+                    List<Integer> sortedChunkIndexes = getOrderedChunkIndexes();
+                    for (int index : sortedChunkIndexes) {
+                        String length = (String) params.get(ASSEMBLED_PARAM_PREFIX + index);
+                        if (length != null) {
+                            transferTo(ts, getChunkOffset(index), Long.parseLong(length), tmpChunkedFile);
+                            continue;
+                        }
+                        Blob chunk = getChunk(ts, chunks.get(index));
+                        if (chunk != null) {
+                            transferTo(chunk, tmpChunkedFile);
+                        }
                     }
+                    // Store tmpChunkedFile as a parameter for later deletion
+                    ts.putParameter(key, TMP_CHUNKED_FILE_PATH_PARAM, tmpChunkedFile.getAbsolutePath());
                 }
-                // Store tmpChunkedFile as a parameter for later deletion
-                ts.putParameter(key, "tmpChunkedFilePath", tmpChunkedFile.getAbsolutePath());
                 chunkedBlob.setMimeType(getMimeType());
                 chunkedBlob.setFilename(getFileName());
                 return chunkedBlob;
@@ -242,6 +304,82 @@ public class BatchFileEntry {
         }
     }
 
+    /**
+     * Gets the assembled file as a blob, writing to it the chunks that were stored separately.
+     *
+     * @return the blob, or {@code null} if the chunks don't fit in the assembled file
+     * @since 9.2
+     */
+    protected Blob getAssembledBlob(TransientStore ts, Map<Integer, String> chunks) throws IOException {
+        File file = getAssembledFile(ts);
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        int chunkCount = getChunkCount();
+        long chunkSize = getChunkSize();
+        if (chunkCount > 1 && chunkSize <= 0) {
+            return null;
+        }
+        Map<Integer, Blob> stored = new HashMap<>();
+        for (int index = 0; index < chunkCount; index++) {
+            if (params.containsKey(ASSEMBLED_PARAM_PREFIX + index)) {
+                continue;
+            }
+            Blob chunk = getChunk(ts, chunks.get(index));
+            if (chunk == null || chunk.getLength() != getExpectedChunkLength(index, chunkSize)) {
+                return null;
+            }
+            stored.put(index, chunk);
+        }
+        String digest = null;
+        if (stored.isEmpty()) {
+            digest = (String) params.get(DIGEST_PARAM);
+        } else {
+            // chunks received before the chunk size was known
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                for (Map.Entry<Integer, Blob> es : stored.entrySet()) {
+                    try (ReadableByteChannel in = Channels.newChannel(es.getValue().getStream())) {
+                        channel.transferFrom(in, getChunkOffset(es.getKey().intValue()), es.getValue().getLength());
+                    }
+                }
+            }
+        }
+        return new AssembledBlob(file, digest, (String) params.get(DIGEST_ALGORITHM_PARAM));
+    }
+
+    /**
+     * Gets the assembled file of this entry.
+     *
+     * @return the file, or {@code null} if the chunks cannot be assembled as they are received
+     * @since 9.2
+     */
+    protected File getAssembledFile(TransientStore ts) {
+        if (!(ts instanceof AbstractTransientStore) || getFileSize() <= 0) {
+            return null;
+        }
+        return new File(((AbstractTransientStore) ts).getCachingDirectory(key), ASSEMBLED_FILE_NAME);
+    }
+
+    protected long getChunkSize() {
+        String chunkSize = (String) params.get(CHUNK_SIZE_PARAM);
+        return chunkSize == null ? -1 : Long.parseLong(chunkSize);
+    }
+
+    protected long getChunkOffset(int index) {
+        return index == 0 ? 0 : index * getChunkSize();
+    }
+
+    /**
+     * Gets the length a chunk must have to be at its position in the assembled file.
+     */
+    protected long getExpectedChunkLength(int index, long chunkSize) {
+        if (index < getChunkCount() - 1) {
+            return chunkSize;
+        }
+        // last chunk, with the rest of the file
+        return getFileSize() - index * Math.max(chunkSize, 0);
+    }
+
     protected Blob getChunk(TransientStore ts, String key) {
         List<Blob> blobs = ts.getBlobs(key);
         if (CollectionUtils.isEmpty(blobs)) {
@@ -250,6 +388,20 @@ public class BatchFileEntry {
         return blobs.get(0);
     }
 
+    /**
+     * Appends a part of the assembled file to the given file.
+     */
+    protected void transferTo(TransientStore ts, long offset, long length, File file) throws IOException {
+        try (FileChannel in = FileChannel.open(getAssembledFile(ts).toPath(), StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND)) {
+            long done = 0;
+            while (done < length) {
+                done += in.transferTo(offset + done, length - done, out);
+            }
+        }
+    }
+
     /**
      * Appends the given blob to the given file.
      */
@@ -261,7 +413,192 @@ public class BatchFileEntry {
         }
     }
 
+    /**
+     * Adds a chunk, writing it directly to the assembled file if its position is known.
+     *
+     * @since 9.2
+     */
+    public String addChunk(int index, InputStream in) throws IOException {
+        checkChunkIndex(index);
+        BatchManager bm = Framework.getService(BatchManager.class);
+        TransientStore ts = bm.getTransientStore();
+        File file = getAssembledFile(ts);
+        if (file != null) {
+            try {
+                return addAssembledChunk(ts, file, index, in);
+            } finally {
+                in.close();
+            }
+        }
+        return addChunk(index, Blobs.createBlob(in));
+    }
+
+    /**
+     * Writes a chunk at its position in the assembled file. If the position of the chunk is not known yet, or if it
+     * doesn't fit there, the chunk is stored as a separate entry.
+     */
+    protected String addAssembledChunk(TransientStore ts, File file, int index, InputStream in) throws IOException {
+        int chunkCount = getChunkCount();
+        long fileSize = getFileSize();
+        // the chunk size may have been set since this entry was read
+        String chunkSizeParam = (String) ts.getParameter(key, CHUNK_SIZE_PARAM);
+        long chunkSize = chunkSizeParam == null ? -1 : Long.parseLong(chunkSizeParam);
+        long offset;
+        long max;
+        if (index == 0) {
+            offset = 0;
+            max = chunkCount == 1 ? fileSize : fileSize - (chunkCount - 1);
+        } else if (chunkSize > 0) {
+            offset = index * chunkSize;
+            max = getExpectedChunkLength(index, chunkSize);
+        } else {
+            max = -1;
+            offset = -1;
+        }
+        if (max <= 0 || offset + max > fileSize || !preallocate((AbstractTransientStore) ts, file, fileSize)) {
+            CHUNK_DIGESTS.remove(key);
+            return addChunk(index, Blobs.createBlob(in));
+        }
+        ChunkDigest chunkDigest = getChunkDigest(index);
+        PushbackInputStream pin = new PushbackInputStream(in, 1);
+        long length;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); //
+                FileChannel channel = raf.getChannel()) {
+            length = write(pin, channel, offset, max, chunkDigest == null ? null : chunkDigest.digest);
+            int next = pin.read();
+            boolean fits = next == -1 && (index == 0 && chunkCount > 1 ? isChunkSize(length, chunkCount, fileSize)
+                    : length == max);
+            if (next != -1) {
+                pin.unread(next);
+            }
+            if (!fits) {
+                log.debug(String.format("Chunk %d of file entry %s doesn't fit in the assembled file", index, key));
+                // the chunk is read back from its position
+                InputStream head = new BoundedInputStream(Channels.newInputStream(channel.position(offset)), length);
+                return addChunk(index, Blobs.createBlob(new SequenceInputStream(head, pin)));
+            }
+            if (index == 0 && chunkCount > 1) {
+                ts.putParameter(key, CHUNK_SIZE_PARAM, String.valueOf(length));
+            }
+        }
+        if (chunkDigest != null) {
+            chunkDigest.next++;
+            if (chunkDigest.next < chunkCount) {
+                CHUNK_DIGESTS.put(key, chunkDigest);
+            } else {
+                ts.putParameter(key, DIGEST_PARAM, AbstractBinaryManager.toHexString(chunkDigest.digest.digest()));
+                ts.putParameter(key, DIGEST_ALGORITHM_PARAM, chunkDigest.digest.getAlgorithm());
+            }
+        }
+        String chunkEntryKey = key + "_" + index;
+        ts.putParameter(key, ASSEMBLED_PARAM_PREFIX + index, String.valueOf(length));
+        ts.putParameter(key, String.valueOf(index), chunkEntryKey);
+        return chunkEntryKey;
+    }
+
+    /**
+     * Preallocates the whole assembled file, as chunks may be written in any order, after checking that the transient
+     * store has room for it. The size of the file is then counted in the storage size of the store.
+     *
+     * @return {@code false} if the transient store doesn't have room for the file
+     * @since 9.2
+     */
+    protected boolean preallocate(AbstractTransientStore ts, File file, long fileSize) throws IOException {
+        synchronized (PREALLOCATION_LOCK) {
+            // never shrinks a written chunk
+            long length = file.length();
+            if (length >= fileSize) {
+                return true;
+            }
+            try {
+                ts.putCachedFileSize(key, fileSize - length);
+            } catch (MaximumTransientSpaceExceeded e) {
+                log.debug(String.format("No room in the transient store for the assembled file of entry %s", key));
+                return false;
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(fileSize);
+            }
+            ts.putParameter(key, TMP_CHUNKED_FILE_PATH_PARAM, file.getAbsolutePath());
+            return true;
+        }
+    }
+
+    /**
+     * Checks that the first chunk has a length compatible with the size of the file.
+     */
+    protected static boolean isChunkSize(long length, int chunkCount, long fileSize) {
+        return length > 0 && length * (chunkCount - 1) < fileSize && length * chunkCount >= fileSize;
+    }
+
+    /**
+     * Writes at most {@code max} bytes of a stream at the given position of a file, updating the digest if any.
+     *
+     * @return the number of bytes written
+     */
+    protected static long write(InputStream in, FileChannel channel, long offset, long max, MessageDigest digest)
+            throws IOException {
+        byte[] buf = new byte[(int) Math.min(BUFFER_SIZE, max)];
+        long done = 0;
+        int n;
+        while (done < max && (n = in.read(buf, 0, (int) Math.min(buf.length, max - done))) != -1) {
+            ByteBuffer bb = ByteBuffer.wrap(buf, 0, n);
+            while (bb.hasRemaining()) {
+                channel.write(bb, offset + done + bb.position());
+            }
+            if (digest != null) {
+                digest.update(buf, 0, n);
+            }
+            done += n;
+        }
+        return done;
+    }
+
+    /**
+     * Takes the digest to update with the given chunk, if all the previous chunks were received in order.
+     */
+    protected ChunkDigest getChunkDigest(int index) {
+        if (index == 0) {
+            String algorithm = getDefaultDigestAlgorithm();
+            if (algorithm == null || CHUNK_DIGESTS.size() >= MAX_CHUNK_DIGESTS) {
+                return null;
+            }
+            try {
+                return new ChunkDigest(MessageDigest.getInstance(algorithm));
+            } catch (NoSuchAlgorithmException e) {
+                log.debug("Cannot digest chunks with " + algorithm, e);
+                return null;
+            }
+        }
+        // taken while the chunk is written, a chunk received meanwhile is out of order
+        ChunkDigest chunkDigest = CHUNK_DIGESTS.remove(key);
+        return chunkDigest != null && chunkDigest.next == index ? chunkDigest : null;
+    }
+
+    /**
+     * Gets the digest algorithm of the default binary manager, where the file is most likely to be stored.
+     */
+    protected static String getDefaultDigestAlgorithm() {
+        BlobManager blobManager = Framework.getService(BlobManager.class);
+        BlobProvider blobProvider = blobManager == null ? null : blobManager.getBlobProvider("default");
+        if (blobProvider instanceof BinaryBlobProvider) {
+            return ((BinaryBlobProvider) blobProvider).getBinaryManager().getDigestAlgorithm();
+        }
+        return null;
+    }
+
     public String addChunk(int index, Blob blob) {
+        checkChunkIndex(index);
+        String chunkEntryKey = key + "_" + index;
+        BatchManager bm = Framework.getService(BatchManager.class);
+        TransientStore ts = bm.getTransientStore();
+        ts.putBlobs(chunkEntryKey, Collections.singletonList(blob));
+        ts.putParameter(key, String.valueOf(index), chunkEntryKey);
+
+        return chunkEntryKey;
+    }
+
+    protected void checkChunkIndex(int index) {
         if (!isChunked()) {
             throw new NuxeoException("Cannot add a chunk to a non chunked file entry.");
         }
@@ -277,19 +614,12 @@ public class BatchFileEntry {
             throw new NuxeoException(String.format(
                     "Cannot add chunk with index %d to file entry %s as it already exists.", index, key));
         }
-
-        String chunkEntryKey = key + "_" + index;
-        BatchManager bm = Framework.getService(BatchManager.class);
-        TransientStore ts = bm.getTransientStore();
-        ts.putBlobs(chunkEntryKey, Collections.singletonList(blob));
-        ts.putParameter(key, String.valueOf(index), chunkEntryKey);
-
-        return chunkEntryKey;
     }
 
     public void beforeRemove() {
+        CHUNK_DIGESTS.remove(key);
         BatchManager bm = Framework.getService(BatchManager.class);
-        String tmpChunkedFilePath = (String) bm.getTransientStore().getParameter(key, "tmpChunkedFilePath");
+        String tmpChunkedFilePath = (String) bm.getTransientStore().getParameter(key, TMP_CHUNKED_FILE_PATH_PARAM);
         if (tmpChunkedFilePath != null) {
             File tmpChunkedFile = new File(tmpChunkedFilePath);
             if (tmpChunkedFile.exists()) {
@@ -298,4 +628,67 @@ public class BatchFileEntry {
             }
         }
     }
+
+    /**
+     * The digest of a chunked file being uploaded in order.
+     */
+    protected static class ChunkDigest {
+
+        protected final MessageDigest digest;
+
+        /** The index of the next chunk to digest. */
+        protected int next;
+
+        protected ChunkDigest(MessageDigest digest) {
+            this.digest = digest;
+        }
+    }
+
+    /**
+     * A blob backed by the assembled file of a chunked upload, with the digest computed while it was written.
+     * <p>
+     * The assembled file stays in the transient store until the batch is removed, so that the blob can be fetched
+     * again: moving the blob links the file to its destination, or copies it if not possible.
+     */
+    protected static class AssembledBlob extends FileBlob {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final String digestAlgorithm;
+
+        protected AssembledBlob(File file, String digest, String digestAlgorithm) {
+            super(file, null, null, null, digest);
+            this.digestAlgorithm = digestAlgorithm;
+            isTemporary = true;
+        }
+
+        @Override
+        public String getDigestAlgorithm() {
+            return digest == null ? null : digestAlgorithm;
+        }
+
+        @Override
+        public void moveTo(File dest) throws IOException {
+            if (!isTemporary) {
+                throw new IOException("Cannot move non-temporary file: " + file);
+            }
+            Path destPath = dest.toPath();
+            try {
+                Files.createLink(destPath, file.toPath());
+            } catch (IOException | UnsupportedOperationException e) {
+                // different filesystem, copy through a tmp file then atomic rename
+                Path tmp = Files.createTempFile(destPath.getParent(), null, null);
+                try {
+                    Files.copy(file.toPath(), tmp, StandardCopyOption.REPLACE_EXISTING);
+                    Files.move(tmp, destPath, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException ioe) {
+                    Files.deleteIfExists(tmp);
+                    throw ioe;
+                }
+            }
+            file = dest;
+            isTemporary = false;
+        }
+    }
+
 }
@@ -43,6 +43,9 @@ import javax.persistence.TemporalType;
 import javax.persistence.Transient;
 
 import org.apache.commons.lang.builder.ToStringBuilder;
+import org.hibernate.annotations.ForeignKey;
+import org.hibernate.annotations.Index;
+import org.hibernate.annotations.Persister;
 import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.DocumentRef;
 import org.nuxeo.ecm.platform.audit.api.ExtendedInfo;
@@ -63,6 +66,7 @@ import org.nuxeo.ecm.platform.audit.api.comment.UIAuditComment;
         @NamedQuery(name = "LogEntry.countEventsById", query = "select count(log.eventId) from LogEntry log where log.eventId=:eventId"),
         @NamedQuery(name = "LogEntry.findEventIds", query = "select distinct log.eventId from LogEntry log") })
 @Table(name = "NXP_LOGS")
+@Persister(impl = LogEntryPersister.class)
 public class LogEntryImpl implements LogEntry {
 
     private static final long serialVersionUID = 3037187381843636097L;
@@ -152,6 +156,7 @@ public class LogEntryImpl implements LogEntry {
     @Override
     @Temporal(TemporalType.TIMESTAMP)
     @Column(name = "LOG_EVENT_DATE")
+    @Index(name = "NXP_LOGS_EVENT_DATE_IDX")
     public Date getEventDate() {
         return eventDate;
     }
@@ -328,6 +333,8 @@ public class LogEntryImpl implements LogEntry {
     @OneToMany(cascade = CascadeType.ALL, targetEntity = ExtendedInfoImpl.class)
     @JoinTable(name = "NXP_LOGS_MAPEXTINFOS", joinColumns = { @JoinColumn(name = "LOG_FK") }, inverseJoinColumns = {
             @JoinColumn(name = "INFO_FK") })
+    // no foreign key to NXP_LOGS, the entries may be in its partitions
+    @ForeignKey(name = "none")
     @org.hibernate.annotations.MapKey(columns = { @Column(name = "mapkey", nullable = false) })
     public Map<String, ExtendedInfo> getExtendedInfos() {
         return (Map) extendedInfos;
@@ -0,0 +1,49 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.platform.audit.impl;
+
+import org.hibernate.HibernateException;
+import org.hibernate.cache.access.EntityRegionAccessStrategy;
+import org.hibernate.engine.ExecuteUpdateResultCheckStyle;
+import org.hibernate.engine.Mapping;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.mapping.PersistentClass;
+import org.hibernate.persister.entity.SingleTableEntityPersister;
+
+/**
+ * Persister of the log entries that doesn't check the row count of their insertion.
+ * <p>
+ * When the audit is partitioned, a trigger before insertion writes the row to its partition instead of
+ * {@code NXP_LOGS}, so the insertion reports no row. This is the same as an
+ * {@code @SQLInsert(check = ResultCheckStyle.NONE)}, but keeps the SQL generated for the identifier strategy of the
+ * database.
+ *
+ * @since 9.2
+ */
+public class LogEntryPersister extends SingleTableEntityPersister {
+
+    public LogEntryPersister(PersistentClass persistentClass, EntityRegionAccessStrategy cacheAccessStrategy,
+            SessionFactoryImplementor factory, Mapping mapping) throws HibernateException {
+        super(withoutInsertCheck(persistentClass), cacheAccessStrategy, factory, mapping);
+    }
+
+    protected static PersistentClass withoutInsertCheck(PersistentClass persistentClass) {
+        // no custom SQL, only the check style
+        persistentClass.setCustomSQLInsert(null, false, ExecuteUpdateResultCheckStyle.NONE);
+        return persistentClass;
+    }
+
+}
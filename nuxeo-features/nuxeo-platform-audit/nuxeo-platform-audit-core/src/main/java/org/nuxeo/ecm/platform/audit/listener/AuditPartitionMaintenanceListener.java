@@ -0,0 +1,46 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.platform.audit.listener;
+
+import org.nuxeo.ecm.core.event.EventBundle;
+import org.nuxeo.ecm.core.event.PostCommitEventListener;
+import org.nuxeo.ecm.platform.audit.service.AuditBackend;
+import org.nuxeo.ecm.platform.audit.service.DefaultAuditBackend;
+import org.nuxeo.ecm.platform.audit.service.NXAuditEventsService;
+import org.nuxeo.runtime.api.Framework;
+
+/**
+ * Asynchronous listener that maintains the partitions of the default audit backend. Designed to be called periodically
+ * by a scheduler.
+ *
+ * @since 9.2
+ */
+public class AuditPartitionMaintenanceListener implements PostCommitEventListener {
+
+    @Override
+    public void handleEvent(EventBundle events) {
+        NXAuditEventsService audit = (NXAuditEventsService) Framework.getRuntime().getComponent(
+                NXAuditEventsService.NAME);
+        if (audit == null) {
+            return;
+        }
+        AuditBackend backend = audit.getBackend();
+        if (backend instanceof DefaultAuditBackend) {
+            ((DefaultAuditBackend) backend).maintainPartitions();
+        }
+    }
+
+}
@@ -0,0 +1,390 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.platform.audit.service;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * An append-only journal of records, stored in memory-mapped segment files.
+ * <p>
+ * Each record is made of its length (4 bytes), its state (1 byte, pending or delivered) and its data. A zero length
+ * marks the end of the records of a segment. Records are read in order, then acknowledged once delivered, which can
+ * happen in any order. A segment file is deleted once it's full and all its records are delivered.
+ * <p>
+ * When a journal is opened, the pending records of the existing segment files are read again. Records survive a crash
+ * of the JVM, but the ones written since the last {@link MappedByteBuffer#force} may be lost on a crash of the
+ * operating system.
+ *
+ * @since 9.2
+ */
+public class AuditJournal implements Closeable {
+
+    private static final Log log = LogFactory.getLog(AuditJournal.class);
+
+    protected static final String PREFIX = "audit-";
+
+    protected static final String SUFFIX = ".journal";
+
+    /** Length and state. */
+    protected static final int HEADER = 5;
+
+    /** Room for the zero length marking the end of a segment. */
+    protected static final int END = 4;
+
+    protected static final byte PENDING = 0;
+
+    protected static final byte DELIVERED = 1;
+
+    protected final File dir;
+
+    protected final int segmentSize;
+
+    /** Segments by sequence number. */
+    protected final TreeMap<Long, Segment> segments = new TreeMap<>();
+
+    protected Segment writeSegment;
+
+    protected Segment readSegment;
+
+    protected int readPos;
+
+    protected long nextSeq;
+
+    /** Size of the segment files. */
+    protected long size;
+
+    /** Records not yet delivered. */
+    protected long pending;
+
+    /** Pending records not yet read. */
+    protected long unread;
+
+    /**
+     * Opens a journal, reading the existing segment files.
+     *
+     * @param dir the directory of the segment files
+     * @param segmentSize the size of the segment files
+     */
+    public AuditJournal(File dir, int segmentSize) throws IOException {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        dir.mkdirs();
+        if (!dir.isDirectory()) {
+            throw new IOException("Cannot create audit journal directory: " + dir);
+        }
+        replay();
+    }
+
+    protected void replay() throws IOException {
+        File[] files = dir.listFiles((d, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = file.getName();
+            long seq;
+            try {
+                seq = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring unknown audit journal file: " + file);
+                continue;
+            }
+            Segment segment = new Segment(seq, file, map(file, file.length()));
+            segment.scan();
+            segment.sealed = true;
+            nextSeq = Math.max(nextSeq, seq + 1);
+            size += segment.capacity;
+            segments.put(seq, segment);
+            if (segment.isComplete()) {
+                delete(segment);
+            } else {
+                long count = segment.appended - segment.delivered;
+                pending += count;
+                unread += count;
+            }
+        }
+        if (!segments.isEmpty()) {
+            readSegment = segments.firstEntry().getValue();
+            readPos = 0;
+        }
+        if (pending > 0) {
+            log.warn("Replaying " + pending + " undelivered audit entries from journal: " + dir);
+        }
+    }
+
+    protected static MappedByteBuffer map(File file, long length) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); //
+                FileChannel channel = raf.getChannel()) {
+            if (raf.length() < length) {
+                raf.setLength(length);
+            }
+            // the mapping stays valid after the channel is closed
+            return channel.map(MapMode.READ_WRITE, 0, length);
+        }
+    }
+
+    /**
+     * Appends a record.
+     */
+    public synchronized void append(byte[] data) throws IOException {
+        int needed = HEADER + data.length;
+        if (writeSegment == null || writeSegment.writePos + needed + END > writeSegment.capacity) {
+            newSegment(needed + END);
+        }
+        Segment segment = writeSegment;
+        int pos = segment.writePos;
+        ByteBuffer buf = segment.buffer.duplicate();
+        buf.position(pos + HEADER);
+        buf.put(data);
+        // the length is written last, so that a partially written record is never read
+        segment.buffer.putInt(pos, data.length);
+        segment.writePos += needed;
+        segment.appended++;
+        pending++;
+        unread++;
+    }
+
+    protected void newSegment(int minSize) throws IOException {
+        if (writeSegment != null) {
+            writeSegment.sealed = true;
+            writeSegment.buffer.force();
+            if (writeSegment.isComplete()) {
+                delete(writeSegment);
+            }
+        }
+        long seq = nextSeq++;
+        File file = new File(dir, String.format("%s%016d%s", PREFIX, seq, SUFFIX));
+        int capacity = Math.max(segmentSize, minSize);
+        Segment segment = new Segment(seq, file, map(file, capacity));
+        segments.put(seq, segment);
+        size += capacity;
+        writeSegment = segment;
+        if (readSegment == null) {
+            readSegment = segment;
+            readPos = 0;
+        }
+    }
+
+    /**
+     * Reads the next pending records.
+     *
+     * @param max the maximum number of records to read
+     * @return the records, empty if there are no more records to read for now
+     */
+    public synchronized List<Record> read(int max) {
+        if (unread == 0) {
+            return Collections.emptyList();
+        }
+        List<Record> records = new ArrayList<>();
+        while (records.size() < max && readSegment != null) {
+            Segment segment = readSegment;
+            int len = segment.getLength(readPos);
+            if (len == 0) {
+                if (segment == writeSegment) {
+                    break;
+                }
+                // the segment may have been deleted, but its successor is still found
+                Entry<Long, Segment> next = segments.higherEntry(Long.valueOf(segment.seq));
+                if (next == null) {
+                    break;
+                }
+                readSegment = next.getValue();
+                readPos = 0;
+                continue;
+            }
+            if (segment.buffer.get(readPos + 4) == PENDING) {
+                byte[] data = new byte[len];
+                ByteBuffer buf = segment.buffer.duplicate();
+                buf.position(readPos + HEADER);
+                buf.get(data);
+                records.add(new Record(segment, readPos, data));
+                unread--;
+            }
+            readPos += HEADER + len;
+        }
+        return records;
+    }
+
+    /**
+     * Acknowledges the delivery of records, deleting the segments that are complete.
+     */
+    public synchronized void ack(List<Record> records) {
+        Set<Segment> touched = new LinkedHashSet<>();
+        for (Record record : records) {
+            Segment segment = record.segment;
+            segment.buffer.put(record.pos + 4, DELIVERED);
+            segment.delivered++;
+            pending--;
+            touched.add(segment);
+        }
+        for (Segment segment : touched) {
+            if (segment.sealed && segment.isComplete()) {
+                delete(segment);
+            }
+        }
+    }
+
+    protected void delete(Segment segment) {
+        segments.remove(Long.valueOf(segment.seq));
+        size -= segment.capacity;
+        // the mapping itself is released when the buffer is garbage collected
+        if (!segment.file.delete()) {
+            log.debug("Cannot delete audit journal file: " + segment.file);
+            segment.file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Gets the number of records not yet delivered.
+     */
+    public synchronized long getPending() {
+        return pending;
+    }
+
+    /**
+     * Gets the number of pending records not yet read.
+     */
+    public synchronized long getUnread() {
+        return unread;
+    }
+
+    /**
+     * Gets the size in bytes of the segment files.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Flushes the segments to disk. Pending records will be read again when the journal is reopened.
+     */
+    @Override
+    public synchronized void close() {
+        for (Segment segment : segments.values()) {
+            segment.buffer.force();
+        }
+        segments.clear();
+        writeSegment = null;
+        readSegment = null;
+    }
+
+    /**
+     * A segment file.
+     */
+    protected static class Segment {
+
+        protected final long seq;
+
+        protected final File file;
+
+        protected final MappedByteBuffer buffer;
+
+        protected final int capacity;
+
+        protected int writePos;
+
+        protected int appended;
+
+        protected int delivered;
+
+        /** Whether no record will be appended anymore. */
+        protected boolean sealed;
+
+        protected Segment(long seq, File file, MappedByteBuffer buffer) {
+            this.seq = seq;
+            this.file = file;
+            this.buffer = buffer;
+            capacity = buffer.capacity();
+        }
+
+        /**
+         * Gets the length of the record at the given position, 0 if there is none.
+         */
+        protected int getLength(int pos) {
+            if (pos + HEADER > capacity) {
+                return 0;
+            }
+            int len = buffer.getInt(pos);
+            if (len <= 0 || pos + HEADER + len > capacity) {
+                // end of segment, or garbage
+                return 0;
+            }
+            return len;
+        }
+
+        /**
+         * Counts the records of an existing segment.
+         */
+        protected void scan() {
+            int pos = 0;
+            int len;
+            while ((len = getLength(pos)) > 0) {
+                appended++;
+                if (buffer.get(pos + 4) != PENDING) {
+                    delivered++;
+                }
+                pos += HEADER + len;
+            }
+            writePos = pos;
+        }
+
+        protected boolean isComplete() {
+            return delivered == appended;
+        }
+    }
+
+    /**
+     * A record read from the journal.
+     */
+    public static class Record {
+
+        protected final Segment segment;
+
+        protected final int pos;
+
+        protected final byte[] data;
+
+        protected Record(Segment segment, int pos, byte[] data) {
+            this.segment = segment;
+            this.pos = pos;
+            this.data = data;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+    }
+
+}
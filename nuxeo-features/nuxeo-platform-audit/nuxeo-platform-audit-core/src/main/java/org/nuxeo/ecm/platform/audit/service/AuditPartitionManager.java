@@ -0,0 +1,341 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.platform.audit.service;
+
+import static org.nuxeo.ecm.platform.audit.service.JDBCLogEntryWriter.INFO_ID;
+import static org.nuxeo.ecm.platform.audit.service.JDBCLogEntryWriter.INFO_TABLE;
+import static org.nuxeo.ecm.platform.audit.service.JDBCLogEntryWriter.LOG_ID;
+import static org.nuxeo.ecm.platform.audit.service.JDBCLogEntryWriter.LOG_TABLE;
+import static org.nuxeo.ecm.platform.audit.service.JDBCLogEntryWriter.MAP_TABLE;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Manages the monthly partitions of the log entries, based on their event date.
+ * <p>
+ * On PostgreSQL, each month is stored in its own table inheriting from {@code NXP_LOGS}, so that queries on a date
+ * range only scan the relevant months (constraint exclusion), and so that expired months are removed by dropping their
+ * table. The rows are routed to their partition by a trigger before their insertion in {@code NXP_LOGS}, which then
+ * reports no inserted row (see {@link org.nuxeo.ecm.platform.audit.impl.LogEntryPersister LogEntryPersister}). Rows
+ * for which no partition exists, for instance the ones written before the partitioning was enabled, stay in
+ * {@code NXP_LOGS}. As PostgreSQL checks a foreign key only against the rows of the table itself and not of the tables
+ * inheriting from it, {@code NXP_LOGS_MAPEXTINFOS} has no foreign key to {@code NXP_LOGS}.
+ * <p>
+ * On other databases, as the log entries are mapped by JPA to a single table, the months are only logical and
+ * expired months are removed with batches of deletions on the indexed event date.
+ *
+ * @since 9.2
+ */
+public class AuditPartitionManager {
+
+    private static final Log log = LogFactory.getLog(AuditPartitionManager.class);
+
+    protected static final String PARTITION_PREFIX = "nxp_logs_p";
+
+    protected static final String ROUTE_FUNCTION = "nx_audit_route_log";
+
+    protected static final String ROUTE_TRIGGER = "nx_audit_route_log_trigger";
+
+    protected static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
+
+    /** Stays below the limit of 1000 elements in an IN list of some databases. */
+    protected static final int MAX_IN_SIZE = 500;
+
+    protected static final String ROUTE_FUNCTION_SQL = "CREATE OR REPLACE FUNCTION " + ROUTE_FUNCTION
+            + "() RETURNS trigger AS $$\n" //
+            + "DECLARE\n" //
+            + "  partition text;\n" //
+            + "BEGIN\n" //
+            + "  IF NEW.log_event_date IS NULL THEN\n" //
+            + "    RETURN NEW;\n" //
+            + "  END IF;\n" //
+            + "  partition := '" + PARTITION_PREFIX + "' || to_char(NEW.log_event_date, 'YYYYMM');\n" //
+            + "  IF NOT EXISTS (SELECT 1 FROM pg_class WHERE relname = partition AND relkind = 'r'" //
+            + " AND relnamespace = (SELECT relnamespace FROM pg_class WHERE oid = TG_RELID)) THEN\n" //
+            + "    RETURN NEW;\n" //
+            + "  END IF;\n" //
+            + "  EXECUTE 'INSERT INTO ' || quote_ident(TG_TABLE_SCHEMA) || '.' || partition || ' SELECT ($1).*'" //
+            + " USING NEW;\n" //
+            + "  -- not inserted in the parent table\n" //
+            + "  RETURN NULL;\n" //
+            + "END\n" //
+            + "$$ LANGUAGE plpgsql";
+
+    protected final Connection connection;
+
+    /** Whether the months are stored in their own tables. */
+    protected final boolean partitioned;
+
+    public AuditPartitionManager(Connection connection) throws SQLException {
+        this.connection = connection;
+        String product = connection.getMetaData().getDatabaseProductName().toLowerCase();
+        partitioned = product.contains("postgresql");
+    }
+
+    public boolean isPartitioned() {
+        return partitioned;
+    }
+
+    public static String getPartitionName(YearMonth month) {
+        return PARTITION_PREFIX + month.format(MONTH_FORMAT);
+    }
+
+    protected static Timestamp getStart(YearMonth month) {
+        // same time zone as the dates written by JPA
+        return Timestamp.valueOf(month.atDay(1).atStartOfDay());
+    }
+
+    /**
+     * Installs the routing of the rows to their partition, and creates the partitions of the given month and of the
+     * following ones. Does nothing if the database doesn't use partitions.
+     *
+     * @param current the current month
+     * @param premake the number of partitions to create after the current month
+     */
+    public void setup(YearMonth current, int premake) throws SQLException {
+        if (!partitioned) {
+            return;
+        }
+        try (Statement st = connection.createStatement()) {
+            st.execute(ROUTE_FUNCTION_SQL);
+            // tgtype bit 1 is set for a trigger before the event
+            if (!exists("SELECT 1 FROM pg_trigger WHERE tgrelid = ?::regclass AND tgname = ? AND tgtype & 2 <> 0",
+                    LOG_TABLE.toLowerCase(), ROUTE_TRIGGER)) {
+                // replaces the trigger after insertion of previous versions
+                st.execute("DROP TRIGGER IF EXISTS " + ROUTE_TRIGGER + " ON " + LOG_TABLE);
+                st.execute("CREATE TRIGGER " + ROUTE_TRIGGER + " BEFORE INSERT ON " + LOG_TABLE
+                        + " FOR EACH ROW EXECUTE PROCEDURE " + ROUTE_FUNCTION + "()");
+            }
+            // created by the JPA schema update of previous versions, not anymore
+            for (String fk : getForeignKeysToLogs()) {
+                log.info("Dropping foreign key " + fk + " of " + MAP_TABLE + " for audit partitioning");
+                st.execute("ALTER TABLE " + MAP_TABLE + " DROP CONSTRAINT " + fk);
+            }
+        }
+        for (int i = 0; i <= premake; i++) {
+            createPartition(current.plusMonths(i));
+        }
+    }
+
+    protected List<String> getForeignKeysToLogs() throws SQLException {
+        List<String> fks = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement("SELECT conname FROM pg_constraint"
+                + " WHERE contype = 'f' AND conrelid = ?::regclass AND confrelid = ?::regclass")) {
+            ps.setString(1, MAP_TABLE.toLowerCase());
+            ps.setString(2, LOG_TABLE.toLowerCase());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    fks.add(rs.getString(1));
+                }
+            }
+        }
+        return fks;
+    }
+
+    /**
+     * Creates the partition of a month if it doesn't exist.
+     *
+     * @return {@code true} if the partition was created
+     */
+    public boolean createPartition(YearMonth month) throws SQLException {
+        String name = getPartitionName(month);
+        if (!partitioned || hasPartition(month)) {
+            return false;
+        }
+        String start = getStart(month).toString();
+        String end = getStart(month.plusMonths(1)).toString();
+        log.info("Creating audit partition " + name);
+        try (Statement st = connection.createStatement()) {
+            st.execute("CREATE TABLE " + name + " (LIKE " + LOG_TABLE + " INCLUDING DEFAULTS, PRIMARY KEY (" + LOG_ID
+                    + "), CHECK (log_event_date >= TIMESTAMP '" + start + "' AND log_event_date < TIMESTAMP '" + end
+                    + "')) INHERITS (" + LOG_TABLE + ")");
+            st.execute("CREATE INDEX " + name + "_event_date_idx ON " + name + " (log_event_date)");
+            st.execute("CREATE INDEX " + name + "_doc_uuid_idx ON " + name + " (log_doc_uuid)");
+        }
+        return true;
+    }
+
+    public boolean hasPartition(YearMonth month) throws SQLException {
+        return partitioned && exists("SELECT 1 FROM pg_class WHERE relname = ? AND relkind = 'r'"
+                + " AND relnamespace = (SELECT relnamespace FROM pg_class WHERE oid = ?::regclass)",
+                getPartitionName(month), LOG_TABLE.toLowerCase());
+    }
+
+    /**
+     * Gets the months having a partition, in chronological order.
+     */
+    public List<YearMonth> getPartitions() throws SQLException {
+        if (!partitioned) {
+            return Collections.emptyList();
+        }
+        List<YearMonth> months = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement("SELECT c.relname FROM pg_inherits i"
+                + " JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = ?::regclass")) {
+            ps.setString(1, LOG_TABLE.toLowerCase());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String name = rs.getString(1);
+                    if (!name.startsWith(PARTITION_PREFIX)) {
+                        continue;
+                    }
+                    try {
+                        months.add(YearMonth.parse(name.substring(PARTITION_PREFIX.length()), MONTH_FORMAT));
+                    } catch (DateTimeParseException e) {
+                        log.debug("Ignoring table inheriting from " + LOG_TABLE + ": " + name);
+                    }
+                }
+            }
+        }
+        Collections.sort(months);
+        return months;
+    }
+
+    /**
+     * Gets the month of the oldest log entry, or {@code null} if there is none.
+     */
+    public YearMonth getOldestMonth() throws SQLException {
+        try (Statement st = connection.createStatement();
+                ResultSet rs = st.executeQuery("SELECT MIN(LOG_EVENT_DATE) FROM " + LOG_TABLE)) {
+            if (rs.next()) {
+                Timestamp min = rs.getTimestamp(1);
+                if (min != null) {
+                    return YearMonth.from(min.toLocalDateTime());
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Drops the partition of a month, with the extended infos of its log entries.
+     *
+     * @return {@code true} if the partition existed
+     */
+    public boolean dropPartition(YearMonth month) throws SQLException {
+        if (!hasPartition(month)) {
+            return false;
+        }
+        String name = getPartitionName(month);
+        log.info("Dropping audit partition " + name);
+        try (Statement st = connection.createStatement()) {
+            st.execute("WITH m AS (DELETE FROM " + MAP_TABLE + " WHERE LOG_FK IN (SELECT " + LOG_ID + " FROM " + name
+                    + ") RETURNING INFO_FK) DELETE FROM " + INFO_TABLE + " WHERE " + INFO_ID
+                    + " IN (SELECT INFO_FK FROM m)");
+            st.execute("DROP TABLE " + name);
+        }
+        return true;
+    }
+
+    /**
+     * Deletes a batch of log entries of a month, with their extended infos. On PostgreSQL, only the entries not in a
+     * partition remain to be deleted after the partition of the month is dropped.
+     *
+     * @param max the maximum number of entries to delete
+     * @return the number of deleted entries, 0 when there are no more entries for this month
+     */
+    public int deleteEntries(YearMonth month, int max) throws SQLException {
+        List<Long> logIds = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement("SELECT " + LOG_ID + " FROM " + LOG_TABLE
+                + " WHERE LOG_EVENT_DATE >= ? AND LOG_EVENT_DATE < ?")) {
+            ps.setTimestamp(1, getStart(month));
+            ps.setTimestamp(2, getStart(month.plusMonths(1)));
+            ps.setMaxRows(max);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    logIds.add(Long.valueOf(rs.getLong(1)));
+                }
+            }
+        }
+        if (logIds.isEmpty()) {
+            return 0;
+        }
+        List<Long> infoIds = new ArrayList<>();
+        for (List<Long> ids : split(logIds)) {
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "SELECT INFO_FK FROM " + MAP_TABLE + " WHERE LOG_FK IN (" + placeholders(ids.size()) + ")")) {
+                bind(ps, ids);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        infoIds.add(Long.valueOf(rs.getLong(1)));
+                    }
+                }
+            }
+        }
+        delete(MAP_TABLE, "LOG_FK", logIds);
+        delete(INFO_TABLE, INFO_ID, infoIds);
+        delete(LOG_TABLE, LOG_ID, logIds);
+        return logIds.size();
+    }
+
+    protected void delete(String table, String column, List<Long> values) throws SQLException {
+        for (List<Long> ids : split(values)) {
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "DELETE FROM " + table + " WHERE " + column + " IN (" + placeholders(ids.size()) + ")")) {
+                bind(ps, ids);
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    protected static List<List<Long>> split(List<Long> values) {
+        List<List<Long>> lists = new ArrayList<>();
+        for (int i = 0; i < values.size(); i += MAX_IN_SIZE) {
+            lists.add(values.subList(i, Math.min(i + MAX_IN_SIZE, values.size())));
+        }
+        return lists;
+    }
+
+    protected static String placeholders(int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+
+    protected static void bind(PreparedStatement ps, List<Long> ids) throws SQLException {
+        int i = 1;
+        for (Long id : ids) {
+            ps.setLong(i++, id.longValue());
+        }
+    }
+
+    protected boolean exists(String sql, String... params) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                ps.setString(i + 1, params[i]);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+}
@@ -18,13 +18,39 @@
  */
 package org.nuxeo.ecm.platform.audit.service;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.Serializable;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.zip.GZIPOutputStream;
 
 import javax.persistence.EntityManager;
 
+import org.nuxeo.ecm.core.api.Blob;
+import org.nuxeo.ecm.core.api.Blobs;
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.api.security.SecurityConstants;
+import org.nuxeo.ecm.core.blob.BlobManager;
+import org.nuxeo.ecm.core.blob.BlobProvider;
+import org.nuxeo.ecm.core.io.registry.MarshallerHelper;
+import org.nuxeo.ecm.core.io.registry.context.RenderingContext;
+import org.nuxeo.ecm.core.io.registry.context.RenderingContext.CtxBuilder;
 import org.nuxeo.ecm.core.persistence.PersistenceProvider;
 import org.nuxeo.ecm.core.persistence.PersistenceProvider.RunCallback;
 import org.nuxeo.ecm.core.persistence.PersistenceProvider.RunVoid;
@@ -34,7 +60,9 @@ import org.nuxeo.ecm.platform.audit.api.FilterMapEntry;
 import org.nuxeo.ecm.platform.audit.api.LogEntry;
 import org.nuxeo.ecm.platform.audit.impl.ExtendedInfoImpl;
 import org.nuxeo.ecm.platform.audit.service.extension.AuditBackendDescriptor;
+import org.nuxeo.ecm.platform.audit.service.extension.AuditPartitioningDescriptor;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.datasource.ConnectionHelper;
 import org.nuxeo.runtime.model.DefaultComponent;
 import org.nuxeo.runtime.transaction.TransactionHelper;
 
@@ -45,6 +73,25 @@ import org.nuxeo.runtime.transaction.TransactionHelper;
  */
 public class DefaultAuditBackend extends AbstractAuditBackend {
 
+    /** @since 9.2 */
+    public static final String WRITE_MODE_JPA = "jpa";
+
+    /** @since 9.2 */
+    public static final String WRITE_MODE_JDBC = "jdbc";
+
+    /** @since 9.2 */
+    public static final String DATASOURCE = "nxaudit-logs";
+
+    /** @since 9.2 */
+    public static final String ARCHIVE_EVENT = "auditArchived";
+
+    /** @since 9.2 */
+    public static final String ARCHIVE_CATEGORY = "auditMaintenance";
+
+    protected static final int DELETE_BATCH_SIZE = 1000;
+
+    protected static final int ARCHIVE_PAGE_SIZE = 1000;
+
     protected PersistenceProvider persistenceProvider;
 
     public DefaultAuditBackend(NXAuditEventsService component, AuditBackendDescriptor config) {
@@ -63,6 +110,17 @@ public class DefaultAuditBackend extends AbstractAuditBackend {
     @Override
     public void onApplicationStarted() {
         activatePersistenceProvider();
+        AuditPartitioningDescriptor partitioning = config.getPartitioning();
+        if (partitioning != null && partitioning.isEnabled()) {
+            try {
+                runWithPartitionManager(manager -> {
+                    manager.setup(YearMonth.now(), partitioning.getPremake());
+                    return null;
+                });
+            } catch (NuxeoException e) {
+                log.error("Cannot set up audit partitioning", e);
+            }
+        }
     }
 
     @Override
@@ -104,25 +162,214 @@ public class DefaultAuditBackend extends AbstractAuditBackend {
         if (!TransactionHelper.isTransactionActiveOrMarkedRollback()) {
             TransactionHelper.startTransaction();
             try {
-                getOrCreatePersistenceProvider().run(true, new RunVoid() {
-                    @Override
-                    public void runWith(EntityManager em) {
-                        addLogEntries(em, entries);
-                    }
-                });
+                doAddLogEntries(entries);
             } finally {
                 TransactionHelper.commitOrRollbackTransaction();
             }
             return;
         }
+        doAddLogEntries(entries);
+    }
+
+    protected void doAddLogEntries(List<LogEntry> entries) {
+        List<LogEntry> jpaEntries = entries;
+        if (WRITE_MODE_JDBC.equals(config.getWriteMode())) {
+            List<LogEntry> jdbcEntries = new ArrayList<>(entries.size());
+            jpaEntries = new ArrayList<>();
+            for (LogEntry entry : entries) {
+                if (JDBCLogEntryWriter.isSupported(entry)) {
+                    jdbcEntries.add(entry);
+                } else {
+                    jpaEntries.add(entry);
+                }
+            }
+            addLogEntriesWithJDBC(jdbcEntries);
+        }
+        if (jpaEntries.isEmpty()) {
+            return;
+        }
+        List<LogEntry> toPersist = jpaEntries;
         getOrCreatePersistenceProvider().run(true, new RunVoid() {
             @Override
             public void runWith(EntityManager em) {
-                addLogEntries(em, entries);
+                addLogEntries(em, toPersist);
             }
         });
     }
 
+    /**
+     * Writes log entries with JDBC batches, in the current transaction.
+     *
+     * @since 9.2
+     */
+    protected void addLogEntriesWithJDBC(List<LogEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        try (Connection connection = ConnectionHelper.getConnection(DATASOURCE)) {
+            new JDBCLogEntryWriter(connection).write(entries);
+        } catch (SQLException e) {
+            throw new NuxeoException("Cannot write audit entries", e);
+        }
+    }
+
+    /**
+     * Works done with an {@link AuditPartitionManager}.
+     *
+     * @since 9.2
+     */
+    @FunctionalInterface
+    protected interface PartitionCallback<R> {
+
+        R runWith(AuditPartitionManager manager) throws SQLException;
+    }
+
+    /**
+     * Runs a work with an {@link AuditPartitionManager}, in a new transaction.
+     *
+     * @since 9.2
+     */
+    protected <R> R runWithPartitionManager(PartitionCallback<R> callback) {
+        return TransactionHelper.runInNewTransaction(() -> {
+            try (Connection connection = ConnectionHelper.getConnection(DATASOURCE)) {
+                return callback.runWith(new AuditPartitionManager(connection));
+            } catch (SQLException e) {
+                throw new NuxeoException("Audit partitioning failed", e);
+            }
+        });
+    }
+
+    /**
+     * Creates the partitions of the next months, then archives and removes the months older than the configured
+     * retention. Designed to be called periodically.
+     *
+     * @since 9.2
+     */
+    public void maintainPartitions() {
+        AuditPartitioningDescriptor partitioning = config.getPartitioning();
+        if (partitioning == null || !partitioning.isEnabled()) {
+            return;
+        }
+        YearMonth current = YearMonth.now();
+        runWithPartitionManager(manager -> {
+            manager.setup(current, partitioning.getPremake());
+            return null;
+        });
+        if (partitioning.getRetention() <= 0) {
+            return;
+        }
+        YearMonth cutoff = current.minusMonths(partitioning.getRetention() - 1);
+        SortedSet<YearMonth> expired = new TreeSet<>();
+        runWithPartitionManager(manager -> {
+            for (YearMonth month : manager.getPartitions()) {
+                if (month.isBefore(cutoff)) {
+                    expired.add(month);
+                }
+            }
+            YearMonth oldest = manager.getOldestMonth();
+            for (YearMonth month = oldest; month != null && month.isBefore(cutoff); month = month.plusMonths(1)) {
+                expired.add(month);
+            }
+            return null;
+        });
+        for (YearMonth month : expired) {
+            removeMonth(month, partitioning.getArchiveBlobProvider());
+        }
+    }
+
+    /**
+     * Removes the log entries of a month, after exporting them if a blob provider is given.
+     *
+     * @since 9.2
+     */
+    protected void removeMonth(YearMonth month, String blobProviderId) {
+        if (blobProviderId != null) {
+            archiveMonth(month, blobProviderId);
+        }
+        runWithPartitionManager(manager -> manager.dropPartition(month));
+        int count;
+        do {
+            count = runWithPartitionManager(manager -> manager.deleteEntries(month, DELETE_BATCH_SIZE)).intValue();
+        } while (count > 0);
+        log.info("Removed audit entries of " + month);
+    }
+
+    /**
+     * Exports the log entries of a month to a gzipped file of JSON lines stored in a blob provider. The blob key is
+     * recorded in a new log entry with the {@value #ARCHIVE_EVENT} event.
+     *
+     * @return the number of exported entries
+     * @since 9.2
+     */
+    public long archiveMonth(YearMonth month, String blobProviderId) {
+        BlobProvider blobProvider = Framework.getService(BlobManager.class).getBlobProvider(blobProviderId);
+        if (blobProvider == null) {
+            throw new NuxeoException("Unknown blob provider for audit archives: " + blobProviderId);
+        }
+        Date start = Date.from(month.atDay(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        Date end = Date.from(month.plusMonths(1).atDay(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        String filename = AuditPartitionManager.getPartitionName(month) + ".jsonl.gz";
+        long count = 0;
+        File file = null;
+        try {
+            file = Framework.createTempFile("nxaudit-", ".jsonl.gz");
+            try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file)), UTF_8)) {
+                RenderingContext ctx = CtxBuilder.get();
+                long lastId = -1;
+                for (;;) {
+                    List<LogEntry> entries = getArchivePage(start, end, lastId);
+                    if (entries.isEmpty()) {
+                        break;
+                    }
+                    for (LogEntry entry : entries) {
+                        writer.write(MarshallerHelper.objectToJson(LogEntry.class, entry, ctx));
+                        writer.write('\n');
+                        lastId = entry.getId();
+                    }
+                    count += entries.size();
+                }
+            }
+            if (count == 0) {
+                return 0;
+            }
+            Blob blob = Blobs.createBlob(file, "application/gzip", null, filename);
+            String key = blobProvider.writeBlob(blob);
+            log.info("Archived " + count + " audit entries of " + month + " to blob " + key + " of provider "
+                    + blobProviderId);
+            LogEntry entry = newLogEntry();
+            entry.setEventId(ARCHIVE_EVENT);
+            entry.setCategory(ARCHIVE_CATEGORY);
+            entry.setEventDate(new Date());
+            entry.setPrincipalName(SecurityConstants.SYSTEM_USERNAME);
+            entry.setComment(blobProviderId + ":" + key);
+            Map<String, ExtendedInfo> infos = new HashMap<>();
+            infos.put("month", newExtendedInfo(month.toString()));
+            infos.put("count", newExtendedInfo(Long.valueOf(count)));
+            infos.put("filename", newExtendedInfo(filename));
+            entry.setExtendedInfos(infos);
+            TransactionHelper.runInNewTransaction(() -> addLogEntries(Collections.singletonList(entry)));
+            return count;
+        } catch (IOException e) {
+            throw new NuxeoException("Cannot archive audit entries of " + month, e);
+        } finally {
+            if (file != null) {
+                file.delete();
+            }
+        }
+    }
+
+    protected List<LogEntry> getArchivePage(Date start, Date end, long lastId) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("start", start);
+        params.put("end", end);
+        params.put("lastId", Long.valueOf(lastId));
+        @SuppressWarnings("unchecked")
+        List<LogEntry> entries = (List<LogEntry>) TransactionHelper.runInNewTransaction(
+                () -> nativeQuery("from LogEntry log where log.eventDate >= :start and log.eventDate < :end"
+                        + " and log.id > :lastId order by log.id", params, 1, ARCHIVE_PAGE_SIZE));
+        return entries;
+    }
+
     protected void addLogEntries(EntityManager em, List<LogEntry> entries) {
         LogEntryProvider.createProvider(em).addLogEntries(entries);
     }
@@ -0,0 +1,412 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.platform.audit.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.nuxeo.ecm.platform.audit.api.ExtendedInfo;
+import org.nuxeo.ecm.platform.audit.api.LogEntry;
+import org.nuxeo.ecm.platform.audit.impl.ExtendedInfoImpl.BooleanInfo;
+import org.nuxeo.ecm.platform.audit.impl.ExtendedInfoImpl.DateInfo;
+import org.nuxeo.ecm.platform.audit.impl.ExtendedInfoImpl.DoubleInfo;
+import org.nuxeo.ecm.platform.audit.impl.ExtendedInfoImpl.LongInfo;
+import org.nuxeo.ecm.platform.audit.impl.ExtendedInfoImpl.StringInfo;
+
+/**
+ * Writes log entries to the tables mapped by the JPA entities using JDBC batches, which is much faster than
+ * persisting them one by one with the entity manager.
+ * <p>
+ * On databases where the JPA ids come from a sequence (PostgreSQL, Oracle), the ids of all the rows are allocated in
+ * one query and the rows are inserted in batches. On databases using identity columns, the log entries without
+ * extended infos are inserted in batches, and the others one by one as their generated ids are needed for the
+ * extended infos. PostgreSQL, MySQL and H2 use multi-row {@code VALUES}, other databases use JDBC batches.
+ * <p>
+ * Extended infos holding arbitrary serializable values are not supported, such entries must be written through JPA,
+ * see {@link #isSupported}.
+ *
+ * @since 9.2
+ */
+public class JDBCLogEntryWriter {
+
+    /** The sequence used by JPA on databases without identity columns. */
+    protected static final String SEQUENCE = "hibernate_sequence";
+
+    protected static final int MAX_ROWS_PER_STATEMENT = 100;
+
+    protected static final String LOG_TABLE = "NXP_LOGS";
+
+    protected static final String LOG_ID = "LOG_ID";
+
+    protected static final String[] LOG_COLUMNS = { "LOG_PRINCIPAL_NAME", "LOG_EVENT_ID", "LOG_EVENT_DATE",
+            "LOG_DATE", "LOG_DOC_UUID", "LOG_DOC_PATH", "LOG_DOC_TYPE", "LOG_EVENT_CATEGORY", "LOG_EVENT_COMMENT",
+            "LOG_DOC_LIFE_CYCLE", "LOG_REPO_ID" };
+
+    protected static final String INFO_TABLE = "NXP_LOGS_EXTINFO";
+
+    protected static final String INFO_ID = "LOG_EXTINFO_ID";
+
+    protected static final String[] INFO_COLUMNS = { "DISCRIMINATOR", "LOG_EXTINFO_LONG", "LOG_EXTINFO_DATE",
+            "LOG_EXTINFO_STRING", "LOG_EXTINFO_DOUBLE", "LOG_EXTINFO_BOOLEAN" };
+
+    protected static final String MAP_TABLE = "NXP_LOGS_MAPEXTINFOS";
+
+    protected static final String[] MAP_COLUMNS = { "LOG_FK", "INFO_FK", "mapkey" };
+
+    protected final Connection connection;
+
+    /** Whether ids come from {@link #SEQUENCE}, otherwise they are generated by identity columns. */
+    protected final boolean useSequence;
+
+    protected final boolean useMultiRowValues;
+
+    protected final String nextValSql;
+
+    /**
+     * Binds the values of a row to a statement.
+     */
+    @FunctionalInterface
+    protected interface RowBinder<T> {
+
+        /**
+         * Binds the row values starting at the given parameter index.
+         */
+        void bind(PreparedStatement ps, int index, T row) throws SQLException;
+    }
+
+    protected static class Info {
+
+        protected final String key;
+
+        protected final ExtendedInfo info;
+
+        protected long logId;
+
+        protected long id;
+
+        protected Info(String key, ExtendedInfo info) {
+            this.key = key;
+            this.info = info;
+        }
+    }
+
+    public JDBCLogEntryWriter(Connection connection) throws SQLException {
+        this.connection = connection;
+        String product = connection.getMetaData().getDatabaseProductName().toLowerCase();
+        if (product.contains("postgresql")) {
+            useSequence = true;
+            useMultiRowValues = true;
+            nextValSql = "SELECT nextval('" + SEQUENCE + "') FROM generate_series(1, ?)";
+        } else if (product.contains("oracle")) {
+            useSequence = true;
+            useMultiRowValues = false;
+            nextValSql = "SELECT " + SEQUENCE + ".NEXTVAL FROM DUAL CONNECT BY LEVEL <= ?";
+        } else {
+            useSequence = false;
+            useMultiRowValues = product.contains("mysql") || product.contains("mariadb") || product.equals("h2");
+            nextValSql = null;
+        }
+    }
+
+    /**
+     * Checks if an entry can be written by this writer.
+     */
+    public static boolean isSupported(LogEntry entry) {
+        Map<String, ExtendedInfo> infos = entry.getExtendedInfos();
+        if (infos == null) {
+            return true;
+        }
+        for (ExtendedInfo info : infos.values()) {
+            if (!(info instanceof LongInfo || info instanceof DateInfo || info instanceof StringInfo
+                    || info instanceof DoubleInfo || info instanceof BooleanInfo)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the entries, setting their log date, and their id when it's known.
+     */
+    public void write(List<LogEntry> entries) throws SQLException {
+        Date now = new Date();
+        for (LogEntry entry : entries) {
+            entry.setLogDate(now);
+        }
+        if (useSequence) {
+            writeWithSequence(entries);
+        } else {
+            writeWithIdentity(entries);
+        }
+    }
+
+    protected void writeWithSequence(List<LogEntry> entries) throws SQLException {
+        int count = entries.size();
+        for (LogEntry entry : entries) {
+            Map<String, ExtendedInfo> extendedInfos = entry.getExtendedInfos();
+            if (extendedInfos != null) {
+                count += extendedInfos.size();
+            }
+        }
+        long[] ids = allocateIds(count);
+        int i = 0;
+        List<Info> infos = new ArrayList<>(count - entries.size());
+        for (LogEntry entry : entries) {
+            long logId = ids[i++];
+            entry.setId(logId);
+            Map<String, ExtendedInfo> extendedInfos = entry.getExtendedInfos();
+            if (extendedInfos != null) {
+                for (Entry<String, ExtendedInfo> es : extendedInfos.entrySet()) {
+                    Info info = new Info(es.getKey(), es.getValue());
+                    info.logId = logId;
+                    info.id = ids[i++];
+                    infos.add(info);
+                }
+            }
+        }
+        insert(LOG_TABLE, prepend(LOG_ID, LOG_COLUMNS), entries, (ps, index, entry) -> {
+            ps.setLong(index, entry.getId());
+            bindLogEntry(ps, index + 1, entry);
+        });
+        insert(INFO_TABLE, prepend(INFO_ID, INFO_COLUMNS), infos, (ps, index, info) -> {
+            ps.setLong(index, info.id);
+            bindInfo(ps, index + 1, info.info);
+        });
+        insert(MAP_TABLE, MAP_COLUMNS, infos, this::bindMap);
+    }
+
+    protected void writeWithIdentity(List<LogEntry> entries) throws SQLException {
+        List<LogEntry> simple = new ArrayList<>(entries.size());
+        List<Info> infos = new ArrayList<>();
+        String logSql = insertSql(LOG_TABLE, LOG_COLUMNS, 1);
+        String infoSql = insertSql(INFO_TABLE, INFO_COLUMNS, 1);
+        try (PreparedStatement logPs = connection.prepareStatement(logSql, Statement.RETURN_GENERATED_KEYS);
+                PreparedStatement infoPs = connection.prepareStatement(infoSql, Statement.RETURN_GENERATED_KEYS)) {
+            for (LogEntry entry : entries) {
+                Map<String, ExtendedInfo> extendedInfos = entry.getExtendedInfos();
+                if (extendedInfos == null || extendedInfos.isEmpty()) {
+                    simple.add(entry);
+                    continue;
+                }
+                bindLogEntry(logPs, 1, entry);
+                long logId = executeForId(logPs);
+                entry.setId(logId);
+                for (Entry<String, ExtendedInfo> es : extendedInfos.entrySet()) {
+                    Info info = new Info(es.getKey(), es.getValue());
+                    bindInfo(infoPs, 1, info.info);
+                    info.id = executeForId(infoPs);
+                    info.logId = logId;
+                    infos.add(info);
+                }
+            }
+        }
+        insert(LOG_TABLE, LOG_COLUMNS, simple, this::bindLogEntry);
+        insert(MAP_TABLE, MAP_COLUMNS, infos, this::bindMap);
+    }
+
+    protected long executeForId(PreparedStatement ps) throws SQLException {
+        ps.executeUpdate();
+        try (ResultSet rs = ps.getGeneratedKeys()) {
+            if (!rs.next()) {
+                throw new SQLException("No generated key");
+            }
+            return rs.getLong(1);
+        }
+    }
+
+    protected long[] allocateIds(int count) throws SQLException {
+        long[] ids = new long[count];
+        if (count == 0) {
+            return ids;
+        }
+        try (PreparedStatement ps = connection.prepareStatement(nextValSql)) {
+            ps.setInt(1, count);
+            try (ResultSet rs = ps.executeQuery()) {
+                int i = 0;
+                while (rs.next() && i < count) {
+                    ids[i++] = rs.getLong(1);
+                }
+                if (i != count) {
+                    throw new SQLException("Allocated " + i + " ids instead of " + count);
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Inserts rows, using multi-row statements or batches depending on the database.
+     */
+    protected <T> void insert(String table, String[] columns, List<T> rows, RowBinder<T> binder)
+            throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        int n = columns.length;
+        if (useMultiRowValues) {
+            PreparedStatement ps = null;
+            int psRows = 0;
+            try {
+                for (int start = 0; start < rows.size(); start += MAX_ROWS_PER_STATEMENT) {
+                    int count = Math.min(MAX_ROWS_PER_STATEMENT, rows.size() - start);
+                    if (count != psRows) {
+                        if (ps != null) {
+                            ps.close();
+                        }
+                        ps = connection.prepareStatement(insertSql(table, columns, count));
+                        psRows = count;
+                    }
+                    for (int i = 0; i < count; i++) {
+                        binder.bind(ps, 1 + i * n, rows.get(start + i));
+                    }
+                    ps.executeUpdate();
+                }
+            } finally {
+                if (ps != null) {
+                    ps.close();
+                }
+            }
+        } else {
+            try (PreparedStatement ps = connection.prepareStatement(insertSql(table, columns, 1))) {
+                int batched = 0;
+                for (T row : rows) {
+                    binder.bind(ps, 1, row);
+                    ps.addBatch();
+                    if (++batched == MAX_ROWS_PER_STATEMENT) {
+                        ps.executeBatch();
+                        batched = 0;
+                    }
+                }
+                if (batched > 0) {
+                    ps.executeBatch();
+                }
+            }
+        }
+    }
+
+    protected static String insertSql(String table, String[] columns, int rows) {
+        StringBuilder sb = new StringBuilder("INSERT INTO ");
+        sb.append(table);
+        sb.append(" (");
+        sb.append(String.join(", ", columns));
+        sb.append(") VALUES ");
+        for (int r = 0; r < rows; r++) {
+            if (r > 0) {
+                sb.append(", ");
+            }
+            sb.append('(');
+            for (int c = 0; c < columns.length; c++) {
+                if (c > 0) {
+                    sb.append(", ");
+                }
+                sb.append('?');
+            }
+            sb.append(')');
+        }
+        return sb.toString();
+    }
+
+    protected static String[] prepend(String first, String[] others) {
+        String[] columns = new String[others.length + 1];
+        columns[0] = first;
+        System.arraycopy(others, 0, columns, 1, others.length);
+        return columns;
+    }
+
+    protected void bindLogEntry(PreparedStatement ps, int index, LogEntry entry) throws SQLException {
+        ps.setString(index++, entry.getPrincipalName());
+        ps.setString(index++, entry.getEventId());
+        setTimestamp(ps, index++, entry.getEventDate());
+        setTimestamp(ps, index++, entry.getLogDate());
+        ps.setString(index++, entry.getDocUUID());
+        ps.setString(index++, entry.getDocPath());
+        ps.setString(index++, entry.getDocType());
+        ps.setString(index++, entry.getCategory());
+        ps.setString(index++, entry.getComment());
+        ps.setString(index++, entry.getDocLifeCycle());
+        ps.setString(index, entry.getRepositoryId());
+    }
+
+    protected void bindInfo(PreparedStatement ps, int index, ExtendedInfo info) throws SQLException {
+        String discriminator;
+        Long longValue = null;
+        Date dateValue = null;
+        String stringValue = null;
+        Double doubleValue = null;
+        Boolean booleanValue = null;
+        if (info instanceof LongInfo) {
+            discriminator = "LONG";
+            longValue = ((LongInfo) info).getLongValue();
+        } else if (info instanceof DateInfo) {
+            discriminator = "DATE";
+            dateValue = ((DateInfo) info).getDateValue();
+        } else if (info instanceof StringInfo) {
+            discriminator = "STRING";
+            stringValue = ((StringInfo) info).getStringValue();
+        } else if (info instanceof DoubleInfo) {
+            discriminator = "DOUBLE";
+            doubleValue = ((DoubleInfo) info).getDoubleValue();
+        } else if (info instanceof BooleanInfo) {
+            discriminator = "BOOLEAN";
+            booleanValue = ((BooleanInfo) info).getBooleanValue();
+        } else {
+            throw new SQLException("Unsupported extended info: " + info);
+        }
+        ps.setString(index++, discriminator);
+        if (longValue == null) {
+            ps.setNull(index++, Types.BIGINT);
+        } else {
+            ps.setLong(index++, longValue.longValue());
+        }
+        setTimestamp(ps, index++, dateValue);
+        ps.setString(index++, stringValue);
+        if (doubleValue == null) {
+            ps.setNull(index++, Types.DOUBLE);
+        } else {
+            ps.setDouble(index++, doubleValue.doubleValue());
+        }
+        if (booleanValue == null) {
+            ps.setNull(index, Types.BOOLEAN);
+        } else {
+            ps.setBoolean(index, booleanValue.booleanValue());
+        }
+    }
+
+    protected void bindMap(PreparedStatement ps, int index, Info info) throws SQLException {
+        ps.setLong(index++, info.logId);
+        ps.setLong(index++, info.id);
+        ps.setString(index, info.key);
+    }
+
+    protected static void setTimestamp(PreparedStatement ps, int index, Date date) throws SQLException {
+        if (date == null) {
+            ps.setNull(index, Types.TIMESTAMP);
+        } else {
+            ps.setTimestamp(index, new Timestamp(date.getTime()));
+        }
+    }
+
+}
@@ -0,0 +1,425 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.platform.audit.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.common.Environment;
+import org.nuxeo.ecm.platform.audit.api.LogEntry;
+import org.nuxeo.ecm.platform.audit.service.AuditJournal.Record;
+import org.nuxeo.ecm.platform.audit.service.extension.AuditBulkerDescriptor;
+import org.nuxeo.ecm.platform.audit.service.management.AuditBulkerMBean;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.management.ResourcePublisher;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+
+/**
+ * Audit bulker writing the entries to a local {@link AuditJournal} before they are written to the backend by drainer
+ * threads, so that a slow backend doesn't fill the heap and that entries not yet written survive a restart.
+ * <p>
+ * Entries are delivered at least once: an entry written to the backend just before a crash may be written again at
+ * the next startup.
+ *
+ * @since 9.2
+ */
+public class JournaledAuditBulker implements AuditBulkerMBean, AuditBulker {
+
+    private static final Log log = LogFactory.getLog(JournaledAuditBulker.class);
+
+    public static final String OVERFLOW_BLOCK = "block";
+
+    public static final String OVERFLOW_DROP = "drop";
+
+    public static final String OVERFLOW_SPILL = "spill";
+
+    protected static final String SIZE_METRIC = MetricRegistry.name("nuxeo", "audit", "size");
+
+    protected static final String JOURNAL_SIZE_METRIC = MetricRegistry.name("nuxeo", "audit", "journal", "size");
+
+    protected static final long MAX_RETRY_DELAY = TimeUnit.MINUTES.toMillis(1);
+
+    /** Number of attempts to write a batch before looking for the entries that cannot be written. */
+    protected static final int MAX_ATTEMPTS = 5;
+
+    final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    final Counter queuedCount = registry.counter(MetricRegistry.name("nuxeo", "audit", "queued"));
+
+    final Counter drainedCount = registry.counter(MetricRegistry.name("nuxeo", "audit", "drained"));
+
+    final Counter droppedCount = registry.counter(MetricRegistry.name("nuxeo", "audit", "dropped"));
+
+    final Counter rejectedCount = registry.counter(MetricRegistry.name("nuxeo", "audit", "rejected"));
+
+    final Timer drainTimer = registry.timer(MetricRegistry.name("nuxeo", "audit", "drain"));
+
+    final AuditBackend backend;
+
+    final AuditJournal journal;
+
+    final int drainers;
+
+    final long maxSize;
+
+    final String overflow;
+
+    int timeout;
+
+    int bulksize;
+
+    final List<Thread> threads = new ArrayList<>();
+
+    final ReentrantLock lock = new ReentrantLock();
+
+    final Condition isEmpty = lock.newCondition();
+
+    final Condition isFilled = lock.newCondition();
+
+    final Condition notFull = lock.newCondition();
+
+    volatile boolean stopped;
+
+    JournaledAuditBulker(AuditBackend backend, AuditBulkerDescriptor config) {
+        this.backend = backend;
+        timeout = config.timeout;
+        bulksize = config.size;
+        drainers = Math.max(1, config.drainers);
+        maxSize = config.journalMaxSize;
+        overflow = config.journalOverflow;
+        if (!OVERFLOW_BLOCK.equals(overflow) && !OVERFLOW_DROP.equals(overflow) && !OVERFLOW_SPILL.equals(overflow)) {
+            throw new IllegalArgumentException("Unknown audit journal overflow policy: " + overflow);
+        }
+        File dir = config.journalDirectory == null ? new File(Environment.getDefault().getData(), "audit-journal")
+                : new File(config.journalDirectory);
+        try {
+            // the pending entries of a previous run are read again
+            journal = new AuditJournal(dir, config.journalSegmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open audit journal: " + dir, e);
+        }
+    }
+
+    @Override
+    public void onApplicationStarted() {
+        for (int i = 0; i < drainers; i++) {
+            Thread thread = new Thread(new Consumer(), "Nuxeo-Audit-Bulker-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        ResourcePublisher publisher = Framework.getService(ResourcePublisher.class);
+        if (publisher != null) {
+            publisher.registerResource("audit-bulker", "audit-bulker", AuditBulkerMBean.class, this);
+        }
+        registry.register(SIZE_METRIC, (Gauge<Long>) journal::getPending);
+        registry.register(JOURNAL_SIZE_METRIC, (Gauge<Long>) journal::getSize);
+    }
+
+    @Override
+    public void onApplicationStopped() {
+        registry.remove(SIZE_METRIC);
+        registry.remove(JOURNAL_SIZE_METRIC);
+        ResourcePublisher publisher = Framework.getService(ResourcePublisher.class);
+        if (publisher != null) {
+            publisher.unregisterResource("audit-bulker", "audit-bulker");
+        }
+        stopped = true;
+        lock.lock();
+        try {
+            isFilled.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            for (Thread thread : threads) {
+                // let a drainer finish its current batch, what's left is replayed at next startup
+                thread.join(timeout);
+                if (thread.isAlive()) {
+                    thread.interrupt();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            threads.forEach(Thread::interrupt);
+        } finally {
+            threads.clear();
+            journal.close();
+        }
+    }
+
+    @Override
+    public void offer(LogEntry entry) {
+        if (log.isDebugEnabled()) {
+            log.debug("offered " + entry);
+        }
+        byte[] data = serialize(entry);
+        IOException journalError = null;
+        lock.lock();
+        try {
+            if (journal.getSize() >= maxSize) {
+                if (OVERFLOW_DROP.equals(overflow)) {
+                    droppedCount.inc();
+                    log.debug("audit journal full, dropping " + entry);
+                    return;
+                }
+                while (OVERFLOW_BLOCK.equals(overflow) && journal.getSize() >= maxSize && !stopped) {
+                    isFilled.signalAll();
+                    notFull.await(timeout, TimeUnit.MILLISECONDS);
+                }
+            }
+            journal.append(data);
+            queuedCount.inc();
+            if (journal.getUnread() >= bulksize) {
+                isFilled.signalAll();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the audit journal", e);
+        } catch (IOException e) {
+            journalError = e;
+        } finally {
+            lock.unlock();
+        }
+        if (journalError != null) {
+            // don't lose the entry if the journal cannot be written, the lock is not held during the backend write
+            log.error("Cannot write to audit journal, writing entry directly", journalError);
+            backend.addLogEntries(Collections.singletonList(entry));
+        }
+    }
+
+    @Override
+    public boolean await(long time, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(time);
+        lock.lock();
+        try {
+            isFilled.signalAll();
+            while (journal.getPending() > 0) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    return false;
+                }
+                isEmpty.awaitNanos(left);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    protected byte[] serialize(LogEntry entry) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(baos)) {
+            out.writeObject(entry);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot serialize audit entry: " + entry, e);
+        }
+        return baos.toByteArray();
+    }
+
+    protected LogEntry deserialize(byte[] data) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            return (LogEntry) in.readObject();
+        }
+    }
+
+    /**
+     * Writes the entries read from the journal to the backend, retrying until it succeeds or the bulker is stopped.
+     * <p>
+     * After {@link #MAX_ATTEMPTS} failed attempts, the batch is split to find the entries that cannot be written. If
+     * the other entries can be written, these entries are rejected: they are logged and acknowledged, so that they don't
+     * stall the drainer. Otherwise the backend is considered unavailable and the batch is retried.
+     *
+     * @return the number of entries written, or -1 if the bulker was stopped before they could be written
+     */
+    protected int drain(List<Record> records) {
+        List<LogEntry> entries = new ArrayList<>(records.size());
+        for (Record record : records) {
+            try {
+                entries.add(deserialize(record.getData()));
+            } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                // acknowledged anyway, it will never be readable
+                log.error("Skipping unreadable audit journal entry", e);
+            }
+        }
+        int count = entries.size();
+        long delay = timeout;
+        int attempts = 0;
+        for (;;) {
+            try (Timer.Context context = drainTimer.time()) {
+                if (!entries.isEmpty()) {
+                    addLogEntries(entries);
+                }
+                break;
+            } catch (RuntimeException e) {
+                if (stopped) {
+                    return -1;
+                }
+                if (++attempts >= MAX_ATTEMPTS) {
+                    attempts = 0;
+                    List<LogEntry> failed = addLogEntriesIsolatingFailures(entries);
+                    if (failed.isEmpty()) {
+                        break;
+                    }
+                    if (failed.size() < entries.size()) {
+                        // the backend accepts other entries, don't retry these ones forever
+                        for (LogEntry entry : failed) {
+                            log.error("Rejecting audit entry that cannot be written: " + entry);
+                        }
+                        rejectedCount.inc(failed.size());
+                        count -= failed.size();
+                        break;
+                    }
+                }
+                log.error("Cannot write " + entries.size() + " audit entries, retrying in " + delay + "ms", e);
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return -1;
+                }
+                delay = Math.min(delay * 2, MAX_RETRY_DELAY);
+            }
+        }
+        journal.ack(records);
+        drainedCount.inc(count);
+        lock.lock();
+        try {
+            notFull.signalAll();
+            if (journal.getPending() == 0) {
+                isEmpty.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return count;
+    }
+
+    /**
+     * Writes entries to the backend, splitting the batch in halves when it fails to find the entries that cannot be
+     * written.
+     *
+     * @return the entries that could not be written
+     */
+    protected List<LogEntry> addLogEntriesIsolatingFailures(List<LogEntry> entries) {
+        try {
+            addLogEntries(entries);
+            return Collections.emptyList();
+        } catch (RuntimeException e) {
+            if (entries.size() == 1) {
+                log.debug("Cannot write audit entry: " + entries.get(0), e);
+                return entries;
+            }
+            int half = entries.size() / 2;
+            List<LogEntry> failed = new ArrayList<>();
+            failed.addAll(addLogEntriesIsolatingFailures(new ArrayList<>(entries.subList(0, half))));
+            failed.addAll(addLogEntriesIsolatingFailures(new ArrayList<>(entries.subList(half, entries.size()))));
+            return failed;
+        }
+    }
+
+    protected void addLogEntries(List<LogEntry> entries) {
+        backend.addLogEntries(entries);
+    }
+
+    class Consumer implements Runnable {
+
+        @Override
+        public void run() {
+            log.info("bulk audit logger started");
+            while (!stopped) {
+                lock.lock();
+                try {
+                    if (journal.getPending() == 0) {
+                        isEmpty.signalAll();
+                    }
+                    if (journal.getUnread() < bulksize) {
+                        isFilled.await(timeout, TimeUnit.MILLISECONDS);
+                    }
+                } catch (InterruptedException cause) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } finally {
+                    lock.unlock();
+                }
+                if (stopped) {
+                    break;
+                }
+                List<Record> records = journal.read(bulksize);
+                if (records.isEmpty()) {
+                    continue;
+                }
+                int count = drain(records);
+                if (count < 0) {
+                    break;
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("flushed " + count + " events");
+                }
+            }
+            log.info("bulk audit logger stopped");
+        }
+
+    }
+
+    @Override
+    public int getBulkTimeout() {
+        return timeout;
+    }
+
+    @Override
+    public void setBulkTimeout(int value) {
+        timeout = value;
+    }
+
+    @Override
+    public int getBulkSize() {
+        return bulksize;
+    }
+
+    @Override
+    public void setBulkSize(int value) {
+        bulksize = value;
+    }
+
+    @Override
+    public void resetMetrics() {
+        queuedCount.dec(queuedCount.getCount());
+        drainedCount.dec(drainedCount.getCount());
+        droppedCount.dec(droppedCount.getCount());
+        rejectedCount.dec(rejectedCount.getCount());
+    }
+
+}
@@ -45,6 +45,23 @@ public class AuditBackendDescriptor implements Serializable {
     @XNode("require")
     String requiredComponent;
 
+    /**
+     * How the default backend writes log entries: {@code jpa} persists them one by one through the entity manager,
+     * {@code jdbc} inserts them with JDBC batches.
+     *
+     * @since 9.2
+     */
+    @XNode("writeMode")
+    protected String writeMode = DefaultAuditBackend.WRITE_MODE_JPA;
+
+    /**
+     * The monthly partitioning of the log entries of the default backend, none if {@code null}.
+     *
+     * @since 9.2
+     */
+    @XNode("partitioning")
+    protected AuditPartitioningDescriptor partitioning;
+
     public int getApplicationStartedOrder() {
         if (StringUtils.isEmpty(requiredComponent)) {
             return 1000;
@@ -56,6 +73,20 @@ public class AuditBackendDescriptor implements Serializable {
         return klass;
     }
 
+    /**
+     * @since 9.2
+     */
+    public String getWriteMode() {
+        return writeMode;
+    }
+
+    /**
+     * @since 9.2
+     */
+    public AuditPartitioningDescriptor getPartitioning() {
+        return partitioning;
+    }
+
     public AuditBackend newInstance(NXAuditEventsService component) {
         try {
             return klass.getDeclaredConstructor(NXAuditEventsService.class, AuditBackendDescriptor.class).newInstance(component, this);
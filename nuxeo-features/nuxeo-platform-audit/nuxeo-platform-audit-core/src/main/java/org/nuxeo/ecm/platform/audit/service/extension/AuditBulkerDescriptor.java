@@ -26,6 +26,7 @@ import org.nuxeo.common.xmap.annotation.XObject;
 import org.nuxeo.ecm.platform.audit.service.AuditBackend;
 import org.nuxeo.ecm.platform.audit.service.AuditBulker;
 import org.nuxeo.ecm.platform.audit.service.DefaultAuditBulker;
+import org.nuxeo.ecm.platform.audit.service.JournaledAuditBulker;
 
 @XObject("bulk")
 public class AuditBulkerDescriptor implements Serializable {
@@ -41,6 +42,48 @@ public class AuditBulkerDescriptor implements Serializable {
     @XNode("size")
     public int size = 1000;
 
+    /**
+     * The number of threads writing the entries to the backend, for {@link JournaledAuditBulker}.
+     *
+     * @since 9.2
+     */
+    @XNode("drainers")
+    public int drainers = 1;
+
+    /**
+     * The directory of the journal, for {@link JournaledAuditBulker}. Defaults to {@code audit-journal} in the data
+     * directory.
+     *
+     * @since 9.2
+     */
+    @XNode("journal/directory")
+    public String journalDirectory;
+
+    /**
+     * The size in bytes of the journal segment files, for {@link JournaledAuditBulker}.
+     *
+     * @since 9.2
+     */
+    @XNode("journal/segmentSize")
+    public int journalSegmentSize = 16 * 1024 * 1024; // 16 MB
+
+    /**
+     * The size in bytes of the journal above which the overflow policy applies, for {@link JournaledAuditBulker}.
+     *
+     * @since 9.2
+     */
+    @XNode("journal/maxSize")
+    public long journalMaxSize = 1024L * 1024 * 1024; // 1 GB
+
+    /**
+     * What to do with new entries when the journal is full, for {@link JournaledAuditBulker}: {@code block} waits for
+     * the backend to catch up, {@code drop} discards them, {@code spill} keeps writing them to disk.
+     *
+     * @since 9.2
+     */
+    @XNode("journal/overflow")
+    public String journalOverflow = JournaledAuditBulker.OVERFLOW_BLOCK;
+
     public AuditBulker newInstance(AuditBackend backend) {
         try {
             Constructor<? extends AuditBulker> declaredConstructor = klass.getDeclaredConstructor(AuditBackend.class, AuditBulkerDescriptor.class);
@@ -0,0 +1,64 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.platform.audit.service.extension;
+
+import java.io.Serializable;
+
+import org.nuxeo.common.xmap.annotation.XNode;
+import org.nuxeo.common.xmap.annotation.XObject;
+
+/**
+ * Configuration of the monthly partitioning of the log entries of the default backend.
+ *
+ * @since 9.2
+ */
+@XObject("partitioning")
+public class AuditPartitioningDescriptor implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @XNode("@enabled")
+    protected boolean enabled = true;
+
+    /** The number of months kept, including the current one, 0 to keep everything. */
+    @XNode("retention")
+    protected int retention;
+
+    /** The number of partitions created in advance for the next months. */
+    @XNode("premake")
+    protected int premake = 2;
+
+    /** The blob provider to which expired months are exported before being dropped, none if {@code null}. */
+    @XNode("archive@blobProvider")
+    protected String archiveBlobProvider;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getRetention() {
+        return retention;
+    }
+
+    public int getPremake() {
+        return premake;
+    }
+
+    public String getArchiveBlobProvider() {
+        return archiveBlobProvider;
+    }
+
+}
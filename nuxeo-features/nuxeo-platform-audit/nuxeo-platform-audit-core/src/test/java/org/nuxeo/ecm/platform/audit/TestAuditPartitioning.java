@@ -0,0 +1,221 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.platform.audit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.ecm.core.blob.BlobInfo;
+import org.nuxeo.ecm.core.blob.BlobManager;
+import org.nuxeo.ecm.core.storage.sql.DatabaseHelper;
+import org.nuxeo.ecm.core.storage.sql.IgnoreNonPostgresql;
+import org.nuxeo.ecm.platform.audit.api.LogEntry;
+import org.nuxeo.ecm.platform.audit.service.AuditPartitionManager;
+import org.nuxeo.ecm.platform.audit.service.DefaultAuditBackend;
+import org.nuxeo.ecm.platform.audit.service.NXAuditEventsService;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.test.runner.ConditionalIgnoreRule;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.test.runner.LocalDeploy;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+@RunWith(FeaturesRunner.class)
+@Features(AuditFeature.class)
+@LocalDeploy("org.nuxeo.ecm.platform.audit:test-audit-partitioning-contrib.xml")
+public class TestAuditPartitioning {
+
+    protected static final String PG_SCHEMA = "nxaudit_partitioning";
+
+    protected DefaultAuditBackend backend;
+
+    @Before
+    public void setUp() {
+        NXAuditEventsService audit = (NXAuditEventsService) Framework.getRuntime().getComponent(
+                NXAuditEventsService.NAME);
+        backend = (DefaultAuditBackend) audit.getBackend();
+    }
+
+    protected void addEntries(YearMonth month, int count) {
+        Date date = Date.from(month.atDay(15).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        List<LogEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            LogEntry entry = backend.newLogEntry();
+            entry.setEventId("partitionEvent");
+            entry.setEventDate(date);
+            entry.setCategory("category");
+            entry.setDocUUID("doc-" + month);
+            entry.setExtendedInfos(Collections.singletonMap("index", backend.newExtendedInfo(Long.valueOf(i))));
+            entries.add(entry);
+        }
+        backend.addLogEntries(entries);
+    }
+
+    protected void nextTransaction() {
+        TransactionHelper.commitOrRollbackTransaction();
+        TransactionHelper.startTransaction();
+    }
+
+    @Test
+    public void testRetention() throws IOException {
+        YearMonth current = YearMonth.now();
+        addEntries(current.minusMonths(3), 5);
+        addEntries(current.minusMonths(2), 1500);
+        addEntries(current.minusMonths(1), 3);
+        addEntries(current, 4);
+        nextTransaction();
+
+        backend.maintainPartitions();
+
+        assertEquals(0, backend.getLogEntriesFor("doc-" + current.minusMonths(3)).size());
+        assertEquals(0, backend.getLogEntriesFor("doc-" + current.minusMonths(2)).size());
+        assertEquals(3, backend.getLogEntriesFor("doc-" + current.minusMonths(1)).size());
+        assertEquals(4, backend.getLogEntriesFor("doc-" + current).size());
+
+        // one archive per expired month
+        List<LogEntry> archives = backend.queryLogs(new String[] { DefaultAuditBackend.ARCHIVE_EVENT }, "1h");
+        assertEquals(2, archives.size());
+        for (LogEntry archive : archives) {
+            String month = archive.getExtendedInfos().get("month").getValue(String.class);
+            long count = archive.getExtendedInfos().get("count").getValue(Long.class).longValue();
+            assertEquals(month.equals(current.minusMonths(3).toString()) ? 5 : 1500, count);
+            String[] blobRef = archive.getComment().split(":", 2);
+            BlobInfo blobInfo = new BlobInfo();
+            blobInfo.key = blobRef[1];
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(
+                    Framework.getService(BlobManager.class).getBlobProvider(blobRef[0]).readBlob(blobInfo).getStream()),
+                    StandardCharsets.UTF_8))) {
+                long lines = 0;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    assertTrue(line, line.contains("\"partitionEvent\""));
+                    lines++;
+                }
+                assertEquals(count, lines);
+            }
+        }
+
+        // idempotent
+        backend.maintainPartitions();
+        assertEquals(2, backend.queryLogs(new String[] { DefaultAuditBackend.ARCHIVE_EVENT }, "1h").size());
+        assertEquals(4, backend.getLogEntriesFor("doc-" + current).size());
+    }
+
+    protected static long count(Statement st, String sql) throws SQLException {
+        try (ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    protected static String insertLog(long id, YearMonth month) {
+        return "INSERT INTO nxp_logs (log_id, log_event_id, log_event_date, log_doc_uuid) VALUES (" + id
+                + ", 'partitionEvent', TIMESTAMP '" + Timestamp.valueOf(month.atDay(15).atStartOfDay()) + "', 'doc')";
+    }
+
+    @Test
+    @ConditionalIgnoreRule.Ignore(condition = IgnoreNonPostgresql.class)
+    public void testPostgreSQLPartitions() throws SQLException {
+        YearMonth current = YearMonth.now();
+        try (Connection connection = DatabaseHelper.getConnection(Framework.getProperty(DatabaseHelper.URL_PROPERTY),
+                Framework.getProperty(DatabaseHelper.USER_PROPERTY),
+                Framework.getProperty(DatabaseHelper.PASSWORD_PROPERTY));
+                Statement st = connection.createStatement()) {
+            // own schema, not to interfere with the audit tables used by the other tests
+            st.execute("DROP SCHEMA IF EXISTS " + PG_SCHEMA + " CASCADE");
+            st.execute("CREATE SCHEMA " + PG_SCHEMA);
+            st.execute("SET search_path TO " + PG_SCHEMA);
+            try {
+                st.execute("CREATE TABLE nxp_logs (log_id bigint PRIMARY KEY, log_event_id varchar(255),"
+                        + " log_event_date timestamp, log_doc_uuid varchar(255))");
+                st.execute("CREATE TABLE nxp_logs_extinfo (log_extinfo_id bigint PRIMARY KEY)");
+                // foreign key created by the JPA schema update of previous versions
+                st.execute("CREATE TABLE nxp_logs_mapextinfos (log_fk bigint NOT NULL REFERENCES nxp_logs (log_id),"
+                        + " info_fk bigint NOT NULL REFERENCES nxp_logs_extinfo (log_extinfo_id),"
+                        + " mapkey varchar(255) NOT NULL)");
+
+                AuditPartitionManager manager = new AuditPartitionManager(connection);
+                assertTrue(manager.isPartitioned());
+                manager.setup(current, 1);
+                assertEquals(Arrays.asList(current, current.plusMonths(1)), manager.getPartitions());
+                assertTrue(manager.hasPartition(current));
+                assertFalse(manager.hasPartition(current.minusMonths(1)));
+                String logsFk = "SELECT COUNT(*) FROM pg_constraint WHERE contype = 'f'"
+                        + " AND conrelid = 'nxp_logs_mapextinfos'::regclass AND confrelid = 'nxp_logs'::regclass";
+                assertEquals(0, count(st, logsFk));
+                assertEquals(1, count(st, "SELECT COUNT(*) FROM pg_trigger WHERE tgrelid = 'nxp_logs'::regclass"
+                        + " AND NOT tgisinternal AND tgtype & 2 <> 0"));
+
+                connection.setAutoCommit(false);
+                // routed before its insertion, no row written to the parent table
+                assertEquals(0, st.executeUpdate(insertLog(1, current)));
+                assertEquals(0, count(st, "SELECT n_tup_ins + n_tup_del FROM pg_stat_xact_user_tables"
+                        + " WHERE relid = 'nxp_logs'::regclass"));
+                // no partition for this month, stays in the parent table
+                assertEquals(1, st.executeUpdate(insertLog(2, current.minusMonths(1))));
+                connection.commit();
+                connection.setAutoCommit(true);
+
+                assertEquals(2, count(st, "SELECT COUNT(*) FROM nxp_logs"));
+                assertEquals(1, count(st, "SELECT COUNT(*) FROM ONLY nxp_logs"));
+                assertEquals(1,
+                        count(st, "SELECT COUNT(*) FROM " + AuditPartitionManager.getPartitionName(current)));
+                // extended infos of a routed entry
+                st.executeUpdate("INSERT INTO nxp_logs_extinfo VALUES (10)");
+                st.executeUpdate("INSERT INTO nxp_logs_mapextinfos VALUES (1, 10, 'key')");
+
+                // idempotent, foreign key not recreated
+                manager.setup(current, 1);
+                assertEquals(0, count(st, logsFk));
+                assertEquals(1, count(st, "SELECT COUNT(*) FROM pg_trigger WHERE tgrelid = 'nxp_logs'::regclass"
+                        + " AND NOT tgisinternal"));
+
+                assertTrue(manager.dropPartition(current));
+                assertFalse(manager.dropPartition(current));
+                assertEquals(Arrays.asList(current.plusMonths(1)), manager.getPartitions());
+                assertEquals(1, count(st, "SELECT COUNT(*) FROM nxp_logs"));
+                assertEquals(0, count(st, "SELECT COUNT(*) FROM nxp_logs_mapextinfos"));
+                assertEquals(0, count(st, "SELECT COUNT(*) FROM nxp_logs_extinfo"));
+            } finally {
+                connection.setAutoCommit(true);
+                st.execute("DROP SCHEMA " + PG_SCHEMA + " CASCADE");
+            }
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.platform.audit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.ecm.platform.audit.api.ExtendedInfo;
+import org.nuxeo.ecm.platform.audit.api.LogEntry;
+import org.nuxeo.ecm.platform.audit.service.DefaultAuditBackend;
+import org.nuxeo.ecm.platform.audit.service.LogEntryProvider;
+import org.nuxeo.ecm.platform.audit.service.NXAuditEventsService;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.test.runner.ConditionalIgnoreRule;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.test.runner.LocalDeploy;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+@RunWith(FeaturesRunner.class)
+@Features(AuditFeature.class)
+@LocalDeploy("org.nuxeo.ecm.platform.audit:test-audit-jdbc-contrib.xml")
+public class TestJDBCLogEntryWriter {
+
+    private static final Log log = LogFactory.getLog(TestJDBCLogEntryWriter.class);
+
+    protected DefaultAuditBackend backend;
+
+    @Before
+    public void setUp() {
+        NXAuditEventsService audit = (NXAuditEventsService) Framework.getRuntime().getComponent(
+                NXAuditEventsService.NAME);
+        backend = (DefaultAuditBackend) audit.getBackend();
+    }
+
+    protected LogEntry newEntry(String docUUID, int i, boolean withInfos) {
+        LogEntry entry = backend.newLogEntry();
+        entry.setEventId("event" + i);
+        entry.setEventDate(new Date());
+        entry.setCategory("category");
+        entry.setPrincipalName("bob");
+        entry.setDocUUID(docUUID);
+        entry.setDocPath("/doc" + i);
+        entry.setRepositoryId("test");
+        if (withInfos) {
+            Map<String, ExtendedInfo> infos = new HashMap<>();
+            infos.put("string", backend.newExtendedInfo("foo" + i));
+            infos.put("long", backend.newExtendedInfo(Long.valueOf(i)));
+            infos.put("bool", backend.newExtendedInfo(Boolean.TRUE));
+            infos.put("double", backend.newExtendedInfo(Double.valueOf(1.5)));
+            infos.put("date", backend.newExtendedInfo(new GregorianCalendar(2017, Calendar.MARCH, 1).getTime()));
+            entry.setExtendedInfos(infos);
+        }
+        return entry;
+    }
+
+    protected void nextTransaction() {
+        TransactionHelper.commitOrRollbackTransaction();
+        TransactionHelper.startTransaction();
+    }
+
+    @Test
+    public void testWrite() {
+        List<LogEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            entries.add(newEntry("jdbc-doc", i, i % 2 == 0));
+        }
+        backend.addLogEntries(entries);
+        nextTransaction();
+
+        List<LogEntry> read = backend.getLogEntriesFor("jdbc-doc");
+        assertEquals(250, read.size());
+        int withInfos = 0;
+        for (LogEntry entry : read) {
+            assertNotNull(entry.getLogDate());
+            assertEquals("bob", entry.getPrincipalName());
+            Map<String, ExtendedInfo> infos = entry.getExtendedInfos();
+            if (infos.isEmpty()) {
+                continue;
+            }
+            withInfos++;
+            int i = Integer.parseInt(entry.getEventId().substring("event".length()));
+            assertEquals("foo" + i, infos.get("string").getValue(String.class));
+            assertEquals(Long.valueOf(i), infos.get("long").getValue(Long.class));
+            assertEquals(Boolean.TRUE, infos.get("bool").getValue(Boolean.class));
+            assertEquals(Double.valueOf(1.5), infos.get("double").getValue(Double.class));
+            assertEquals(new GregorianCalendar(2017, Calendar.MARCH, 1).getTime().getTime(),
+                    infos.get("date").getValue(Date.class).getTime());
+        }
+        assertEquals(125, withInfos);
+    }
+
+    @Test
+    public void testWriteUnsupportedInfo() {
+        // not written by JDBC, falls back to JPA
+        LogEntry entry = newEntry("jdbc-doc-blob", 0, false);
+        Map<String, ExtendedInfo> infos = new HashMap<>();
+        infos.put("blob", backend.newExtendedInfo(new ArrayList<>()));
+        entry.setExtendedInfos(infos);
+        List<LogEntry> entries = new ArrayList<>();
+        entries.add(entry);
+        entries.add(newEntry("jdbc-doc-blob", 1, true));
+        backend.addLogEntries(entries);
+        nextTransaction();
+
+        assertEquals(2, backend.getLogEntriesFor("jdbc-doc-blob").size());
+    }
+
+    @Test
+    @ConditionalIgnoreRule.Ignore(condition = ConditionalIgnoreRule.IgnoreLongRunning.class)
+    public void benchmarkJDBCVersusJPA() {
+        int count = 10_000;
+        List<LogEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            entries.add(newEntry("bench-jpa", i, i % 4 == 0));
+        }
+        long t0 = System.nanoTime();
+        backend.getOrCreatePersistenceProvider().run(true,
+                em -> LogEntryProvider.createProvider(em).addLogEntries(entries));
+        nextTransaction();
+        long jpa = System.nanoTime() - t0;
+
+        entries.clear();
+        for (int i = 0; i < count; i++) {
+            entries.add(newEntry("bench-jdbc", i, i % 4 == 0));
+        }
+        t0 = System.nanoTime();
+        backend.addLogEntries(entries);
+        nextTransaction();
+        long jdbc = System.nanoTime() - t0;
+
+        log.warn(String.format("Wrote %d audit entries: JPA %d ms, JDBC %d ms", count, jpa / 1_000_000,
+                jdbc / 1_000_000));
+        assertEquals(count, backend.getLogEntriesFor("bench-jdbc").size());
+    }
+
+}
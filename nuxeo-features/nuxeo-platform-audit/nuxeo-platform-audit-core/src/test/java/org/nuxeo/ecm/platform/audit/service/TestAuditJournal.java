@@ -0,0 +1,119 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.platform.audit.service;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nuxeo.ecm.platform.audit.service.AuditJournal.Record;
+
+public class TestAuditJournal {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    protected static List<String> toStrings(List<Record> records) {
+        List<String> list = new ArrayList<>();
+        for (Record record : records) {
+            list.add(new String(record.getData(), UTF_8));
+        }
+        return list;
+    }
+
+    protected static int countFiles(File dir) {
+        return dir.list().length;
+    }
+
+    @Test
+    public void testAppendReadAck() throws Exception {
+        File dir = folder.newFolder();
+        AuditJournal journal = new AuditJournal(dir, 64);
+        for (int i = 0; i < 10; i++) {
+            journal.append(("entry" + i).getBytes(UTF_8));
+        }
+        assertEquals(10, journal.getPending());
+        // 6 bytes of data and 5 of header, 5 entries per segment
+        assertEquals(2, countFiles(dir));
+
+        List<Record> first = journal.read(4);
+        assertEquals("[entry0, entry1, entry2, entry3]", toStrings(first).toString());
+        List<Record> second = journal.read(4);
+        assertEquals("[entry4, entry5, entry6, entry7]", toStrings(second).toString());
+        assertEquals(2, journal.getUnread());
+
+        // out of order acknowledgment
+        journal.ack(second);
+        assertEquals(6, journal.getPending());
+        assertEquals(2, countFiles(dir));
+        journal.ack(first);
+        // first segment complete and deleted
+        assertEquals(2, journal.getPending());
+        assertEquals(1, countFiles(dir));
+        journal.close();
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        File dir = folder.newFolder();
+        AuditJournal journal = new AuditJournal(dir, 64);
+        for (int i = 0; i < 8; i++) {
+            journal.append(("entry" + i).getBytes(UTF_8));
+        }
+        List<Record> records = journal.read(3);
+        journal.ack(records);
+        // read but not acknowledged, replayed
+        journal.read(2);
+        journal.close();
+
+        journal = new AuditJournal(dir, 64);
+        assertEquals(5, journal.getPending());
+        records = journal.read(100);
+        assertEquals("[entry3, entry4, entry5, entry6, entry7]", toStrings(records).toString());
+        journal.ack(records);
+        assertEquals(0, journal.getPending());
+        // new entries go to a new segment
+        journal.append("new".getBytes(UTF_8));
+        assertEquals("[new]", toStrings(journal.read(100)).toString());
+        journal.close();
+    }
+
+    @Test
+    public void testLargeRecord() throws Exception {
+        File dir = folder.newFolder();
+        AuditJournal journal = new AuditJournal(dir, 64);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append("large");
+        }
+        journal.append("small".getBytes(UTF_8));
+        journal.append(sb.toString().getBytes(UTF_8));
+        journal.append("small".getBytes(UTF_8));
+        assertTrue(journal.getSize() > 500);
+        List<Record> records = journal.read(100);
+        assertEquals(3, records.size());
+        assertEquals(sb.toString(), new String(records.get(1).getData(), UTF_8));
+        journal.close();
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.ecm.platform.audit.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.nuxeo.ecm.platform.audit.api.LogEntry;
+import org.nuxeo.ecm.platform.audit.impl.LogEntryImpl;
+import org.nuxeo.ecm.platform.audit.service.extension.AuditBulkerDescriptor;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.test.runner.RuntimeFeature;
+
+@RunWith(FeaturesRunner.class)
+@Features(RuntimeFeature.class)
+public class TestJournaledAuditBulker {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Bulker keeping the entries in memory instead of writing them to a backend.
+     */
+    protected static class TestBulker extends JournaledAuditBulker {
+
+        protected final List<LogEntry> written = new CopyOnWriteArrayList<>();
+
+        protected volatile boolean failing;
+
+        protected volatile String poisonEventId;
+
+        protected TestBulker(AuditBulkerDescriptor config) {
+            super(null, config);
+        }
+
+        @Override
+        protected void addLogEntries(List<LogEntry> entries) {
+            if (failing) {
+                throw new IllegalStateException("backend down");
+            }
+            if (entries.stream().anyMatch(entry -> entry.getEventId().equals(poisonEventId))) {
+                throw new IllegalArgumentException("entry rejected");
+            }
+            written.addAll(entries);
+        }
+    }
+
+    protected AuditBulkerDescriptor newConfig(File dir) {
+        AuditBulkerDescriptor config = new AuditBulkerDescriptor();
+        config.timeout = 100;
+        config.size = 10;
+        config.drainers = 2;
+        config.journalDirectory = dir.getPath();
+        config.journalSegmentSize = 4096;
+        return config;
+    }
+
+    protected LogEntry newEntry(int i) {
+        LogEntryImpl entry = new LogEntryImpl();
+        entry.setEventId("event" + i);
+        entry.setDocUUID("doc" + i);
+        return entry;
+    }
+
+    @Test
+    public void testDrain() throws Exception {
+        TestBulker bulker = new TestBulker(newConfig(folder.newFolder()));
+        bulker.onApplicationStarted();
+        try {
+            for (int i = 0; i < 100; i++) {
+                bulker.offer(newEntry(i));
+            }
+            assertTrue(bulker.await(10, TimeUnit.SECONDS));
+            assertEquals(100, bulker.written.size());
+            assertEquals(0, bulker.journal.getPending());
+        } finally {
+            bulker.onApplicationStopped();
+        }
+    }
+
+    @Test
+    public void testReplayAfterRestart() throws Exception {
+        File dir = folder.newFolder();
+        TestBulker bulker = new TestBulker(newConfig(dir));
+        bulker.failing = true;
+        bulker.onApplicationStarted();
+        try {
+            for (int i = 0; i < 20; i++) {
+                bulker.offer(newEntry(i));
+            }
+            assertFalse(bulker.await(500, TimeUnit.MILLISECONDS));
+        } finally {
+            bulker.onApplicationStopped();
+        }
+        assertEquals(0, bulker.written.size());
+
+        // entries not written are replayed by the next bulker
+        bulker = new TestBulker(newConfig(dir));
+        bulker.onApplicationStarted();
+        try {
+            assertTrue(bulker.await(10, TimeUnit.SECONDS));
+            assertEquals(20, bulker.written.size());
+            assertEquals("event0", bulker.written.stream().map(LogEntry::getEventId).sorted().findFirst().get());
+        } finally {
+            bulker.onApplicationStopped();
+        }
+    }
+
+    @Test
+    public void testPoisonEntry() throws Exception {
+        TestBulker bulker = new TestBulker(newConfig(folder.newFolder()));
+        bulker.poisonEventId = "event5";
+        long rejected = bulker.rejectedCount.getCount();
+        bulker.onApplicationStarted();
+        try {
+            for (int i = 0; i < 20; i++) {
+                bulker.offer(newEntry(i));
+            }
+            // the entry that cannot be written doesn't stall the drainer
+            assertTrue(bulker.await(20, TimeUnit.SECONDS));
+            assertEquals(19, bulker.written.size());
+            assertFalse(bulker.written.stream().anyMatch(entry -> entry.getEventId().equals("event5")));
+            assertEquals(rejected + 1, bulker.rejectedCount.getCount());
+            assertEquals(0, bulker.journal.getPending());
+        } finally {
+            bulker.onApplicationStopped();
+        }
+    }
+
+    @Test
+    public void testOverflowDrop() throws Exception {
+        AuditBulkerDescriptor config = newConfig(folder.newFolder());
+        config.journalMaxSize = 4096;
+        config.journalOverflow = JournaledAuditBulker.OVERFLOW_DROP;
+        TestBulker bulker = new TestBulker(config);
+        long dropped = bulker.droppedCount.getCount();
+        // not started, nothing is drained, the first segment fills up
+        for (int i = 0; i < 1000; i++) {
+            bulker.offer(newEntry(i));
+        }
+        assertTrue(bulker.droppedCount.getCount() > dropped);
+        assertEquals(4096, bulker.journal.getSize());
+        bulker.onApplicationStopped();
+    }
+
+}
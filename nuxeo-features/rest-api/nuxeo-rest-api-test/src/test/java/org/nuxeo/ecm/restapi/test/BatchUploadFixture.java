@@ -35,6 +35,7 @@ import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.core.Response.Status;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.node.ArrayNode;
@@ -685,6 +686,56 @@ public class BatchUploadFixture extends BaseTest {
 
     }
 
+    /**
+     * Tests the use of /upload using file chunks of the same size received in order, which are written directly to the
+     * assembled file and digested while received, then attached twice.
+     *
+     * @since 9.2
+     */
+    @Test
+    public void testBatchExecuteWithInOrderChunkedUpload() throws IOException {
+        ClientResponse response = getResponse(RequestType.POST, "upload");
+        JsonNode node = mapper.readTree(response.getEntityInputStream());
+        String batchId = node.get("batchId").getValueAsText();
+
+        String fileContent = "0123456789abcdefghij0123456789ABCD";
+        String[] chunks = { "0123456789", "abcdefghij", "0123456789", "ABCD" };
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "application/octet-stream");
+        headers.put("X-Upload-Type", "chunked");
+        headers.put("X-Upload-Chunk-Count", String.valueOf(chunks.length));
+        headers.put("X-File-Name", "chunks.txt");
+        headers.put("X-File-Size", String.valueOf(fileContent.length()));
+        headers.put("X-File-Type", "text/plain");
+        for (int i = 0; i < chunks.length; i++) {
+            headers.put("X-Upload-Chunk-Index", String.valueOf(i));
+            response = getResponse(RequestType.POST, "upload/" + batchId + "/0", chunks[i], headers);
+            assertEquals(i < chunks.length - 1 ? 308 : Status.CREATED.getStatusCode(), response.getStatus());
+        }
+
+        for (String name : new String[] { "testInOrderChunks1", "testInOrderChunks2" }) {
+            DocumentModel file = session.createDocumentModel("/", name, "File");
+            file = session.createDocument(file);
+            TransactionHelper.commitOrRollbackTransaction();
+            TransactionHelper.startTransaction();
+
+            String json = "{\"params\":{\"document\":\"" + file.getPathAsString() + "\"}}";
+            headers = new HashMap<>();
+            headers.put("X-Batch-No-Drop", "true");
+            response = getResponse(RequestType.POSTREQUEST, "upload/" + batchId + "/0/execute/Blob.Attach", json,
+                    headers);
+            assertEquals(Status.OK.getStatusCode(), response.getStatus());
+
+            DocumentModel doc = session.getDocument(new PathRef("/" + name));
+            Blob blob = (Blob) doc.getPropertyValue("file:content");
+            assertNotNull(blob);
+            assertEquals("chunks.txt", blob.getFilename());
+            assertEquals(fileContent, blob.getString());
+            assertEquals(DigestUtils.md5Hex(fileContent), blob.getDigest());
+        }
+        assertBatchExists(batchId);
+    }
+
     /**
      * @since 7.4
      */
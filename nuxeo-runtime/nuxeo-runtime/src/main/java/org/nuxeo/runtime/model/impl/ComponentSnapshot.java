@@ -0,0 +1,398 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.runtime.model.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarFile;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.runtime.Version;
+import org.nuxeo.runtime.model.ComponentName;
+import org.nuxeo.runtime.model.Property;
+import org.w3c.dom.Element;
+
+/**
+ * A snapshot of the parsed component descriptors, saved at the end of the startup and used by the next startups to
+ * avoid parsing again the component XML files that didn't change.
+ * <p>
+ * Each descriptor is stored with a digest of its XML after variable expansion, so a descriptor is parsed again if its
+ * file or the configuration it references changed. The whole snapshot is discarded if the runtime itself changed.
+ * <p>
+ * Only the parsing is skipped: the components are still registered, resolved and activated, and the contributions
+ * registered, as the components build their registries in memory.
+ *
+ * @since 9.2
+ */
+public class ComponentSnapshot {
+
+    private static final Log log = LogFactory.getLog(ComponentSnapshot.class);
+
+    /** Property enabling the snapshot, {@code false} by default. */
+    public static final String ENABLED_PROP = "org.nuxeo.runtime.component.snapshot.enabled";
+
+    public static final String FILE_NAME = "components.snapshot";
+
+    protected static final String MAGIC = "NXCOMPSNAP";
+
+    /** To be incremented when the stored format or the serialized classes change incompatibly. */
+    protected static final int FORMAT_VERSION = 1;
+
+    /** The classes whose serialized form is stored, besides the DOM classes. */
+    protected static final Class<?>[] SERIALIZED_CLASSES = { RegistrationInfoImpl.class, ExtensionImpl.class,
+            ExtensionPointImpl.class, ServiceDescriptor.class, ComponentName.class, Property.class, Version.class };
+
+    protected static class Entry {
+
+        protected final String digest;
+
+        protected final byte[] data;
+
+        protected Entry(String digest, byte[] data) {
+            this.digest = digest;
+            this.data = data;
+        }
+    }
+
+    protected final File file;
+
+    protected final String runtimeKey;
+
+    /** The entries of the snapshot file. */
+    protected final Map<String, Entry> loaded = new HashMap<>();
+
+    /** The entries used by this startup, saved in the next snapshot. */
+    protected final Map<String, Entry> used = new LinkedHashMap<>();
+
+    protected int hits;
+
+    protected int misses;
+
+    protected long readNanos;
+
+    protected long parseNanos;
+
+    public ComponentSnapshot(File file) {
+        this(file, getRuntimeKey());
+    }
+
+    protected ComponentSnapshot(File file, String runtimeKey) {
+        this.file = file;
+        this.runtimeKey = runtimeKey;
+    }
+
+    /**
+     * Identifies the runtime classes, whose serialized form the snapshot depends on.
+     * <p>
+     * This is a digest of the manifest of the runtime bundle, which carries its build version, and of the bytecode of
+     * the serialized classes, which is what changes when the runtime is used from an exploded classes directory.
+     */
+    protected static String getRuntimeKey() {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            md.update(Integer.toString(FORMAT_VERSION).getBytes(StandardCharsets.UTF_8));
+            updateDigest(md, getManifestURL());
+            for (Class<?> klass : SERIALIZED_CLASSES) {
+                updateDigest(md, klass.getResource(klass.getSimpleName() + ".class"));
+            }
+            return Base64.getEncoder().encodeToString(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Gets the manifest of the jar or directory holding the runtime classes, not the first one of the class path.
+     */
+    protected static URL getManifestURL() {
+        CodeSource codeSource = ComponentSnapshot.class.getProtectionDomain().getCodeSource();
+        URL location = codeSource == null ? null : codeSource.getLocation();
+        if (location == null) {
+            return null;
+        }
+        try {
+            String base = location.toExternalForm();
+            if (base.endsWith("/")) {
+                return new URL(base + JarFile.MANIFEST_NAME);
+            } else {
+                return new URL("jar:" + base + "!/" + JarFile.MANIFEST_NAME);
+            }
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    protected static void updateDigest(MessageDigest md, URL url) {
+        if (url == null) {
+            return;
+        }
+        try (InputStream in = url.openStream()) {
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                md.update(buf, 0, n);
+            }
+        } catch (IOException e) {
+            // no manifest
+            log.debug("Cannot read " + url, e);
+        }
+    }
+
+    /**
+     * Loads the snapshot file, if it exists and was written by the same runtime.
+     */
+    public synchronized void load() {
+        if (!file.isFile()) {
+            return;
+        }
+        long t0 = System.nanoTime();
+        try (DataInputStream in = new DataInputStream(
+                new GZIPInputStream(new FileInputStream(file), 64 * 1024))) {
+            if (!MAGIC.equals(in.readUTF()) || !runtimeKey.equals(in.readUTF())) {
+                log.info("Ignoring component snapshot written by another runtime: " + file);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String id = in.readUTF();
+                String digest = in.readUTF();
+                int length = in.readInt();
+                // deflate cannot expand the data more than about a thousand times
+                if (length < 0 || length > file.length() * 1024) {
+                    throw new IOException("Invalid entry length: " + length);
+                }
+                byte[] data = new byte[length];
+                in.readFully(data);
+                loaded.put(id, new Entry(digest, data));
+            }
+        } catch (EOFException e) {
+            log.warn("Ignoring truncated component snapshot: " + file);
+            loaded.clear();
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable component snapshot: " + file, e);
+            loaded.clear();
+        } finally {
+            readNanos += System.nanoTime() - t0;
+        }
+    }
+
+    /**
+     * Gets the registration info of a component descriptor from the snapshot, or parses it if it's not in the
+     * snapshot or changed.
+     *
+     * @param ctx the context parsing the descriptor
+     * @param id the id of the descriptor
+     * @param xml the XML of the descriptor, after variable expansion
+     */
+    public RegistrationInfoImpl getRegistrationInfo(DefaultRuntimeContext ctx, String id, String xml)
+            throws IOException {
+        String digest = digest(xml);
+        synchronized (this) {
+            Entry entry = loaded.get(id);
+            if (entry != null && entry.digest.equals(digest)) {
+                long t0 = System.nanoTime();
+                RegistrationInfoImpl ri = read(ctx, entry.data);
+                readNanos += System.nanoTime() - t0;
+                if (ri != null) {
+                    used.put(id, entry);
+                    hits++;
+                    return ri;
+                }
+            }
+        }
+        long t0 = System.nanoTime();
+        RegistrationInfoImpl ri;
+        try (InputStream in = new ByteArrayInputStream(xml.getBytes())) {
+            ri = ctx.createRegistrationInfo(in);
+        }
+        // serialized before the registration changes its state
+        byte[] data = ri == null ? null : write(ri);
+        synchronized (this) {
+            parseNanos += System.nanoTime() - t0;
+            misses++;
+            if (data != null) {
+                used.put(id, new Entry(digest, data));
+            }
+        }
+        return ri;
+    }
+
+    protected static String digest(String xml) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            return Base64.getEncoder().encodeToString(md.digest(xml.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Serializes a registration info with the DOM of its extensions and the names of the contribution classes of its
+     * extension points, which are not serializable fields.
+     *
+     * @return the serialized form, or {@code null} if the registration info cannot be serialized
+     */
+    protected byte[] write(RegistrationInfoImpl ri) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(baos)) {
+            out.writeObject(ri);
+            for (ExtensionImpl xt : ri.extensions) {
+                if (xt.element != null && !(xt.element instanceof Serializable)) {
+                    return null;
+                }
+                out.writeObject(xt.element);
+            }
+            for (ExtensionPointImpl xp : ri.extensionPoints) {
+                String[] names = null;
+                if (xp.contributions != null) {
+                    names = new String[xp.contributions.length];
+                    for (int i = 0; i < names.length; i++) {
+                        names[i] = xp.contributions[i] == null ? null : xp.contributions[i].getName();
+                    }
+                }
+                out.writeObject(names);
+            }
+        } catch (IOException e) {
+            log.debug("Cannot snapshot component " + ri.name, e);
+            return null;
+        }
+        return baos.toByteArray();
+    }
+
+    protected RegistrationInfoImpl read(DefaultRuntimeContext ctx, byte[] data) {
+        try (ObjectInputStream in = new SnapshotObjectInputStream(new ByteArrayInputStream(data))) {
+            RegistrationInfoImpl ri = (RegistrationInfoImpl) in.readObject();
+            for (ExtensionImpl xt : ri.extensions) {
+                xt.element = (Element) in.readObject();
+            }
+            for (ExtensionPointImpl xp : ri.extensionPoints) {
+                xp.ri = ri;
+                String[] names = (String[]) in.readObject();
+                if (names != null) {
+                    xp.contributions = new Class<?>[names.length];
+                    for (int i = 0; i < names.length; i++) {
+                        xp.contributions[i] = names[i] == null ? null : loadClass(ctx, names[i]);
+                    }
+                }
+            }
+            return ri;
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            log.debug("Cannot read component from snapshot, parsing it again", e);
+            return null;
+        }
+    }
+
+    protected static Class<?> loadClass(DefaultRuntimeContext ctx, String name) {
+        try {
+            return new XMapContext(ctx).loadClass(name);
+        } catch (ClassNotFoundException e) {
+            // same as when parsing
+            log.error("Cannot load class: " + name, e);
+            return null;
+        }
+    }
+
+    /**
+     * Saves the entries used by this startup, if they differ from the loaded ones.
+     */
+    public synchronized void save() {
+        if (misses == 0 && used.size() == loaded.size()) {
+            return;
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        file.getParentFile().mkdirs();
+        try (DataOutputStream out = new DataOutputStream(
+                new GZIPOutputStream(new FileOutputStream(tmp), 64 * 1024))) {
+            out.writeUTF(MAGIC);
+            out.writeUTF(runtimeKey);
+            out.writeInt(used.size());
+            for (Map.Entry<String, Entry> es : used.entrySet()) {
+                out.writeUTF(es.getKey());
+                out.writeUTF(es.getValue().digest);
+                out.writeInt(es.getValue().data.length);
+                out.write(es.getValue().data);
+            }
+        } catch (IOException e) {
+            log.warn("Cannot write component snapshot: " + file, e);
+            tmp.delete();
+            return;
+        }
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Cannot write component snapshot: " + file, e);
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Appends the statistics of this startup to a status message.
+     */
+    public synchronized void getStatusMessage(StringBuilder msg) {
+        msg.append("  * Component descriptors: ").append(hits).append(" from snapshot in ").append(
+                TimeUnit.NANOSECONDS.toMillis(readNanos)).append("ms, ").append(misses).append(" parsed in ").append(
+                        TimeUnit.NANOSECONDS.toMillis(parseNanos)).append("ms\n");
+    }
+
+    /**
+     * Resolves the classes with the class loader of the runtime, which sees the model and DOM classes.
+     */
+    protected static class SnapshotObjectInputStream extends ObjectInputStream {
+
+        protected SnapshotObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            try {
+                return Class.forName(desc.getName(), false, ComponentSnapshot.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                return super.resolveClass(desc);
+            }
+        }
+    }
+
+}
@@ -44,6 +44,7 @@ import org.nuxeo.runtime.model.StreamRef;
 import org.nuxeo.runtime.model.URLStreamRef;
 import org.nuxeo.runtime.osgi.OSGiRuntimeActivator;
 import org.nuxeo.runtime.osgi.OSGiRuntimeContext;
+import org.nuxeo.runtime.osgi.OSGiRuntimeService;
 import org.osgi.framework.Bundle;
 
 /**
@@ -211,6 +212,11 @@ public class DefaultRuntimeContext implements RuntimeContext {
 	public RegistrationInfoImpl createRegistrationInfo(StreamRef ref) throws IOException {
 		String source = IOUtils.toString(ref.getStream(), Charsets.UTF_8);
 		String expanded = Framework.expandVars(source);
+		ComponentSnapshot snapshot = runtime instanceof OSGiRuntimeService
+				? ((OSGiRuntimeService) runtime).getComponentSnapshot() : null;
+		if (snapshot != null) {
+			return snapshot.getRegistrationInfo(this, ref.getId(), expanded);
+		}
 		try (InputStream in = new ByteArrayInputStream(expanded.getBytes())) {
 			return createRegistrationInfo(in);
 		}
@@ -37,6 +37,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.apache.commons.io.FileUtils;
@@ -52,6 +53,7 @@ import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.model.ComponentName;
 import org.nuxeo.runtime.model.RuntimeContext;
 import org.nuxeo.runtime.model.impl.ComponentPersistence;
+import org.nuxeo.runtime.model.impl.ComponentSnapshot;
 import org.nuxeo.runtime.model.impl.RegistrationInfoImpl;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
@@ -101,6 +103,15 @@ public class OSGiRuntimeService extends AbstractRuntimeService implements Framew
 
     final ComponentPersistence persistence;
 
+    /** The snapshot of the parsed component descriptors, {@code null} if disabled. */
+    protected ComponentSnapshot componentSnapshot;
+
+    protected long deployStartNanos;
+
+    protected long deployNanos;
+
+    protected long resumeNanos;
+
     public OSGiRuntimeService(BundleContext context) {
         this(new OSGiRuntimeContext(context.getBundle()), context);
     }
@@ -161,6 +172,16 @@ public class OSGiRuntimeService extends AbstractRuntimeService implements Framew
         return persistence;
     }
 
+    /**
+     * Gets the snapshot of the parsed component descriptors.
+     *
+     * @return the snapshot, or {@code null} if disabled
+     * @since 9.2
+     */
+    public ComponentSnapshot getComponentSnapshot() {
+        return componentSnapshot;
+    }
+
     public synchronized RuntimeContext createContext(Bundle bundle) {
         RuntimeContext ctx = contexts.get(bundle.getSymbolicName());
         if (ctx == null) {
@@ -190,6 +211,15 @@ public class OSGiRuntimeService extends AbstractRuntimeService implements Framew
     @Override
     protected void doStart() {
         super.doStart();
+        deployStartNanos = System.nanoTime();
+        if (Boolean.parseBoolean(getProperty(ComponentSnapshot.ENABLED_PROP, "false"))) {
+            File dataDir = Environment.getDefault().getData();
+            if (dataDir == null) {
+                dataDir = new File(workingDir, "data");
+            }
+            componentSnapshot = new ComponentSnapshot(new File(dataDir, ComponentSnapshot.FILE_NAME));
+            componentSnapshot.load();
+        }
         bundleContext.addFrameworkListener(this);
         loadComponents(bundleContext.getBundle(), context);
     }
@@ -459,13 +489,20 @@ public class OSGiRuntimeService extends AbstractRuntimeService implements Framew
         // requirement
         // on this marker component
         deployFrameworkStartedComponent();
+        long t0 = System.nanoTime();
+        deployNanos = t0 - deployStartNanos;
         resume();
+        resumeNanos = System.nanoTime() - t0;
+        if (componentSnapshot != null) {
+            componentSnapshot.save();
+        }
         printStatusMessage();
     }
 
     private void printStatusMessage() {
         StringBuilder msg = new StringBuilder();
         msg.append("Nuxeo Platform Started\n");
+        getLoadingTimesMessage(msg);
         if (getStatusMessage(msg)) {
             log.info(msg);
         } else {
@@ -473,6 +510,21 @@ public class OSGiRuntimeService extends AbstractRuntimeService implements Framew
         }
     }
 
+    /**
+     * Appends the time spent deploying and starting the components to a status message.
+     *
+     * @since 9.2
+     */
+    protected void getLoadingTimesMessage(StringBuilder msg) {
+        msg.append("======================================================================\n");
+        msg.append("= Component Loading Times:\n");
+        msg.append("  * Deployment: ").append(TimeUnit.NANOSECONDS.toMillis(deployNanos)).append("ms\n");
+        msg.append("  * Start: ").append(TimeUnit.NANOSECONDS.toMillis(resumeNanos)).append("ms\n");
+        if (componentSnapshot != null) {
+            componentSnapshot.getStatusMessage(msg);
+        }
+    }
+
     protected void deployFrameworkStartedComponent() {
         RegistrationInfoImpl ri = new RegistrationInfoImpl(FRAMEWORK_STARTED_COMP);
         ri.setContext(context);
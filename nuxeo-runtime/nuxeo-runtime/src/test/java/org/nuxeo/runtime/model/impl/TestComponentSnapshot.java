@@ -0,0 +1,181 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.runtime.model.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nuxeo.runtime.Version;
+import org.nuxeo.runtime.model.ComponentName;
+import org.w3c.dom.Element;
+
+public class TestComponentSnapshot {
+
+    protected static final String ID = "snapshot-test-contrib.xml";
+
+    protected static final String KEY = "testkey";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    protected File file;
+
+    protected DefaultRuntimeContext ctx;
+
+    /** Contribution class of the test extension point. */
+    public static class ThingDescriptor {
+    }
+
+    protected static String getXML(String value) {
+        return "<?xml version=\"1.0\"?>\n" //
+                + "<component name=\"org.nuxeo.runtime.test.snapshot\" version=\"1.0\">\n" //
+                + "  <require>org.nuxeo.runtime.test.other</require>\n" //
+                + "  <extension-point name=\"things\">\n" //
+                + "    <object class=\"" + ThingDescriptor.class.getName() + "\"/>\n" //
+                + "  </extension-point>\n" //
+                + "  <extension target=\"org.nuxeo.runtime.test.other\" point=\"stuff\">\n" //
+                + "    <thing name=\"foo\" value=\"" + value + "\"/>\n" //
+                + "  </extension>\n" //
+                + "</component>\n";
+    }
+
+    protected static String getThingValue(RegistrationInfoImpl ri) {
+        Element element = ri.extensions[0].element;
+        return ((Element) element.getElementsByTagName("thing").item(0)).getAttribute("value");
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        file = new File(folder.getRoot(), ComponentSnapshot.FILE_NAME);
+        ctx = new DefaultRuntimeContext(null);
+        // write a snapshot with a single descriptor
+        ComponentSnapshot snapshot = new ComponentSnapshot(file, KEY);
+        snapshot.load();
+        assertNotNull(snapshot.getRegistrationInfo(ctx, ID, getXML("bar")));
+        assertEquals(0, snapshot.hits);
+        assertEquals(1, snapshot.misses);
+        snapshot.save();
+        assertTrue(file.isFile());
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        RegistrationInfoImpl parsed = ctx.createRegistrationInfo(
+                new ByteArrayInputStream(getXML("bar").getBytes(StandardCharsets.UTF_8)));
+
+        ComponentSnapshot snapshot = new ComponentSnapshot(file, KEY);
+        snapshot.load();
+        RegistrationInfoImpl ri = snapshot.getRegistrationInfo(ctx, ID, getXML("bar"));
+        assertEquals(1, snapshot.hits);
+        assertEquals(0, snapshot.misses);
+
+        assertNotSame(parsed, ri);
+        assertEquals(parsed.name, ri.name);
+        assertEquals(new ComponentName("org.nuxeo.runtime.test.snapshot"), ri.name);
+        assertEquals(Version.parseString("1.0"), ri.version);
+        assertEquals(Collections.singleton(new ComponentName("org.nuxeo.runtime.test.other")), ri.requires);
+
+        // extension elements are restored
+        assertEquals(1, ri.extensions.length);
+        assertEquals(parsed.extensions[0].target, ri.extensions[0].target);
+        assertEquals("stuff", ri.extensions[0].extensionPoint);
+        assertNotNull(ri.extensions[0].element);
+        assertEquals("bar", getThingValue(ri));
+
+        // extension points are rewired to their registration info, with their contribution classes
+        assertEquals(1, ri.extensionPoints.length);
+        ExtensionPointImpl xp = ri.extensionPoints[0];
+        assertEquals("things", xp.name);
+        assertSame(ri, xp.ri);
+        assertEquals(Arrays.asList(parsed.extensionPoints[0].contributions), Arrays.asList(xp.contributions));
+        assertSame(ThingDescriptor.class, xp.contributions[0]);
+    }
+
+    @Test
+    public void testChangedDigest() throws Exception {
+        ComponentSnapshot snapshot = new ComponentSnapshot(file, KEY);
+        snapshot.load();
+        RegistrationInfoImpl ri = snapshot.getRegistrationInfo(ctx, ID, getXML("baz"));
+        assertEquals(0, snapshot.hits);
+        assertEquals(1, snapshot.misses);
+        assertEquals("baz", getThingValue(ri));
+    }
+
+    @Test
+    public void testChangedRuntimeKey() throws Exception {
+        ComponentSnapshot snapshot = new ComponentSnapshot(file, KEY + "2");
+        snapshot.load();
+        assertTrue(snapshot.loaded.isEmpty());
+        RegistrationInfoImpl ri = snapshot.getRegistrationInfo(ctx, ID, getXML("bar"));
+        assertEquals(0, snapshot.hits);
+        assertEquals(1, snapshot.misses);
+        assertEquals("bar", getThingValue(ri));
+    }
+
+    @Test
+    public void testTruncatedFile() throws Exception {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length / 2));
+        checkIgnored();
+    }
+
+    @Test
+    public void testCorruptFile() throws Exception {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        for (int i = bytes.length / 3; i < bytes.length; i++) {
+            bytes[i] = (byte) (bytes[i] ^ 0x5A);
+        }
+        Files.write(file.toPath(), bytes);
+        checkIgnored();
+    }
+
+    @Test
+    public void testNotSnapshotFile() throws Exception {
+        Files.write(file.toPath(), "not a snapshot".getBytes(StandardCharsets.UTF_8));
+        checkIgnored();
+    }
+
+    protected void checkIgnored() throws Exception {
+        ComponentSnapshot snapshot = new ComponentSnapshot(file, KEY);
+        snapshot.load();
+        assertTrue(snapshot.loaded.isEmpty());
+        RegistrationInfoImpl ri = snapshot.getRegistrationInfo(ctx, ID, getXML("bar"));
+        assertEquals(0, snapshot.hits);
+        assertEquals(1, snapshot.misses);
+        assertEquals("bar", getThingValue(ri));
+    }
+
+    @Test
+    public void testRuntimeKey() {
+        // stable for a given runtime
+        assertEquals(ComponentSnapshot.getRuntimeKey(), ComponentSnapshot.getRuntimeKey());
+    }
+
+}
@@ -24,9 +24,12 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -77,6 +80,9 @@ public class TableReference extends AbstractReference implements Cloneable {
     @XNode("@dataFile")
     protected String dataFileName;
 
+    /** Number of links inserted by a JDBC batch. */
+    protected static final int BATCH_SIZE = 100;
+
     private Table table;
 
     private Dialect dialect;
@@ -104,13 +110,17 @@ public class TableReference extends AbstractReference implements Cloneable {
                 insert.addColumn(column);
             }
             try (PreparedStatement ps = connection.prepareStatement(insert.getStatement())) {
+                int[] batch = new int[1];
                 Consumer<Map<String, Object>> loader = new Consumer<Map<String, Object>>() {
                     @Override
                     public void accept(Map<String, Object> map) {
                         try {
                             ps.setString(1, (String) map.get(sourceColumn));
                             ps.setString(2, (String) map.get(targetColumn));
-                            ps.execute();
+                            ps.addBatch();
+                            if (++batch[0] % BATCH_SIZE == 0) {
+                                ps.executeBatch();
+                            }
                         } catch (SQLException e) {
                             throw new DirectoryException(e);
                         }
@@ -118,6 +128,9 @@ public class TableReference extends AbstractReference implements Cloneable {
                 };
                 DirectoryCSVLoader.loadData(dataFileName, BaseDirectoryDescriptor.DEFAULT_DATA_FILE_CHARACTER_SEPARATOR,
                         schema, loader);
+                if (batch[0] % BATCH_SIZE != 0) {
+                    ps.executeBatch();
+                }
             } catch (SQLException e) {
                 throw new DirectoryException(String.format("Table '%s' initialization failed", tableName), e);
             }
@@ -148,18 +161,30 @@ public class TableReference extends AbstractReference implements Cloneable {
         if (targetIds == null) {
             return;
         }
-        for (String targetId : targetIds) {
-            addLink(sourceId, targetId, session, true);
-        }
+        addLinks(targetColumn, targetIds, sourceColumn, sourceId, session);
     }
 
     public void addLinks(List<String> sourceIds, String targetId, SQLSession session) throws DirectoryException {
         if (sourceIds == null) {
             return;
         }
-        for (String sourceId : sourceIds) {
-            addLink(sourceId, targetId, session, true);
+        addLinks(sourceColumn, sourceIds, targetColumn, targetId, session);
+    }
+
+    /**
+     * Adds the missing links between a value of the filter column and ids of the ids column, reading the existing
+     * links with one query.
+     *
+     * @since 9.2
+     */
+    protected void addLinks(String idsColumn, List<String> ids, String filterColumn, String filterValue,
+            SQLSession session) throws DirectoryException {
+        if (ids.isEmpty()) {
+            return;
         }
+        Set<String> idsToAdd = new LinkedHashSet<>(ids);
+        idsToAdd.removeAll(getIdsFor(idsColumn, filterColumn, filterValue, session));
+        insertLinks(idsColumn, idsToAdd, filterColumn, filterValue, session);
     }
 
     public boolean exists(String sourceId, String targetId, SQLSession session) throws DirectoryException {
@@ -255,37 +280,127 @@ public class TableReference extends AbstractReference implements Cloneable {
         }
     }
 
-    protected List<String> getIdsFor(String valueColumn, String filterColumn, String filterValue)
-            throws DirectoryException {
-        try (SQLSession session = getSQLSession()) {
-            // String sql = String.format("SELECT %s FROM %s WHERE %s = ?",
-            // table.getColumn(valueColumn), tableName, filterColumn);
-            Table table = getTable();
-            Select select = new Select(table);
-            select.setWhat(table.getColumn(valueColumn).getQuotedName());
-            select.setFrom(table.getQuotedName());
-            select.setWhere(table.getColumn(filterColumn).getQuotedName() + " = ?");
-
-            String sql = select.getStatement();
-            if (session.logger.isLogEnabled()) {
-                session.logger.logSQL(sql, Collections.<Serializable> singleton(filterValue));
+    /**
+     * Inserts links between a value of the filter column and ids of the ids column, as JDBC batches.
+     *
+     * @since 9.2
+     */
+    protected void insertLinks(String idsColumn, Collection<String> ids, String filterColumn, String filterValue,
+            SQLSession session) throws DirectoryException {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Table table = getTable();
+        Insert insert = new Insert(table);
+        insert.addColumn(table.getColumn(sourceColumn));
+        insert.addColumn(table.getColumn(targetColumn));
+        String insertSql = insert.getStatement();
+        boolean filterIsSource = filterColumn.equals(sourceColumn);
+        try (PreparedStatement ps = session.sqlConnection.prepareStatement(insertSql)) {
+            boolean batched = ids.size() > 1 && session.sqlConnection.getMetaData().supportsBatchUpdates();
+            String loggedSql = batched ? insertSql + " -- BATCHED" : insertSql;
+            int batch = 0;
+            for (Iterator<String> it = ids.iterator(); it.hasNext();) {
+                String id = it.next();
+                String sourceId = filterIsSource ? filterValue : id;
+                String targetId = filterIsSource ? id : filterValue;
+                if (session.logger.isLogEnabled()) {
+                    session.logger.logSQL(loggedSql, Arrays.<Serializable> asList(sourceId, targetId));
+                }
+                ps.setString(1, sourceId);
+                ps.setString(2, targetId);
+                if (batched) {
+                    ps.addBatch();
+                    batch++;
+                    if (batch % BATCH_SIZE == 0 || !it.hasNext()) {
+                        ps.executeBatch();
+                    }
+                } else {
+                    ps.execute();
+                }
             }
+        } catch (SQLException e) {
+            throw new DirectoryException("error adding links for " + filterValue, e);
+        }
+    }
 
-            List<String> ids = new LinkedList<String>();
-            try (PreparedStatement ps = session.sqlConnection.prepareStatement(sql)) {
+    /**
+     * Deletes links between a value of the filter column and ids of the ids column, with {@code IN} lists limited to
+     * the dialect's maximum.
+     *
+     * @since 9.2
+     */
+    protected void deleteLinks(String idsColumn, List<String> ids, String filterColumn, String filterValue,
+            SQLSession session) throws DirectoryException {
+        Table table = getTable();
+        String filterName = table.getColumn(filterColumn).getQuotedName();
+        String idsName = table.getColumn(idsColumn).getQuotedName();
+        int max = getDialect().getMaximumArgsForIn();
+        for (int i = 0; i < ids.size(); i += max) {
+            List<String> chunk = ids.subList(i, Math.min(i + max, ids.size()));
+            // DELETE FROM table WHERE filterColumn = ? AND idsColumn IN (?, ?, ...)
+            Delete delete = new Delete(table);
+            delete.setWhere(String.format("%s = ? AND %s IN (%s)", filterName, idsName,
+                    String.join(", ", Collections.nCopies(chunk.size(), "?"))));
+            String deleteSql = delete.getStatement();
+            if (session.logger.isLogEnabled()) {
+                List<Serializable> values = new ArrayList<>(chunk.size() + 1);
+                values.add(filterValue);
+                values.addAll(chunk);
+                session.logger.logSQL(deleteSql, values);
+            }
+            try (PreparedStatement ps = session.sqlConnection.prepareStatement(deleteSql)) {
                 ps.setString(1, filterValue);
-                try (ResultSet rs = ps.executeQuery()) {
-                    while (rs.next()) {
-                        ids.add(rs.getString(valueColumn));
-                    }
-                    return ids;
+                int n = 2;
+                for (String id : chunk) {
+                    ps.setString(n++, id);
                 }
+                ps.execute();
             } catch (SQLException e) {
-                throw new DirectoryException("error fetching reference values: ", e);
+                throw new DirectoryException("failed to remove unwanted links for " + filterValue, e);
             }
         }
     }
 
+    protected List<String> getIdsFor(String valueColumn, String filterColumn, String filterValue)
+            throws DirectoryException {
+        try (SQLSession session = getSQLSession()) {
+            return getIdsFor(valueColumn, filterColumn, filterValue, session);
+        }
+    }
+
+    /**
+     * @since 9.2
+     */
+    protected List<String> getIdsFor(String valueColumn, String filterColumn, String filterValue,
+            SQLSession session) throws DirectoryException {
+        // String sql = String.format("SELECT %s FROM %s WHERE %s = ?",
+        // table.getColumn(valueColumn), tableName, filterColumn);
+        Table table = getTable();
+        Select select = new Select(table);
+        select.setWhat(table.getColumn(valueColumn).getQuotedName());
+        select.setFrom(table.getQuotedName());
+        select.setWhere(table.getColumn(filterColumn).getQuotedName() + " = ?");
+
+        String sql = select.getStatement();
+        if (session.logger.isLogEnabled()) {
+            session.logger.logSQL(sql, Collections.<Serializable> singleton(filterValue));
+        }
+
+        List<String> ids = new LinkedList<String>();
+        try (PreparedStatement ps = session.sqlConnection.prepareStatement(sql)) {
+            ps.setString(1, filterValue);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getString(1));
+                }
+                return ids;
+            }
+        } catch (SQLException e) {
+            throw new DirectoryException("error fetching reference values: ", e);
+        }
+    }
+
     @Override
     public List<String> getSourceIdsForTarget(String targetId) throws DirectoryException {
         return getIdsFor(sourceColumn, targetColumn, targetId);
@@ -348,90 +463,28 @@ public class TableReference extends AbstractReference implements Cloneable {
     public void setIdsFor(String idsColumn, List<String> ids, String filterColumn, String filterValue,
             SQLSession session) throws DirectoryException {
 
-        List<String> idsToDelete = new LinkedList<String>();
-        Set<String> idsToAdd = new HashSet<String>();
+        List<String> idsToDelete = new ArrayList<String>();
+        Set<String> idsToAdd = new LinkedHashSet<String>();
         if (ids != null) { // ids may be null
             idsToAdd.addAll(ids);
         }
-        Table table = getTable();
 
         // iterate over existing links to find what to add and what to remove
-        String selectSql = String.format("SELECT %s FROM %s WHERE %s = ?", table.getColumn(idsColumn).getQuotedName(),
-                table.getQuotedName(), table.getColumn(filterColumn).getQuotedName());
-        PreparedStatement ps = null;
-        try {
-            ps = session.sqlConnection.prepareStatement(selectSql);
-            ps.setString(1, filterValue);
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                String existingId = rs.getString(1);
-                if (idsToAdd.contains(existingId)) {
-                    // to not add already existing ids
-                    idsToAdd.remove(existingId);
-                } else {
-                    // delete unwanted existing ids
-                    idsToDelete.add(existingId);
-                }
-            }
-            rs.close();
-        } catch (SQLException e) {
-            throw new DirectoryException("failed to fetch existing links for " + filterValue, e);
-        } finally {
-            try {
-                if (ps != null) {
-                    ps.close();
-                }
-            } catch (SQLException sqle) {
-                throw new DirectoryException(sqle);
+        for (String existingId : getIdsFor(idsColumn, filterColumn, filterValue, session)) {
+            if (!idsToAdd.remove(existingId)) {
+                // delete unwanted existing ids
+                idsToDelete.add(existingId);
             }
         }
 
         if (!idsToDelete.isEmpty()) {
             // remove unwanted links
-
-            // String deleteSql = String.format(
-            // "DELETE FROM %s WHERE %s = ? AND %s = ?", tableName,
-            // filterColumn, idsColumn);
-            Delete delete = new Delete(table);
-            String whereString = String.format("%s = ? AND %s = ?", table.getColumn(filterColumn).getQuotedName(),
-                    table.getColumn(idsColumn).getQuotedName());
-            delete.setWhere(whereString);
-            String deleteSql = delete.getStatement();
-
-            try {
-                ps = session.sqlConnection.prepareStatement(deleteSql);
-                for (String unwantedId : idsToDelete) {
-                    if (session.logger.isLogEnabled()) {
-                        session.logger.logSQL(deleteSql, Arrays.<Serializable> asList(filterValue, unwantedId));
-                    }
-                    ps.setString(1, filterValue);
-                    ps.setString(2, unwantedId);
-                    ps.execute();
-                }
-            } catch (SQLException e) {
-                throw new DirectoryException("failed to remove unwanted links for " + filterValue, e);
-            } finally {
-                try {
-                    if (ps != null) {
-                        ps.close();
-                    }
-                } catch (SQLException sqle) {
-                    throw new DirectoryException(sqle);
-                }
-            }
+            deleteLinks(idsColumn, idsToDelete, filterColumn, filterValue, session);
         }
 
         if (!idsToAdd.isEmpty()) {
             // add missing links
-            if (filterColumn.equals(sourceColumn)) {
-                for (String missingId : idsToAdd) {
-                    addLink(filterValue, missingId, session, false);
-                }
-            } else {
-                for (String missingId : idsToAdd) {
-                    addLink(missingId, filterValue, session, false);
-                }
-            }
+            insertLinks(idsColumn, idsToAdd, filterColumn, filterValue, session);
         }
     }
 
@@ -27,6 +27,7 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
@@ -176,6 +177,29 @@ public abstract class SQLDirectoryTestSuite {
         membersRef.setTargetIdsForSource("members", Arrays.asList("user_1"));
     }
 
+    @Test
+    public void testTableReferenceManyLinks() throws Exception {
+        Reference membersRef = directoryService.getDirectory(GROUP_DIR).getReference("members");
+
+        // more links than a JDBC batch and than an IN list
+        List<String> users = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            users.add("many_user_" + i);
+        }
+        membersRef.addLinks("members", users.subList(0, 500));
+        membersRef.addLinks("members", users);
+        List<String> members = membersRef.getTargetIdsForSource("members");
+        assertEquals(1001, members.size());
+
+        membersRef.setTargetIdsForSource("members", users.subList(250, 750));
+        members = membersRef.getTargetIdsForSource("members");
+        assertEquals(500, members.size());
+        assertTrue(members.containsAll(users.subList(250, 750)));
+
+        // cleanup for other tests
+        membersRef.setTargetIdsForSource("members", Arrays.asList("user_1"));
+    }
+
     @SuppressWarnings("unchecked")
     @Test
     public void testCreateEntry() throws Exception {
@@ -35,7 +35,7 @@ import java.io.Serializable;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
@@ -45,7 +45,6 @@ import org.apache.commons.logging.LogFactory;
 import org.nuxeo.ecm.core.api.DataModel;
 import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.NuxeoException;
-import org.nuxeo.ecm.core.api.NuxeoGroup;
 import org.nuxeo.ecm.core.api.NuxeoPrincipal;
 import org.nuxeo.ecm.core.api.PropertyException;
 import org.nuxeo.ecm.core.api.impl.DataModelImpl;
@@ -319,50 +318,42 @@ public class NuxeoPrincipalImpl implements NuxeoPrincipal {
 
     public void updateAllGroups() {
         UserManager userManager = Framework.getService(UserManager.class);
-        Set<String> checkedGroups = new HashSet<String>();
-        List<String> groupsToProcess = new ArrayList<String>();
-        List<String> resultingGroups = new ArrayList<String>();
-        groupsToProcess.addAll(getGroups());
-
-        while (!groupsToProcess.isEmpty()) {
-            String groupName = groupsToProcess.remove(0);
-            if (!checkedGroups.contains(groupName)) {
-                checkedGroups.add(groupName);
-                NuxeoGroup nxGroup = null;
-                if (userManager != null) {
-                    try {
-                        nxGroup = userManager.getGroup(groupName);
-                    } catch (DirectoryException de) {
-                        if (virtualGroups.contains(groupName)) {
-                            // do not fail while retrieving a virtual group
-                            log.warn("Failed to get group '" + groupName + "' due to '" + de.getMessage()
-                                    + "': permission resolution involving groups may not be correct");
-                            nxGroup = null;
-                        } else {
-                            throw de;
-                        }
-                    }
-                }
-                if (nxGroup == null) {
+        // the group closures include the ancestor groups, and are cached by the user manager
+        Set<String> resultingGroups = new LinkedHashSet<String>();
+        for (String groupName : getGroups()) {
+            List<String> closure = null;
+            if (userManager != null) {
+                try {
+                    closure = userManager.getGroupClosure(groupName);
+                } catch (DirectoryException de) {
                     if (virtualGroups.contains(groupName)) {
-                        // just add the virtual group as is
-                        resultingGroups.add(groupName);
-                    } else if (userManager != null) {
-                        // XXX this should only happens in case of
-                        // inconsistency in DB
-                        log.error("User " + getName() + " references the " + groupName + " group that does not exists");
+                        // do not fail while retrieving a virtual group
+                        log.warn("Failed to get group '" + groupName + "' due to '" + de.getMessage()
+                                + "': permission resolution involving groups may not be correct");
+                        closure = null;
+                    } else {
+                        throw de;
                     }
-                } else {
-                    groupsToProcess.addAll(nxGroup.getParentGroups());
-                    // fetch the group name from the returned entry in case
-                    // it does not have the same case than the actual entry in
-                    // directory (for case insensitive directories)
-                    resultingGroups.add(nxGroup.getName());
-                    // XXX: maybe remove group from virtual groups if it
-                    // actually exists? otherwise it would be ignored when
-                    // setting groups
                 }
             }
+            if (closure == null) {
+                if (virtualGroups.contains(groupName)) {
+                    // just add the virtual group as is
+                    resultingGroups.add(groupName);
+                } else if (userManager != null) {
+                    // XXX this should only happens in case of
+                    // inconsistency in DB
+                    log.error("User " + getName() + " references the " + groupName + " group that does not exists");
+                }
+            } else {
+                // the closure starts with the group name from the entry in
+                // directory in case it does not have the same case than the
+                // one referenced (for case insensitive directories)
+                resultingGroups.addAll(closure);
+                // XXX: maybe remove group from virtual groups if it
+                // actually exists? otherwise it would be ignored when
+                // setting groups
+            }
         }
 
         allGroups = new ArrayList<String>(resultingGroups);
@@ -19,6 +19,7 @@
 package org.nuxeo.ecm.platform.usermanager;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -395,6 +396,26 @@ public interface UserManager extends Authenticator, EventListener, Serializable
      */
     List<String> getAncestorGroups(String groupId);
 
+    /**
+     * Returns the transitive closure of the group with the given name: its name as stored in the directory, followed
+     * by the names of its ancestor groups.
+     * <p>
+     * Implementations may cache the closures, this is what the principals use to compute all their groups.
+     *
+     * @return the group closure, or {@code null} if the group does not exist
+     * @since 9.2
+     */
+    default List<String> getGroupClosure(String groupName) {
+        NuxeoGroup group = getGroup(groupName);
+        if (group == null) {
+            return null;
+        }
+        List<String> closure = new ArrayList<>();
+        closure.add(group.getName());
+        closure.addAll(getAncestorGroups(group.getName()));
+        return closure;
+    }
+
     /**
      * Notifies that the given user has changed with the given event:
      * <ul>
@@ -28,11 +28,14 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -135,12 +138,40 @@ public class UserManagerImpl implements UserManager, MultiTenantUserManager, Adm
      */
     public static final String ANCESTOR_GROUPS_PROPERTY_KEY = "ancestorGroups";
 
+    /**
+     * Property for the maximum age in seconds of the group closures held in memory, when no group cache is configured.
+     *
+     * @since 9.2
+     */
+    public static final String GROUP_CLOSURE_TTL_PROP = "nuxeo.usermanager.groupClosure.ttl";
+
+    public static final String GROUP_CLOSURE_TTL_DEFAULT = "1200";
+
+    /** Maximum number of group closures held in memory, after which they are cleared. */
+    protected static final int GROUP_CLOSURE_MAX_SIZE = 10000;
+
     protected final DirectoryService dirService;
 
     protected final CacheService cacheService;
 
     protected Cache principalCache = null;
 
+    /**
+     * The cache of group closures shared by the cluster nodes, if configured.
+     *
+     * @since 9.2
+     */
+    protected Cache groupClosureCache = null;
+
+    /**
+     * The group closures held in memory when no group cache is configured.
+     *
+     * @since 9.2
+     */
+    protected final Map<String, GroupClosure> groupClosures = new ConcurrentHashMap<>();
+
+    protected long groupClosureTTLMillis;
+
     public UserMultiTenantManagement multiTenantManagement = new DefaultUserMultiTenantManagement();
 
     /**
@@ -257,6 +288,13 @@ public class UserManagerImpl implements UserManager, MultiTenantUserManager, Adm
             principalCache = cacheService.getCache(descriptor.userCacheName);
             invalidateAllPrincipals();
         }
+        groupClosureCache = null;
+        if (cacheService != null && descriptor.groupCacheName != null) {
+            groupClosureCache = cacheService.getCache(descriptor.groupCacheName);
+        }
+        groupClosureTTLMillis = TimeUnit.SECONDS.toMillis(
+                Long.parseLong(Framework.getProperty(GROUP_CLOSURE_TTL_PROP, GROUP_CLOSURE_TTL_DEFAULT)));
+        invalidateAllGroupClosures();
 
     }
 
@@ -810,6 +848,7 @@ public class UserManagerImpl implements UserManager, MultiTenantUserManager, Adm
 
     @Override
     public void notifyGroupChanged(String groupName, String eventId, List<String> ancestorGroupNames) {
+        invalidateGroupClosures(groupName);
         invalidateAllPrincipals();
         notifyRuntime(groupName, GROUPCHANGED_EVENT_ID);
         if (eventId != null) {
@@ -824,6 +863,39 @@ public class UserManagerImpl implements UserManager, MultiTenantUserManager, Adm
         }
     }
 
+    /**
+     * Invalidates the closures changed by a change of the given group: the closures of the group and of its
+     * descendants, and those of the groups that were or are now its subgroups.
+     *
+     * @since 9.2
+     */
+    protected void invalidateGroupClosures(String groupName) {
+        if (groupClosureCache != null) {
+            // no way to find the descendants in the shared cache
+            groupClosureCache.invalidateAll();
+            return;
+        }
+        Set<String> changed = new HashSet<>();
+        changed.add(groupName);
+        // the new subgroups don't have the group in their closure yet
+        NuxeoGroup group = getGroup(groupName);
+        if (group != null) {
+            changed.addAll(group.getMemberGroups());
+        }
+        groupClosures.entrySet().removeIf(
+                e -> changed.contains(e.getKey()) || !Collections.disjoint(changed, e.getValue().groups));
+    }
+
+    /**
+     * @since 9.2
+     */
+    protected void invalidateAllGroupClosures() {
+        if (groupClosureCache != null) {
+            groupClosureCache.invalidateAll();
+        }
+        groupClosures.clear();
+    }
+
     @Override
     public Boolean areGroupsReadOnly() {
         try (Session groupDir = dirService.open(groupDirectoryName)) {
@@ -1456,12 +1528,112 @@ public class UserManagerImpl implements UserManager, MultiTenantUserManager, Adm
         }
     }
 
+    /**
+     * Gets the group closure from the cache, or computes it from the directory. Each group is then read once for all
+     * the principals referencing it or its descendants.
+     *
+     * @since 9.2
+     */
+    @Override
+    public List<String> getGroupClosure(String groupName) {
+        List<String> closure = getCachedGroupClosure(groupName);
+        if (closure == null) {
+            closure = computeGroupClosure(groupName);
+            putCachedGroupClosure(groupName, closure);
+        }
+        return closure.isEmpty() ? null : closure;
+    }
+
+    /**
+     * Computes the closure of a group, reusing the cached closures of its ancestors.
+     *
+     * @return the closure, or an empty list if the group does not exist
+     * @since 9.2
+     */
+    protected List<String> computeGroupClosure(String groupName) {
+        NuxeoGroup group = getGroup(groupName);
+        if (group == null) {
+            return Collections.emptyList();
+        }
+        Set<String> closure = new LinkedHashSet<>();
+        closure.add(group.getName());
+        LinkedList<String> queue = new LinkedList<>(group.getParentGroups());
+        while (!queue.isEmpty()) {
+            String parentName = queue.removeFirst();
+            if (closure.contains(parentName)) {
+                // avoid infinite loop in case a group has one of its parents as a subgroup
+                continue;
+            }
+            List<String> parentClosure = getCachedGroupClosure(parentName);
+            if (parentClosure != null) {
+                closure.addAll(parentClosure);
+                continue;
+            }
+            NuxeoGroup parent = getGroup(parentName);
+            if (parent == null) {
+                log.error("Group " + group.getName() + " references the " + parentName
+                        + " parent group that does not exist");
+                continue;
+            }
+            closure.add(parent.getName());
+            queue.addAll(parent.getParentGroups());
+        }
+        return new ArrayList<>(closure);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected List<String> getCachedGroupClosure(String groupName) {
+        if (groupClosureCache != null) {
+            return (List<String>) groupClosureCache.get(groupName);
+        }
+        GroupClosure groupClosure = groupClosures.get(groupName);
+        if (groupClosure == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - groupClosure.time > groupClosureTTLMillis) {
+            groupClosures.remove(groupName, groupClosure);
+            return null;
+        }
+        return groupClosure.groups;
+    }
+
+    protected void putCachedGroupClosure(String groupName, List<String> closure) {
+        if (groupClosureCache != null) {
+            groupClosureCache.put(groupName, new ArrayList<>(closure));
+            return;
+        }
+        if (groupClosures.size() >= GROUP_CLOSURE_MAX_SIZE) {
+            groupClosures.clear();
+        }
+        groupClosures.put(groupName, new GroupClosure(Collections.unmodifiableList(closure)));
+    }
+
+    /**
+     * A group closure held in memory, with the time it was computed.
+     *
+     * @since 9.2
+     */
+    protected static class GroupClosure implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final List<String> groups;
+
+        protected final long time;
+
+        protected GroupClosure(List<String> groups) {
+            this.groups = groups;
+            time = System.currentTimeMillis();
+        }
+    }
+
     @Override
     public void handleEvent(Event event) {
         String id = event.getId();
         if (INVALIDATE_PRINCIPAL_EVENT_ID.equals(id)) {
             invalidatePrincipal((String) event.getData());
         } else if (INVALIDATE_ALL_PRINCIPALS_EVENT_ID.equals(id)) {
+            invalidateAllGroupClosures();
             invalidateAllPrincipals();
         }
     }
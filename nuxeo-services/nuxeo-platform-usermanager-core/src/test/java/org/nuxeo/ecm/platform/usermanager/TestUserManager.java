@@ -1206,4 +1206,42 @@ public class TestUserManager extends UserManagerTestCase {
                 userManager.getAncestorGroups("ABCD")));
     }
 
+    @Test
+    public void testGroupClosure() throws Exception {
+        DocumentModel groupABCD = getGroup("ABCD");
+        userManager.createGroup(groupABCD);
+
+        DocumentModel groupAB = getGroup("AB");
+        groupAB.setPropertyValue("group:subGroups", (Serializable) Collections.singletonList("ABCD"));
+        userManager.createGroup(groupAB);
+
+        DocumentModel groupA = getGroup("A");
+        groupA.setPropertyValue("group:subGroups", (Serializable) Collections.singletonList("AB"));
+        userManager.createGroup(groupA);
+
+        DocumentModel groupB = getGroup("B");
+        userManager.createGroup(groupB);
+
+        assertNull(userManager.getGroupClosure("nosuchgroup"));
+        assertEquals(Arrays.asList("ABCD", "AB", "A"), userManager.getGroupClosure("ABCD"));
+        assertEquals(Arrays.asList("AB", "A"), userManager.getGroupClosure("AB"));
+
+        // move AB from A to B, the cached closures of AB and its subgroups must change
+        groupA = userManager.getGroupModel("A");
+        groupA.setPropertyValue("group:subGroups", (Serializable) Collections.emptyList());
+        userManager.updateGroup(groupA);
+        groupB = userManager.getGroupModel("B");
+        groupB.setPropertyValue("group:subGroups", (Serializable) Collections.singletonList("AB"));
+        userManager.updateGroup(groupB);
+        assertEquals(Arrays.asList("ABCD", "AB", "B"), userManager.getGroupClosure("ABCD"));
+        assertEquals(Arrays.asList("AB", "B"), userManager.getGroupClosure("AB"));
+
+        DocumentModel user = getUser("test_u1");
+        user.setPropertyValue("user:groups", (Serializable) Collections.singletonList("ABCD"));
+        userManager.createUser(user);
+        NuxeoPrincipal principal = userManager.getPrincipal("test_u1");
+        assertTrue(principal.getAllGroups().containsAll(Arrays.asList("ABCD", "AB", "B")));
+        assertFalse(principal.getAllGroups().contains("A"));
+    }
+
 }